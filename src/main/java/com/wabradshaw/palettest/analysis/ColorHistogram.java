@@ -0,0 +1,395 @@
+package com.wabradshaw.palettest.analysis;
+
+import com.wabradshaw.palettest.utils.GraphicsUtils;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * A {@link ColorHistogram} is a compact count of the number of times each exact {@link Color} appeared in an image.
+ * Rather than storing a map of {@link Color} objects, the histogram stores two parallel arrays: the colors as packed
+ * ARGB ints (as returned by {@link Color#getRGB()}), sorted in ascending order, and the number of pixels of each color.
+ * This makes it cheap to build and to hold on to, even for photographs with hundreds of thousands of distinct colors.
+ * </p>
+ * <p>
+ * Color analysis is done in 8-bit RGB, so all colors in a histogram built from an image are treated as opaque.
+ * </p>
+ * <p>
+ * Counts are stored as ints, as that is enough for any single image. Histograms which are merged together switch to
+ * storing longs only once a count no longer fits in an int.
+ * </p>
+ * <p>
+ * Please note that {@link ColorHistogram}s are immutable.
+ * </p>
+ */
+public final class ColorHistogram {
+
+    private static final int OPAQUE = 0xff000000;
+
+    private final int[] colors;
+    private final int[] counts;
+    private final long[] longCounts;
+    private final long totalCount;
+
+    /**
+     * Internal constructor. The arrays are used as-is, so the colors must already be sorted and distinct.
+     *
+     * @param colors The distinct colors as packed ARGB ints, sorted in ascending order.
+     * @param counts The number of pixels of each color.
+     */
+    ColorHistogram(int[] colors, int[] counts){
+        this.colors = colors;
+        this.counts = counts;
+        this.longCounts = null;
+
+        long total = 0;
+        for(int count : counts){
+            total += count;
+        }
+        this.totalCount = total;
+    }
+
+    /**
+     * Internal constructor for counts which may not fit in an int. If every count does fit, they are stored as ints.
+     * The color array is used as-is, so the colors must already be sorted and distinct.
+     *
+     * @param colors The distinct colors as packed ARGB ints, sorted in ascending order.
+     * @param counts The number of pixels of each color.
+     * @throws ArithmeticException If the total count is too large to store in a long.
+     */
+    ColorHistogram(int[] colors, long[] counts){
+        this.colors = colors;
+
+        long total = 0;
+        boolean narrow = true;
+        for(long count : counts){
+            total = Math.addExact(total, count);
+            narrow &= count == (int) count;
+        }
+        this.totalCount = total;
+
+        if(narrow){
+            this.counts = new int[counts.length];
+            for(int i = 0; i < counts.length; i++){
+                this.counts[i] = (int) counts[i];
+            }
+            this.longCounts = null;
+        } else {
+            this.counts = null;
+            this.longCounts = counts;
+        }
+    }
+
+    /**
+     * Counts the number of pixels of each {@link Color} in an image.
+     *
+     * @param image The image to count. Cannot be null.
+     * @return      A {@link ColorHistogram} of every color in the image.
+     */
+    public static ColorHistogram of(BufferedImage image){
+        image = GraphicsUtils.createCopy(image);
+
+        int[] pixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+        for(int i = 0; i < pixels.length; i++){
+            pixels[i] |= OPAQUE;
+        }
+
+        return countSorted(pixels);
+    }
+
+    /**
+     * Creates a histogram from a map of {@link Color}s and the number of times they each appeared. This is the reverse
+     * of {@link #toColorCounts()}. Unlike histograms built from an image, the alpha of each color is kept.
+     *
+     * @param colorCounts The colors and the number of times they each appeared. Cannot be null.
+     * @return            A {@link ColorHistogram} of the same colors and counts.
+     * @throws IllegalArgumentException If the map is null, or any count is null or negative.
+     */
+    public static ColorHistogram of(Map<Color, ? extends Number> colorCounts){
+        if(colorCounts == null){
+            throw new IllegalArgumentException("A ColorHistogram can't be created from a null map of color counts.");
+        }
+
+        //Each key holds the color in the high bits and its position in the low bits, so sorting the keys sorts by color.
+        long[] keys = new long[colorCounts.size()];
+        long[] values = new long[colorCounts.size()];
+        int index = 0;
+        for(Map.Entry<Color, ? extends Number> colorCount : colorCounts.entrySet()){
+            Number count = colorCount.getValue();
+            if(count == null || count.longValue() < 0){
+                throw new IllegalArgumentException("The color " + colorCount.getKey() + " has an invalid count of " +
+                                                   count + ".");
+            }
+            keys[index] = ((long) colorCount.getKey().getRGB() << 32) | index;
+            values[index] = count.longValue();
+            index++;
+        }
+
+        Arrays.sort(keys);
+
+        int[] colors = new int[keys.length];
+        long[] counts = new long[keys.length];
+        for(int i = 0; i < keys.length; i++){
+            colors[i] = (int) (keys[i] >> 32);
+            counts[i] = values[(int) keys[i]];
+        }
+        return new ColorHistogram(colors, counts);
+    }
+
+    /**
+     * Creates a histogram from parallel arrays of colors and the number of times they each appeared. The colors may be
+     * in any order, and the counts of any repeated colors are added together. The alpha of each color is kept.
+     *
+     * @param colors The colors as packed ARGB ints. Cannot be null.
+     * @param counts The number of times each color appeared. Cannot be null.
+     * @return       A {@link ColorHistogram} of the same colors and counts.
+     * @throws IllegalArgumentException If either array is null, the arrays are different lengths, or any count is
+     *                                  negative.
+     */
+    public static ColorHistogram of(int[] colors, int[] counts){
+        if(colors == null || counts == null || colors.length != counts.length){
+            throw new IllegalArgumentException("A ColorHistogram needs a count for every color.");
+        }
+
+        //Each key holds the color in the high bits and its position in the low bits, so sorting the keys sorts by color.
+        long[] keys = new long[colors.length];
+        for(int i = 0; i < colors.length; i++){
+            if(counts[i] < 0){
+                throw new IllegalArgumentException("The color " + Integer.toHexString(colors[i]) +
+                                                   " has an invalid count of " + counts[i] + ".");
+            }
+            keys[i] = ((long) colors[i] << 32) | i;
+        }
+
+        Arrays.sort(keys);
+
+        int size = 0;
+        int[] sortedColors = new int[keys.length];
+        long[] sortedCounts = new long[keys.length];
+        for(int i = 0; i < keys.length; i++){
+            int color = (int) (keys[i] >> 32);
+            if(size == 0 || sortedColors[size - 1] != color){
+                sortedColors[size++] = color;
+            }
+            sortedCounts[size - 1] += counts[(int) keys[i]];
+        }
+        return new ColorHistogram(Arrays.copyOf(sortedColors, size), Arrays.copyOf(sortedCounts, size));
+    }
+
+    /**
+     * Sorts the supplied pixels in place, then counts each run of identical colors.
+     *
+     * @param pixels The pixels to count, as packed ARGB ints. This array will be reordered.
+     * @return       A {@link ColorHistogram} of the pixels.
+     */
+    private static ColorHistogram countSorted(int[] pixels){
+        Arrays.sort(pixels);
+
+        int distinct = 0;
+        for(int i = 0; i < pixels.length; i++){
+            if(i == 0 || pixels[i] != pixels[i - 1]){
+                distinct++;
+            }
+        }
+
+        int[] colors = new int[distinct];
+        int[] counts = new int[distinct];
+
+        int index = -1;
+        for(int i = 0; i < pixels.length; i++){
+            if(i == 0 || pixels[i] != pixels[i - 1]){
+                index++;
+                colors[index] = pixels[i];
+            }
+            counts[index]++;
+        }
+
+        return new ColorHistogram(colors, counts);
+    }
+
+    /**
+     * Gets the number of distinct colors in the histogram.
+     *
+     * @return The number of distinct colors.
+     */
+    public int size(){
+        return colors.length;
+    }
+
+    /**
+     * Gets the color at the supplied position in the histogram. Colors are sorted by their packed ARGB value.
+     *
+     * @param index The position of the color, from 0 to size() - 1.
+     * @return      The color as a packed ARGB int.
+     */
+    public int getColor(int index){
+        return colors[index];
+    }
+
+    /**
+     * Gets the number of pixels of the color at the supplied position in the histogram.
+     *
+     * @param index The position of the color, from 0 to size() - 1.
+     * @return      The number of pixels of that color.
+     */
+    public long getCount(int index){
+        return counts != null ? counts[index] : longCounts[index];
+    }
+
+    /**
+     * Gets the total number of pixels counted by the histogram.
+     *
+     * @return The total number of pixels.
+     */
+    public long getTotalCount(){
+        return totalCount;
+    }
+
+    /**
+     * Finds the position of a color in the histogram using a binary search.
+     *
+     * @param argb The color to look for, as a packed ARGB int.
+     * @return     The position of the color, or -1 if it isn't in the histogram.
+     */
+    public int indexOf(int argb){
+        int index = Arrays.binarySearch(colors, argb);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * Combines this histogram with another, summing the counts of any colors which appear in both. As both histograms
+     * are sorted, this is a single linear pass over each.
+     *
+     * @param other The histogram to combine with this one. Cannot be null.
+     * @return      A new histogram containing the colors and counts of both.
+     * @throws ArithmeticException If the combined count is too large to store in a long.
+     */
+    public ColorHistogram merge(ColorHistogram other){
+        int[] mergedColors = new int[this.size() + other.size()];
+        long[] mergedCounts = new long[mergedColors.length];
+
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while(i < this.size() || j < other.size()){
+            if(j >= other.size() || (i < this.size() && this.colors[i] < other.colors[j])){
+                mergedColors[size] = this.colors[i];
+                mergedCounts[size] = this.getCount(i);
+                i++;
+            } else if(i >= this.size() || other.colors[j] < this.colors[i]){
+                mergedColors[size] = other.colors[j];
+                mergedCounts[size] = other.getCount(j);
+                j++;
+            } else {
+                mergedColors[size] = this.colors[i];
+                mergedCounts[size] = Math.addExact(this.getCount(i), other.getCount(j));
+                i++;
+                j++;
+            }
+            size++;
+        }
+
+        return new ColorHistogram(Arrays.copyOf(mergedColors, size), Arrays.copyOf(mergedCounts, size));
+    }
+
+    /**
+     * <p>
+     * Reduces the histogram by binning similar colors together. Each channel (including alpha) keeps only its top
+     * {@code bits} bits, and every color which shares a bin is replaced by one color: the mean of the colors in that
+     * bin, weighted by their counts and rounded to the nearest whole value. The count of the new color is the sum of
+     * the counts in the bin. Bins which hold no pixels are left out.
+     * </p>
+     * <p>
+     * As the means are used rather than the bin centres, the reduced histogram still describes the average colors of
+     * the image exactly. Noisy photographs typically shrink by one or two orders of magnitude at 5 bits per channel,
+     * which makes any clustering done on the reduced histogram that much faster.
+     * </p>
+     *
+     * @param bits The number of bits kept for each channel, from 1 to 8. At 8 bits the histogram is unchanged.
+     * @return     A new histogram with at most one color per bin.
+     * @throws IllegalArgumentException If the number of bits is not from 1 to 8.
+     */
+    public ColorHistogram quantize(int bits){
+        if(bits < 1 || bits > 8){
+            throw new IllegalArgumentException("Colors can only be quantized to 1 to 8 bits per channel, not " + bits);
+        }
+        if(bits == 8){
+            return this;
+        }
+
+        //Each key holds the bin in the high bits and the position in the low bits, so sorting the keys groups the bins.
+        int mask = (0xff << (8 - bits) & 0xff) * 0x01010101;
+        long[] keys = new long[colors.length];
+        for(int i = 0; i < colors.length; i++){
+            keys[i] = ((long) (colors[i] & mask) << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        int size = 0;
+        long[] means = new long[keys.length];
+        long[] binCounts = new long[keys.length];
+        int start = 0;
+        while(start < keys.length){
+            int bin = (int) (keys[start] >> 32);
+            long count = 0;
+            double alpha = 0;
+            double red = 0;
+            double green = 0;
+            double blue = 0;
+
+            int end = start;
+            while(end < keys.length && (int) (keys[end] >> 32) == bin){
+                int index = (int) keys[end];
+                long weight = getCount(index);
+                int color = colors[index];
+                count = Math.addExact(count, weight);
+                alpha += (double) weight * (color >>> 24);
+                red += (double) weight * (color >> 16 & 0xff);
+                green += (double) weight * (color >> 8 & 0xff);
+                blue += (double) weight * (color & 0xff);
+                end++;
+            }
+
+            if(count > 0){
+                //The mean of a bin lies inside that bin, so no two bins can produce the same color.
+                int mean = (int) Math.round(alpha / count) << 24
+                         | (int) Math.round(red / count) << 16
+                         | (int) Math.round(green / count) << 8
+                         | (int) Math.round(blue / count);
+                means[size] = ((long) mean << 32) | size;
+                binCounts[size] = count;
+                size++;
+            }
+            start = end;
+        }
+
+        means = Arrays.copyOf(means, size);
+        Arrays.sort(means);
+
+        int[] reducedColors = new int[size];
+        long[] reducedCounts = new long[size];
+        for(int i = 0; i < size; i++){
+            reducedColors[i] = (int) (means[i] >> 32);
+            reducedCounts[i] = binCounts[(int) means[i]];
+        }
+        return new ColorHistogram(reducedColors, reducedCounts);
+    }
+
+    /**
+     * Converts the histogram into a map of {@link Color}s and the number of times they appeared.
+     *
+     * @return A new map of {@link Color}s and their counts.
+     * @throws ArithmeticException If any count is too large to return as an int.
+     */
+    public Map<Color, Integer> toColorCounts(){
+        Map<Color, Integer> result = new HashMap<>(colors.length * 2);
+        for(int i = 0; i < colors.length; i++){
+            result.put(new Color(colors[i], true), Math.toIntExact(getCount(i)));
+        }
+        return result;
+    }
+}
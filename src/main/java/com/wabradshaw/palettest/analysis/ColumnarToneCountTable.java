@@ -0,0 +1,210 @@
+package com.wabradshaw.palettest.analysis;
+
+import java.awt.Color;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * A compact {@link ToneCountTable} where every {@link Tone} is a single exact {@link Color}, as produced by
+ * {@link Palettester#analyseAllColors(java.awt.image.BufferedImage)}. The table is stored as a {@link ColorHistogram}
+ * (a sorted array of packed colors alongside an array of counts) and lookups by {@link Color} are binary searches.
+ * </p>
+ * <p>
+ * Positions in the table run from the highest packed color to the lowest, so for opaque colors the insertion order
+ * is descending by hex code (e.g. white first).
+ * </p>
+ * <p>
+ * {@link ToneCount}s are only created the first time each position is requested, then reused.
+ * </p>
+ */
+final class ColumnarToneCountTable implements ToneCountTable {
+
+    private static final int MIN_FULL_NAME_ALPHA = 0x10;
+
+    private final ColorHistogram histogram;
+    private volatile AtomicReferenceArray<ToneCount> toneCounts;
+
+    /**
+     * Creates a table describing each color in the histogram as its own {@link Tone}.
+     *
+     * @param histogram The colors and counts making up the table. Cannot be null.
+     */
+    ColumnarToneCountTable(ColorHistogram histogram){
+        this.histogram = histogram;
+    }
+
+    @Override
+    public int size(){
+        return histogram.size();
+    }
+
+    @Override
+    public ToneCount get(int index){
+        AtomicReferenceArray<ToneCount> cache = getToneCountCache();
+
+        ToneCount result = cache.get(index);
+        if(result == null){
+            Color color = new Color(getColor(index), true);
+            cache.compareAndSet(index, null, new ToneCount(new Tone(color), color, getCount(index)));
+            result = cache.get(index);
+        }
+        return result;
+    }
+
+    /**
+     * Converts a position in the table into a position in the histogram.
+     *
+     * @param index The position in the table.
+     * @return      The matching position in the histogram.
+     */
+    private int toHistogramIndex(int index){
+        return histogram.size() - 1 - index;
+    }
+
+    /**
+     * Converts a position in the histogram into a position in the table.
+     *
+     * @param histogramIndex The position in the histogram, or -1 if the color wasn't found.
+     * @return               The matching position in the table, or -1 if the color wasn't found.
+     */
+    private int fromHistogramIndex(int histogramIndex){
+        return histogramIndex < 0 ? -1 : histogram.size() - 1 - histogramIndex;
+    }
+
+    /**
+     * Gets the color at the supplied position.
+     *
+     * @param index The position in the table.
+     * @return      The color as a packed ARGB int.
+     */
+    private int getColor(int index){
+        return histogram.getColor(toHistogramIndex(index));
+    }
+
+    /**
+     * Gets the array of {@link ToneCount}s which have been created so far, creating it if needed.
+     *
+     * @return The cache of created {@link ToneCount}s.
+     */
+    private AtomicReferenceArray<ToneCount> getToneCountCache(){
+        AtomicReferenceArray<ToneCount> result = toneCounts;
+        if(result == null){
+            synchronized(this){
+                result = toneCounts;
+                if(result == null){
+                    result = new AtomicReferenceArray<>(histogram.size());
+                    toneCounts = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Tone getTone(int index){
+        AtomicReferenceArray<ToneCount> cache = toneCounts;
+        ToneCount created = cache == null ? null : cache.get(index);
+        return created != null ? created.getTone() : new Tone(new Color(getColor(index), true));
+    }
+
+    @Override
+    public int getToneColor(int index){
+        return getColor(index);
+    }
+
+    @Override
+    public long getCount(int index){
+        return histogram.getCount(toHistogramIndex(index));
+    }
+
+    @Override
+    public String getName(int index){
+        return hexName(getColor(index));
+    }
+
+    /**
+     * Names a color in the same way as an unnamed {@link Tone}.
+     *
+     * @param argb The color as a packed ARGB int.
+     * @return     The name the {@link Tone} would be given.
+     */
+    private static String hexName(int argb){
+        return '#' + Integer.toHexString(argb).substring(2);
+    }
+
+    @Override
+    public int indexOf(String name){
+        if(name == null){
+            return -1;
+        }
+
+        int rgb = parseHexName(name);
+        if(rgb < 0){
+            return findByScanning(name);
+        }
+
+        int best = -1;
+        for(int alpha = 0xff; alpha >= MIN_FULL_NAME_ALPHA; alpha--){
+            int index = fromHistogramIndex(histogram.indexOf((alpha << 24) | rgb));
+            if(index >= 0 && (best < 0 || getCount(index) > getCount(best) ||
+                              (getCount(index) == getCount(best) && index < best))){
+                best = index;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Reads the RGB value from a name in the #rrggbb format used for unnamed {@link Tone}s.
+     *
+     * @param name The name to read.
+     * @return     The RGB value, or -1 if the name isn't in the #rrggbb format.
+     */
+    private static int parseHexName(String name){
+        if(name.length() != 7 || name.charAt(0) != '#'){
+            return -1;
+        }
+        int rgb = 0;
+        for(int i = 1; i < 7; i++){
+            char c = name.charAt(i);
+            int digit = Character.digit(c, 16);
+            if(digit < 0 || Character.isUpperCase(c)){
+                return -1;
+            }
+            rgb = (rgb << 4) | digit;
+        }
+        return rgb;
+    }
+
+    /**
+     * Finds a name by checking every position. This is only needed for names of very transparent colors, which do
+     * not follow the #rrggbb format.
+     *
+     * @param name The name to look for.
+     * @return     The first position with the highest count and that name, or -1 if there isn't one.
+     */
+    private int findByScanning(String name){
+        int best = -1;
+        for(int i = 0; i < size(); i++){
+            if(name.equals(getName(i)) && (best < 0 || getCount(i) > getCount(best))){
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public int indexOf(Color color){
+        return color == null ? -1 : fromHistogramIndex(histogram.indexOf(color.getRGB()));
+    }
+
+    @Override
+    public long getTotalCount(){
+        return histogram.getTotalCount();
+    }
+
+    @Override
+    public ColorHistogram getHistogram(){
+        return histogram;
+    }
+}
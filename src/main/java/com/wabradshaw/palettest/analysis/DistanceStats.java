@@ -0,0 +1,160 @@
+package com.wabradshaw.palettest.analysis;
+
+import com.wabradshaw.palettest.analysis.distance.ColorDistanceFunction;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * <p>
+ * {@link DistanceStats} describe how far the pixels assigned to a {@link Tone} were from that {@link Tone}, according
+ * to a particular {@link ColorDistanceFunction}. They are recorded by {@link Palettester#analysePalette} while each
+ * {@link java.awt.Color} is matched to its closest {@link Tone}, so reporting how well an image fits a palette does not
+ * need another pass over the pixels.
+ * </p>
+ * <p>
+ * Alongside the total and maximum distance, the stats hold a histogram of how many pixels were at each distance. The
+ * buckets double in size, so that the histogram is useful whatever the scale of the distance function: bucket 0 holds
+ * distances below 1, bucket 1 holds distances from 1 up to 2, bucket 2 from 2 up to 4, and so on. The last bucket also
+ * holds every larger distance.
+ * </p>
+ * <p>
+ * Please note that {@link DistanceStats} are immutable.
+ * </p>
+ */
+public final class DistanceStats {
+
+    /**
+     * The number of buckets in the distance histogram.
+     */
+    public static final int BUCKETS = 16;
+
+    private final ColorDistanceFunction distanceFunction;
+    private final long pixelCount;
+    private final double totalDistance;
+    private final double maxDistance;
+    private final long[] histogram;
+
+    /**
+     * Internal constructor. The histogram is used as-is.
+     *
+     * @param distanceFunction The {@link ColorDistanceFunction} used to measure the distances.
+     * @param pixelCount       The number of pixels measured.
+     * @param totalDistance    The sum of the distance of every pixel.
+     * @param maxDistance      The largest distance of any pixel.
+     * @param histogram        The number of pixels in each distance bucket.
+     */
+    DistanceStats(ColorDistanceFunction distanceFunction, long pixelCount, double totalDistance, double maxDistance,
+                  long[] histogram){
+        this.distanceFunction = distanceFunction;
+        this.pixelCount = pixelCount;
+        this.totalDistance = totalDistance;
+        this.maxDistance = maxDistance;
+        this.histogram = histogram;
+    }
+
+    /**
+     * Finds the histogram bucket for a distance.
+     *
+     * @param distance The distance to place.
+     * @return         The bucket the distance belongs in, from 0 to {@link #BUCKETS} - 1.
+     */
+    static int bucketOf(double distance){
+        if(distance < 1){
+            return 0;
+        }
+        return Math.min(BUCKETS - 1, Math.getExponent(distance) + 1);
+    }
+
+    /**
+     * Gets the smallest distance which belongs in a histogram bucket.
+     *
+     * @param bucket The bucket, from 0 to {@link #BUCKETS} - 1.
+     * @return       The lower bound of the bucket.
+     */
+    public static double getBucketLowerBound(int bucket){
+        return bucket == 0 ? 0 : Math.scalb(1.0, bucket - 1);
+    }
+
+    /**
+     * Gets the {@link ColorDistanceFunction} used to measure the distances.
+     *
+     * @return The {@link ColorDistanceFunction} the stats describe.
+     */
+    public ColorDistanceFunction getDistanceFunction(){
+        return distanceFunction;
+    }
+
+    /**
+     * Gets the number of pixels which were measured.
+     *
+     * @return The number of pixels measured.
+     */
+    public long getPixelCount(){
+        return pixelCount;
+    }
+
+    /**
+     * Gets the sum of the distance of every pixel from the {@link Tone}.
+     *
+     * @return The total distance.
+     */
+    public double getTotalDistance(){
+        return totalDistance;
+    }
+
+    /**
+     * Gets the mean distance of each pixel from the {@link Tone}. If no pixels were measured, this will return 0.
+     *
+     * @return The mean distance.
+     */
+    public double getAverageDistance(){
+        return pixelCount == 0 ? 0 : totalDistance / pixelCount;
+    }
+
+    /**
+     * Gets the largest distance of any pixel from the {@link Tone}. If no pixels were measured, this will return 0.
+     *
+     * @return The maximum distance.
+     */
+    public double getMaxDistance(){
+        return maxDistance;
+    }
+
+    /**
+     * Gets a copy of the distance histogram. Each element is the number of pixels in that bucket.
+     *
+     * @return The number of pixels in each of the {@link #BUCKETS} buckets.
+     * @see #getBucketLowerBound(int)
+     */
+    public long[] getHistogram(){
+        return histogram.clone();
+    }
+
+    /**
+     * Combines these stats with another set measured using an equal {@link ColorDistanceFunction}.
+     *
+     * @param other The stats to combine with these.
+     * @return      The combined stats, or null if the other stats are null or used a function that isn't equal.
+     */
+    DistanceStats merge(DistanceStats other){
+        if(other == null || !Objects.equals(this.distanceFunction, other.distanceFunction)){
+            return null;
+        }
+
+        long[] combined = new long[BUCKETS];
+        for(int i = 0; i < BUCKETS; i++){
+            combined[i] = Math.addExact(this.histogram[i], other.histogram[i]);
+        }
+        return new DistanceStats(distanceFunction,
+                                 Math.addExact(this.pixelCount, other.pixelCount),
+                                 this.totalDistance + other.totalDistance,
+                                 Math.max(this.maxDistance, other.maxDistance),
+                                 combined);
+    }
+
+    @Override
+    public String toString(){
+        return "mean " + getAverageDistance() + ", max " + maxDistance + ", histogram " + Arrays.toString(histogram);
+    }
+}
@@ -0,0 +1,146 @@
+package com.wabradshaw.palettest.analysis;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * A mutable container used to combine several {@link PaletteDistribution}s into one. {@link ToneCount}s are matched
+ * by their {@link Tone}, and the first {@link Tone} seen is the one kept in the result. {@link Tone}s appear in the
+ * result in the order they were first seen.
+ * </p>
+ * <p>
+ * Distributions produced by {@link Palettester#analyseAllColors} are combined as {@link ColorHistogram}s, so the
+ * result stays compact as long as every distribution added was compact. Once a regular distribution is added, the
+ * colors counted so far are converted into regular {@link Tone}s in their existing order, and any later compact
+ * distributions are added in the same way as regular ones.
+ * </p>
+ * <p>
+ * {@link DistanceStats} are combined for each {@link Tone}, as long as every {@link ToneCount} for that {@link Tone}
+ * recorded them with the same {@link com.wabradshaw.palettest.analysis.distance.ColorDistanceFunction}.
+ * </p>
+ * <p>
+ * Accumulators are not thread safe. Parallel reductions should use one accumulator per thread, then combine them.
+ * </p>
+ * @see PaletteDistribution#merging()
+ */
+final class DistributionAccumulator {
+
+    private ColorHistogram histogram;
+    private final Map<Tone, Map<Color, Long>> toneCounts = new LinkedHashMap<>();
+    private final Map<Tone, DistanceStats> distanceStats = new HashMap<>();
+    private final Set<Tone> withoutStats = new HashSet<>();
+
+    /**
+     * Adds every {@link ToneCount} in the distribution to the accumulator.
+     *
+     * @param distribution The distribution to add. Cannot be null.
+     * @return             This accumulator.
+     */
+    DistributionAccumulator add(PaletteDistribution distribution){
+        ColorHistogram compact = distribution.getHistogram();
+        if(compact != null && toneCounts.isEmpty()){
+            histogram = histogram == null ? compact : histogram.merge(compact);
+        } else if(!distribution.byInsertion().isEmpty()){
+            expandHistogram();
+            for(ToneCount count : distribution.byInsertion()){
+                addPixelCounts(count.getTone(), count.getPixelCountsView());
+                addDistanceStats(count.getTone(), count.getDistanceStats());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Adds another accumulator's contents to this one. The other accumulator's {@link Tone}s are placed after this
+     * accumulator's, so combining partial results in order gives the same result as a sequential reduction.
+     *
+     * @param other The accumulator to add. Cannot be null.
+     * @return      This accumulator.
+     */
+    DistributionAccumulator combine(DistributionAccumulator other){
+        if(other.histogram != null){
+            return add(PaletteDistribution.of(new ColumnarToneCountTable(other.histogram)));
+        }
+        if(!other.toneCounts.isEmpty()){
+            expandHistogram();
+            other.toneCounts.forEach(this::addPixelCounts);
+            other.distanceStats.forEach(this::addDistanceStats);
+            other.withoutStats.forEach(tone -> addDistanceStats(tone, null));
+        }
+        return this;
+    }
+
+    /**
+     * Converts the compact colors counted so far into regular {@link Tone}s, in the same order, so that regular
+     * {@link Tone}s can be added after them. Compact colors never have distance statistics.
+     */
+    private void expandHistogram(){
+        if(histogram != null){
+            for(ToneCount count : PaletteDistribution.of(new ColumnarToneCountTable(histogram)).byInsertion()){
+                addPixelCounts(count.getTone(), count.getPixelCountsView());
+                addDistanceStats(count.getTone(), null);
+            }
+            histogram = null;
+        }
+    }
+
+    /**
+     * Adds a set of pixel counts for a particular {@link Tone}.
+     *
+     * @param tone        The {@link Tone} being counted.
+     * @param pixelCounts The pixel counts of each {@link Color} attributed to that {@link Tone}.
+     */
+    private void addPixelCounts(Tone tone, Map<Color, Long> pixelCounts){
+        Map<Color, Long> existing = toneCounts.computeIfAbsent(tone, t -> new HashMap<>());
+        pixelCounts.forEach((color, pixels) -> {
+            if(pixels != null){
+                existing.merge(color, pixels, Math::addExact);
+            }
+        });
+    }
+
+    /**
+     * Adds the distance statistics for a particular {@link Tone}. Once a {@link Tone} has been seen without
+     * statistics, or with statistics from a different distance function, it will have none in the result.
+     *
+     * @param tone  The {@link Tone} being counted.
+     * @param stats The {@link DistanceStats} recorded for the {@link Tone}, or null if there weren't any.
+     */
+    private void addDistanceStats(Tone tone, DistanceStats stats){
+        if(withoutStats.contains(tone)){
+            return;
+        }
+
+        DistanceStats existing = distanceStats.get(tone);
+        DistanceStats merged = existing == null ? stats : existing.merge(stats);
+        if(merged == null){
+            distanceStats.remove(tone);
+            withoutStats.add(tone);
+        } else {
+            distanceStats.put(tone, merged);
+        }
+    }
+
+    /**
+     * Creates a {@link PaletteDistribution} holding everything which has been added to the accumulator.
+     *
+     * @return A new {@link PaletteDistribution}.
+     */
+    PaletteDistribution build(){
+        if(histogram != null){
+            return PaletteDistribution.of(new ColumnarToneCountTable(histogram));
+        }
+
+        List<ToneCount> counts = new ArrayList<>(toneCounts.size());
+        toneCounts.forEach((tone, pixelCounts) -> counts.add(new ToneCount(tone, pixelCounts,
+                                                                           distanceStats.get(tone))));
+        return new PaletteDistribution(counts);
+    }
+}
@@ -0,0 +1,217 @@
+package com.wabradshaw.palettest.analysis;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * <p>
+ * A {@link DistributionDiff} is a comparison of two {@link PaletteDistribution}s, such as the distribution of an
+ * image from the last build and the current one. It lists a {@link ToneDelta} for every {@link Tone} whose count
+ * changed, including {@link Tone}s which were added or removed. {@link Tone}s with the same count in both
+ * distributions are left out.
+ * </p>
+ * <p>
+ * {@link Tone}s are matched by {@link Color}, in the same way as {@link Tone#equals(Object)}. If a distribution has
+ * several {@link Tone}s with the same {@link Color} (not recommended), their counts are added together. Matching is a
+ * single pass over each distribution, so comparing large distributions is linear apart from sorting the changes.
+ * </p>
+ * <p>
+ * Please note that {@link DistributionDiff}s are immutable.
+ * </p>
+ */
+public class DistributionDiff {
+
+    private static final Comparator<ToneDelta> LARGEST_FIRST =
+            Comparator.comparingDouble((ToneDelta delta) -> Math.abs(delta.getShareDelta())).reversed()
+                      .thenComparing(Comparator.comparingLong((ToneDelta delta) -> Math.abs(delta.getDelta()))
+                                               .reversed());
+
+    private final long beforeTotal;
+    private final long afterTotal;
+    private final List<ToneDelta> changes;
+
+    /**
+     * Internal constructor. Use {@link #between(PaletteDistribution, PaletteDistribution)} to compare distributions.
+     *
+     * @param beforeTotal The total number of pixels in the earlier distribution.
+     * @param afterTotal  The total number of pixels in the later distribution.
+     * @param changes     The changes between the distributions, largest first.
+     */
+    private DistributionDiff(long beforeTotal, long afterTotal, List<ToneDelta> changes){
+        this.beforeTotal = beforeTotal;
+        this.afterTotal = afterTotal;
+        this.changes = Collections.unmodifiableList(changes);
+    }
+
+    /**
+     * Compares two distributions.
+     *
+     * @param before The earlier distribution. Cannot be null.
+     * @param after  The later distribution. Cannot be null.
+     * @return       A {@link DistributionDiff} describing how the distribution changed.
+     * @throws IllegalArgumentException If either distribution is null.
+     */
+    public static DistributionDiff between(PaletteDistribution before, PaletteDistribution after){
+        if(before == null || after == null){
+            throw new IllegalArgumentException("Could not compare a PaletteDistribution with a null distribution.");
+        }
+
+        long beforeTotal = before.getTotalCount();
+        long afterTotal = after.getTotalCount();
+
+        List<ToneDelta> changes;
+        if(before.getHistogram() != null && after.getHistogram() != null){
+            changes = joinHistograms(before.getHistogram(), after.getHistogram(), beforeTotal, afterTotal);
+        } else {
+            changes = joinTables(before.getTable(), after.getTable(), beforeTotal, afterTotal);
+        }
+
+        changes.sort(LARGEST_FIRST);
+        return new DistributionDiff(beforeTotal, afterTotal, changes);
+    }
+
+    /**
+     * Matches two compact distributions. As both histograms are sorted by color, this is a single merge of the two,
+     * and {@link Tone}s are only created for colors whose count changed.
+     *
+     * @param before      The histogram of the earlier distribution.
+     * @param after       The histogram of the later distribution.
+     * @param beforeTotal The total number of pixels in the earlier distribution.
+     * @param afterTotal  The total number of pixels in the later distribution.
+     * @return            The changes between the histograms, in color order.
+     */
+    private static List<ToneDelta> joinHistograms(ColorHistogram before, ColorHistogram after,
+                                                  long beforeTotal, long afterTotal){
+        List<ToneDelta> changes = new ArrayList<>();
+
+        int i = 0;
+        int j = 0;
+        while(i < before.size() || j < after.size()){
+            int color;
+            long beforeCount = 0;
+            long afterCount = 0;
+            if(j >= after.size() || (i < before.size() && before.getColor(i) < after.getColor(j))){
+                color = before.getColor(i);
+                beforeCount = before.getCount(i++);
+            } else if(i >= before.size() || after.getColor(j) < before.getColor(i)){
+                color = after.getColor(j);
+                afterCount = after.getCount(j++);
+            } else {
+                color = before.getColor(i);
+                beforeCount = before.getCount(i++);
+                afterCount = after.getCount(j++);
+            }
+
+            if(beforeCount != afterCount){
+                Tone tone = new Tone(new Color(color, true));
+                changes.add(new ToneDelta(tone, beforeCount, afterCount, beforeTotal, afterTotal));
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Matches two distributions of any kind by building a single hash table of {@link Tone}s. The {@link Tone} from
+     * the earlier distribution is kept when both contain it.
+     *
+     * @param before      The table of the earlier distribution.
+     * @param after       The table of the later distribution.
+     * @param beforeTotal The total number of pixels in the earlier distribution.
+     * @param afterTotal  The total number of pixels in the later distribution.
+     * @return            The changes between the tables, in the order the {@link Tone}s first appear.
+     */
+    private static List<ToneDelta> joinTables(ToneCountTable before, ToneCountTable after,
+                                              long beforeTotal, long afterTotal){
+        Map<Tone, long[]> counts = new LinkedHashMap<>((before.size() + after.size()) * 2);
+        for(int i = 0; i < before.size(); i++){
+            counts.computeIfAbsent(before.getTone(i), tone -> new long[2])[0] += before.getCount(i);
+        }
+        for(int i = 0; i < after.size(); i++){
+            counts.computeIfAbsent(after.getTone(i), tone -> new long[2])[1] += after.getCount(i);
+        }
+
+        List<ToneDelta> changes = new ArrayList<>();
+        for(Map.Entry<Tone, long[]> entry : counts.entrySet()){
+            long[] pair = entry.getValue();
+            if(pair[0] != pair[1]){
+                changes.add(new ToneDelta(entry.getKey(), pair[0], pair[1], beforeTotal, afterTotal));
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Gets every {@link Tone} whose count changed, sorted so that the largest change in share comes first. Changes
+     * with the same share are sorted by the size of the change in count.
+     *
+     * @return An unmodifiable list of every change, largest first.
+     */
+    public List<ToneDelta> getChanges(){
+        return changes;
+    }
+
+    /**
+     * Gets the {@link Tone}s which had no pixels in the earlier distribution, largest first.
+     *
+     * @return The added {@link Tone}s.
+     */
+    public List<ToneDelta> getAdded(){
+        return changes.stream().filter(ToneDelta::isAdded).collect(Collectors.toList());
+    }
+
+    /**
+     * Gets the {@link Tone}s which have no pixels in the later distribution, largest first.
+     *
+     * @return The removed {@link Tone}s.
+     */
+    public List<ToneDelta> getRemoved(){
+        return changes.stream().filter(ToneDelta::isRemoved).collect(Collectors.toList());
+    }
+
+    /**
+     * Gets the {@link Tone}s which have pixels in both distributions, but a different number of them, largest first.
+     *
+     * @return The {@link Tone}s whose count changed.
+     */
+    public List<ToneDelta> getChanged(){
+        return changes.stream().filter(delta -> !delta.isAdded() && !delta.isRemoved()).collect(Collectors.toList());
+    }
+
+    /**
+     * Checks whether any {@link Tone} has a different count in the two distributions.
+     *
+     * @return True if the distributions differ, false if every {@link Tone} has the same count.
+     */
+    public boolean hasChanges(){
+        return !changes.isEmpty();
+    }
+
+    /**
+     * Gets the total number of pixels in the earlier distribution.
+     *
+     * @return The total number of pixels before the change.
+     */
+    public long getBeforeTotal(){
+        return beforeTotal;
+    }
+
+    /**
+     * Gets the total number of pixels in the later distribution.
+     *
+     * @return The total number of pixels after the change.
+     */
+    public long getAfterTotal(){
+        return afterTotal;
+    }
+
+    @Override
+    public String toString(){
+        return changes.toString();
+    }
+}
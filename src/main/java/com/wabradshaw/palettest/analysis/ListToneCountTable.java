@@ -0,0 +1,94 @@
+package com.wabradshaw.palettest.analysis;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link ToneCountTable} backed by a list of existing {@link ToneCount}s. This is the storage used when a
+ * {@link PaletteDistribution} is created from a list.
+ */
+final class ListToneCountTable implements ToneCountTable {
+
+    private final List<ToneCount> counts;
+    private final Map<String, Integer> indicesByName;
+    private final Map<Color, Integer> indicesByColor;
+    private final long totalCount;
+
+    /**
+     * Creates a table holding the supplied {@link ToneCount}s.
+     *
+     * @param counts The {@link ToneCount}s in insertion order. This list is copied. Cannot be null.
+     */
+    ListToneCountTable(List<ToneCount> counts){
+        this.counts = new ArrayList<>(counts);
+
+        indicesByName = new HashMap<>();
+        indicesByColor = new HashMap<>();
+
+        long total = 0;
+        for(int i = 0; i < this.counts.size(); i++){
+            ToneCount count = this.counts.get(i);
+            putIfLarger(indicesByName, count.getTone().getName(), i);
+            putIfLarger(indicesByColor, count.getTone().getColor(), i);
+            total += count.getLongCount();
+        }
+        this.totalCount = total;
+    }
+
+    /**
+     * Adds the position to the lookup map, unless the map already holds a position for the same key with at least as
+     * many pixels. This keeps the first of the largest counts, matching the order of
+     * {@link PaletteDistribution#byCount()}.
+     *
+     * @param lookup The lookup map being built.
+     * @param key    The key the position should be found under.
+     * @param index  The position to add.
+     * @param <K>    The type of key in the lookup map.
+     */
+    private <K> void putIfLarger(Map<K, Integer> lookup, K key, int index){
+        Integer existing = lookup.get(key);
+        if(existing == null || getCount(existing) < getCount(index)){
+            lookup.put(key, index);
+        }
+    }
+
+    @Override
+    public int size(){
+        return counts.size();
+    }
+
+    @Override
+    public ToneCount get(int index){
+        return counts.get(index);
+    }
+
+    @Override
+    public long getCount(int index){
+        return counts.get(index).getLongCount();
+    }
+
+    @Override
+    public String getName(int index){
+        return counts.get(index).getTone().getName();
+    }
+
+    @Override
+    public int indexOf(String name){
+        Integer index = indicesByName.get(name);
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    public int indexOf(Color color){
+        Integer index = indicesByColor.get(color);
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    public long getTotalCount(){
+        return totalCount;
+    }
+}
@@ -0,0 +1,148 @@
+package com.wabradshaw.palettest.analysis;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * A {@link ToneCountTable} read from a file written by a {@link PaletteDistributionWriter}. Only the table of
+ * {@link Tone} names, colors and counts is read up front. The exact {@link Color}s assigned to each {@link Tone} are
+ * left in the buffer, which is typically memory-mapped, and only decoded the first time that {@link ToneCount} is
+ * requested.
+ * </p>
+ * <p>
+ * This means sorting, totals and lookups by name or {@link Color} never touch the pixel counts at all.
+ * </p>
+ */
+final class MappedToneCountTable implements ToneCountTable {
+
+    private final ByteBuffer buffer;
+    private final String[] names;
+    private final int[] toneColors;
+    private final long[] counts;
+    private final int[] blockPositions;
+    private final long totalCount;
+
+    private final Map<String, Integer> indicesByName;
+    private final Map<Integer, Integer> indicesByColor;
+    private final AtomicReferenceArray<ToneCount> toneCounts;
+
+    /**
+     * Creates a table over the supplied buffer.
+     *
+     * @param buffer         The buffer holding the encoded blocks of pixel counts.
+     * @param names          The name of each {@link Tone}, in insertion order.
+     * @param toneColors     The color of each {@link Tone} as a packed ARGB int.
+     * @param counts         The number of pixels assigned to each {@link Tone}.
+     * @param blockPositions The position in the buffer of the block of pixel counts for each {@link Tone}.
+     */
+    MappedToneCountTable(ByteBuffer buffer, String[] names, int[] toneColors, long[] counts, int[] blockPositions){
+        this.buffer = buffer;
+        this.names = names;
+        this.toneColors = toneColors;
+        this.counts = counts;
+        this.blockPositions = blockPositions;
+        this.toneCounts = new AtomicReferenceArray<>(names.length);
+
+        indicesByName = new HashMap<>();
+        indicesByColor = new HashMap<>();
+
+        long total = 0;
+        for(int i = 0; i < names.length; i++){
+            putIfLarger(indicesByName, names[i], i);
+            putIfLarger(indicesByColor, toneColors[i], i);
+            total += counts[i];
+        }
+        this.totalCount = total;
+    }
+
+    /**
+     * Adds the position to the lookup map, unless the map already holds a position for the same key with at least as
+     * many pixels. This matches the behaviour of a {@link PaletteDistribution} created from a list.
+     *
+     * @param lookup The lookup map being built.
+     * @param key    The key the position should be found under.
+     * @param index  The position to add.
+     * @param <K>    The type of key in the lookup map.
+     */
+    private <K> void putIfLarger(Map<K, Integer> lookup, K key, int index){
+        Integer existing = lookup.get(key);
+        if(existing == null || counts[existing] < counts[index]){
+            lookup.put(key, index);
+        }
+    }
+
+    @Override
+    public int size(){
+        return names.length;
+    }
+
+    @Override
+    public ToneCount get(int index){
+        ToneCount result = toneCounts.get(index);
+        if(result == null){
+            toneCounts.compareAndSet(index, null, decode(index));
+            result = toneCounts.get(index);
+        }
+        return result;
+    }
+
+    /**
+     * Decodes the block of pixel counts for the {@link Tone} at the supplied position.
+     *
+     * @param index The position in the table.
+     * @return      A new {@link ToneCount} for the {@link Tone}.
+     */
+    private ToneCount decode(int index){
+        PaletteDistributionReader.Decoder decoder = new PaletteDistributionReader.Decoder(buffer,
+                                                                                          blockPositions[index]);
+        int[] colors = decoder.readColors();
+
+        Map<Color, Long> pixelCounts = new HashMap<>(colors.length * 2);
+        for(int color : colors){
+            pixelCounts.put(new Color(color, true), decoder.readCount());
+        }
+        return new ToneCount(new Tone(names[index], new Color(toneColors[index], true)), pixelCounts);
+    }
+
+    @Override
+    public Tone getTone(int index){
+        ToneCount decoded = toneCounts.get(index);
+        return decoded != null ? decoded.getTone() : new Tone(names[index], new Color(toneColors[index], true));
+    }
+
+    @Override
+    public int getToneColor(int index){
+        return toneColors[index];
+    }
+
+    @Override
+    public long getCount(int index){
+        return counts[index];
+    }
+
+    @Override
+    public String getName(int index){
+        return names[index];
+    }
+
+    @Override
+    public int indexOf(String name){
+        Integer index = indicesByName.get(name);
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    public int indexOf(Color color){
+        Integer index = color == null ? null : indicesByColor.get(color.getRGB());
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    public long getTotalCount(){
+        return totalCount;
+    }
+}
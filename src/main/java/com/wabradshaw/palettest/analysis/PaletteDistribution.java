@@ -2,7 +2,7 @@ package com.wabradshaw.palettest.analysis;
 
 import java.awt.Color;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.stream.Collector;
 
 /**
  * <p>
@@ -16,14 +16,25 @@ import java.util.stream.Collectors;
  * </p>
  * <p>
  * Please note that {@link PaletteDistribution}s are immutable. If the list of counts changes after the distribution
- * has been created, it will not reflect those changes.
+ * has been created, it will not reflect those changes. Because of this, the sorted views of the distribution and the
+ * total number of pixels are only computed once, the first time they are needed.
+ * </p>
+ * <p>
+ * Two distributions are equal if they contain equal {@link ToneCount}s (the same {@link Tone} {@link Color}s with the
+ * same counts) the same number of times, in any order. A 64-bit fingerprint of the contents is computed when the
+ * distribution is created, so {@link #hashCode()} is free and distributions with different contents are almost always
+ * told apart without comparing them in full.
  * </p>
  */
 public class PaletteDistribution {
 
-    private final List<ToneCount> counts;
-    private final Map<String, ToneCount> countsByName;
-    private final Map<Color, ToneCount> countsByColor;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private final ToneCountTable table;
+    private final long fingerprint;
+
+    private volatile List<ToneCount> countOrder;
+    private volatile List<ToneCount> nameOrder;
 
     /**
      * Main constructor producing {@link PaletteDistribution}s. However, typical people should not need to call this
@@ -37,21 +48,57 @@ public class PaletteDistribution {
         if(counts == null){
             throw new IllegalArgumentException("A PaletteDistribution was created with a null list of counts.");
         }
-        this.counts = new ArrayList<>(counts);
+        this.table = new ListToneCountTable(counts);
+        this.fingerprint = fingerprintOf(this.table);
+    }
 
-        countsByName = new HashMap<>();
-        countsByColor = new HashMap<>();
+    /**
+     * Internal constructor producing a {@link PaletteDistribution} from any {@link ToneCountTable}.
+     *
+     * @param table The table of {@link ToneCount}s that make up the distribution. Cannot be null.
+     */
+    private PaletteDistribution(ToneCountTable table){
+        this.table = table;
+        this.fingerprint = fingerprintOf(table);
+    }
 
-        for(ToneCount count : this.byCount()){
-            String name = count.getTone().getName();
-            Color color = count.getTone().getColor();
-            if(!countsByName.containsKey(name)){
-                countsByName.put(name, count);
-            }
-            if(!countsByColor.containsKey(color)){
-                countsByColor.put(color, count);
-            }
+    /**
+     * Creates a {@link PaletteDistribution} backed by the supplied {@link ToneCountTable}. This is used for compact
+     * representations, such as the one produced by {@link Palettester#analyseAllColors}.
+     *
+     * @param table The table of {@link ToneCount}s that make up the distribution. Cannot be null.
+     * @return      A {@link PaletteDistribution} reading from the table.
+     */
+    static PaletteDistribution of(ToneCountTable table){
+        return new PaletteDistribution(table);
+    }
+
+    /**
+     * Creates an order-independent fingerprint of a table. Each {@link Tone} {@link Color} and count pair is hashed on
+     * its own, and the hashes are summed, so the same pairs give the same fingerprint in any order.
+     *
+     * @param table The table to fingerprint.
+     * @return      The fingerprint of the table's contents.
+     */
+    private static long fingerprintOf(ToneCountTable table){
+        long result = 0;
+        for(int i = 0; i < table.size(); i++){
+            result += mix(((long) table.getToneColor(i) << 32) ^ mix(table.getCount(i)));
         }
+        return result;
+    }
+
+    /**
+     * Scrambles the bits of a value, so that similar values have very different hashes. This is the finalisation
+     * step of MurmurHash3.
+     *
+     * @param value The value to scramble.
+     * @return      The scrambled value.
+     */
+    private static long mix(long value){
+        value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
     }
 
     /**
@@ -69,7 +116,8 @@ public class PaletteDistribution {
      *             image, or null if it was never used.
      */
     public ToneCount get(String name){
-        return this.countsByName.get(name);
+        int index = this.table.indexOf(name);
+        return index < 0 ? null : this.table.get(index);
     }
 
     /**
@@ -87,7 +135,8 @@ public class PaletteDistribution {
      *             image, or null if it was never used.
      */
     public ToneCount get(Color color){
-        return this.countsByColor.get(color);
+        int index = this.table.indexOf(color);
+        return index < 0 ? null : this.table.get(index);
     }
 
     /**
@@ -98,49 +147,463 @@ public class PaletteDistribution {
      * @return the {@link ToneCount}s in insertion order.
      */
     public List<ToneCount> getDistribution(){
-        return new ArrayList<>(this.counts);
+        return new ArrayList<>(byInsertion());
+    }
+
+    /**
+     * Gets an unmodifiable view of the {@link ToneCount}s in insertion order, without copying them.
+     *
+     * @return The {@link ToneCount}s in insertion order.
+     */
+    List<ToneCount> byInsertion(){
+        return new TableView(null);
+    }
+
+    /**
+     * Gets the {@link ColorHistogram} behind this distribution, if it is stored compactly.
+     *
+     * @return The {@link ColorHistogram} holding the distribution, or null if it isn't stored that way.
+     */
+    ColorHistogram getHistogram(){
+        return this.table.getHistogram();
+    }
+
+    /**
+     * Gets the table holding the distribution.
+     *
+     * @return The {@link ToneCountTable} behind this distribution.
+     */
+    ToneCountTable getTable(){
+        return this.table;
     }
 
     /**
-     * Gets the distribution sorted by the number of times each {@link Tone} appeared (descending).
+     * Gets the distribution sorted by the number of times each {@link Tone} appeared (descending). {@link ToneCount}s
+     * with the same count keep their insertion order. The ordering is only computed once, so the returned list is
+     * unmodifiable.
      *
      * @return The distribution sorted by the number of times each {@link Tone} appeared (descending).
      */
     public List<ToneCount> byCount(){
-        return this.counts.stream()
-                          .sorted((o1, o2) -> (o2.getCount() - o1.getCount()))
-                          .collect(Collectors.toList());
+        List<ToneCount> result = this.countOrder;
+        if(result == null){
+            result = new TableView(sortByCount());
+            this.countOrder = result;
+        }
+        return result;
+    }
+
+    /**
+     * <p>
+     * Gets the k {@link ToneCount}s which appeared most often, sorted by the number of times each {@link Tone}
+     * appeared (descending). This is the same as the first k elements of {@link #byCount()}, including how ties are
+     * ordered, but the rest of the distribution is never sorted. Finding the top few {@link Tone}s is therefore
+     * linear in the size of the distribution.
+     * </p>
+     * <p>
+     * If k is larger than the number of {@link ToneCount}s, every {@link ToneCount} is returned. The returned list is
+     * unmodifiable.
+     * </p>
+     *
+     * @param k The maximum number of {@link ToneCount}s to return. Cannot be negative.
+     * @return  Up to k of the most common {@link ToneCount}s, in descending order of count.
+     */
+    public List<ToneCount> top(int k){
+        if(k < 0){
+            throw new IllegalArgumentException("Could not get the top " + k + " tones of a PaletteDistribution.");
+        }
+
+        int size = this.table.size();
+        List<ToneCount> sorted = this.countOrder;
+        if(sorted != null || k >= size){
+            return byCount().subList(0, Math.min(k, size));
+        }
+
+        // A heap of positions, with the lowest ranked of the best k seen so far at the root.
+        int[] best = new int[k];
+        int heapSize = 0;
+        for(int i = 0; i < size && k > 0; i++){
+            if(heapSize < k){
+                best[heapSize] = i;
+                siftUp(best, heapSize++);
+            } else if(rankedBefore(i, best[0])){
+                best[0] = i;
+                siftDown(best, heapSize);
+            }
+        }
+
+        int[] order = new int[heapSize];
+        while(heapSize > 0){
+            order[--heapSize] = best[0];
+            best[0] = best[heapSize];
+            siftDown(best, heapSize);
+        }
+        return new TableView(order);
+    }
+
+    /**
+     * Checks whether one position in the table comes before another in {@link #byCount()}.
+     *
+     * @param a The first position.
+     * @param b The second position.
+     * @return  True if a has a higher count than b, or the same count and an earlier position.
+     */
+    private boolean rankedBefore(int a, int b){
+        long countA = table.getCount(a);
+        long countB = table.getCount(b);
+        return countA > countB || (countA == countB && a < b);
+    }
+
+    /**
+     * Moves the position at the end of a heap up until no parent is ranked before it.
+     *
+     * @param heap     The heap, ordered so that each parent is ranked after its children.
+     * @param position The index of the newly added position.
+     */
+    private void siftUp(int[] heap, int position){
+        int value = heap[position];
+        while(position > 0){
+            int parent = (position - 1) >>> 1;
+            if(!rankedBefore(heap[parent], value)){
+                break;
+            }
+            heap[position] = heap[parent];
+            position = parent;
+        }
+        heap[position] = value;
+    }
+
+    /**
+     * Moves the position at the root of a heap down until none of its children are ranked after it.
+     *
+     * @param heap The heap, ordered so that each parent is ranked after its children.
+     * @param size The number of positions in the heap.
+     */
+    private void siftDown(int[] heap, int size){
+        int value = heap[0];
+        int position = 0;
+        int child;
+        while((child = 2 * position + 1) < size){
+            if(child + 1 < size && rankedBefore(heap[child], heap[child + 1])){
+                child++;
+            }
+            if(!rankedBefore(value, heap[child])){
+                break;
+            }
+            heap[position] = heap[child];
+            position = child;
+        }
+        if(size > 0){
+            heap[position] = value;
+        }
     }
 
     /**
-     * Gets the distribution sorted alphabetically by the name of each {@link Tone} (ascending).
+     * Gets the distribution sorted alphabetically by the name of each {@link Tone} (ascending). The ordering is only
+     * computed once, so the returned list is unmodifiable.
      *
      * @return The distribution sorted alphabetically by the name of each {@link Tone} (ascending).
      */
     public List<ToneCount> byName(){
-        return this.counts.stream()
-                .sorted((o1, o2) -> (o1.getTone().getName().compareTo(o2.getTone().getName())))
-                .collect(Collectors.toList());
+        List<ToneCount> result = this.nameOrder;
+        if(result == null){
+            result = new TableView(sortIndices((a, b) -> table.getName(a).compareTo(table.getName(b))));
+            this.nameOrder = result;
+        }
+        return result;
+    }
+
+    /**
+     * Gets the total number of pixels described by the distribution. This is the sum of the counts of every
+     * {@link ToneCount} in the distribution.
+     *
+     * @return The total number of pixels in the distribution.
+     */
+    public long getTotalCount(){
+        return this.table.getTotalCount();
+    }
+
+    /**
+     * Checks whether or not the distribution contains any {@link ToneCount}s.
+     *
+     * @return True if there are no {@link ToneCount}s in the distribution, false otherwise.
+     */
+    public boolean isEmpty(){
+        return this.table.size() == 0;
+    }
+
+    /**
+     * Sorts the positions in the table by count (descending), keeping ties in insertion order. Each position is
+     * packed into a single long alongside its count, so the sort never boxes. If a count is too large to share a long
+     * with the position, or is negative, this falls back to {@link #sortIndices(PositionComparator)}.
+     *
+     * @return Every position in the table, in the order used by {@link #byCount()}.
+     */
+    private int[] sortByCount(){
+        int size = this.table.size();
+        int positionBits = 32 - Integer.numberOfLeadingZeros(Math.max(size - 1, 1));
+        long maxCount = 0;
+        long minCount = 0;
+        for(int i = 0; i < size; i++){
+            maxCount = Math.max(maxCount, table.getCount(i));
+            minCount = Math.min(minCount, table.getCount(i));
+        }
+        if(minCount < 0 || maxCount >>> (63 - positionBits) != 0){
+            return sortIndices((a, b) -> Long.compare(table.getCount(b), table.getCount(a)));
+        }
+
+        // Subtracting from the largest count makes an ascending sort put the highest counts first.
+        long[] keys = new long[size];
+        for(int i = 0; i < size; i++){
+            keys[i] = ((maxCount - table.getCount(i)) << positionBits) | i;
+        }
+        Arrays.sort(keys);
+
+        int mask = (1 << positionBits) - 1;
+        int[] result = new int[size];
+        for(int i = 0; i < size; i++){
+            result[i] = (int) keys[i] & mask;
+        }
+        return result;
+    }
+
+    /**
+     * Creates a stable ordering of the positions in the table. This is a merge sort over the positions themselves,
+     * so unlike sorting with a {@link Comparator} no position is boxed.
+     *
+     * @param comparator The comparison between two positions.
+     * @return           Every position in the table, sorted using the comparator.
+     */
+    private int[] sortIndices(PositionComparator comparator){
+        int[] indices = new int[this.table.size()];
+        for(int i = 0; i < indices.length; i++){
+            indices[i] = i;
+        }
+        mergeSort(indices.clone(), indices, 0, indices.length, comparator);
+        return indices;
+    }
+
+    /**
+     * Sorts part of an array of positions using a stable merge sort. Both arrays must start with the same contents in
+     * the range being sorted, and the source is used as scratch space.
+     *
+     * @param source      The positions to sort, which will be overwritten.
+     * @param destination The array to hold the sorted positions.
+     * @param low         The first index to sort (inclusive).
+     * @param high        The last index to sort (exclusive).
+     * @param comparator  The comparison between two positions.
+     */
+    private static void mergeSort(int[] source, int[] destination, int low, int high, PositionComparator comparator){
+        if(high - low <= INSERTION_SORT_THRESHOLD){
+            for(int i = low + 1; i < high; i++){
+                int value = destination[i];
+                int j = i;
+                while(j > low && comparator.compare(destination[j - 1], value) > 0){
+                    destination[j] = destination[j - 1];
+                    j--;
+                }
+                destination[j] = value;
+            }
+            return;
+        }
+
+        int mid = (low + high) >>> 1;
+        mergeSort(destination, source, low, mid, comparator);
+        mergeSort(destination, source, mid, high, comparator);
+
+        for(int i = low, left = low, right = mid; i < high; i++){
+            if(right >= high || (left < mid && comparator.compare(source[left], source[right]) <= 0)){
+                destination[i] = source[left++];
+            } else {
+                destination[i] = source[right++];
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Combines this distribution with another, such as the distribution of a different image or frame. The
+     * {@link ToneCount}s of any {@link Tone} in both distributions are merged, summing the number of pixels of each
+     * {@link Color}. The result keeps the {@link Tone}s from this distribution, followed by any {@link Tone}s only
+     * found in the other distribution.
+     * </p>
+     * <p>
+     * Merging is associative, so distributions can be combined in any grouping. Distributions produced by
+     * {@link Palettester#analyseAllColors} stay compact when merged with each other, so like any compact distribution
+     * their {@link Tone}s are ordered by {@link Color} rather than by which distribution they came from.
+     * </p>
+     *
+     * @param other The distribution to combine with this one. Cannot be null.
+     * @return      A new {@link PaletteDistribution} describing the pixels of both distributions.
+     * @throws IllegalArgumentException If the other distribution is null.
+     * @throws ArithmeticException      If a combined count is too large to store.
+     * @see ToneCount#merge(ToneCount)
+     */
+    public PaletteDistribution merge(PaletteDistribution other){
+        if(other == null){
+            throw new IllegalArgumentException("A PaletteDistribution can't be merged with a null distribution.");
+        }
+        return new DistributionAccumulator().add(this).add(other).build();
+    }
+
+    /**
+     * <p>
+     * Creates a {@link Collector} which merges a stream of {@link PaletteDistribution}s into a single distribution.
+     * When used on a parallel stream, each thread builds up its own partial result which are then combined, so
+     * large numbers of images can be aggregated across every core. For example:
+     * </p>
+     * <pre>
+     * PaletteDistribution total = images.parallelStream()
+     *                                   .map(tester::analysePalette)
+     *                                   .collect(PaletteDistribution.merging());
+     * </pre>
+     *
+     * @return A {@link Collector} producing the merge of every {@link PaletteDistribution} in the stream.
+     * @see #merge(PaletteDistribution)
+     */
+    public static Collector<PaletteDistribution, ?, PaletteDistribution> merging(){
+        return Collector.of(DistributionAccumulator::new,
+                            DistributionAccumulator::add,
+                            DistributionAccumulator::combine,
+                            DistributionAccumulator::build);
+    }
+
+    /**
+     * Compares this distribution with a later one, such as the distribution of the same image in a newer build. This
+     * is a single pass over each distribution, so it is much cheaper than checking the distributions for equality and
+     * also reports what changed.
+     *
+     * @param after The later distribution to compare with. Cannot be null.
+     * @return      A {@link DistributionDiff} describing the {@link Tone}s which were added, removed or changed.
+     * @throws IllegalArgumentException If the other distribution is null.
+     * @see DistributionDiff
+     */
+    public DistributionDiff diff(PaletteDistribution after){
+        return DistributionDiff.between(this, after);
     }
 
     @Override
     public String toString(){
-        return this.counts.toString();
+        return byInsertion().toString();
+    }
+
+    /**
+     * Gets a 64-bit fingerprint of the distribution's contents. Equal distributions always have the same fingerprint,
+     * and different distributions almost never do, so it can be used as a compact key when grouping identical
+     * distributions.
+     *
+     * @return The fingerprint of the distribution.
+     */
+    public long getFingerprint(){
+        return this.fingerprint;
     }
 
     @Override
     public boolean equals(Object candidate){
-        if(candidate instanceof PaletteDistribution){
-            List<ToneCount> a = this.byCount();
-            List<ToneCount> b = ((PaletteDistribution) candidate).byCount();
-            return a.containsAll(b) && b.containsAll(a);
+        if(candidate == this){
+            return true;
+        } else if(candidate instanceof PaletteDistribution){
+            PaletteDistribution other = (PaletteDistribution) candidate;
+            return this.fingerprint == other.fingerprint &&
+                   this.table.size() == other.table.size() &&
+                   this.sameContents(other);
         } else {
             return false;
         }
     }
 
+    /**
+     * Compares the contents of two distributions of the same size in full. This is only needed when the fingerprints
+     * match, to rule out a collision.
+     *
+     * @param other The distribution to compare with.
+     * @return      True if the distributions contain the same {@link Tone} {@link Color}s with the same counts.
+     */
+    private boolean sameContents(PaletteDistribution other){
+        ColorHistogram histogram = this.getHistogram();
+        ColorHistogram otherHistogram = other.getHistogram();
+        if(histogram != null && otherHistogram != null){
+            for(int i = 0; i < histogram.size(); i++){
+                if(histogram.getColor(i) != otherHistogram.getColor(i) ||
+                   histogram.getCount(i) != otherHistogram.getCount(i)){
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int[] order = this.canonicalOrder();
+        int[] otherOrder = other.canonicalOrder();
+        for(int i = 0; i < order.length; i++){
+            if(this.table.getToneColor(order[i]) != other.table.getToneColor(otherOrder[i]) ||
+               this.table.getCount(order[i]) != other.table.getCount(otherOrder[i])){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sorts the positions in the table by {@link Tone} {@link Color}, then by count.
+     *
+     * @return Every position in the table, in a canonical order.
+     */
+    private int[] canonicalOrder(){
+        return sortIndices((a, b) -> {
+            int comparison = Integer.compare(table.getToneColor(a), table.getToneColor(b));
+            return comparison != 0 ? comparison : Long.compare(table.getCount(a), table.getCount(b));
+        });
+    }
+
     @Override
     public int hashCode(){
-        return Objects.hashCode(this.byCount());
+        return Long.hashCode(this.fingerprint);
+    }
+
+    /**
+     * A comparison between two positions in the table, used instead of a {@link Comparator} to avoid boxing.
+     */
+    private interface PositionComparator {
+
+        /**
+         * Compares two positions in the table.
+         *
+         * @param a The first position.
+         * @param b The second position.
+         * @return  A negative number if a comes first, a positive number if b comes first, or 0 if they are tied.
+         */
+        int compare(int a, int b);
+    }
+
+    /**
+     * An unmodifiable list view over the table, in the supplied order. {@link ToneCount}s are only fetched from the
+     * table when they are read.
+     */
+    private class TableView extends AbstractList<ToneCount> implements RandomAccess {
+
+        private final int[] order;
+
+        /**
+         * Creates a view of the table.
+         *
+         * @param order The positions in the table, in the order they should appear. If null, every position is used
+         *              in insertion order.
+         */
+        TableView(int[] order){
+            this.order = order;
+        }
+
+        @Override
+        public ToneCount get(int index){
+            if(index < 0 || index >= size()){
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            return table.get(order == null ? index : order[index]);
+        }
+
+        @Override
+        public int size(){
+            return order == null ? table.size() : order.length;
+        }
     }
 }
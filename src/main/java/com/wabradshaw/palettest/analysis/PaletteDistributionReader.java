@@ -0,0 +1,244 @@
+package com.wabradshaw.palettest.analysis;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * <p>
+ * A {@link PaletteDistributionReader} loads a {@link PaletteDistribution} stored by a
+ * {@link PaletteDistributionWriter}. Files are memory-mapped rather than read into memory, and only the table of
+ * {@link Tone}s is decoded when the file is opened. The exact {@link java.awt.Color}s behind each {@link ToneCount}
+ * are only decoded when that {@link ToneCount} is first used, so checking the counts of a large baseline is cheap.
+ * </p>
+ * <p>
+ * The reader also exposes the fingerprint of the palette the distribution was analysed against, which can be checked
+ * with {@link #matchesPalette(List)} to detect baselines which were produced with a different palette.
+ * </p>
+ * @see PaletteDistributionWriter
+ */
+public class PaletteDistributionReader {
+
+    private final long paletteFingerprint;
+    private final PaletteDistribution distribution;
+
+    /**
+     * Internal constructor. Use {@link #open(Path)} or {@link #open(ByteBuffer)} to read a distribution.
+     *
+     * @param paletteFingerprint The fingerprint of the palette stored with the distribution.
+     * @param distribution       The stored distribution.
+     */
+    private PaletteDistributionReader(long paletteFingerprint, PaletteDistribution distribution){
+        this.paletteFingerprint = paletteFingerprint;
+        this.distribution = distribution;
+    }
+
+    /**
+     * Memory-maps a file written by a {@link PaletteDistributionWriter} and reads the distribution it contains. The
+     * file must not be modified while the distribution is in use.
+     *
+     * @param file The file to read.
+     * @return     A reader for the stored distribution.
+     * @throws IOException              If the file could not be read.
+     * @throws IllegalArgumentException If the file does not contain a stored distribution.
+     */
+    public static PaletteDistributionReader open(Path file) throws IOException {
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            return open(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads a distribution from the bytes written by a {@link PaletteDistributionWriter}, starting at the buffer's
+     * current position. The buffer's contents must not be modified while the distribution is in use.
+     *
+     * @param buffer The buffer to read.
+     * @return       A reader for the stored distribution.
+     * @throws IllegalArgumentException If the buffer does not contain a stored distribution.
+     */
+    public static PaletteDistributionReader open(ByteBuffer buffer){
+        buffer = buffer.slice();
+
+        if(buffer.remaining() < PaletteDistributionWriter.HEADER_SIZE ||
+           buffer.getInt(0) != PaletteDistributionWriter.MAGIC){
+            throw new IllegalArgumentException("The data does not contain a stored PaletteDistribution.");
+        }
+        if(buffer.get(4) != PaletteDistributionWriter.VERSION){
+            throw new IllegalArgumentException("Stored PaletteDistributions of version " + buffer.get(4) +
+                                               " are not supported.");
+        }
+
+        boolean allColors = (buffer.get(5) & PaletteDistributionWriter.FLAG_ALL_COLORS) != 0;
+        long fingerprint = buffer.getLong(6);
+
+        try {
+            PaletteDistribution distribution = allColors ? readAllColors(buffer) : readToneCounts(buffer);
+            return new PaletteDistributionReader(fingerprint, distribution);
+        } catch (IndexOutOfBoundsException e){
+            throw new IllegalArgumentException("The stored PaletteDistribution is truncated or corrupt.", e);
+        }
+    }
+
+    /**
+     * Reads a distribution where every {@link Tone} is an exact color, as a single block of colors and counts.
+     *
+     * @param buffer The buffer to read.
+     * @return       The stored distribution.
+     */
+    private static PaletteDistribution readAllColors(ByteBuffer buffer){
+        Decoder decoder = new Decoder(buffer, PaletteDistributionWriter.HEADER_SIZE);
+        int[] colors = decoder.readColors();
+        long[] counts = new long[colors.length];
+        for(int i = 0; i < counts.length; i++){
+            counts[i] = decoder.readCount();
+        }
+        return PaletteDistribution.of(new ColumnarToneCountTable(new ColorHistogram(colors, counts)));
+    }
+
+    /**
+     * Reads the table of {@link Tone}s from the end of the buffer. The blocks of pixel counts are left to be decoded
+     * when needed.
+     *
+     * @param buffer The buffer to read.
+     * @return       The stored distribution.
+     */
+    private static PaletteDistribution readToneCounts(ByteBuffer buffer){
+        long tablePosition = buffer.getLong(buffer.limit() - Long.BYTES);
+        if(tablePosition < PaletteDistributionWriter.HEADER_SIZE || tablePosition > buffer.limit() - Long.BYTES){
+            throw new IllegalArgumentException("The stored PaletteDistribution is truncated or corrupt.");
+        }
+
+        Decoder decoder = new Decoder(buffer, (int) tablePosition);
+        int size = decoder.readSize();
+
+        String[] names = new String[size];
+        int[] toneColors = new int[size];
+        long[] counts = new long[size];
+        int[] blockPositions = new int[size];
+        for(int i = 0; i < size; i++){
+            names[i] = decoder.readString();
+            toneColors[i] = decoder.readInt();
+            counts[i] = decoder.readCount();
+            blockPositions[i] = decoder.readPosition();
+        }
+
+        return PaletteDistribution.of(new MappedToneCountTable(buffer, names, toneColors, counts, blockPositions));
+    }
+
+    /**
+     * Gets the fingerprint of the palette the distribution was analysed against, as created by
+     * {@link PaletteDistributionWriter#fingerprint(List)}. This is zero if no palette was recorded.
+     *
+     * @return The fingerprint of the palette.
+     */
+    public long getPaletteFingerprint(){
+        return paletteFingerprint;
+    }
+
+    /**
+     * Checks whether the distribution was analysed against the supplied palette.
+     *
+     * @param palette The palette to check. Cannot be null.
+     * @return        True if the stored fingerprint matches the fingerprint of the palette, false otherwise.
+     */
+    public boolean matchesPalette(List<Tone> palette){
+        return paletteFingerprint == PaletteDistributionWriter.fingerprint(palette);
+    }
+
+    /**
+     * Gets the stored distribution.
+     *
+     * @return The stored {@link PaletteDistribution}.
+     */
+    public PaletteDistribution getDistribution(){
+        return distribution;
+    }
+
+    /**
+     * Reads the numbers written by a {@link PaletteDistributionWriter} from a position in a buffer. Reads use absolute
+     * positions, so any number of decoders can share a buffer.
+     */
+    static class Decoder {
+
+        private final ByteBuffer buffer;
+        private int position;
+
+        Decoder(ByteBuffer buffer, int position){
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        int readInt(){
+            int result = buffer.getInt(position);
+            position += Integer.BYTES;
+            return result;
+        }
+
+        long readVarLong(){
+            long result = 0;
+            for(int shift = 0; shift < Long.SIZE; shift += 7){
+                byte b = buffer.get(position++);
+                result |= (long) (b & 0x7f) << shift;
+                if(b >= 0){
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("The stored PaletteDistribution contains a malformed number.");
+        }
+
+        /**
+         * Reads the number of items which follow. Each item takes at least one byte, so sizes larger than the rest of
+         * the buffer are rejected before anything is allocated.
+         */
+        int readSize(){
+            long result = readVarLong();
+            if(result > buffer.limit() - position){
+                throw new IllegalArgumentException("The stored PaletteDistribution contains an invalid size.");
+            }
+            return (int) result;
+        }
+
+        long readCount(){
+            long result = readVarLong();
+            if(result < 0){
+                throw new IllegalArgumentException("The stored PaletteDistribution contains an invalid count.");
+            }
+            return result;
+        }
+
+        int readPosition(){
+            long result = readVarLong();
+            if(result < PaletteDistributionWriter.HEADER_SIZE || result >= buffer.limit()){
+                throw new IllegalArgumentException("The stored PaletteDistribution contains an invalid position.");
+            }
+            return (int) result;
+        }
+
+        String readString(){
+            byte[] bytes = new byte[readSize()];
+            for(int i = 0; i < bytes.length; i++){
+                bytes[i] = buffer.get(position++);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Reads a block of colors, each stored as the unsigned difference from the previous one.
+         *
+         * @return The colors as packed ARGB ints, in the order they were written.
+         */
+        int[] readColors(){
+            int[] colors = new int[readSize()];
+            int previous = 0;
+            for(int i = 0; i < colors.length; i++){
+                previous += (int) readVarLong();
+                colors[i] = previous;
+            }
+            return colors;
+        }
+    }
+}
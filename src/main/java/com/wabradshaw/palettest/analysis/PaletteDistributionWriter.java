@@ -0,0 +1,241 @@
+package com.wabradshaw.palettest.analysis;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * A {@link PaletteDistributionWriter} stores {@link PaletteDistribution}s in a compact binary format, so that expected
+ * distributions can be saved once and loaded cheaply by a {@link PaletteDistributionReader}, rather than being
+ * recomputed from an image on every test run.
+ * </p>
+ * <p>
+ * The format starts with a header holding a fingerprint of the palette the distribution was analysed against. Each
+ * {@link ToneCount} is then written as a block of the exact {@link java.awt.Color}s assigned to it, sorted, with each
+ * color stored as a variable-length difference from the previous one, followed by their variable-length counts.
+ * The blocks are written as they are encoded, and a table of {@link Tone} names, colors, counts and block positions
+ * is written at the end. Distributions produced by {@link Palettester#analyseAllColors} are written as a single
+ * block, as every {@link Tone} is just a color.
+ * </p>
+ * @see PaletteDistributionReader
+ */
+public class PaletteDistributionWriter {
+
+    static final int MAGIC = 0x504c5444;
+    static final int VERSION = 1;
+    static final int FLAG_ALL_COLORS = 1;
+    static final int HEADER_SIZE = 14;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long paletteFingerprint;
+
+    /**
+     * Default constructor. Sets up a {@link PaletteDistributionWriter} for distributions which were not analysed
+     * against a particular palette, such as those from {@link Palettester#analyseAllColors}. The stored palette
+     * fingerprint will be zero.
+     */
+    public PaletteDistributionWriter(){
+        this(null);
+    }
+
+    /**
+     * Palette constructor. Sets up a {@link PaletteDistributionWriter} which records the fingerprint of the palette
+     * the distributions were analysed against, so that a stale baseline can be detected when the palette changes.
+     *
+     * @param palette The palette used to produce the distributions. If null, the fingerprint will be zero.
+     */
+    public PaletteDistributionWriter(List<Tone> palette){
+        this.paletteFingerprint = palette == null ? 0 : fingerprint(palette);
+    }
+
+    /**
+     * Creates a 64-bit fingerprint of a palette, based on the name and color of each {@link Tone}, in order.
+     *
+     * @param palette The palette to fingerprint. Cannot be null.
+     * @return        The fingerprint of the palette.
+     */
+    public static long fingerprint(List<Tone> palette){
+        long hash = FNV_OFFSET;
+        for(Tone tone : palette){
+            for(byte b : tone.getName().getBytes(StandardCharsets.UTF_8)){
+                hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+            }
+            hash = (hash ^ 0xff) * FNV_PRIME;
+
+            int argb = tone.getColor().getRGB();
+            for(int shift = 24; shift >= 0; shift -= 8){
+                hash = (hash ^ ((argb >>> shift) & 0xff)) * FNV_PRIME;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Writes the distribution to a file, replacing it if it already exists.
+     *
+     * @param distribution The distribution to store. Cannot be null.
+     * @param file         The file to write to.
+     * @throws IOException If the file could not be written.
+     */
+    public void write(PaletteDistribution distribution, Path file) throws IOException {
+        try(OutputStream out = Files.newOutputStream(file)){
+            write(distribution, out);
+        }
+    }
+
+    /**
+     * Writes the distribution to a stream. The stream is flushed, but not closed.
+     *
+     * @param distribution The distribution to store. Cannot be null.
+     * @param out          The stream to write to.
+     * @throws IOException If the stream could not be written to.
+     */
+    public void write(PaletteDistribution distribution, OutputStream out) throws IOException {
+        if(distribution == null){
+            throw new IllegalArgumentException("Could not write a null PaletteDistribution.");
+        }
+
+        Encoder encoder = new Encoder(new BufferedOutputStream(out));
+        ColorHistogram histogram = distribution.getHistogram();
+
+        encoder.writeInt(MAGIC);
+        encoder.writeByte(VERSION);
+        encoder.writeByte(histogram != null ? FLAG_ALL_COLORS : 0);
+        encoder.writeLong(paletteFingerprint);
+
+        if(histogram != null){
+            int[] colors = new int[histogram.size()];
+            long[] counts = new long[histogram.size()];
+            for(int i = 0; i < colors.length; i++){
+                colors[i] = histogram.getColor(i);
+                counts[i] = histogram.getCount(i);
+            }
+            encoder.writeBlock(colors, counts);
+        } else {
+            writeToneCounts(distribution.byInsertion(), encoder);
+        }
+
+        encoder.flush();
+    }
+
+    /**
+     * Writes a block for each {@link ToneCount}, followed by the table describing them and the position of the table.
+     *
+     * @param toneCounts The {@link ToneCount}s to write, in insertion order.
+     * @param encoder    The encoder to write with.
+     * @throws IOException If the stream could not be written to.
+     */
+    private void writeToneCounts(List<ToneCount> toneCounts, Encoder encoder) throws IOException {
+        long[] blockPositions = new long[toneCounts.size()];
+
+        for(int i = 0; i < toneCounts.size(); i++){
+            blockPositions[i] = encoder.position;
+
+            int capacity = toneCounts.get(i).getPixelCountsView().size();
+            long[] unsortedCounts = new long[capacity];
+            long[] order = new long[capacity];
+            int[] size = {0};
+            toneCounts.get(i).forEachPixelCount((argb, count) -> {
+                unsortedCounts[size[0]] = count;
+                order[size[0]] = ((long) argb << 32) | size[0];
+                size[0]++;
+            });
+            Arrays.sort(order, 0, size[0]);
+
+            int[] colors = new int[size[0]];
+            long[] counts = new long[size[0]];
+            for(int j = 0; j < size[0]; j++){
+                colors[j] = (int) (order[j] >> 32);
+                counts[j] = unsortedCounts[(int) order[j]];
+            }
+            encoder.writeBlock(colors, counts);
+        }
+
+        long tablePosition = encoder.position;
+        encoder.writeVarLong(toneCounts.size());
+        for(int i = 0; i < toneCounts.size(); i++){
+            ToneCount count = toneCounts.get(i);
+            byte[] name = count.getTone().getName().getBytes(StandardCharsets.UTF_8);
+            encoder.writeVarLong(name.length);
+            encoder.write(name);
+            encoder.writeInt(count.getTone().getColor().getRGB());
+            encoder.writeVarLong(count.getLongCount());
+            encoder.writeVarLong(blockPositions[i]);
+        }
+        encoder.writeLong(tablePosition);
+    }
+
+    /**
+     * A thin wrapper around an output stream which tracks the number of bytes written, and encodes numbers.
+     */
+    private static class Encoder {
+
+        private final OutputStream out;
+        private long position;
+
+        Encoder(OutputStream out){
+            this.out = out;
+        }
+
+        void writeByte(int b) throws IOException {
+            out.write(b);
+            position++;
+        }
+
+        void write(byte[] bytes) throws IOException {
+            out.write(bytes);
+            position += bytes.length;
+        }
+
+        void writeInt(int value) throws IOException {
+            for(int shift = 24; shift >= 0; shift -= 8){
+                writeByte(value >>> shift);
+            }
+        }
+
+        void writeLong(long value) throws IOException {
+            for(int shift = 56; shift >= 0; shift -= 8){
+                writeByte((int) (value >>> shift));
+            }
+        }
+
+        /**
+         * Writes a non-negative number using 7 bits per byte, with the top bit marking that more bytes follow.
+         */
+        void writeVarLong(long value) throws IOException {
+            while((value & ~0x7fL) != 0){
+                writeByte((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        /**
+         * Writes a block of sorted colors and their counts. The first color is written as an unsigned number, and
+         * each following color as the unsigned difference from the one before it.
+         */
+        void writeBlock(int[] colors, long[] counts) throws IOException {
+            writeVarLong(colors.length);
+            int previous = 0;
+            for(int color : colors){
+                writeVarLong((color - previous) & 0xffffffffL);
+                previous = color;
+            }
+            for(long count : counts){
+                writeVarLong(count);
+            }
+        }
+
+        void flush() throws IOException {
+            out.flush();
+        }
+    }
+}
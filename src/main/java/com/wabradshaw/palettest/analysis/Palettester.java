@@ -1,6 +1,8 @@
 package com.wabradshaw.palettest.analysis;
 
 import com.wabradshaw.palettest.analysis.clustering.ClusteringAlgorithm;
+import com.wabradshaw.palettest.analysis.clustering.HistogramClusteringAlgorithm;
+import com.wabradshaw.palettest.analysis.clustering.ImageClusteringAlgorithm;
 import com.wabradshaw.palettest.analysis.clustering.WeightedKMeansClusterer;
 import com.wabradshaw.palettest.analysis.distance.ColorDistanceFunction;
 import com.wabradshaw.palettest.analysis.distance.CompuPhaseDistance;
@@ -8,11 +10,11 @@ import com.wabradshaw.palettest.analysis.distance.EuclideanRgbaDistance;
 import com.wabradshaw.palettest.analysis.naming.ColorNamer;
 import com.wabradshaw.palettest.analysis.naming.SimplePaletteColorNamer;
 import com.wabradshaw.palettest.palettes.StandardPalettes;
-import com.wabradshaw.palettest.utils.GraphicsUtils;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
 import java.util.*;
+import java.util.stream.Collector;
 
 import static java.util.stream.Collectors.*;
 
@@ -119,7 +121,8 @@ public class Palettester {
      * @param clusteringAlgorithm A {@link ClusteringAlgorithm} to use to define palettes from images. If null,
      *                            defaults to a {@link WeightedKMeansClusterer}.
      * @param namer               A {@link ColorNamer} to use to supply names for {@link Color}s when defining a new
-     *                            {@link Color} palette. If null, defaults to a {@link SimplePaletteColorNamer}.
+     *                            {@link Color} palette. If null, defaults to a {@link SimplePaletteColorNamer} prepared
+     *                            for the default palette.
      */
     public Palettester(List<Tone> defaultPalette,
                        ColorDistanceFunction distanceFunction,
@@ -130,7 +133,7 @@ public class Palettester {
         this.distanceFunction = distanceFunction == null ? new CompuPhaseDistance() : distanceFunction;
         this.clusteringAlgorithm = clusteringAlgorithm == null ? new WeightedKMeansClusterer(this.distanceFunction)
                                                                : clusteringAlgorithm;
-        this.namer = namer == null ? new SimplePaletteColorNamer(this.distanceFunction) : namer;
+        this.namer = namer == null ? new SimplePaletteColorNamer(this.distanceFunction, this.defaultPalette) : namer;
     }
 
     /**
@@ -141,6 +144,10 @@ public class Palettester {
      * exactly which {@link Color} pixels were attributed to that {@link Tone}. Only {@link Tone}s in the palette that
      * were also in the image will appear in the {@link PaletteDistribution}.
      * </p>
+     * <p>
+     * While each {@link Color} is matched, its distance from the chosen {@link Tone} is recorded, so each
+     * {@link ToneCount} also holds {@link DistanceStats} describing how well its pixels fit the palette.
+     * </p>
      * @param palette The palette of {@link Tone}s which should be used in the final description.
      * @param image   The {@link BufferedImage} to be described.
      * @return        A {@link PaletteDistribution} containing all of the {@link Tone}s that were used in the image,
@@ -149,18 +156,19 @@ public class Palettester {
     public PaletteDistribution analysePalette(List<Tone> palette, BufferedImage image){
         Map<Color, Integer> colorCounts = countColors(image);
 
-        Map<Tone, Map<Color, Integer>> toneCounts = colorCounts
-                                                    .entrySet()
-                                                    .stream()
-                                                    .map(cC -> getClosestTone(palette, cC.getKey(), cC.getValue()))
-                                                    .collect(groupingBy(closestTone -> closestTone.tone,
-                                                                        toMap(closestTone -> closestTone.color,
-                                                                              closestTone -> closestTone.count)));
+        Map<Tone, ToneTally> toneCounts = new HashMap<>();
+        for(Map.Entry<Color, Integer> colorCount : colorCounts.entrySet()){
+            Tone targetTone = new Tone("", colorCount.getKey());
+            Tone closestTone = getClosestTone(palette, targetTone);
+            toneCounts.computeIfAbsent(closestTone, tone -> new ToneTally())
+                      .add(colorCount.getKey(), colorCount.getValue(),
+                           distanceFunction.getDistance(closestTone, targetTone));
+        }
 
-       return new PaletteDistribution(toneCounts.entrySet()
-                                                .stream()
-                                                .map(tc -> new ToneCount(tc.getKey(), tc.getValue()))
-                                                .collect(toList()));
+        return new PaletteDistribution(toneCounts.entrySet()
+                                                 .stream()
+                                                 .map(tc -> tc.getValue().toToneCount(tc.getKey()))
+                                                 .collect(toList()));
     }
 
     /**
@@ -189,16 +197,58 @@ public class Palettester {
      * <p>
      * Color analysis is done in 8-bit RGB, so differences more granular than that will not be picked up.
      * </p>
+     * <p>
+     * The result is stored compactly as a sorted array of colors and an array of counts, so even photographs with
+     * hundreds of thousands of colors can be analysed cheaply. The {@link ToneCount} for each color is only created
+     * when it is first requested from the {@link PaletteDistribution}.
+     * </p>
      * @param image The {@link BufferedImage} to analyse
      * @return      A {@link PaletteDistribution} listing each color present in the image, and how many times they
      *              appeared.
      */
     public PaletteDistribution analyseAllColors(BufferedImage image){
-        Map<Color, Integer> colorCounts = countColors(image);
+        return PaletteDistribution.of(new ColumnarToneCountTable(ColorHistogram.of(image)));
+    }
+
+    /**
+     * <p>
+     * Creates a {@link Collector} which analyses a stream of images against the supplied palette, and merges the
+     * results into a single {@link PaletteDistribution}. This is the same as calling
+     * {@link #analysePalette(List, BufferedImage)} on each image, then merging the results. On a parallel stream each
+     * thread analyses and merges its own share of the images before the partial results are combined.
+     * </p>
+     * @param palette The palette of {@link Tone}s which should be used in the final description.
+     * @return        A {@link Collector} producing the combined {@link PaletteDistribution} of every image.
+     * @see PaletteDistribution#merging()
+     */
+    public Collector<BufferedImage, ?, PaletteDistribution> paletteCollector(List<Tone> palette){
+        return mapping(image -> analysePalette(palette, image), PaletteDistribution.merging());
+    }
 
-        return new PaletteDistribution(colorCounts.entrySet().stream()
-                                                             .map(entry -> toSingleToneCount(entry.getKey(), entry.getValue()))
-                                                             .collect(toList()));
+    /**
+     * <p>
+     * Creates a {@link Collector} which analyses a stream of images against the {@link Palettester}s color palette,
+     * and merges the results into a single {@link PaletteDistribution}. On a parallel stream each thread analyses and
+     * merges its own share of the images before the partial results are combined.
+     * </p>
+     * @return A {@link Collector} producing the combined {@link PaletteDistribution} of every image.
+     * @see #paletteCollector(List)
+     */
+    public Collector<BufferedImage, ?, PaletteDistribution> paletteCollector(){
+        return paletteCollector(this.defaultPalette);
+    }
+
+    /**
+     * <p>
+     * Creates a {@link Collector} which counts every color in a stream of images, and merges the results into a
+     * single {@link PaletteDistribution}. This is the same as calling {@link #analyseAllColors(BufferedImage)} on each
+     * image, then merging the results. The combined result stays in the same compact form.
+     * </p>
+     * @return A {@link Collector} producing the combined {@link PaletteDistribution} of every image.
+     * @see PaletteDistribution#merging()
+     */
+    public Collector<BufferedImage, ?, PaletteDistribution> allColorsCollector(){
+        return mapping(this::analyseAllColors, PaletteDistribution.merging());
     }
 
     /**
@@ -218,22 +268,71 @@ public class Palettester {
      * non-deterministic. The exact palette may change slightly between calls.
      * </p>
      * <p>
-     * Please note that this method can take some time for complex images.
+     * Please note that this method can take some time for complex images. If the clustering algorithm is an
+     * {@link ImageClusteringAlgorithm}, such as an
+     * {@link com.wabradshaw.palettest.analysis.clustering.OctreeClusterer}, it reads the pixels directly instead of
+     * every color in the image being counted first. For noisy photographs, wrapping the algorithm in a
+     * {@link com.wabradshaw.palettest.analysis.clustering.PrequantizingClusterer} bins similar colors together before
+     * they are clustered, which is much faster. If the right number of {@link Tone}s isn't known, an
+     * {@link com.wabradshaw.palettest.analysis.clustering.AutoSizingClusterer} treats maxTones as an upper limit and
+     * picks how many to use.
      * </p>
      * @param image    The {@link BufferedImage} to be described.
      * @param maxTones The maximum number of different color {@link Tone}s in the palette.
      * @return         A palette of {@link Tone}s used in the image.
      */
     public List<Tone> definePalette(BufferedImage image, int maxTones){
-        Map<Color, Integer> colorCounts = countColors(image);
+        return definePalette(image, maxTones, null);
+    }
+
+    /**
+     * <p>
+     * Takes in a {@link BufferedImage} and analyses it as the basis for a color palette, starting from an existing
+     * palette. This is otherwise the same as {@link #definePalette(BufferedImage, int)}.
+     * </p>
+     * <p>
+     * This is intended for images which are similar to one another, such as consecutive frames of an animation. Passing
+     * in the palette defined for the previous frame lets an iterative clustering algorithm, such as the default
+     * {@link WeightedKMeansClusterer}, refine that palette rather than choosing new starting colors, so it needs far
+     * fewer iterations when the colors have barely changed. Clustering algorithms which don't iterate, including every
+     * {@link ImageClusteringAlgorithm}, ignore the starting palette.
+     * </p>
+     * @param image           The {@link BufferedImage} to be described.
+     * @param maxTones        The maximum number of different color {@link Tone}s in the palette.
+     * @param startingPalette The {@link Tone}s to start clustering from. If null, this is the same as
+     *                        {@link #definePalette(BufferedImage, int)}.
+     * @return                A palette of {@link Tone}s used in the image.
+     */
+    public List<Tone> definePalette(BufferedImage image, int maxTones, List<Tone> startingPalette){
+        if(clusteringAlgorithm instanceof ImageClusteringAlgorithm){
+            Collection<Color> paletteColors = ((ImageClusteringAlgorithm) clusteringAlgorithm).cluster(image, maxTones);
+            return namer.nameTones(paletteColors, this.defaultPalette);
+        }
+
+        ColorHistogram histogram = ColorHistogram.of(image);
 
-        Collection<Color> paletteColors;
-        if(colorCounts.keySet().size() <= maxTones){
-            paletteColors = colorCounts.keySet();
+        int[] clusters;
+        if(histogram.size() <= maxTones){
+            clusters = new int[histogram.size()];
+            for(int i = 0; i < clusters.length; i++){
+                clusters[i] = histogram.getColor(i);
+            }
         } else {
-            paletteColors = clusteringAlgorithm.cluster(colorCounts, maxTones);
+            int[] startingClusters = null;
+            if(startingPalette != null){
+                startingClusters = new int[startingPalette.size()];
+                for(int i = 0; i < startingClusters.length; i++){
+                    startingClusters[i] = startingPalette.get(i).getColor().getRGB();
+                }
+            }
+            clusters = HistogramClusteringAlgorithm.adapt(clusteringAlgorithm)
+                                                   .cluster(histogram, maxTones, startingClusters);
         }
 
+        List<Color> paletteColors = new ArrayList<>(clusters.length);
+        for(int cluster : clusters){
+            paletteColors.add(new Color(cluster, true));
+        }
         return namer.nameTones(paletteColors, this.defaultPalette);
     }
 
@@ -244,64 +343,57 @@ public class Palettester {
      * @return      A map of Colors and the number of times they appeared in the image.
      */
     private Map<Color, Integer> countColors(BufferedImage image){
-        image = GraphicsUtils.createCopy(image);
-
-        int[] pixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
-
-        Map<Integer, Long> counts = Arrays.stream(pixels)
-                                          .boxed()
-                                          .collect(groupingBy(Integer::intValue, counting()));
-
-        return counts.entrySet().stream()
-                                .collect(toMap(
-                                    e -> new Color(e.getKey()),
-                                    e -> e.getValue().intValue()
-                                ));
+        return ColorHistogram.of(image).toColorCounts();
     }
 
     /**
-     * Converts a color count into a ToneCount which only has that color.
-     *
-     * @param color The color being counted.
-     * @param count The number of times that color appeared.
-     * @return      A ToneCount representing the color/count.
+     * A running total of the pixels assigned to a single {@link Tone}, and how far they were from it.
      */
-    private ToneCount toSingleToneCount(Color color, Integer count){
-        Map<Color, Integer> colorMap = new HashMap<>();
-        colorMap.put(color, count);
-        return new ToneCount(new Tone(color),colorMap);
-    }
+    private class ToneTally {
+        private final Map<Color, Integer> pixelCounts = new HashMap<>();
+        private final long[] histogram = new long[DistanceStats.BUCKETS];
+        private long pixels;
+        private double totalDistance;
+        private double maxDistance;
 
-    /**
-     * A triple class used to store the closest tone to a particular color, and the number of times the color appeared.
-     */
-    private class ClosestTone {
-        private final Tone tone;
-        private final Color color;
-        private final Integer count;
+        /**
+         * Adds a {@link Color} to the tally.
+         *
+         * @param color    The {@link Color} assigned to the {@link Tone}.
+         * @param count    The number of times the {@link Color} appeared.
+         * @param distance The distance between the {@link Color} and the {@link Tone}.
+         */
+        void add(Color color, int count, double distance){
+            pixelCounts.put(color, count);
+            pixels += count;
+            totalDistance += count * distance;
+            maxDistance = Math.max(maxDistance, distance);
+            histogram[DistanceStats.bucketOf(distance)] += count;
+        }
 
-        ClosestTone(Tone tone, Color color, int count){
-            this.tone = tone;
-            this.color = color;
-            this.count = count;
+        /**
+         * Creates the {@link ToneCount} for the tally.
+         *
+         * @param tone The {@link Tone} being counted.
+         * @return     A {@link ToneCount} holding the pixel counts and distance statistics.
+         */
+        ToneCount toToneCount(Tone tone){
+            DistanceStats stats = new DistanceStats(distanceFunction, pixels, totalDistance, maxDistance, histogram);
+            return new ToneCount(tone, pixelCounts, stats);
         }
     }
 
     /**
-     * Finds the {@link Tone} closest to the target color and creates a ClosestTone triple storing this data.
+     * Finds the {@link Tone} in the palette closest to the target.
      *
-     * @param palette The list of possible Tones in the palette.
-     * @param color   The Color to match to a Tone.
-     * @param count   The number of times the Color appeared.
-     * @return        A tuple containing the Color, how many times it appeared, and most importantly, the closest tone
-     *                in the palette.
+     * @param palette    The list of possible Tones in the palette.
+     * @param targetTone The Tone holding the Color to match.
+     * @return           The closest tone in the palette.
      */
-    private ClosestTone getClosestTone(List<Tone> palette, Color color, Integer count) {
-        Tone targetTone = new Tone("", color);
-        Tone resultTone = palette.stream()
+    private Tone getClosestTone(List<Tone> palette, Tone targetTone) {
+        return palette.stream()
                 .max((o1, o2) -> (int) Math.signum(distanceFunction.getRankingDistance(o2, targetTone) -
                                                    distanceFunction.getRankingDistance(o1, targetTone)))
                 .get();
-        return new ClosestTone(resultTone, color, count);
     }
 }
@@ -0,0 +1,22 @@
+package com.wabradshaw.palettest.analysis;
+
+/**
+ * <p>
+ * A callback used to visit the individual pixel counts that make up a {@link ToneCount} without creating any
+ * intermediate objects. Each call receives a color as a packed ARGB int (as returned by
+ * {@link java.awt.Color#getRGB()}) and the number of pixels of that color.
+ * </p>
+ * @see ToneCount#forEachPixelCount(PixelCountConsumer)
+ */
+@FunctionalInterface
+public interface PixelCountConsumer {
+
+    /**
+     * Receives the count for a single color.
+     *
+     * @param argb  The color as a packed ARGB int.
+     * @param count The number of pixels of that color.
+     */
+    public void accept(int argb, long count);
+
+}
@@ -3,7 +3,7 @@ package com.wabradshaw.palettest.analysis;
 import com.wabradshaw.palettest.analysis.distance.ColorDistanceFunction;
 
 import java.awt.Color;
-import java.util.Comparator;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -20,6 +20,9 @@ import java.util.Objects;
  * the {@link Tone} to the {@link java.awt.Color}s that were assigned to it.
  * </p>
  * <p>
+ * Counts are stored as longs, so {@link ToneCount}s can describe any number of images combined together.
+ * </p>
+ * <p>
  * Please note that ToneCounts are immutable. If the pixel count map changes after the ToneCount has been created, it
  * will not reflect those changes.
  * </p>
@@ -32,8 +35,10 @@ import java.util.Objects;
 public class ToneCount {
 
     private final Tone tone;
-    private final int count;
-    private final Map<Color, Integer> pixelCounts;
+    private final long count;
+    private final Map<Color, Long> pixelCounts;
+    private final Map<Color, Long> pixelCountsView;
+    private final DistanceStats distanceStats;
 
     /**
      * <p>
@@ -47,10 +52,24 @@ public class ToneCount {
      *
      * @param tone        The {@link Tone} this object is counting.
      * @param pixelCounts A map of {@link Color}s that are considered as part of this {@link Tone}, and the number
-     *                    of times they each occurred. This map is copied to keep the {@link ToneCount} immutable.
-     *                    Cannot be null.
+     *                    of times they each occurred. Counts are usually {@link Integer}s, but any whole number type
+     *                    can be used, such as {@link Long}s for combined images. This map is copied to keep the
+     *                    {@link ToneCount} immutable. Cannot be null.
+     * @throws ArithmeticException If the total count is too large to store in a long.
+     */
+    public ToneCount(Tone tone, Map<Color, ? extends Number> pixelCounts){
+        this(tone, pixelCounts, null);
+    }
+
+    /**
+     * Internal constructor for a {@link ToneCount} whose distance statistics were recorded while it was counted.
+     *
+     * @param tone          The {@link Tone} this object is counting.
+     * @param pixelCounts   A map of {@link Color}s that are considered as part of this {@link Tone}, and the number
+     *                      of times they each occurred. This map is copied. Cannot be null.
+     * @param distanceStats The distances of the pixels from the {@link Tone}, or null if they weren't recorded.
      */
-    public ToneCount(Tone tone, Map<Color, Integer> pixelCounts){
+    ToneCount(Tone tone, Map<Color, ? extends Number> pixelCounts, DistanceStats distanceStats){
         if(pixelCounts == null){
             throw new IllegalArgumentException("A ToneCount was instantiated for " +
                     (tone == null ? "null" : tone.getName()) +
@@ -58,8 +77,37 @@ public class ToneCount {
         }
 
         this.tone = tone;
-        this.pixelCounts = new HashMap<>(pixelCounts);
-        this.count = pixelCounts.values().stream().reduce(0, (sum, x) -> x == null ? sum : sum + x);
+        this.distanceStats = distanceStats;
+        this.pixelCounts = new HashMap<>(Math.max(16, pixelCounts.size() * 2));
+        this.pixelCountsView = Collections.unmodifiableMap(this.pixelCounts);
+
+        long total = 0;
+        for(Map.Entry<Color, ? extends Number> entry : pixelCounts.entrySet()){
+            Number pixels = entry.getValue();
+            if(pixels == null){
+                this.pixelCounts.put(entry.getKey(), null);
+            } else {
+                this.pixelCounts.put(entry.getKey(), pixels.longValue());
+                total = Math.addExact(total, pixels.longValue());
+            }
+        }
+        this.count = total;
+    }
+
+    /**
+     * Internal constructor for a {@link ToneCount} made up of a single {@link Color}. This avoids creating a full map
+     * for the common case where each {@link Tone} is an exact {@link Color}.
+     *
+     * @param tone  The {@link Tone} this object is counting.
+     * @param color The only {@link Color} that is part of the {@link Tone}.
+     * @param count The number of times the {@link Color} occurred.
+     */
+    ToneCount(Tone tone, Color color, long count){
+        this.tone = tone;
+        this.pixelCounts = Collections.singletonMap(color, count);
+        this.pixelCountsView = this.pixelCounts;
+        this.distanceStats = null;
+        this.count = count;
     }
 
     /**
@@ -72,11 +120,23 @@ public class ToneCount {
     }
 
     /**
-     * Gets the number of pixels which have this {@link Tone}, or are close enough to be classed as it.
+     * Gets the number of pixels which have this {@link Tone}, or are close enough to be classed as it. This is always
+     * safe for a single image, but combined images may have more pixels than an int can hold, in which case
+     * {@link #getLongCount()} should be used instead.
      *
      * @return The number of pixels which have this {@link Tone}.
+     * @throws ArithmeticException If the count is too large to return as an int.
      */
     public int getCount(){
+        return Math.toIntExact(this.count);
+    }
+
+    /**
+     * Gets the number of pixels which have this {@link Tone}, or are close enough to be classed as it, as a long.
+     *
+     * @return The number of pixels which have this {@link Tone}.
+     */
+    public long getLongCount(){
         return this.count;
     }
 
@@ -85,51 +145,146 @@ public class ToneCount {
      * part of this {@link Tone}, and the number of times they each occurred.
      *
      * @return A copy of the pixel counts for the {@link Tone}.
+     * @throws ArithmeticException If any pixel count is too large to return as an int. Use
+     *                             {@link #getLongPixelCounts()} for combined images.
      */
     public Map<Color, Integer> getPixelCounts(){
-        return new HashMap<>(pixelCounts);
+        Map<Color, Integer> result = new HashMap<>(Math.max(16, pixelCounts.size() * 2));
+        pixelCounts.forEach((color, pixels) -> result.put(color, pixels == null ? null : Math.toIntExact(pixels)));
+        return result;
+    }
+
+    /**
+     * Gets a copy of the pixel counts for the {@link Tone} as longs. This is a map of {@link Color}s that are
+     * considered as part of this {@link Tone}, and the number of times they each occurred.
+     *
+     * @return A copy of the pixel counts for the {@link Tone}.
+     */
+    public Map<Color, Long> getLongPixelCounts(){
+        Map<Color, Long> result = new HashMap<>(Math.max(16, pixelCounts.size() * 2));
+        result.putAll(pixelCounts);
+        return result;
+    }
+
+    /**
+     * Gets a read-only view of the pixel counts for the {@link Tone}. Unlike {@link #getPixelCounts()}, this does not
+     * copy the map, so it is the better choice when the counts only need to be read. Any attempt to modify the view
+     * will throw an {@link UnsupportedOperationException}.
+     *
+     * @return An unmodifiable view of the pixel counts for the {@link Tone}.
+     */
+    public Map<Color, Long> getPixelCountsView(){
+        return pixelCountsView;
+    }
+
+    /**
+     * Visits each {@link Color} assigned to this {@link Tone} along with the number of times it occurred. The
+     * {@link Color} is supplied as a packed ARGB int, so no objects are created while iterating. {@link Color}s with
+     * a null count are skipped, in the same way they are ignored by {@link #getCount()}.
+     *
+     * @param consumer The callback to receive each color and count.
+     */
+    public void forEachPixelCount(PixelCountConsumer consumer){
+        for(Map.Entry<Color, Long> entry : pixelCounts.entrySet()){
+            Long pixels = entry.getValue();
+            if(pixels != null){
+                consumer.accept(entry.getKey().getRGB(), pixels);
+            }
+        }
+    }
+
+    /**
+     * Gets the statistics about how far each pixel was from this {@link Tone}, if they were recorded when the
+     * {@link ToneCount} was created. {@link Palettester#analysePalette} records them for every {@link ToneCount} it
+     * produces.
+     *
+     * @return The {@link DistanceStats} for this {@link Tone}, or null if they weren't recorded.
+     */
+    public DistanceStats getDistanceStats(){
+        return this.distanceStats;
     }
 
     /**
      * Gets the mean distance between each {@link Color} assigned to this {@link Tone} and the {@link Tone} itself.
-     * If there are no Colors in the pixelCounts, then this will return 0.
+     * If there are no Colors in the pixelCounts, then this will return 0. If the distances were recorded using an
+     * equal {@link ColorDistanceFunction} when this {@link ToneCount} was created, they are used without measuring
+     * each {@link Color} again. Custom functions which don't override equals are only equal to the same instance.
      *
      * @param distanceFunction The {@link ColorDistanceFunction} to use to define the distance between two colors.
      * @return                 The mean distance between each {@link Color} and this {@link Tone}.
      */
     public double getAverageDistance(ColorDistanceFunction distanceFunction){
-        if(this.count == 0) {
+        if(this.distanceStats != null && distanceFunction.equals(this.distanceStats.getDistanceFunction())){
+            return this.distanceStats.getAverageDistance();
+        } else if(this.count == 0) {
             return 0;
         } else {
-            double totalDistance = this.getPixelCounts()
-                                       .entrySet()
-                                       .stream()
-                                       .map(e -> e.getValue() * distanceFunction.getDistance(this.tone, new Tone(e.getKey())))
-                                       .reduce(0.0, (a,b) -> a + b);
+            double totalDistance = 0;
+            for(Map.Entry<Color, Long> entry : pixelCounts.entrySet()){
+                if(entry.getValue() != null){
+                    double distance = distanceFunction.getDistance(this.tone, new Tone(entry.getKey()));
+                    totalDistance += entry.getValue() * distance;
+                }
+            }
             return totalDistance / this.count;
         }
     }
 
     /**
      * Gets the maximum distance between the {@link Color}s assigned to this {@link Tone} and the {@link Tone} itself.
-     * If there are no Colors in the pixelCounts, then this will return 0.
+     * If there are no Colors in the pixelCounts, then this will return 0. If the distances were recorded using an
+     * equal {@link ColorDistanceFunction} when this {@link ToneCount} was created, they are used without measuring
+     * each {@link Color} again. Custom functions which don't override equals are only equal to the same instance.
      *
      * @param distanceFunction The {@link ColorDistanceFunction} to use to define the distance between two colors.
      * @return                 The maximum distance between each {@link Color} and this {@link Tone}.
      */
     public double getMaxDistance(ColorDistanceFunction distanceFunction){
-        if(this.count == 0) {
+        if(this.distanceStats != null && distanceFunction.equals(this.distanceStats.getDistanceFunction())){
+            return this.distanceStats.getMaxDistance();
+        } else if(this.count == 0) {
             return 0;
         } else {
-            return this.getPixelCounts()
-                       .keySet()
-                       .stream()
-                       .map(color -> distanceFunction.getDistance(this.tone, new Tone(color)))
-                       .max(Comparator.comparing(Double::valueOf))
-                       .get();
+            double maxDistance = 0;
+            for(Color color : pixelCounts.keySet()){
+                maxDistance = Math.max(maxDistance, distanceFunction.getDistance(this.tone, new Tone(color)));
+            }
+            return maxDistance;
         }
     }
 
+    /**
+     * <p>
+     * Combines this {@link ToneCount} with another for the same {@link Tone}, such as the count of the same
+     * {@link Tone} in a different image. The pixel counts of each {@link Color} are summed.
+     * </p>
+     * <p>
+     * The result keeps this {@link ToneCount}'s {@link Tone}, so its name is preserved even if the other
+     * {@link Tone} was named differently. Distance statistics are combined if both {@link ToneCount}s recorded them
+     * with the same {@link ColorDistanceFunction}.
+     * </p>
+     *
+     * @param other The {@link ToneCount} to combine with this one. Must be for an equal {@link Tone}.
+     * @return      A new {@link ToneCount} with the combined pixel counts.
+     * @throws IllegalArgumentException If the other {@link ToneCount} is null, or is for a different {@link Tone}.
+     * @throws ArithmeticException      If a combined count is too large to store.
+     */
+    public ToneCount merge(ToneCount other){
+        if(other == null || !Objects.equals(this.tone, other.tone)){
+            throw new IllegalArgumentException("Could not merge the count for " + this.tone + " with the count for " +
+                                               (other == null ? "null" : other.tone) + ".");
+        }
+
+        Map<Color, Long> merged = this.getLongPixelCounts();
+        other.pixelCounts.forEach((color, pixels) -> {
+            if(pixels != null){
+                merged.merge(color, pixels, Math::addExact);
+            }
+        });
+        DistanceStats mergedStats = this.distanceStats == null ? null : this.distanceStats.merge(other.distanceStats);
+        return new ToneCount(this.tone, merged, mergedStats);
+    }
+
     @Override
     public String toString(){
         return this.getTone().getName() + ": " + this.count;
@@ -139,7 +294,7 @@ public class ToneCount {
     public boolean equals(Object candidate){
         if(candidate instanceof ToneCount){
             ToneCount cast = (ToneCount) candidate;
-            return this.tone.equals(cast.tone) && this.getCount() == cast.getCount();
+            return this.tone.equals(cast.tone) && this.count == cast.count;
         } else {
             return false;
         }
@@ -161,8 +316,8 @@ public class ToneCount {
         if(candidate instanceof ToneCount){
             ToneCount cast = (ToneCount) candidate;
             return this.tone.equals(cast.tone) &&
-                   this.getCount() == cast.getCount() &&
-                   this.getPixelCounts().equals(cast.getPixelCounts());
+                   this.count == cast.count &&
+                   this.pixelCounts.equals(cast.pixelCounts);
         } else {
             return false;
         }
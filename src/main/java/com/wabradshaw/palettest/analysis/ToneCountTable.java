@@ -0,0 +1,103 @@
+package com.wabradshaw.palettest.analysis;
+
+import java.awt.Color;
+
+/**
+ * <p>
+ * The storage behind a {@link PaletteDistribution}. A table holds a fixed sequence of {@link ToneCount}s in insertion
+ * order, and is able to describe each one by position without necessarily creating the {@link ToneCount} itself.
+ * This lets compact representations only create {@link ToneCount}s when they are actually requested.
+ * </p>
+ * <p>
+ * Tables are immutable, and must return the same {@link ToneCount} instance every time a position is requested.
+ * </p>
+ */
+interface ToneCountTable {
+
+    /**
+     * Gets the number of {@link ToneCount}s in the table.
+     *
+     * @return The number of {@link ToneCount}s in the table.
+     */
+    int size();
+
+    /**
+     * Gets the {@link ToneCount} at the supplied position.
+     *
+     * @param index The position of the {@link ToneCount}, from 0 to size() - 1.
+     * @return      The {@link ToneCount} at that position.
+     */
+    ToneCount get(int index);
+
+    /**
+     * Gets the number of pixels counted by the {@link ToneCount} at the supplied position.
+     *
+     * @param index The position of the {@link ToneCount}, from 0 to size() - 1.
+     * @return      The number of pixels in that {@link ToneCount}.
+     */
+    long getCount(int index);
+
+    /**
+     * Gets the {@link Tone} at the supplied position. Tables which create {@link ToneCount}s lazily can override this
+     * to avoid creating the whole {@link ToneCount}.
+     *
+     * @param index The position of the {@link ToneCount}, from 0 to size() - 1.
+     * @return      The {@link Tone} being counted.
+     */
+    default Tone getTone(int index){
+        return get(index).getTone();
+    }
+
+    /**
+     * Gets the {@link Color} of the {@link Tone} at the supplied position, as a packed ARGB int.
+     *
+     * @param index The position of the {@link ToneCount}, from 0 to size() - 1.
+     * @return      The {@link Color} of the {@link Tone} being counted, as returned by {@link Color#getRGB()}.
+     */
+    default int getToneColor(int index){
+        return getTone(index).getColor().getRGB();
+    }
+
+    /**
+     * Gets the name of the {@link Tone} at the supplied position.
+     *
+     * @param index The position of the {@link ToneCount}, from 0 to size() - 1.
+     * @return      The name of the {@link Tone} being counted.
+     */
+    String getName(int index);
+
+    /**
+     * Finds the {@link ToneCount} for the {@link Tone} with the supplied name. If several {@link Tone}s have the
+     * name, this is the first one with the highest count.
+     *
+     * @param name The name of the {@link Tone} to look for.
+     * @return     The position of the {@link ToneCount}, or -1 if there isn't one.
+     */
+    int indexOf(String name);
+
+    /**
+     * Finds the {@link ToneCount} for the {@link Tone} with the supplied {@link Color}. If several {@link Tone}s have
+     * the {@link Color}, this is the first one with the highest count.
+     *
+     * @param color The {@link Color} of the {@link Tone} to look for.
+     * @return      The position of the {@link ToneCount}, or -1 if there isn't one.
+     */
+    int indexOf(Color color);
+
+    /**
+     * Gets the total number of pixels counted by the table.
+     *
+     * @return The sum of the counts at every position.
+     */
+    long getTotalCount();
+
+    /**
+     * Gets the {@link ColorHistogram} behind the table, if the table is a compact one where every {@link Tone} is a
+     * single exact {@link Color}.
+     *
+     * @return The {@link ColorHistogram} holding the table's data, or null if the table isn't stored that way.
+     */
+    default ColorHistogram getHistogram(){
+        return null;
+    }
+}
@@ -0,0 +1,129 @@
+package com.wabradshaw.palettest.analysis;
+
+/**
+ * <p>
+ * A {@link ToneDelta} describes how the number of pixels of a single {@link Tone} changed between two
+ * {@link PaletteDistribution}s, as part of a {@link DistributionDiff}. Each delta records the count before and after,
+ * and the share of each distribution the {@link Tone} made up.
+ * </p>
+ * <p>
+ * A {@link Tone} with no pixels in the earlier distribution is added, and one with no pixels in the later distribution
+ * is removed.
+ * </p>
+ * <p>
+ * Please note that {@link ToneDelta}s are immutable.
+ * </p>
+ */
+public class ToneDelta {
+
+    private final Tone tone;
+    private final long beforeCount;
+    private final long afterCount;
+    private final double beforeShare;
+    private final double afterShare;
+
+    /**
+     * Main constructor. Typical people should not need to call this themselves, but instead should use
+     * {@link PaletteDistribution#diff(PaletteDistribution)} to compare two distributions.
+     *
+     * @param tone        The {@link Tone} which changed.
+     * @param beforeCount The number of pixels of the {@link Tone} in the earlier distribution.
+     * @param afterCount  The number of pixels of the {@link Tone} in the later distribution.
+     * @param beforeTotal The total number of pixels in the earlier distribution.
+     * @param afterTotal  The total number of pixels in the later distribution.
+     */
+    public ToneDelta(Tone tone, long beforeCount, long afterCount, long beforeTotal, long afterTotal){
+        this.tone = tone;
+        this.beforeCount = beforeCount;
+        this.afterCount = afterCount;
+        this.beforeShare = beforeTotal == 0 ? 0 : (double) beforeCount / beforeTotal;
+        this.afterShare = afterTotal == 0 ? 0 : (double) afterCount / afterTotal;
+    }
+
+    /**
+     * Gets the {@link Tone} which changed.
+     *
+     * @return The {@link Tone} which changed.
+     */
+    public Tone getTone(){
+        return tone;
+    }
+
+    /**
+     * Gets the number of pixels of the {@link Tone} in the earlier distribution.
+     *
+     * @return The number of pixels before the change, or 0 if the {@link Tone} was added.
+     */
+    public long getBeforeCount(){
+        return beforeCount;
+    }
+
+    /**
+     * Gets the number of pixels of the {@link Tone} in the later distribution.
+     *
+     * @return The number of pixels after the change, or 0 if the {@link Tone} was removed.
+     */
+    public long getAfterCount(){
+        return afterCount;
+    }
+
+    /**
+     * Gets the change in the number of pixels of the {@link Tone}. This is negative if the {@link Tone} was used less.
+     *
+     * @return The number of pixels after the change, minus the number before.
+     */
+    public long getDelta(){
+        return afterCount - beforeCount;
+    }
+
+    /**
+     * Gets the fraction of the earlier distribution that was this {@link Tone}, from 0 to 1.
+     *
+     * @return The share of the earlier distribution, or 0 if it was empty.
+     */
+    public double getBeforeShare(){
+        return beforeShare;
+    }
+
+    /**
+     * Gets the fraction of the later distribution that was this {@link Tone}, from 0 to 1.
+     *
+     * @return The share of the later distribution, or 0 if it was empty.
+     */
+    public double getAfterShare(){
+        return afterShare;
+    }
+
+    /**
+     * Gets the change in the fraction of the distribution that was this {@link Tone}. Unlike {@link #getDelta()},
+     * this can be compared between distributions of different sizes.
+     *
+     * @return The share after the change, minus the share before.
+     */
+    public double getShareDelta(){
+        return afterShare - beforeShare;
+    }
+
+    /**
+     * Checks whether the {@link Tone} had no pixels in the earlier distribution.
+     *
+     * @return True if the {@link Tone} was added, false otherwise.
+     */
+    public boolean isAdded(){
+        return beforeCount == 0;
+    }
+
+    /**
+     * Checks whether the {@link Tone} has no pixels in the later distribution.
+     *
+     * @return True if the {@link Tone} was removed, false otherwise.
+     */
+    public boolean isRemoved(){
+        return afterCount == 0;
+    }
+
+    @Override
+    public String toString(){
+        return tone.getName() + ": " + beforeCount + " -> " + afterCount;
+    }
+}
@@ -0,0 +1,189 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import com.wabradshaw.palettest.analysis.ColorHistogram;
+import com.wabradshaw.palettest.analysis.Tone;
+import com.wabradshaw.palettest.analysis.distance.ColorDistanceFunction;
+
+import java.awt.Color;
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ * A {@link HistogramClusteringAlgorithm} which chooses how many clusters to use, rather than always using the target
+ * number. The target is treated as a maximum: the colors are clustered by another {@link ClusteringAlgorithm} for
+ * every number of clusters from 1 up to the target, and the error of each result is measured as the mean distance of
+ * each pixel from its closest cluster. One of the results is then picked using one of two rules:
+ * </p>
+ * <ul>
+ * <li>Elbow     - The default. Picks the number of clusters after which adding more stops reducing the error by much.
+ *                 This is the point on the curve of errors furthest below the straight line between the errors for
+ *                 1 cluster and for the target number.</li>
+ * <li>Threshold - Picks the fewest clusters whose error is no more than a maximum error. If no result is good enough,
+ *                 the target number is used.</li>
+ * </ul>
+ * <p>
+ * Every run shares the same {@link ColorHistogram}, and the {@link Tone}s used to measure the error are only created
+ * once. By default the runs happen in parallel, so on a machine with enough cores choosing the number of clusters
+ * takes little longer than the largest single run. If the wrapped algorithm is seeded, such as a seeded
+ * {@link WeightedKMeansClusterer}, every run also starts from the same first clusters, so the results for each number
+ * of clusters are consistent with one another.
+ * </p>
+ */
+public class AutoSizingClusterer implements HistogramClusteringAlgorithm {
+
+    private final HistogramClusteringAlgorithm algorithm;
+    private final ColorDistanceFunction distanceFunction;
+    private final Double maxError;
+    private final boolean parallel;
+
+    /**
+     * Elbow constructor. Sets up an {@link AutoSizingClusterer} which picks the number of clusters using the elbow of
+     * the errors, measured using the supplied {@link ColorDistanceFunction}.
+     *
+     * @param algorithm        The {@link ClusteringAlgorithm} used to define the clusters.
+     * @param distanceFunction The function used to measure the error of each set of clusters.
+     */
+    public AutoSizingClusterer(ClusteringAlgorithm algorithm, ColorDistanceFunction distanceFunction){
+        this(algorithm, distanceFunction, null, true);
+    }
+
+    /**
+     * Threshold constructor. Sets up an {@link AutoSizingClusterer} which picks the fewest clusters whose error,
+     * measured using the supplied {@link ColorDistanceFunction}, is no more than the maximum error.
+     *
+     * @param algorithm        The {@link ClusteringAlgorithm} used to define the clusters.
+     * @param distanceFunction The function used to measure the error of each set of clusters.
+     * @param maxError         The largest acceptable mean distance between each pixel and its closest cluster. Cannot
+     *                         be negative.
+     */
+    public AutoSizingClusterer(ClusteringAlgorithm algorithm, ColorDistanceFunction distanceFunction, double maxError){
+        this(algorithm, distanceFunction, (Double) maxError, true);
+    }
+
+    /**
+     * Full configuration constructor. Sets up an {@link AutoSizingClusterer} with the supplied rule, and controls
+     * whether the clustering for each number of clusters is run in parallel. The clusters found are the same either
+     * way, as long as the wrapped algorithm is deterministic.
+     *
+     * @param algorithm        The {@link ClusteringAlgorithm} used to define the clusters.
+     * @param distanceFunction The function used to measure the error of each set of clusters.
+     * @param maxError         The largest acceptable mean distance between each pixel and its closest cluster, or null
+     *                         to pick the number of clusters using the elbow of the errors.
+     * @param parallel         Whether to cluster for each number of clusters using multiple threads.
+     */
+    public AutoSizingClusterer(ClusteringAlgorithm algorithm, ColorDistanceFunction distanceFunction, Double maxError,
+                               boolean parallel){
+        if(algorithm == null || distanceFunction == null){
+            throw new IllegalArgumentException("An AutoSizingClusterer needs both an algorithm to cluster the colors " +
+                                               "and a distance function to measure the error.");
+        }
+        if(maxError != null && !(maxError >= 0)){
+            throw new IllegalArgumentException("The maximum error can't be negative, not " + maxError);
+        }
+        this.algorithm = HistogramClusteringAlgorithm.adapt(algorithm);
+        this.distanceFunction = distanceFunction;
+        this.maxError = maxError;
+        this.parallel = parallel;
+    }
+
+    @Override
+    public int[] cluster(ColorHistogram histogram, int targetClusters) {
+        int maxClusters = Math.min(targetClusters, histogram.size());
+        if(maxClusters <= 0){
+            return new int[0];
+        }
+
+        Tone[] tones = new Tone[histogram.size()];
+        for(int i = 0; i < tones.length; i++){
+            tones[i] = new Tone("", new Color(histogram.getColor(i), true));
+        }
+
+        int[][] results = new int[maxClusters][];
+        double[] errors = new double[maxClusters];
+        //The largest runs are the slowest, so they are started first.
+        IntStream runs = IntStream.range(0, maxClusters).map(i -> maxClusters - i);
+        (parallel ? runs.parallel() : runs).forEach(clusters -> {
+            results[clusters - 1] = algorithm.cluster(histogram, clusters);
+            errors[clusters - 1] = error(histogram, tones, results[clusters - 1]);
+        });
+
+        return results[maxError == null ? elbow(errors) : threshold(errors, maxError)];
+    }
+
+    /**
+     * Measures the mean distance between each pixel and the closest of a set of clusters.
+     *
+     * @param histogram The colors being described.
+     * @param tones     The {@link Tone} for each color in the histogram.
+     * @param clusters  The clusters describing the colors, as packed ARGB ints.
+     * @return          The mean distance of each pixel from its closest cluster.
+     */
+    private double error(ColorHistogram histogram, Tone[] tones, int[] clusters){
+        if(clusters.length == 0 || histogram.getTotalCount() == 0){
+            return 0;
+        }
+
+        Tone[] clusterTones = new Tone[clusters.length];
+        for(int j = 0; j < clusters.length; j++){
+            clusterTones[j] = new Tone("", new Color(clusters[j], true));
+        }
+
+        double total = 0;
+        for(int i = 0; i < tones.length; i++){
+            Tone closest = clusterTones[0];
+            double closestDistance = Double.POSITIVE_INFINITY;
+            for(Tone cluster : clusterTones){
+                double distance = distanceFunction.getRankingDistance(cluster, tones[i]);
+                if(distance < closestDistance){
+                    closest = cluster;
+                    closestDistance = distance;
+                }
+            }
+            total += histogram.getCount(i) * distanceFunction.getDistance(closest, tones[i]);
+        }
+        return total / histogram.getTotalCount();
+    }
+
+    /**
+     * Finds the elbow of a curve of errors: the point furthest below the straight line from the first error to the
+     * last, once both axes are scaled to run from 0 to 1. If the errors don't fall at all, the first point is used. If
+     * no point is below the line, the last point is used.
+     *
+     * @param errors The error for each number of clusters, starting from 1.
+     * @return       The position of the elbow.
+     */
+    static int elbow(double[] errors){
+        int last = errors.length - 1;
+        double drop = errors[0] - errors[last];
+        if(!(drop > 0)){
+            return 0;
+        }
+
+        int elbow = last;
+        double furthest = 0;
+        for(int i = 1; i < last; i++){
+            double below = (errors[0] - errors[i]) / drop - (double) i / last;
+            if(below > furthest){
+                elbow = i;
+                furthest = below;
+            }
+        }
+        return elbow;
+    }
+
+    /**
+     * Finds the first error which is no more than a maximum.
+     *
+     * @param errors   The error for each number of clusters, starting from 1.
+     * @param maxError The largest acceptable error.
+     * @return         The position of the first acceptable error, or the last position if none are acceptable.
+     */
+    static int threshold(double[] errors, double maxError){
+        for(int i = 0; i < errors.length; i++){
+            if(errors[i] <= maxError){
+                return i;
+            }
+        }
+        return errors.length - 1;
+    }
+}
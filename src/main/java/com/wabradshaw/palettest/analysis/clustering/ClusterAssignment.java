@@ -0,0 +1,125 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import com.wabradshaw.palettest.analysis.ColorHistogram;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * The result of clustering a {@link ColorHistogram}: the clusters which describe the colors, and which of those
+ * clusters each color in the histogram belongs to. Keeping the assignments means an image can be redrawn using its
+ * clusters without searching for the closest cluster to each color again.
+ * </p>
+ * <p>
+ * A histogram in which every count is zero may be described by no clusters at all. In that case, and only then, each
+ * color is assigned to {@link #UNASSIGNED}.
+ * </p>
+ * <p>
+ * Please note that {@link ClusterAssignment}s are immutable.
+ * </p>
+ * @see HistogramClusteringAlgorithm#clusterAndAssign(ColorHistogram, int)
+ */
+public final class ClusterAssignment {
+
+    /**
+     * The assignment of each color when there are no clusters for it to belong to.
+     */
+    public static final int UNASSIGNED = -1;
+
+    private final int[] clusters;
+    private final int[] assignments;
+
+    /**
+     * Creates a {@link ClusterAssignment} from the clusters and the position of the cluster each color belongs to.
+     * Both arrays are copied.
+     *
+     * @param clusters    The clusters, as packed ARGB ints.
+     * @param assignments The position in the clusters of the cluster for each color in the histogram, in the same
+     *                    order as the histogram. If there are no clusters, every assignment must be
+     *                    {@link #UNASSIGNED}.
+     * @throws IllegalArgumentException If either array is null, or any assignment isn't the position of a cluster or
+     *                                  {@link #UNASSIGNED} when there are no clusters.
+     */
+    public ClusterAssignment(int[] clusters, int[] assignments){
+        if(clusters == null || assignments == null){
+            throw new IllegalArgumentException("A ClusterAssignment needs both clusters and assignments.");
+        }
+        for(int assignment : assignments){
+            boolean valid = clusters.length == 0 ? assignment == UNASSIGNED
+                                                 : assignment >= 0 && assignment < clusters.length;
+            if(!valid){
+                throw new IllegalArgumentException("A color was assigned to cluster " + assignment + ", but there " +
+                                                   "are only " + clusters.length + " clusters.");
+            }
+        }
+        this.clusters = clusters.clone();
+        this.assignments = assignments.clone();
+    }
+
+    /**
+     * Assigns every color in a histogram to the closest of a set of clusters, measured as the straight line distance
+     * between their red, green, blue and alpha values. If there are no clusters, every color is {@link #UNASSIGNED}.
+     *
+     * @param histogram The colors to assign.
+     * @param clusters  The clusters the colors may be assigned to, as packed ARGB ints.
+     * @return          A {@link ClusterAssignment} of each color to its closest cluster.
+     */
+    static ClusterAssignment nearest(ColorHistogram histogram, int[] clusters){
+        int[] assignments = new int[histogram.size()];
+        if(clusters.length == 0){
+            Arrays.fill(assignments, UNASSIGNED);
+        } else {
+            for(int i = 0; i < assignments.length; i++){
+                int color = histogram.getColor(i);
+                long closestDistance = Long.MAX_VALUE;
+                for(int j = 0; j < clusters.length; j++){
+                    long distance = 0;
+                    for(int bits = 0; bits < 32; bits += 8){
+                        long difference = ((color >>> bits) & 0xFF) - ((clusters[j] >>> bits) & 0xFF);
+                        distance += difference * difference;
+                    }
+                    if(distance < closestDistance){
+                        assignments[i] = j;
+                        closestDistance = distance;
+                    }
+                }
+            }
+        }
+        return new ClusterAssignment(clusters, assignments);
+    }
+
+    /**
+     * Gets a copy of the clusters.
+     *
+     * @return The clusters, as packed ARGB ints.
+     */
+    public int[] getClusters(){
+        return clusters.clone();
+    }
+
+    /**
+     * Gets the position of the cluster a color in the histogram belongs to.
+     *
+     * @param index The position of the color in the histogram.
+     * @return      The position of its cluster in {@link #getClusters()}, or {@link #UNASSIGNED} if there are no
+     *              clusters.
+     */
+    public int getAssignment(int index){
+        return assignments[index];
+    }
+
+    /**
+     * Gets the cluster a color in the histogram belongs to.
+     *
+     * @param index The position of the color in the histogram.
+     * @return      The cluster, as a packed ARGB int.
+     * @throws IllegalStateException If there are no clusters, so the color is {@link #UNASSIGNED}.
+     */
+    public int getAssignedCluster(int index){
+        int assignment = assignments[index];
+        if(assignment == UNASSIGNED){
+            throw new IllegalStateException("Color " + index + " isn't assigned to a cluster, as there are none.");
+        }
+        return clusters[assignment];
+    }
+}
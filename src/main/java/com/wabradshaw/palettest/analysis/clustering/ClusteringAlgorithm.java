@@ -8,6 +8,8 @@ import java.util.Map;
  * A set of interfaces for algorithms that attempt to find the standard colors used in an image. These algorithms take
  * in a map of colors used in an image, as well as the number of times they were each used, then attempts to define
  * a palette that describes most of them.
+ *
+ * @see HistogramClusteringAlgorithm
  */
 public interface ClusteringAlgorithm {
 
@@ -0,0 +1,36 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import com.wabradshaw.palettest.analysis.ColorHistogram;
+
+import java.awt.Color;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A {@link HistogramClusteringAlgorithm} which passes the colors on to a {@link ClusteringAlgorithm} as a map.
+ *
+ * @see HistogramClusteringAlgorithm#adapt(ClusteringAlgorithm)
+ */
+final class ClusteringAlgorithmAdapter implements HistogramClusteringAlgorithm {
+
+    private final ClusteringAlgorithm algorithm;
+
+    /**
+     * Creates an adapter for a {@link ClusteringAlgorithm}.
+     *
+     * @param algorithm The algorithm which defines the clusters.
+     */
+    ClusteringAlgorithmAdapter(ClusteringAlgorithm algorithm){
+        this.algorithm = algorithm;
+    }
+
+    @Override
+    public int[] cluster(ColorHistogram histogram, int targetClusters){
+        return algorithm.cluster(histogram.toColorCounts(), targetClusters).stream().mapToInt(Color::getRGB).toArray();
+    }
+
+    @Override
+    public Collection<Color> cluster(Map<Color, Integer> colorCounts, int targetClusters){
+        return algorithm.cluster(colorCounts, targetClusters);
+    }
+}
@@ -0,0 +1,182 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+/**
+ * <p>
+ * The color spaces which a {@link ColorSpaceKMeansClusterer} can cluster colors in. Each color is converted into four
+ * coordinates, where the straight line distance between two sets of coordinates is the difference between the colors.
+ * The last coordinate is always the alpha of the color.
+ * </p>
+ * <ul>
+ * <li>SRGB       - The red, green, blue and alpha values of the color, from 0 to 255, exactly as stored.</li>
+ * <li>LINEAR_RGB - The red, green and blue values with the sRGB gamma curve removed, from 0 to 1, so that they are
+ *                  proportional to the amount of light. Averaging in this space mixes colors the way light does, so
+ *                  averages of dark and light colors aren't pulled towards the dark.</li>
+ * <li>LAB        - The CIE L*a*b* coordinates of the color under a D65 white point, with lightness from 0 to 100.
+ *                  Distances in this space roughly match how different people perceive the colors to be.</li>
+ * </ul>
+ * <p>
+ * Conversions into each space use a lookup table for the sRGB gamma curve, so they are cheap enough to do once for
+ * every color in an image. Conversions back are only needed for each cluster, and are rounded to the nearest
+ * 8-bit values.
+ * </p>
+ * @see <a href="https://en.wikipedia.org/wiki/CIELAB_color_space">CIELAB color space</a>
+ */
+public enum ColorSpace {
+
+    SRGB {
+        @Override
+        void toCoordinates(int argb, double[] coordinates, int offset){
+            coordinates[offset] = (argb >> 16) & 0xFF;
+            coordinates[offset + 1] = (argb >> 8) & 0xFF;
+            coordinates[offset + 2] = argb & 0xFF;
+            coordinates[offset + 3] = argb >>> 24;
+        }
+
+        @Override
+        int toArgb(double[] coordinates, int offset){
+            return argb(coordinates[offset], coordinates[offset + 1], coordinates[offset + 2],
+                        coordinates[offset + 3]);
+        }
+    },
+
+    LINEAR_RGB {
+        @Override
+        void toCoordinates(int argb, double[] coordinates, int offset){
+            coordinates[offset] = LINEAR[(argb >> 16) & 0xFF];
+            coordinates[offset + 1] = LINEAR[(argb >> 8) & 0xFF];
+            coordinates[offset + 2] = LINEAR[argb & 0xFF];
+            coordinates[offset + 3] = (argb >>> 24) / 255.0;
+        }
+
+        @Override
+        int toArgb(double[] coordinates, int offset){
+            return argb(gamma(coordinates[offset]), gamma(coordinates[offset + 1]), gamma(coordinates[offset + 2]),
+                        coordinates[offset + 3] * 255);
+        }
+    },
+
+    LAB {
+        @Override
+        void toCoordinates(int argb, double[] coordinates, int offset){
+            double red = LINEAR[(argb >> 16) & 0xFF];
+            double green = LINEAR[(argb >> 8) & 0xFF];
+            double blue = LINEAR[argb & 0xFF];
+
+            double x = labCurve((0.4124564 * red + 0.3575761 * green + 0.1804375 * blue) / WHITE_X);
+            double y = labCurve(0.2126729 * red + 0.7151522 * green + 0.0721750 * blue);
+            double z = labCurve((0.0193339 * red + 0.1191920 * green + 0.9503041 * blue) / WHITE_Z);
+
+            coordinates[offset] = 116 * y - 16;
+            coordinates[offset + 1] = 500 * (x - y);
+            coordinates[offset + 2] = 200 * (y - z);
+            coordinates[offset + 3] = (argb >>> 24) * 100 / 255.0;
+        }
+
+        @Override
+        int toArgb(double[] coordinates, int offset){
+            double fy = (coordinates[offset] + 16) / 116;
+            double x = inverseLabCurve(fy + coordinates[offset + 1] / 500) * WHITE_X;
+            double y = inverseLabCurve(fy);
+            double z = inverseLabCurve(fy - coordinates[offset + 2] / 200) * WHITE_Z;
+
+            return argb(gamma(3.2404542 * x - 1.5371385 * y - 0.4985314 * z),
+                        gamma(-0.9692660 * x + 1.8760108 * y + 0.0415560 * z),
+                        gamma(0.0556434 * x - 0.2040259 * y + 1.0572252 * z),
+                        coordinates[offset + 3] * 255 / 100);
+        }
+    };
+
+    /**
+     * The number of coordinates used for each color.
+     */
+    public static final int DIMENSIONS = 4;
+
+    private static final double WHITE_X = 0.95047;
+    private static final double WHITE_Z = 1.08883;
+    private static final double EPSILON = 216.0 / 24389;
+    private static final double KAPPA = 24389.0 / 27;
+
+    /**
+     * The linear value of each 8-bit sRGB value.
+     */
+    private static final double[] LINEAR = new double[256];
+    static {
+        for(int i = 0; i < LINEAR.length; i++){
+            double value = i / 255.0;
+            LINEAR[i] = value <= 0.04045 ? value / 12.92 : Math.pow((value + 0.055) / 1.055, 2.4);
+        }
+    }
+
+    /**
+     * Converts a color into coordinates in this color space.
+     *
+     * @param argb        The color as a packed ARGB int.
+     * @param coordinates The array to write the {@link #DIMENSIONS} coordinates into.
+     * @param offset      The position of the first coordinate in the array.
+     */
+    abstract void toCoordinates(int argb, double[] coordinates, int offset);
+
+    /**
+     * Converts coordinates in this color space back into the closest 8-bit color.
+     *
+     * @param coordinates The array holding the {@link #DIMENSIONS} coordinates.
+     * @param offset      The position of the first coordinate in the array.
+     * @return            The color as a packed ARGB int.
+     */
+    abstract int toArgb(double[] coordinates, int offset);
+
+    /**
+     * Applies the sRGB gamma curve to a linear value.
+     *
+     * @param linear The linear value, from 0 to 1.
+     * @return       The sRGB value, from 0 to 255.
+     */
+    private static double gamma(double linear){
+        double value = linear <= 0.0031308 ? linear * 12.92 : 1.055 * Math.pow(linear, 1 / 2.4) - 0.055;
+        return value * 255;
+    }
+
+    /**
+     * Applies the curve used to turn XYZ values into L*a*b* values.
+     *
+     * @param value The X, Y or Z value, relative to the white point.
+     * @return      The curved value.
+     */
+    private static double labCurve(double value){
+        return value > EPSILON ? Math.cbrt(value) : (KAPPA * value + 16) / 116;
+    }
+
+    /**
+     * Reverses {@link #labCurve(double)}.
+     *
+     * @param value The curved value.
+     * @return      The X, Y or Z value, relative to the white point.
+     */
+    private static double inverseLabCurve(double value){
+        double cubed = value * value * value;
+        return cubed > EPSILON ? cubed : (116 * value - 16) / KAPPA;
+    }
+
+    /**
+     * Rounds and clamps a set of channel values into a packed ARGB int.
+     *
+     * @param red   The red value, from 0 to 255.
+     * @param green The green value, from 0 to 255.
+     * @param blue  The blue value, from 0 to 255.
+     * @param alpha The alpha value, from 0 to 255.
+     * @return      The color as a packed ARGB int.
+     */
+    private static int argb(double red, double green, double blue, double alpha){
+        return channel(alpha) << 24 | channel(red) << 16 | channel(green) << 8 | channel(blue);
+    }
+
+    /**
+     * Rounds a channel value to the nearest value from 0 to 255.
+     *
+     * @param value The channel value.
+     * @return      The rounded value.
+     */
+    private static int channel(double value){
+        return (int) Math.max(0, Math.min(255, Math.round(value)));
+    }
+}
@@ -0,0 +1,384 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import com.wabradshaw.palettest.analysis.ColorHistogram;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.wabradshaw.palettest.analysis.clustering.ColorSpace.DIMENSIONS;
+import static com.wabradshaw.palettest.analysis.clustering.KMeansUtils.chunks;
+import static com.wabradshaw.palettest.analysis.clustering.KMeansUtils.inChunks;
+
+/**
+ * <p>
+ * A {@link HistogramClusteringAlgorithm} which uses weighted k-means clustering in a particular {@link ColorSpace},
+ * such as linear RGB or L*a*b*. Each distinct color is converted into the color space once, and every distance and
+ * average is then calculated directly on those coordinates. Only the clusters are converted back, once each iteration
+ * to measure how far they moved, and at the end.
+ * </p>
+ * <p>
+ * Unlike a {@link WeightedKMeansClusterer}, the distance between colors is always the straight line distance in the
+ * color space, rather than a {@link com.wabradshaw.palettest.analysis.distance.ColorDistanceFunction}. This means the
+ * averages chosen for each cluster are the points which best describe their colors in that space: averages in linear
+ * RGB mix colors as light does, and averages in L*a*b* are the closest to their colors as people see them. It also
+ * means no {@link com.wabradshaw.palettest.analysis.Tone}s need to be created, so clustering is much faster. Each
+ * iteration finds the closest cluster for each color and adds the color to that cluster's sums in the same pass.
+ * </p>
+ * <p>
+ * Seeding, convergence and empty clusters are handled in the same way as a {@link WeightedKMeansClusterer}: the
+ * starting clusters are picked using weighted k-means++ seeding, unless starting clusters are supplied; clustering
+ * stops once no cluster moves further than the tolerance in red, green, blue and alpha; and clusters which end up with
+ * no colors are moved to the colors which are worst described by the other clusters. Large sets of colors are split
+ * into fixed-size chunks which are clustered in parallel, and give the same result as a sequential clusterer.
+ * </p>
+ */
+public class ColorSpaceKMeansClusterer implements HistogramClusteringAlgorithm {
+
+    private final ColorSpace colorSpace;
+    private final Long seed;
+    private final boolean parallel;
+    private final double tolerance;
+    private final int maxIterations;
+
+    /**
+     * Color space constructor. Sets up a {@link ColorSpaceKMeansClusterer} which clusters colors in the supplied
+     * {@link ColorSpace}.
+     *
+     * @param colorSpace The {@link ColorSpace} to cluster colors in.
+     */
+    public ColorSpaceKMeansClusterer(ColorSpace colorSpace){
+        this(colorSpace, null, true, WeightedKMeansClusterer.DEFAULT_TOLERANCE,
+             WeightedKMeansClusterer.DEFAULT_MAX_ITERATIONS);
+    }
+
+    /**
+     * Seeded constructor. Sets up a {@link ColorSpaceKMeansClusterer} which clusters colors in the supplied
+     * {@link ColorSpace}, and which always picks the same starting clusters for the same colors. This makes the
+     * results reproducible.
+     *
+     * @param colorSpace The {@link ColorSpace} to cluster colors in.
+     * @param seed       The seed for the random choice of starting clusters.
+     */
+    public ColorSpaceKMeansClusterer(ColorSpace colorSpace, long seed){
+        this(colorSpace, seed, true, WeightedKMeansClusterer.DEFAULT_TOLERANCE,
+             WeightedKMeansClusterer.DEFAULT_MAX_ITERATIONS);
+    }
+
+    /**
+     * Full configuration constructor. Sets up a seeded {@link ColorSpaceKMeansClusterer} which clusters colors in the
+     * supplied {@link ColorSpace}, controls whether large sets of colors are clustered in parallel, and controls when
+     * clustering stops.
+     *
+     * @param colorSpace    The {@link ColorSpace} to cluster colors in.
+     * @param seed          The seed for the random choice of starting clusters.
+     * @param parallel      Whether to cluster large sets of colors using multiple threads.
+     * @param tolerance     Clustering stops once no cluster moves further than this in red, green, blue and alpha
+     *                      during an iteration. Cannot be negative.
+     * @param maxIterations The most iterations to run, at least 1.
+     */
+    public ColorSpaceKMeansClusterer(ColorSpace colorSpace, long seed, boolean parallel, double tolerance,
+                                     int maxIterations){
+        this(colorSpace, (Long) seed, parallel, tolerance, maxIterations);
+    }
+
+    /**
+     * Internal constructor, used by all of the others.
+     *
+     * @param colorSpace    The {@link ColorSpace} to cluster colors in.
+     * @param seed          The seed for the random choice of starting clusters, or null for a random seed.
+     * @param parallel      Whether to cluster large sets of colors using multiple threads.
+     * @param tolerance     Clustering stops once no cluster moves further than this during an iteration.
+     * @param maxIterations The most iterations to run.
+     */
+    private ColorSpaceKMeansClusterer(ColorSpace colorSpace, Long seed, boolean parallel, double tolerance,
+                                      int maxIterations){
+        if(colorSpace == null){
+            throw new IllegalArgumentException("A ColorSpaceKMeansClusterer needs a color space to cluster in.");
+        }
+        if(!(tolerance >= 0) || maxIterations < 1){
+            throw new IllegalArgumentException("Invalid convergence settings: a tolerance of " + tolerance + " and " +
+                                               maxIterations + " max iterations. The tolerance can't be negative, " +
+                                               "and there must be at least one iteration.");
+        }
+        this.colorSpace = colorSpace;
+        this.seed = seed;
+        this.parallel = parallel;
+        this.tolerance = tolerance;
+        this.maxIterations = maxIterations;
+    }
+
+    @Override
+    public int[] cluster(ColorHistogram histogram, int targetClusters) {
+        return cluster(histogram, targetClusters, null);
+    }
+
+    @Override
+    public int[] cluster(ColorHistogram histogram, int targetClusters, int[] startingClusters) {
+        return run(histogram, targetClusters, startingClusters).getClusters();
+    }
+
+    @Override
+    public ClusterAssignment clusterAndAssign(ColorHistogram histogram, int targetClusters) {
+        return run(histogram, targetClusters, null);
+    }
+
+    /**
+     * Runs k-means on the colors in a histogram.
+     *
+     * @param histogram        The individual colors making up an image, and the number of times they each appeared.
+     * @param targetClusters   The number of target color clusters to use to describe the image.
+     * @param startingClusters The clusters to start from as packed ARGB ints, or null.
+     * @return                 The final clusters, and the cluster each color was last assigned to.
+     */
+    private ClusterAssignment run(ColorHistogram histogram, int targetClusters, int[] startingClusters) {
+        //The histogram is sorted, so the result only depends on the seed, not the order the colors were counted in.
+        int size = histogram.size();
+        double[] points = new double[size * DIMENSIONS];
+        long[] weights = new long[size];
+        inChunks(size, parallel, (chunk, start, end) -> {
+            for(int i = start; i < end; i++){
+                colorSpace.toCoordinates(histogram.getColor(i), points, i * DIMENSIONS);
+                weights[i] = histogram.getCount(i);
+            }
+        });
+
+        Random random = seed == null ? new Random() : new Random(seed);
+        double[] distances = new double[size];
+        double[] clusters = initialiseClusters(points, weights, startingClusters, targetClusters, random, distances);
+        int[] colors = toArgb(clusters);
+        int[] assignments = new int[size];
+        if(colors.length == 0){
+            Arrays.fill(assignments, ClusterAssignment.UNASSIGNED);
+            return new ClusterAssignment(colors, assignments);
+        }
+
+        double shift = Double.POSITIVE_INFINITY;
+        for(int iteration = 0; iteration < maxIterations && shift > tolerance; iteration++){
+            clusters = updateClusters(clusters, points, weights, assignments, distances);
+
+            int[] updated = toArgb(clusters);
+            shift = updated.length == colors.length ? 0 : Double.POSITIVE_INFINITY;
+            for(int j = 0; j < updated.length && j < colors.length; j++){
+                shift = Math.max(shift, shift(colors[j], updated[j]));
+            }
+            colors = updated;
+        }
+
+        //Clusters which rounded to the same color are combined.
+        int[] distinct = Arrays.stream(colors).distinct().toArray();
+        if(distinct.length < colors.length){
+            int[] positions = new int[colors.length];
+            for(int j = 0; j < colors.length; j++){
+                for(int d = 0; d < distinct.length; d++){
+                    if(distinct[d] == colors[j]){
+                        positions[j] = d;
+                        break;
+                    }
+                }
+            }
+            for(int i = 0; i < size; i++){
+                assignments[i] = positions[assignments[i]];
+            }
+        }
+        return new ClusterAssignment(distinct, assignments);
+    }
+
+    /**
+     * Initialises the starting clusters using weighted k-means++ seeding. Any supplied starting clusters are used
+     * first, and seeding only picks the rest. Fewer clusters are returned if there aren't enough distinct colors.
+     *
+     * @param points         The coordinates of each color.
+     * @param weights        The number of times each color appeared.
+     * @param starting       The clusters to start from as packed ARGB ints, or null.
+     * @param targetClusters The number of clusters that should be created.
+     * @param random         The source of randomness used to pick the clusters.
+     * @param distances      Filled with the squared distance from each color to its closest cluster.
+     * @return               The coordinates of each starting cluster.
+     */
+    private double[] initialiseClusters(double[] points, long[] weights, int[] starting, int targetClusters,
+                                        Random random, double[] distances){
+        int startingCount = starting == null ? 0 : Math.min(starting.length, targetClusters);
+        double[] clusters = new double[Math.max(0, targetClusters) * DIMENSIONS];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+
+        KMeansUtils.Seeding seeding = new KMeansUtils.Seeding(){
+            @Override
+            public void addCluster(int position, int color){
+                if(color < 0){
+                    colorSpace.toCoordinates(starting[position], clusters, position * DIMENSIONS);
+                } else {
+                    System.arraycopy(points, color * DIMENSIONS, clusters, position * DIMENSIONS, DIMENSIONS);
+                }
+            }
+
+            @Override
+            public double updateChance(int position, int i){
+                double distance = squaredDistance(points, i * DIMENSIONS, clusters, position * DIMENSIONS);
+                distances[i] = Math.min(distances[i], distance);
+                return weights[i] * distances[i];
+            }
+        };
+        int count = KMeansUtils.seedClusters(weights, startingCount, targetClusters, random, parallel, seeding);
+        return Arrays.copyOf(clusters, count * DIMENSIONS);
+    }
+
+    /**
+     * Assigns each color to its closest cluster, then moves each cluster to the weighted average of its colors. Each
+     * chunk finds the closest clusters and sums the coordinates of each cluster in a single pass, then the sums are
+     * combined in order. Clusters which weren't assigned any colors are moved to the colors which are worst described
+     * by the other clusters. If there aren't enough such colors, the remaining empty clusters are removed, and the
+     * assignments are updated to match.
+     *
+     * @param clusters    The coordinates of the current clusters.
+     * @param points      The coordinates of each color.
+     * @param weights     The number of times each color appeared.
+     * @param assignments Filled with the position of the closest cluster to each color.
+     * @param distances   Filled with the squared distance from each color to its closest cluster.
+     * @return            The coordinates of the updated clusters.
+     */
+    private double[] updateClusters(double[] clusters, double[] points, long[] weights, int[] assignments,
+                                    double[] distances){
+        //Each chunk sums the coordinates and pixels of each cluster, in groups of DIMENSIONS + 1.
+        int size = clusters.length / DIMENSIONS;
+        int stride = DIMENSIONS + 1;
+        double[][] chunkSums = new double[chunks(weights.length)][];
+        inChunks(weights.length, parallel, (chunk, start, end) -> {
+            double[] sums = new double[size * stride];
+            for(int i = start; i < end; i++){
+                int point = i * DIMENSIONS;
+                int closest = 0;
+                double closestDistance = Double.POSITIVE_INFINITY;
+                for(int j = 0; j < size; j++){
+                    double distance = squaredDistance(points, point, clusters, j * DIMENSIONS);
+                    if(distance < closestDistance){
+                        closest = j;
+                        closestDistance = distance;
+                    }
+                }
+                assignments[i] = closest;
+                distances[i] = closestDistance;
+
+                int offset = closest * stride;
+                double weight = weights[i];
+                for(int d = 0; d < DIMENSIONS; d++){
+                    sums[offset + d] += points[point + d] * weight;
+                }
+                sums[offset + DIMENSIONS] += weight;
+            }
+            chunkSums[chunk] = sums;
+        });
+
+        double[] sums = new double[size * stride];
+        for(double[] chunk : chunkSums){
+            for(int s = 0; s < sums.length; s++){
+                sums[s] += chunk[s];
+            }
+        }
+
+        double[] updated = new double[clusters.length];
+        boolean[] empty = new boolean[size];
+        int emptyCount = 0;
+        for(int j = 0; j < size; j++){
+            double pixels = sums[j * stride + DIMENSIONS];
+            if(pixels == 0){
+                empty[j] = true;
+                emptyCount++;
+            } else {
+                for(int d = 0; d < DIMENSIONS; d++){
+                    updated[j * DIMENSIONS + d] = sums[j * stride + d] / pixels;
+                }
+            }
+        }
+        if(emptyCount == 0){
+            return updated;
+        }
+
+        int[] worst = worstDescribed(weights, distances, emptyCount);
+        int[] positions = new int[size];
+        int kept = 0;
+        for(int j = 0, w = 0; j < size; j++){
+            positions[j] = kept;
+            if(!empty[j]){
+                System.arraycopy(updated, j * DIMENSIONS, updated, kept++ * DIMENSIONS, DIMENSIONS);
+            } else if(w < worst.length){
+                System.arraycopy(points, worst[w++] * DIMENSIONS, updated, kept++ * DIMENSIONS, DIMENSIONS);
+            }
+        }
+        if(kept < size){
+            //Only empty clusters are removed, so no color is assigned to a removed position.
+            inChunks(assignments.length, parallel, (chunk, start, end) -> {
+                for(int i = start; i < end; i++){
+                    assignments[i] = positions[assignments[i]];
+                }
+            });
+        }
+        return Arrays.copyOf(updated, kept * DIMENSIONS);
+    }
+
+    /**
+     * Finds the colors which are worst described by their closest clusters. Each color's error is its count
+     * multiplied by its squared distance from its cluster, so colors which are far from their cluster and common are
+     * picked first. Colors which exactly match their cluster are never picked.
+     *
+     * @param weights   The number of times each color appeared.
+     * @param distances The squared distance from each color to its closest cluster.
+     * @param count     The number of colors to pick.
+     * @return          The positions of up to count colors, worst first.
+     */
+    private static int[] worstDescribed(long[] weights, double[] distances, int count){
+        double[] errors = new double[weights.length];
+        for(int i = 0; i < errors.length; i++){
+            errors[i] = weights[i] * distances[i];
+        }
+        return KMeansUtils.worstDescribed(errors, count);
+    }
+
+    /**
+     * Converts the coordinates of each cluster back into colors.
+     *
+     * @param clusters The coordinates of each cluster.
+     * @return         The color of each cluster, as packed ARGB ints.
+     */
+    private int[] toArgb(double[] clusters){
+        int[] colors = new int[clusters.length / DIMENSIONS];
+        for(int j = 0; j < colors.length; j++){
+            colors[j] = colorSpace.toArgb(clusters, j * DIMENSIONS);
+        }
+        return colors;
+    }
+
+    /**
+     * Measures the squared straight line distance between two sets of coordinates.
+     *
+     * @param first        The array holding the first coordinates.
+     * @param firstOffset  The position of the first coordinates in their array.
+     * @param second       The array holding the second coordinates.
+     * @param secondOffset The position of the second coordinates in their array.
+     * @return             The squared distance between the coordinates.
+     */
+    private static double squaredDistance(double[] first, int firstOffset, double[] second, int secondOffset){
+        double total = 0;
+        for(int d = 0; d < DIMENSIONS; d++){
+            double difference = first[firstOffset + d] - second[secondOffset + d];
+            total += difference * difference;
+        }
+        return total;
+    }
+
+    /**
+     * Measures how far a cluster moved, as the straight line distance between its red, green, blue and alpha values.
+     *
+     * @param from The color of the cluster before it moved, as a packed ARGB int.
+     * @param to   The color of the cluster after it moved, as a packed ARGB int.
+     * @return     The distance the cluster moved.
+     */
+    private static double shift(int from, int to){
+        double total = 0;
+        for(int bits = 0; bits < 32; bits += 8){
+            double difference = ((from >>> bits) & 0xFF) - ((to >>> bits) & 0xFF);
+            total += difference * difference;
+        }
+        return Math.sqrt(total);
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import com.wabradshaw.palettest.analysis.ColorHistogram;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * A {@link ClusteringAlgorithm} which works directly on primitive arrays. The colors are supplied as a
+ * {@link ColorHistogram}, or as parallel arrays of packed ARGB ints and counts, and the clusters are returned as packed
+ * ARGB ints (as returned by {@link Color#getRGB()}). This avoids creating a {@link Color} and an {@link Integer} for
+ * every distinct color in an image.
+ * </p>
+ * <p>
+ * Clustering can be warm started from a set of starting clusters, such as the palette found for the previous frame of
+ * an animation. Iterative algorithms like {@link WeightedKMeansClusterer} refine the starting clusters instead of
+ * choosing their own, so they converge in far fewer iterations when the colors have barely changed. Algorithms which
+ * don't iterate ignore the starting clusters.
+ * </p>
+ * <p>
+ * Every built-in clustering algorithm implements this interface. Other {@link ClusteringAlgorithm}s can be used
+ * wherever one is needed by wrapping them with {@link #adapt(ClusteringAlgorithm)}.
+ * </p>
+ */
+public interface HistogramClusteringAlgorithm extends ClusteringAlgorithm {
+
+    /**
+     * Takes the individual colors that make up an image, and defines a subset of colors which describe the image.
+     *
+     * @param histogram      The individual colors making up an image, and the number of times they each appeared.
+     * @param targetClusters The number of target color clusters to use to describe the image.
+     * @return               The color clusters that describe the image, as packed ARGB ints.
+     */
+    public int[] cluster(ColorHistogram histogram, int targetClusters);
+
+    /**
+     * Takes the individual colors that make up an image, and defines a subset of colors which describe the image,
+     * starting from a set of existing clusters. By default the starting clusters are ignored.
+     *
+     * @param histogram        The individual colors making up an image, and the number of times they each appeared.
+     * @param targetClusters   The number of target color clusters to use to describe the image.
+     * @param startingClusters The clusters to start from, as packed ARGB ints. If there are more than the target
+     *                         number, only the first are used. If there are fewer, or this is null, the algorithm
+     *                         chooses the rest itself.
+     * @return                 The color clusters that describe the image, as packed ARGB ints.
+     */
+    public default int[] cluster(ColorHistogram histogram, int targetClusters, int[] startingClusters){
+        return cluster(histogram, targetClusters);
+    }
+
+    /**
+     * Defines a subset of colors which describe an image, along with which of those clusters each color belongs to.
+     * Algorithms which assign colors to clusters as they work, such as {@link WeightedKMeansClusterer}, return their
+     * own final assignments. By default, each color is assigned to the closest cluster, measured as the straight line
+     * distance between their red, green, blue and alpha values.
+     *
+     * @param histogram      The individual colors making up an image, and the number of times they each appeared.
+     * @param targetClusters The number of target color clusters to use to describe the image.
+     * @return               The color clusters that describe the image, and the cluster for each color.
+     */
+    public default ClusterAssignment clusterAndAssign(ColorHistogram histogram, int targetClusters){
+        return ClusterAssignment.nearest(histogram, cluster(histogram, targetClusters));
+    }
+
+    /**
+     * Takes the individual colors that make up an image, and defines a subset of colors which describe the image.
+     *
+     * @param colors         The individual colors making up an image, as packed ARGB ints.
+     * @param counts         The number of times each color appeared.
+     * @param targetClusters The number of target color clusters to use to describe the image.
+     * @return               The color clusters that describe the image, as packed ARGB ints.
+     * @throws IllegalArgumentException If the arrays are null or different lengths, or any count is negative.
+     */
+    public default int[] cluster(int[] colors, int[] counts, int targetClusters){
+        return cluster(ColorHistogram.of(colors, counts), targetClusters);
+    }
+
+    @Override
+    public default Collection<Color> cluster(Map<Color, Integer> colorCounts, int targetClusters){
+        int[] clusters = cluster(ColorHistogram.of(colorCounts), targetClusters);
+        List<Color> result = new ArrayList<>(clusters.length);
+        for(int cluster : clusters){
+            result.add(new Color(cluster, true));
+        }
+        return result;
+    }
+
+    /**
+     * Wraps a {@link ClusteringAlgorithm} so that it can be used as a {@link HistogramClusteringAlgorithm}. The
+     * histogram is converted to a map of {@link Color}s before it is passed on. Algorithms which already are
+     * {@link HistogramClusteringAlgorithm}s are returned as-is.
+     *
+     * @param algorithm The algorithm to wrap.
+     * @return          A {@link HistogramClusteringAlgorithm} which gives the same clusters as the algorithm.
+     */
+    public static HistogramClusteringAlgorithm adapt(ClusteringAlgorithm algorithm){
+        if(algorithm instanceof HistogramClusteringAlgorithm){
+            return (HistogramClusteringAlgorithm) algorithm;
+        }
+        return new ClusteringAlgorithmAdapter(algorithm);
+    }
+}
@@ -0,0 +1,30 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Collection;
+
+/**
+ * <p>
+ * A {@link ClusteringAlgorithm} which can also define a palette by reading the pixels of an image directly. This
+ * avoids counting every color in the image first, which for large photographs can take more memory than the image.
+ * {@link com.wabradshaw.palettest.analysis.Palettester#definePalette} uses this whenever it is available.
+ * </p>
+ * <p>
+ * Implementations should give the same kind of palette as clustering the image's
+ * {@link com.wabradshaw.palettest.analysis.ColorHistogram}: every pixel is treated as opaque, and if the image has no
+ * more colors than the number of clusters requested, those colors are returned.
+ * </p>
+ */
+public interface ImageClusteringAlgorithm extends ClusteringAlgorithm {
+
+    /**
+     * Reads the pixels of an image, and defines a subset of colors which describe the image.
+     *
+     * @param image          The image to describe.
+     * @param targetClusters The number of target color clusters to use to describe the image.
+     * @return               A collection of Color clusters that describe an image.
+     */
+    public Collection<Color> cluster(BufferedImage image, int targetClusters);
+
+}
@@ -0,0 +1,197 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * A set of helper methods shared by the k-means clusterers. Large sets of colors are split into fixed-size chunks,
+ * which can be processed in parallel while still giving the same result as processing them in order.
+ */
+final class KMeansUtils {
+
+    /**
+     * The most colors in each chunk.
+     */
+    static final int CHUNK_SIZE = 4096;
+
+    /**
+     * Private constructor, as this class only has static methods.
+     */
+    private KMeansUtils(){
+    }
+
+    /**
+     * Gets the number of chunks needed to hold a number of colors.
+     *
+     * @param size The number of colors.
+     * @return     The number of chunks, each holding up to {@link #CHUNK_SIZE} colors.
+     */
+    static int chunks(int size){
+        return (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    }
+
+    /**
+     * Runs an action on each chunk of colors.
+     *
+     * @param size     The number of colors.
+     * @param parallel Whether the chunks may be processed at the same time.
+     * @param action   The action to run for each chunk.
+     */
+    static void inChunks(int size, boolean parallel, ChunkAction action){
+        IntStream chunks = IntStream.range(0, chunks(size));
+        if(parallel){
+            chunks = chunks.parallel();
+        }
+        chunks.forEach(chunk -> action.apply(chunk, chunk * CHUNK_SIZE, Math.min(size, (chunk + 1) * CHUNK_SIZE)));
+    }
+
+    /**
+     * Picks starting clusters using weighted k-means++ seeding. Any supplied starting clusters are added first, then
+     * each further cluster is a color picked with a chance proportional to its count multiplied by its squared
+     * distance from the closest cluster so far. Seeding stops early if every color exactly matches a cluster.
+     *
+     * @param weights        The number of times each color appeared.
+     * @param startingCount  The number of starting clusters supplied.
+     * @param targetClusters The number of clusters that should be created.
+     * @param random         The source of randomness used to pick the clusters.
+     * @param parallel       Whether the chunks of colors may be processed at the same time.
+     * @param seeding        Adds the clusters, and measures the colors against them.
+     * @return               The number of clusters added.
+     */
+    static int seedClusters(long[] weights, int startingCount, int targetClusters, Random random, boolean parallel,
+                            Seeding seeding){
+        double[] chances = new double[weights.length];
+        double total = 0;
+        for(int i = 0; i < weights.length; i++){
+            chances[i] = weights[i];
+            total += chances[i];
+        }
+
+        double[] chunkTotals = new double[chunks(weights.length)];
+        int count = 0;
+        while(count < targetClusters){
+            if(count < startingCount){
+                seeding.addCluster(count, -1);
+            } else {
+                int chosen = pickWeighted(chances, total, random);
+                if(chosen < 0){
+                    break;
+                }
+                seeding.addCluster(count, chosen);
+            }
+            int cluster = count++;
+
+            inChunks(weights.length, parallel, (chunk, start, end) -> {
+                double chunkTotal = 0;
+                for(int i = start; i < end; i++){
+                    chances[i] = seeding.updateChance(cluster, i);
+                    chunkTotal += chances[i];
+                }
+                chunkTotals[chunk] = chunkTotal;
+            });
+
+            total = 0;
+            for(double chunkTotal : chunkTotals){
+                total += chunkTotal;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Picks a random position, where the chance of each position being picked is proportional to its weight.
+     *
+     * @param weights The non-negative weight of each position.
+     * @param total   The sum of the weights.
+     * @param random  The source of randomness used to pick the position.
+     * @return        The chosen position, or -1 if every weight is zero.
+     */
+    static int pickWeighted(double[] weights, double total, Random random){
+        if(total <= 0){
+            return -1;
+        }
+
+        double target = random.nextDouble() * total;
+        int last = -1;
+        for(int i = 0; i < weights.length; i++){
+            if(weights[i] > 0){
+                last = i;
+                target -= weights[i];
+                if(target < 0){
+                    return i;
+                }
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Finds the colors which are worst described by their clusters. Colors with an error of zero, which exactly match
+     * their cluster, are never picked.
+     *
+     * @param errors The error of each color, typically its count multiplied by its squared distance from its cluster.
+     *               The errors of the colors picked are set to zero.
+     * @param count  The number of colors to pick.
+     * @return       The positions of up to count colors, worst first.
+     */
+    static int[] worstDescribed(double[] errors, int count){
+        int[] worst = new int[count];
+        int found = 0;
+        while(found < count){
+            int position = -1;
+            for(int i = 0; i < errors.length; i++){
+                if(errors[i] > 0 && (position < 0 || errors[i] > errors[position])){
+                    position = i;
+                }
+            }
+            if(position < 0){
+                break;
+            }
+            worst[found++] = position;
+            errors[position] = 0;
+        }
+        return Arrays.copyOf(worst, found);
+    }
+
+    /**
+     * The steps of k-means++ seeding which depend on how a clusterer represents its colors.
+     */
+    interface Seeding {
+
+        /**
+         * Adds the next cluster.
+         *
+         * @param cluster The position of the new cluster.
+         * @param color   The position of the color to use as the cluster, or -1 to use the next starting cluster.
+         */
+        void addCluster(int cluster, int color);
+
+        /**
+         * Measures a color against a newly added cluster, and gets its new chance of being picked. This is called for
+         * different colors at the same time, so it should only write to the color's own positions.
+         *
+         * @param cluster The position of the new cluster.
+         * @param color   The position of the color.
+         * @return        The color's count multiplied by its squared distance from its closest cluster.
+         */
+        double updateChance(int cluster, int color);
+    }
+
+    /**
+     * An action run on a chunk of colors. Actions for different chunks may run at the same time, so they should only
+     * write to the positions in their own chunk.
+     */
+    @FunctionalInterface
+    interface ChunkAction {
+
+        /**
+         * Runs the action on a single chunk.
+         *
+         * @param chunk The position of the chunk.
+         * @param start The position of the first color in the chunk.
+         * @param end   The position after the last color in the chunk.
+         */
+        void apply(int chunk, int start, int end);
+    }
+}
@@ -0,0 +1,208 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import com.wabradshaw.palettest.analysis.ColorHistogram;
+
+import java.util.*;
+
+/**
+ * <p>
+ * A {@link HistogramClusteringAlgorithm} which uses weighted median cut to define the clusters. All of the colors start
+ * in a single box. The box whose colors are most spread out is repeatedly cut in two, along the channel (red, green,
+ * blue or alpha) in which they are most spread out, so that each half holds about the same number of pixels. Once there
+ * are enough boxes, the clusters are the weighted average color of each box.
+ * </p>
+ * <p>
+ * Unlike k-means, median cut doesn't iterate and doesn't involve any randomness, so it is fast and always gives the
+ * same result. Each cut partitions the colors in place, so the time taken grows roughly linearly with the number of
+ * distinct colors. The clusters are not as accurate as those found by k-means, but make a good starting point for it.
+ * </p>
+ * @see WeightedKMeansClusterer#WeightedKMeansClusterer(com.wabradshaw.palettest.analysis.distance.ColorDistanceFunction,
+ *      ClusteringAlgorithm)
+ * @see <a href="https://en.wikipedia.org/wiki/Median_cut">Median cut</a>
+ */
+public class MedianCutClusterer implements HistogramClusteringAlgorithm {
+
+    //The shift needed to get the red, green, blue and alpha channels from a packed ARGB int.
+    private static final int[] SHIFTS = {16, 8, 0, 24};
+
+    @Override
+    public int[] cluster(ColorHistogram histogram, int targetClusters) {
+        //Colors which never appeared can't affect any cluster.
+        int size = 0;
+        int[] colors = new int[histogram.size()];
+        long[] weights = new long[histogram.size()];
+        for(int i = 0; i < histogram.size(); i++){
+            if(histogram.getCount(i) > 0){
+                colors[size] = histogram.getColor(i);
+                weights[size] = histogram.getCount(i);
+                size++;
+            }
+        }
+
+        List<Box> boxes = new ArrayList<>();
+        PriorityQueue<Box> splittable = new PriorityQueue<>((a, b) -> Double.compare(b.error, a.error));
+        if(size > 0){
+            Box all = new Box(colors, weights, 0, size);
+            boxes.add(all);
+            splittable.add(all);
+        }
+
+        while(boxes.size() < targetClusters && !splittable.isEmpty() && splittable.peek().error > 0){
+            Box box = splittable.poll();
+            int split = box.split(colors, weights);
+
+            Box first = new Box(colors, weights, box.start, split);
+            Box second = new Box(colors, weights, split, box.end);
+            boxes.set(boxes.indexOf(box), first);
+            boxes.add(second);
+            splittable.add(first);
+            splittable.add(second);
+        }
+
+        return boxes.stream().mapToInt(Box::getAverage).distinct().toArray();
+    }
+
+    /**
+     * Gets a single channel from a color.
+     *
+     * @param argb    The color as a packed ARGB int.
+     * @param channel The channel: 0 for red, 1 for green, 2 for blue, or 3 for alpha.
+     * @return        The value of the channel, from 0 to 255.
+     */
+    private static int channel(int argb, int channel){
+        return (argb >>> SHIFTS[channel]) & 0xFF;
+    }
+
+    /**
+     * A range of positions in the color and weight arrays, along with statistics about the colors in that range.
+     */
+    private static class Box {
+        private final int start;
+        private final int end;
+        private final long pixels;
+        private final double[] sums = new double[SHIFTS.length];
+        private final double[] errors = new double[SHIFTS.length];
+        private final double error;
+
+        /**
+         * Creates a box holding the colors in a range of positions, and measures how spread out they are.
+         *
+         * @param colors  The colors, as packed ARGB ints.
+         * @param weights The number of times each color appeared.
+         * @param start   The position of the first color in the box.
+         * @param end     The position after the last color in the box.
+         */
+        Box(int[] colors, long[] weights, int start, int end){
+            this.start = start;
+            this.end = end;
+
+            long total = 0;
+            double[] squares = new double[SHIFTS.length];
+            for(int i = start; i < end; i++){
+                total += weights[i];
+                for(int c = 0; c < SHIFTS.length; c++){
+                    double value = channel(colors[i], c);
+                    sums[c] += value * weights[i];
+                    squares[c] += value * value * weights[i];
+                }
+            }
+            this.pixels = total;
+
+            //The weighted sum of squared differences from the mean, for each channel.
+            double sum = 0;
+            for(int c = 0; c < SHIFTS.length; c++){
+                errors[c] = Math.max(0, squares[c] - sums[c] * sums[c] / total);
+                sum += errors[c];
+            }
+            this.error = end - start > 1 ? sum : 0;
+        }
+
+        /**
+         * Gets the weighted average color of the box.
+         *
+         * @return The average color as a packed ARGB int, with each channel rounded to the nearest value.
+         */
+        int getAverage(){
+            int argb = 0;
+            for(int c = 0; c < SHIFTS.length; c++){
+                argb |= (int) Math.round(sums[c] / pixels) << SHIFTS[c];
+            }
+            return argb;
+        }
+
+        /**
+         * Partitions the colors in the box along the channel in which they are most spread out, so that each side
+         * holds about half of the pixels. This is a weighted quickselect, so it takes linear time on average.
+         *
+         * @param colors  The colors, as packed ARGB ints. Reordered within the box.
+         * @param weights The number of times each color appeared. Reordered to match the colors.
+         * @return        The position of the first color in the second half. Both halves hold at least one color.
+         */
+        int split(int[] colors, long[] weights){
+            int channel = 0;
+            for(int c = 1; c < SHIFTS.length; c++){
+                if(errors[c] > errors[channel]){
+                    channel = c;
+                }
+            }
+
+            long target = pixels / 2;
+            int low = start;
+            int high = end;
+            while(true){
+                //Three way partition into values below, equal to, and above the pivot.
+                int pivot = channel(colors[(low + high) >>> 1], channel);
+                int less = low;
+                int greater = high;
+                int i = low;
+                long lessWeight = 0;
+                long equalWeight = 0;
+                while(i < greater){
+                    int value = channel(colors[i], channel);
+                    if(value < pivot){
+                        lessWeight += weights[i];
+                        swap(colors, weights, less++, i++);
+                    } else if(value > pivot){
+                        swap(colors, weights, i, --greater);
+                    } else {
+                        equalWeight += weights[i];
+                        i++;
+                    }
+                }
+
+                if(target < lessWeight){
+                    high = less;
+                } else if(target < lessWeight + equalWeight){
+                    //The middle pixel has the pivot value, so cut on whichever side of those colors is closer.
+                    boolean before = target - lessWeight < lessWeight + equalWeight - target;
+                    if(less == start || (!before && greater != end)){
+                        return greater;
+                    } else {
+                        return less;
+                    }
+                } else {
+                    target -= lessWeight + equalWeight;
+                    low = greater;
+                }
+            }
+        }
+
+        /**
+         * Swaps two colors, along with their weights.
+         *
+         * @param colors  The colors, as packed ARGB ints.
+         * @param weights The number of times each color appeared.
+         * @param first   The position of the first color.
+         * @param second  The position of the second color.
+         */
+        private static void swap(int[] colors, long[] weights, int first, int second){
+            int color = colors[first];
+            colors[first] = colors[second];
+            colors[second] = color;
+
+            long weight = weights[first];
+            weights[first] = weights[second];
+            weights[second] = weight;
+        }
+    }
+}
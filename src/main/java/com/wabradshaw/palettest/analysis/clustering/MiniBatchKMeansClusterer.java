@@ -0,0 +1,305 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import com.wabradshaw.palettest.analysis.ColorHistogram;
+import com.wabradshaw.palettest.analysis.Tone;
+import com.wabradshaw.palettest.analysis.distance.ColorDistanceFunction;
+import com.wabradshaw.palettest.analysis.distance.CompuPhaseDistance;
+
+import java.awt.Color;
+import java.util.*;
+
+/**
+ * <p>
+ * A {@link HistogramClusteringAlgorithm} which uses mini-batch k-means to define the clusters. Rather than assigning
+ * every distinct color to a cluster on every iteration, each iteration draws a small random batch of pixels, and moves
+ * each cluster towards the pixels in the batch which are closest to it. This makes it much faster than the
+ * {@link WeightedKMeansClusterer} for photographs with hundreds of thousands of distinct colors, while finding very
+ * similar clusters.
+ * </p>
+ * <p>
+ * Pixels are drawn in proportion to the number of times each color appeared. Each cluster has its own learning rate,
+ * which is one over the number of pixels it has been assigned so far, so each cluster is the running mean of its
+ * pixels and settles down as it sees more of them. Clustering stops once no cluster moves more than the tolerance
+ * during a batch, or after the maximum number of batches.
+ * </p>
+ * <p>
+ * The starting clusters are chosen using k-means++ seeding on a sample of pixels. By default the sampling is different
+ * every time. To get the same clusters every time for the same colors, supply a seed to the constructor.
+ * </p>
+ * @see <a href="https://doi.org/10.1145/1772690.1772862">Web-scale k-means clustering</a>
+ */
+public class MiniBatchKMeansClusterer implements HistogramClusteringAlgorithm {
+
+    private static final int DEFAULT_BATCH_SIZE = 1024;
+    private static final int DEFAULT_MAX_BATCHES = 100;
+    private static final double DEFAULT_TOLERANCE = 0.1;
+    private static final int SEEDING_BATCHES = 4;
+
+    private final ColorDistanceFunction distanceFunction;
+    private final Long seed;
+    private final int batchSize;
+    private final int maxBatches;
+    private final double tolerance;
+
+    /**
+     * Default constructor. Sets up a {@link MiniBatchKMeansClusterer} which uses {@link CompuPhaseDistance} to
+     * measure the distance between {@link Color}s.
+     */
+    public MiniBatchKMeansClusterer(){
+        this(new CompuPhaseDistance());
+    }
+
+    /**
+     * Distance function constructor. Sets up a {@link MiniBatchKMeansClusterer} which uses the supplied
+     * {@link ColorDistanceFunction} to measure the difference between {@link Color}s.
+     *
+     * @param distanceFunction The function to use when measuring the distance between {@link Color}s.
+     */
+    public MiniBatchKMeansClusterer(ColorDistanceFunction distanceFunction){
+        this.distanceFunction = distanceFunction;
+        this.seed = null;
+        this.batchSize = DEFAULT_BATCH_SIZE;
+        this.maxBatches = DEFAULT_MAX_BATCHES;
+        this.tolerance = DEFAULT_TOLERANCE;
+    }
+
+    /**
+     * Seeded constructor. Sets up a {@link MiniBatchKMeansClusterer} which uses the supplied
+     * {@link ColorDistanceFunction} to measure the difference between {@link Color}s, and which always draws the same
+     * pixels for the same colors. This makes the results reproducible.
+     *
+     * @param distanceFunction The function to use when measuring the distance between {@link Color}s.
+     * @param seed             The seed for the random choice of pixels.
+     */
+    public MiniBatchKMeansClusterer(ColorDistanceFunction distanceFunction, long seed){
+        this(distanceFunction, seed, DEFAULT_BATCH_SIZE, DEFAULT_MAX_BATCHES, DEFAULT_TOLERANCE);
+    }
+
+    /**
+     * Full configuration constructor. Sets up a seeded {@link MiniBatchKMeansClusterer} with control over the size of
+     * each batch and when to stop. Larger batches give more accurate clusters, but take longer.
+     *
+     * @param distanceFunction The function to use when measuring the distance between {@link Color}s.
+     * @param seed             The seed for the random choice of pixels.
+     * @param batchSize        The number of pixels drawn in each batch. Must be positive.
+     * @param maxBatches       The most batches to run before stopping. Must be positive.
+     * @param tolerance        Clustering stops once no cluster moves further than this during a batch, measured as
+     *                         the Euclidean distance between the red, green, blue and alpha values (0 to 255) of the
+     *                         cluster before and after. Cannot be negative.
+     * @throws IllegalArgumentException If the batch size, maximum batches, or tolerance are out of range.
+     */
+    public MiniBatchKMeansClusterer(ColorDistanceFunction distanceFunction, long seed, int batchSize, int maxBatches,
+                                    double tolerance){
+        if(batchSize <= 0 || maxBatches <= 0 || !(tolerance >= 0)){
+            throw new IllegalArgumentException("A MiniBatchKMeansClusterer was created with a batch size of " +
+                                               batchSize + ", " + maxBatches + " max batches, and a tolerance of " +
+                                               tolerance + ". All three must be positive.");
+        }
+        this.distanceFunction = distanceFunction;
+        this.seed = seed;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.tolerance = tolerance;
+    }
+
+    @Override
+    public int[] cluster(ColorHistogram histogram, int targetClusters) {
+        return cluster(histogram, targetClusters, null);
+    }
+
+    @Override
+    public int[] cluster(ColorHistogram histogram, int targetClusters, int[] startingClusters) {
+        //The histogram is sorted, so the result only depends on the seed, not the order the colors were counted in.
+        if(histogram.size() <= targetClusters){
+            int[] result = new int[histogram.size()];
+            for(int i = 0; i < result.length; i++){
+                result[i] = histogram.getColor(i);
+            }
+            return result;
+        }
+
+        long[] weights = new long[histogram.size()];
+        for(int i = 0; i < weights.length; i++){
+            weights[i] = histogram.getCount(i);
+        }
+        WeightedSampler sampler = new WeightedSampler(weights);
+        Random random = seed == null ? new Random() : new Random(seed);
+
+        //Tones are only created for the colors which are drawn.
+        Tone[] tones = new Tone[histogram.size()];
+
+        double[][] clusters = initialiseClusters(histogram, sampler, tones, startingClusters, targetClusters, random);
+        long[] assigned = new long[clusters.length];
+        int[] batch = new int[batchSize];
+        int[] assignments = new int[batchSize];
+
+        //If every count is zero there are no pixels to draw, so only the starting clusters are returned.
+        for(int batches = 0; batches < maxBatches && sampler.getTotal() > 0; batches++){
+            Tone[] clusterTones = toTones(clusters);
+            for(int s = 0; s < batchSize; s++){
+                batch[s] = sampler.sample(random);
+                assignments[s] = closestCluster(clusterTones, tone(histogram, tones, batch[s]));
+            }
+
+            double[][] previous = new double[clusters.length][];
+            for(int j = 0; j < clusters.length; j++){
+                previous[j] = clusters[j].clone();
+            }
+
+            for(int s = 0; s < batchSize; s++){
+                double[] cluster = clusters[assignments[s]];
+                double rate = 1.0 / ++assigned[assignments[s]];
+                double[] channels = channels(histogram.getColor(batch[s]));
+                for(int c = 0; c < cluster.length; c++){
+                    cluster[c] += rate * (channels[c] - cluster[c]);
+                }
+            }
+
+            if(maxShift(previous, clusters) <= tolerance){
+                break;
+            }
+        }
+
+        return Arrays.stream(toTones(clusters)).mapToInt(tone -> tone.getColor().getRGB()).distinct().toArray();
+    }
+
+    /**
+     * Initialises starting colors for each of the clusters using k-means++ seeding on a sample of pixels. Any
+     * supplied starting clusters are used first, and seeding only picks the rest. Fewer clusters are returned if the
+     * sample doesn't have enough distinct colors, and no pixels are sampled if every count is zero.
+     *
+     * @param histogram      The colors being described.
+     * @param sampler        The sampler used to draw pixels.
+     * @param tones          The {@link Tone} for each color, filled in as colors are drawn.
+     * @param starting       The clusters to start from as packed ARGB ints, or null.
+     * @param targetClusters The number of clusters that should be created.
+     * @param random         The source of randomness used to pick the clusters.
+     * @return               The red, green, blue and alpha of each starting cluster.
+     */
+    private double[][] initialiseClusters(ColorHistogram histogram, WeightedSampler sampler, Tone[] tones,
+                                          int[] starting, int targetClusters, Random random){
+        //Pixels are drawn in proportion to their counts, so each pixel in the sample is weighted equally.
+        Tone[] sample = new Tone[sampler.getTotal() > 0 ? SEEDING_BATCHES * batchSize : 0];
+        for(int s = 0; s < sample.length; s++){
+            sample[s] = tone(histogram, tones, sampler.sample(random));
+        }
+
+        double[] distances = new double[sample.length];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+
+        List<double[]> clusters = new ArrayList<>(targetClusters);
+        int startingCount = starting == null ? 0 : starting.length;
+        int chosen = startingCount > 0 || sample.length == 0 ? -1 : random.nextInt(sample.length);
+        while(clusters.size() < targetClusters){
+            Tone cluster;
+            if(clusters.size() < startingCount){
+                cluster = new Tone("", new Color(starting[clusters.size()], true));
+            } else if(chosen >= 0){
+                cluster = sample[chosen];
+            } else {
+                break;
+            }
+            clusters.add(channels(cluster.getColor().getRGB()));
+
+            double total = 0;
+            for(int s = 0; s < sample.length; s++){
+                double distance = distanceFunction.getDistance(cluster, sample[s]);
+                distances[s] = Math.min(distances[s], distance * distance);
+                total += distances[s];
+            }
+            chosen = KMeansUtils.pickWeighted(distances, total, random);
+        }
+        return clusters.toArray(new double[0][]);
+    }
+
+    /**
+     * Gets the {@link Tone} for a color in the histogram, creating it the first time it is needed.
+     *
+     * @param histogram The colors being described.
+     * @param tones     The {@link Tone}s created so far.
+     * @param index     The position of the color in the histogram.
+     * @return          The {@link Tone} for the color.
+     */
+    private Tone tone(ColorHistogram histogram, Tone[] tones, int index){
+        if(tones[index] == null){
+            tones[index] = new Tone("", new Color(histogram.getColor(index), true));
+        }
+        return tones[index];
+    }
+
+    /**
+     * Finds the closest cluster to a color.
+     *
+     * @param clusters The clusters to choose between.
+     * @param tone     The color to match to a cluster.
+     * @return         The position of the closest cluster.
+     */
+    private int closestCluster(Tone[] clusters, Tone tone){
+        int closest = 0;
+        double closestDistance = Double.POSITIVE_INFINITY;
+        for(int j = 0; j < clusters.length; j++){
+            double distance = distanceFunction.getRankingDistance(clusters[j], tone);
+            if(distance < closestDistance){
+                closest = j;
+                closestDistance = distance;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Rounds each cluster to the nearest {@link Color}.
+     *
+     * @param clusters The red, green, blue and alpha of each cluster.
+     * @return         A {@link Tone} for each cluster.
+     */
+    private Tone[] toTones(double[][] clusters){
+        Tone[] result = new Tone[clusters.length];
+        for(int j = 0; j < clusters.length; j++){
+            result[j] = new Tone("", new Color(channel(clusters[j][0]),
+                                               channel(clusters[j][1]),
+                                               channel(clusters[j][2]),
+                                               channel(clusters[j][3])));
+        }
+        return result;
+    }
+
+    /**
+     * Rounds a channel value to the nearest valid value.
+     *
+     * @param value The channel value.
+     * @return      The value, rounded and limited to the range 0 to 255.
+     */
+    private static int channel(double value){
+        return (int) Math.max(0, Math.min(255, Math.round(value)));
+    }
+
+    /**
+     * Splits a packed ARGB color into its channels.
+     *
+     * @param argb The color as a packed ARGB int.
+     * @return     The red, green, blue and alpha of the color.
+     */
+    private static double[] channels(int argb){
+        return new double[]{(argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF, (argb >>> 24) & 0xFF};
+    }
+
+    /**
+     * Finds how far the furthest moving cluster moved.
+     *
+     * @param before The red, green, blue and alpha of each cluster before the batch.
+     * @param after  The red, green, blue and alpha of each cluster after the batch.
+     * @return       The largest Euclidean distance moved by any cluster.
+     */
+    private static double maxShift(double[][] before, double[][] after){
+        double result = 0;
+        for(int j = 0; j < before.length; j++){
+            double shift = 0;
+            for(int c = 0; c < before[j].length; c++){
+                shift += (after[j][c] - before[j][c]) * (after[j][c] - before[j][c]);
+            }
+            result = Math.max(result, Math.sqrt(shift));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,394 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * <p>
+ * An octree used to quantize colors as they are read, rather than from a count of every color. Each level of the tree
+ * splits the colors by one more bit of red, green and blue, so the leaves at the bottom of the tree each hold a single
+ * color. Every leaf keeps the total red, green, blue and alpha of its pixels, so its average color can be found.
+ * </p>
+ * <p>
+ * The number of nodes in the tree is limited, so the memory used doesn't depend on the number of colors. When the
+ * tree is full, the deepest nodes holding the fewest pixels are merged into single leaves, and any further pixels
+ * which reach those leaves are added to them. The same merging reduces the number of leaves when the colors are
+ * requested.
+ * </p>
+ * <p>
+ * Colors which only differ in their alpha channel always share a leaf, and are averaged.
+ * </p>
+ * <p>
+ * Octrees are not thread safe.
+ * </p>
+ * @see OctreeClusterer
+ * @see <a href="https://en.wikipedia.org/wiki/Octree#Color_quantization">Octree color quantization</a>
+ */
+public final class Octree {
+
+    /**
+     * The smallest node limit which can be used.
+     */
+    public static final int MIN_NODES = 64;
+
+    private static final int MAX_DEPTH = 8;
+    private static final int CACHE_SIZE = 4096;
+
+    private final int maxNodes;
+    private final int[] children;
+    private final long[] sums;
+    private final long[] pixels;
+    private final byte[] depths;
+    private final boolean[] leaves;
+    private final int[] free;
+    private final int[] cachedColors = new int[CACHE_SIZE];
+    private final int[] cachedLeaves = new int[CACHE_SIZE];
+    private int freeCount;
+    private int leafCount;
+    private long pixelCount;
+    private boolean exact = true;
+
+    /**
+     * Creates an empty octree which will hold at most the given number of nodes.
+     *
+     * @param maxNodes The most nodes the tree may hold, at least {@link #MIN_NODES}.
+     */
+    public Octree(int maxNodes){
+        if(maxNodes < MIN_NODES){
+            throw new IllegalArgumentException("An octree needs at least " + MIN_NODES + " nodes, not " + maxNodes);
+        }
+        this.maxNodes = maxNodes;
+        this.children = new int[maxNodes * 8];
+        this.sums = new long[maxNodes * 4];
+        this.pixels = new long[maxNodes];
+        this.depths = new byte[maxNodes];
+        this.leaves = new boolean[maxNodes];
+
+        //Node 0 is always the root, so 0 can mean 'no child'.
+        this.free = new int[maxNodes];
+        for(int node = maxNodes - 1; node > 0; node--){
+            free[freeCount++] = node;
+        }
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param other The octree to copy.
+     */
+    private Octree(Octree other){
+        this.maxNodes = other.maxNodes;
+        this.children = other.children.clone();
+        this.sums = other.sums.clone();
+        this.pixels = other.pixels.clone();
+        this.depths = other.depths.clone();
+        this.leaves = other.leaves.clone();
+        this.free = other.free.clone();
+        this.freeCount = other.freeCount;
+        this.leafCount = other.leafCount;
+        this.pixelCount = other.pixelCount;
+        this.exact = other.exact;
+    }
+
+    /**
+     * Gets the number of nodes currently in the tree, including the root.
+     *
+     * @return The number of nodes, which is never more than the limit.
+     */
+    public int getNodeCount(){
+        return maxNodes - freeCount;
+    }
+
+    /**
+     * Gets the number of leaves currently in the tree. This is the most colors {@link #getColors(int)} can return.
+     *
+     * @return The number of leaves.
+     */
+    public int getLeafCount(){
+        return leafCount;
+    }
+
+    /**
+     * Checks whether every leaf still holds a single RGB color, i.e. no leaves have been merged to stay within the node
+     * limit. While this is true, {@link #getColors(int)} returns the exact colors added whenever there are no more
+     * than the target number of leaves.
+     *
+     * @return True if no leaves have been merged.
+     */
+    public boolean isExact(){
+        return exact;
+    }
+
+    /**
+     * Gets the total number of pixels added to the tree.
+     *
+     * @return The number of pixels.
+     */
+    public long getPixelCount(){
+        return pixelCount;
+    }
+
+    /**
+     * Adds every pixel of an image to the tree. The image is read a row at a time, so no copy of the whole image is
+     * made, and runs of the same color are added together. Every pixel is treated as opaque, in the same way as
+     * {@link com.wabradshaw.palettest.analysis.ColorHistogram#of(BufferedImage)}.
+     *
+     * @param image The image to add.
+     */
+    public void add(BufferedImage image){
+        int width = image.getWidth();
+        int[] row = new int[width];
+        for(int y = 0; y < image.getHeight(); y++){
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for(int x = 0; x < width; x++){
+                row[x] |= 0xFF000000;
+            }
+            int start = 0;
+            for(int x = 1; x <= width; x++){
+                if(x == width || row[x] != row[start]){
+                    add(row[start], x - start);
+                    start = x;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a single pixel to the tree.
+     *
+     * @param argb The color of the pixel, as a packed ARGB int.
+     */
+    public void add(int argb){
+        add(argb, 1);
+    }
+
+    /**
+     * Adds a number of pixels of the same color to the tree.
+     *
+     * @param argb  The color of the pixels, as a packed ARGB int.
+     * @param count The number of pixels. Cannot be negative.
+     */
+    public void add(int argb, long count){
+        if(count < 0){
+            throw new IllegalArgumentException("Pixel counts cannot be negative: " + count);
+        } else if(count == 0){
+            return;
+        }
+
+        //Make sure there is room for a whole new branch before walking down the tree.
+        if(freeCount < MAX_DEPTH){
+            reduce(maxNodes * 3 / 4, Integer.MAX_VALUE);
+        }
+
+        //Recently seen colors skip the walk down the tree. Starting from the root is always safe.
+        int rgb = argb & 0xFFFFFF;
+        int slot = (rgb ^ (rgb >>> 12)) & (CACHE_SIZE - 1);
+        int node = cachedColors[slot] == rgb ? cachedLeaves[slot] : 0;
+
+        //Only the leaves keep counts, so the walk down the tree doesn't write to the branches.
+        int depth = 0;
+        while(!leaves[node]){
+            int position = node * 8 + childIndex(argb, depth);
+            int child = children[position];
+            depth++;
+            if(child == 0){
+                child = free[--freeCount];
+                children[position] = child;
+                depths[child] = (byte) depth;
+                if(depth == MAX_DEPTH){
+                    leaves[child] = true;
+                    leafCount++;
+                }
+            }
+            node = child;
+        }
+        cachedColors[slot] = rgb;
+        cachedLeaves[slot] = node;
+
+        pixelCount += count;
+        pixels[node] += count;
+        sums[node * 4] += ((argb >> 16) & 0xFF) * count;
+        sums[node * 4 + 1] += ((argb >> 8) & 0xFF) * count;
+        sums[node * 4 + 2] += (argb & 0xFF) * count;
+        sums[node * 4 + 3] += ((argb >>> 24) & 0xFF) * count;
+    }
+
+    /**
+     * Gets the average colors of the leaves, after merging leaves until there are at most the target number. The tree
+     * itself is left unchanged, so more pixels can still be added afterwards.
+     *
+     * @param targetColors The most colors to return.
+     * @return             The distinct average color of each leaf as packed ARGB ints, in the order of the tree.
+     */
+    public int[] getColors(int targetColors){
+        Octree reduced = new Octree(this);
+        reduced.reduce(Integer.MAX_VALUE, Math.max(1, targetColors));
+
+        IntStream.Builder result = IntStream.builder();
+        if(pixelCount > 0){
+            reduced.collectColors(0, result);
+        }
+        return result.build().distinct().toArray();
+    }
+
+    /**
+     * Finds which child of a node a color belongs in.
+     *
+     * @param argb  The color, as a packed ARGB int.
+     * @param depth The depth of the node.
+     * @return      The position of the child, from 0 to 7.
+     */
+    private static int childIndex(int argb, int depth){
+        int shift = 7 - depth;
+        return (((argb >> (16 + shift)) & 1) << 2) | (((argb >> (8 + shift)) & 1) << 1) | ((argb >> shift) & 1);
+    }
+
+    /**
+     * Merges nodes into leaves until the tree is within both limits. Nodes are merged from the deepest level up, and
+     * within a level those holding the fewest pixels are merged first.
+     *
+     * @param nodeLimit The most nodes the tree should hold afterwards.
+     * @param leafLimit The most leaves the tree should hold afterwards.
+     */
+    private void reduce(int nodeLimit, int leafLimit){
+        Arrays.fill(cachedLeaves, 0);
+        while((getNodeCount() > nodeLimit || leafCount > leafLimit) && !leaves[0]){
+            //Every child of the deepest branches is a leaf, so their pixel counts can be found from their children.
+            int deepest = 0;
+            List<Integer> branches = new ArrayList<>();
+            for(int node = 0; node < maxNodes; node++){
+                if(isBranch(node)){
+                    if(depths[node] > deepest){
+                        deepest = depths[node];
+                        branches.clear();
+                    }
+                    if(depths[node] == deepest){
+                        branches.add(node);
+                    }
+                }
+            }
+            for(int node : branches){
+                pixels[node] = Arrays.stream(childrenOf(node)).mapToLong(child -> pixels[child]).sum();
+            }
+            branches.sort(Comparator.comparingLong(node -> pixels[node]));
+
+            for(int node : branches){
+                if(getNodeCount() <= nodeLimit && leafCount <= leafLimit){
+                    break;
+                }
+
+                //Merging every child could leave fewer leaves than needed, so only merge the smallest.
+                int[] nodeChildren = childrenOf(node);
+                int excess = leafCount - leafLimit;
+                if(getNodeCount() <= nodeLimit && excess < nodeChildren.length - 1){
+                    mergeSmallest(node, nodeChildren, excess + 1);
+                } else {
+                    merge(node);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether a node is in the tree and has children.
+     *
+     * @param node The node to check.
+     * @return     True if the node is a branch.
+     */
+    private boolean isBranch(int node){
+        return !leaves[node] && (node == 0 || depths[node] > 0);
+    }
+
+    /**
+     * Gets the distinct children of a node. Several positions may share the same child once it has been merged with
+     * its siblings.
+     *
+     * @param node The node whose children are needed.
+     * @return     The children of the node.
+     */
+    private int[] childrenOf(int node){
+        return Arrays.stream(children, node * 8, node * 8 + 8).filter(child -> child != 0).distinct().toArray();
+    }
+
+    /**
+     * Merges all of a node's children into it, so that it becomes a leaf. Its children must all be leaves.
+     *
+     * @param node The node to merge.
+     */
+    private void merge(int node){
+        exact = false;
+        for(int child : childrenOf(node)){
+            absorb(node, child);
+        }
+        Arrays.fill(children, node * 8, node * 8 + 8, 0);
+        leaves[node] = true;
+        leafCount++;
+    }
+
+    /**
+     * Merges the children of a node holding the fewest pixels into a single leaf. Any pixels which would have reached
+     * one of those children reach the merged leaf instead.
+     *
+     * @param node          The node whose children are merged.
+     * @param nodeChildren  The distinct children of the node, which must all be leaves.
+     * @param count         The number of children to merge into one.
+     */
+    private void mergeSmallest(int node, int[] nodeChildren, int count){
+        exact = false;
+        int[] smallest = Arrays.stream(nodeChildren)
+                               .boxed()
+                               .sorted(Comparator.comparingLong(child -> pixels[child]))
+                               .limit(count)
+                               .mapToInt(Integer::intValue)
+                               .toArray();
+        int kept = smallest[count - 1];
+        for(int i = 0; i < count - 1; i++){
+            for(int position = node * 8; position < node * 8 + 8; position++){
+                if(children[position] == smallest[i]){
+                    children[position] = kept;
+                }
+            }
+            pixels[kept] += pixels[smallest[i]];
+            absorb(kept, smallest[i]);
+        }
+    }
+
+    /**
+     * Adds a leaf's color totals to another node, and frees the leaf.
+     *
+     * @param node The node to add the totals to.
+     * @param leaf The leaf to remove.
+     */
+    private void absorb(int node, int leaf){
+        for(int channel = 0; channel < 4; channel++){
+            sums[node * 4 + channel] += sums[leaf * 4 + channel];
+            sums[leaf * 4 + channel] = 0;
+        }
+        pixels[leaf] = 0;
+        depths[leaf] = 0;
+        leaves[leaf] = false;
+        free[freeCount++] = leaf;
+        leafCount--;
+    }
+
+    /**
+     * Adds the average color of every leaf below a node, in the order of the tree.
+     *
+     * @param node   The node to start from.
+     * @param colors The builder to add the colors to, as packed ARGB ints.
+     */
+    private void collectColors(int node, IntStream.Builder colors){
+        if(leaves[node]){
+            double count = pixels[node];
+            colors.add((int) Math.round(sums[node * 4 + 3] / count) << 24
+                       | (int) Math.round(sums[node * 4] / count) << 16
+                       | (int) Math.round(sums[node * 4 + 1] / count) << 8
+                       | (int) Math.round(sums[node * 4 + 2] / count));
+        } else {
+            for(int child : childrenOf(node)){
+                collectColors(child, colors);
+            }
+        }
+    }
+}
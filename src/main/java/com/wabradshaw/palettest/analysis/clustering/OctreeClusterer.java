@@ -0,0 +1,88 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import com.wabradshaw.palettest.analysis.ColorHistogram;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+/**
+ * <p>
+ * An {@link ImageClusteringAlgorithm} which uses an {@link Octree} to define the clusters. Pixels are added to the
+ * tree as they are read, in a single pass, and the memory used is set by the node limit rather than the number of
+ * colors in the image. This makes it suitable for very large images.
+ * </p>
+ * <p>
+ * The clusters are the average colors of the leaves of the tree, after the smallest branches have been merged. This is
+ * fast and deterministic, but the clusters are less accurate than those found by k-means, and there may be fewer of
+ * them than requested.
+ * </p>
+ * <p>
+ * If there are no more colors than the number of clusters requested, the colors themselves are returned. Images are
+ * read as opaque, the same as when their colors are counted with {@link ColorHistogram#of(BufferedImage)}.
+ * </p>
+ */
+public class OctreeClusterer implements ImageClusteringAlgorithm, HistogramClusteringAlgorithm {
+
+    /**
+     * The node limit used by default.
+     */
+    public static final int DEFAULT_MAX_NODES = 16384;
+
+    private final int maxNodes;
+
+    /**
+     * Default constructor. Sets up an {@link OctreeClusterer} which uses trees of up to {@link #DEFAULT_MAX_NODES}
+     * nodes.
+     */
+    public OctreeClusterer(){
+        this(DEFAULT_MAX_NODES);
+    }
+
+    /**
+     * Node limit constructor. Sets up an {@link OctreeClusterer} which uses trees of up to the given number of nodes.
+     * More nodes use more memory, but keep more detail before the palette is chosen.
+     *
+     * @param maxNodes The most nodes each tree may hold, at least {@link Octree#MIN_NODES}.
+     */
+    public OctreeClusterer(int maxNodes){
+        if(maxNodes < Octree.MIN_NODES){
+            throw new IllegalArgumentException("An octree needs at least " + Octree.MIN_NODES + " nodes, not "
+                                               + maxNodes);
+        }
+        this.maxNodes = maxNodes;
+    }
+
+    @Override
+    public int[] cluster(ColorHistogram histogram, int targetClusters) {
+        if(histogram.size() <= targetClusters){
+            int[] colors = new int[histogram.size()];
+            for(int i = 0; i < colors.length; i++){
+                colors[i] = histogram.getColor(i);
+            }
+            return colors;
+        }
+
+        Octree tree = new Octree(maxNodes);
+        for(int i = 0; i < histogram.size(); i++){
+            tree.add(histogram.getColor(i), histogram.getCount(i));
+        }
+        return tree.getColors(targetClusters);
+    }
+
+    @Override
+    public Collection<Color> cluster(BufferedImage image, int targetClusters) {
+        Octree tree = new Octree(maxNodes);
+        tree.add(image);
+
+        //Once leaves have been merged, the colors can only be returned exactly by counting them.
+        int[] clusters = tree.isExact() || tree.getLeafCount() > targetClusters
+                         ? tree.getColors(targetClusters)
+                         : cluster(ColorHistogram.of(image), targetClusters);
+        return Arrays.stream(clusters)
+                     .mapToObj(argb -> new Color(argb, true))
+                     .collect(Collectors.toList());
+    }
+}
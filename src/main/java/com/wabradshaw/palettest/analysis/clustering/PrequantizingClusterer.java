@@ -0,0 +1,65 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import com.wabradshaw.palettest.analysis.ColorHistogram;
+
+/**
+ * <p>
+ * A {@link HistogramClusteringAlgorithm} which reduces the colors of an image before they are clustered by another
+ * {@link ClusteringAlgorithm}. Similar colors are binned together using {@link ColorHistogram#quantize(int)}, keeping
+ * the weighted mean color of each bin, and only the reduced histogram is passed on.
+ * </p>
+ * <p>
+ * Noisy photographs can contain hundreds of thousands of distinct colors, most of which differ by only a few steps in
+ * each channel. Binning them to 5 bits per channel typically leaves 10 to 100 times fewer colors, so algorithms whose
+ * cost grows with the number of colors, such as {@link WeightedKMeansClusterer}, become much faster while the clusters
+ * they find barely change. Fewer bits are faster still, but start to blur colors which are close together.
+ * </p>
+ */
+public class PrequantizingClusterer implements HistogramClusteringAlgorithm {
+
+    /**
+     * The number of bits kept for each channel by default.
+     */
+    public static final int DEFAULT_BITS = 5;
+
+    private final HistogramClusteringAlgorithm algorithm;
+    private final int bits;
+
+    /**
+     * Default constructor. Sets up a {@link PrequantizingClusterer} which keeps {@link #DEFAULT_BITS} bits per channel
+     * before clustering the colors with the supplied algorithm.
+     *
+     * @param algorithm The {@link ClusteringAlgorithm} used to cluster the reduced colors.
+     */
+    public PrequantizingClusterer(ClusteringAlgorithm algorithm){
+        this(algorithm, DEFAULT_BITS);
+    }
+
+    /**
+     * Bit depth constructor. Sets up a {@link PrequantizingClusterer} which keeps the given number of bits per channel
+     * before clustering the colors with the supplied algorithm.
+     *
+     * @param algorithm The {@link ClusteringAlgorithm} used to cluster the reduced colors.
+     * @param bits      The number of bits kept for each channel, from 1 to 8.
+     */
+    public PrequantizingClusterer(ClusteringAlgorithm algorithm, int bits){
+        if(algorithm == null){
+            throw new IllegalArgumentException("A PrequantizingClusterer needs an algorithm to cluster the colors.");
+        }
+        if(bits < 1 || bits > 8){
+            throw new IllegalArgumentException("Colors can only be quantized to 1 to 8 bits per channel, not " + bits);
+        }
+        this.algorithm = HistogramClusteringAlgorithm.adapt(algorithm);
+        this.bits = bits;
+    }
+
+    @Override
+    public int[] cluster(ColorHistogram histogram, int targetClusters) {
+        return algorithm.cluster(histogram.quantize(bits), targetClusters);
+    }
+
+    @Override
+    public int[] cluster(ColorHistogram histogram, int targetClusters, int[] startingClusters) {
+        return algorithm.cluster(histogram.quantize(bits), targetClusters, startingClusters);
+    }
+}
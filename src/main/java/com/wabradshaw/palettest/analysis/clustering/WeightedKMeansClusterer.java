@@ -1,24 +1,72 @@
 package com.wabradshaw.palettest.analysis.clustering;
 
+import com.wabradshaw.palettest.analysis.ColorHistogram;
 import com.wabradshaw.palettest.analysis.Tone;
 import com.wabradshaw.palettest.analysis.distance.ColorDistanceFunction;
 import com.wabradshaw.palettest.analysis.distance.CompuPhaseDistance;
 
 import java.awt.Color;
 import java.util.*;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
-import static java.util.stream.Collectors.groupingBy;
-import static java.util.stream.Collectors.toMap;
+import static com.wabradshaw.palettest.analysis.clustering.KMeansUtils.chunks;
+import static com.wabradshaw.palettest.analysis.clustering.KMeansUtils.inChunks;
 
 /**
- * A {@link ClusteringAlgorithm} which uses a weighted version of k-means clustering to define the clusters.
+ * <p>
+ * A {@link HistogramClusteringAlgorithm} which uses a weighted version of k-means clustering to define the clusters.
+ * </p>
+ * <p>
+ * The starting clusters are chosen using weighted k-means++ seeding. The first cluster is picked at random, with each
+ * color weighted by the number of times it appeared. Each following cluster is picked with a probability proportional
+ * to the count of the color multiplied by its squared distance from the nearest cluster so far. This spreads the
+ * starting clusters across the image, so fewer iterations are needed to converge.
+ * </p>
+ * <p>
+ * By default the seeding is different every time. To get the same clusters every time for the same colors, supply a
+ * seed to the constructor. Alternatively, the starting clusters can be found by another {@link ClusteringAlgorithm},
+ * such as a {@link MedianCutClusterer} or a {@link WuClusterer}, which k-means then refines. When starting clusters
+ * are supplied, for example the palette of the previous frame of an animation, k-means refines those instead, and
+ * k-means++ only picks any clusters still needed.
+ * </p>
+ * <p>
+ * If the {@link ColorDistanceFunction} is a metric, bounds on the distance between each color and the clusters are
+ * kept between iterations, so that most distances don't need to be measured again once the clusters settle down.
+ * </p>
+ * <p>
+ * By default, large sets of colors are split into fixed-size chunks which are clustered in parallel. Each chunk sums
+ * the colors assigned to each cluster separately, then the sums are combined in order. Because the chunks are the
+ * same either way, a parallel clusterer finds exactly the same clusters as a sequential one with the same seed. The
+ * {@link ColorDistanceFunction} may be called from several threads at once, so it must be thread safe.
+ * </p>
+ * <p>
+ * Clustering stops once no cluster moves further than the tolerance during an iteration, or after the maximum number
+ * of iterations. Movement is measured as the straight line distance between red, green, blue and alpha values,
+ * whichever {@link ColorDistanceFunction} is used, so the default tolerance of 1 stops once each cluster is within a
+ * single step of one channel of where it was. If a cluster ends up with no colors, it is moved to the color which is
+ * worst described by the other clusters, so that the result still has as many clusters as requested wherever there
+ * are enough distinct colors.
+ * </p>
+ * @see <a href="https://en.wikipedia.org/wiki/K-means%2B%2B">k-means++</a>
  */
-public class WeightedKMeansClusterer implements ClusteringAlgorithm {
+public class WeightedKMeansClusterer implements HistogramClusteringAlgorithm {
+
+    /**
+     * The distance a cluster may move during an iteration without clustering continuing, used by default.
+     */
+    public static final double DEFAULT_TOLERANCE = 1;
+
+    /**
+     * The maximum number of iterations used by default.
+     */
+    public static final int DEFAULT_MAX_ITERATIONS = 20;
 
     private final ColorDistanceFunction distanceFunction;
-    private final int maxAttempts = 20;
+    private final Long seed;
+    private final boolean parallel;
+    private final HistogramClusteringAlgorithm seeder;
+    private final double tolerance;
+    private final int maxIterations;
 
     /**
      * Default constructor. Sets up a {@link WeightedKMeansClusterer} which uses {@link CompuPhaseDistance} to
@@ -35,137 +83,545 @@ public class WeightedKMeansClusterer implements ClusteringAlgorithm {
      * @param distanceFunction The function to use when measuring the distance between {@link Color}s.
      */
     public WeightedKMeansClusterer(ColorDistanceFunction distanceFunction){
+        this(distanceFunction, null, true, null, DEFAULT_TOLERANCE, DEFAULT_MAX_ITERATIONS);
+    }
+
+    /**
+     * Seeded constructor. Sets up a {@link WeightedKMeansClusterer} which uses the supplied
+     * {@link ColorDistanceFunction} to measure the difference between {@link Color}s, and which always picks the same
+     * starting clusters for the same colors. This makes the results reproducible.
+     *
+     * @param distanceFunction The function to use when measuring the distance between {@link Color}s.
+     * @param seed             The seed for the random choice of starting clusters.
+     */
+    public WeightedKMeansClusterer(ColorDistanceFunction distanceFunction, long seed){
+        this(distanceFunction, seed, true);
+    }
+
+    /**
+     * Full configuration constructor. Sets up a seeded {@link WeightedKMeansClusterer} which uses the supplied
+     * {@link ColorDistanceFunction}, and controls whether large sets of colors are clustered in parallel. The
+     * clusters found are the same either way.
+     *
+     * @param distanceFunction The function to use when measuring the distance between {@link Color}s.
+     * @param seed             The seed for the random choice of starting clusters.
+     * @param parallel         Whether to cluster large sets of colors using multiple threads.
+     */
+    public WeightedKMeansClusterer(ColorDistanceFunction distanceFunction, long seed, boolean parallel){
+        this(distanceFunction, seed, parallel, DEFAULT_TOLERANCE, DEFAULT_MAX_ITERATIONS);
+    }
+
+    /**
+     * Convergence constructor. Sets up a seeded {@link WeightedKMeansClusterer} which uses the supplied
+     * {@link ColorDistanceFunction}, and controls when clustering stops. A larger tolerance or fewer iterations make
+     * clustering faster, but the clusters may be further from the best ones.
+     *
+     * @param distanceFunction The function to use when measuring the distance between {@link Color}s.
+     * @param seed             The seed for the random choice of starting clusters.
+     * @param parallel         Whether to cluster large sets of colors using multiple threads.
+     * @param tolerance        Clustering stops once no cluster moves further than this in red, green, blue and
+     *                         alpha during an iteration. Cannot be negative.
+     * @param maxIterations    The most iterations to run, at least 1.
+     */
+    public WeightedKMeansClusterer(ColorDistanceFunction distanceFunction, long seed, boolean parallel,
+                                   double tolerance, int maxIterations){
+        this(distanceFunction, (Long) seed, parallel, null, tolerance, maxIterations);
+    }
+
+    /**
+     * Seeding algorithm constructor. Sets up a {@link WeightedKMeansClusterer} which uses the supplied
+     * {@link ColorDistanceFunction}, and which starts from the clusters found by another {@link ClusteringAlgorithm}
+     * instead of k-means++ seeding. If the seeding algorithm is deterministic, such as a {@link MedianCutClusterer},
+     * then so are the results.
+     *
+     * @param distanceFunction The function to use when measuring the distance between {@link Color}s.
+     * @param seeder           The algorithm used to find the starting clusters.
+     */
+    public WeightedKMeansClusterer(ColorDistanceFunction distanceFunction, ClusteringAlgorithm seeder){
+        this(distanceFunction, null, true, seeder, DEFAULT_TOLERANCE, DEFAULT_MAX_ITERATIONS);
+    }
+
+    /**
+     * Internal constructor, used by all of the others.
+     *
+     * @param distanceFunction The function to use when measuring the distance between {@link Color}s.
+     * @param seed             The seed for the random choice of starting clusters, or null for a random seed.
+     * @param parallel         Whether to cluster large sets of colors using multiple threads.
+     * @param seeder           The algorithm used to find the starting clusters, or null to use k-means++.
+     * @param tolerance        Clustering stops once no cluster moves further than this during an iteration.
+     * @param maxIterations    The most iterations to run.
+     */
+    private WeightedKMeansClusterer(ColorDistanceFunction distanceFunction, Long seed, boolean parallel,
+                                    ClusteringAlgorithm seeder, double tolerance, int maxIterations){
+        if(!(tolerance >= 0) || maxIterations < 1){
+            throw new IllegalArgumentException("Invalid convergence settings: a tolerance of " + tolerance + " and " +
+                                               maxIterations + " max iterations. The tolerance can't be negative, " +
+                                               "and there must be at least one iteration.");
+        }
         this.distanceFunction = distanceFunction;
+        this.seed = seed;
+        this.parallel = parallel;
+        this.seeder = seeder == null ? null : HistogramClusteringAlgorithm.adapt(seeder);
+        this.tolerance = tolerance;
+        this.maxIterations = maxIterations;
+    }
+
+    @Override
+    public int[] cluster(ColorHistogram histogram, int targetClusters) {
+        return cluster(histogram, targetClusters, null);
+    }
+
+    @Override
+    public int[] cluster(ColorHistogram histogram, int targetClusters, int[] startingClusters) {
+        return run(histogram, targetClusters, startingClusters).getClusters();
     }
 
     @Override
-    public Collection<Color> cluster(Map<Color, Integer> colorCounts, int targetClusters) {
-        //Using a map of tones to facilitate distance functions.
-        Map<Tone, Integer> toneCounts = colorCounts.entrySet()
-                                                   .stream()
-                                                   .collect(Collectors.toMap(e -> new Tone("", e.getKey()),
-                                                                             Map.Entry::getValue));
+    public ClusterAssignment clusterAndAssign(ColorHistogram histogram, int targetClusters) {
+        return run(histogram, targetClusters, null);
+    }
 
-        List<Tone> clusters = initialiseClusters(toneCounts, targetClusters);
+    /**
+     * Runs k-means on the colors in a histogram.
+     *
+     * @param histogram        The individual colors making up an image, and the number of times they each appeared.
+     * @param targetClusters   The number of target color clusters to use to describe the image.
+     * @param startingClusters The clusters to start from as packed ARGB ints, or null.
+     * @return                 The final clusters, and the cluster each color was last assigned to.
+     */
+    private ClusterAssignment run(ColorHistogram histogram, int targetClusters, int[] startingClusters) {
+        //The histogram is sorted, so the result only depends on the seed, not the order the colors were counted in.
+        int[] colors = new int[histogram.size()];
+        long[] weights = new long[histogram.size()];
+        for(int i = 0; i < colors.length; i++){
+            colors[i] = histogram.getColor(i);
+            weights[i] = histogram.getCount(i);
+        }
 
-        int attempts = 0;
-        List<Tone> oldClusters = new ArrayList<>();
+        //Using tones to facilitate distance functions.
+        Tone[] tones = new Tone[colors.length];
+        inChunks(tones.length, parallel, (chunk, start, end) -> {
+            for(int i = start; i < end; i++){
+                tones[i] = new Tone("", new Color(colors[i], true));
+            }
+        });
 
-        while(attempts < maxAttempts && !oldClusters.containsAll(clusters)){
-            oldClusters = clusters;
-            attempts++;
+        Random random = seed == null ? new Random() : new Random(seed);
+        int[] assignments = new int[tones.length];
+        double[] distances = new double[tones.length];
+        List<Tone> clusters;
+        if(seeder == null || (startingClusters != null && startingClusters.length > 0)){
+            List<Tone> starting = new ArrayList<>();
+            if(startingClusters != null){
+                for(int i = 0; i < startingClusters.length && i < targetClusters; i++){
+                    starting.add(new Tone("", new Color(startingClusters[i], true)));
+                }
+            }
+            clusters = initialiseClusters(tones, weights, starting, targetClusters, random, assignments, distances);
+        } else {
+            clusters = Arrays.stream(seeder.cluster(histogram, targetClusters))
+                             .mapToObj(argb -> new Tone("", new Color(argb, true)))
+                             .collect(Collectors.toList());
+            Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        }
+        if(clusters.isEmpty()){
+            Arrays.fill(assignments, ClusterAssignment.UNASSIGNED);
+            return new ClusterAssignment(new int[0], assignments);
+        }
 
-            Map<Tone, Map<Tone, Integer>> partitions = assignClusters(clusters, toneCounts);
+        Bounds bounds = distanceFunction.isMetric() ? new Bounds(distances) : null;
 
-            clusters = updateClusters(partitions);
+        double shift = Double.POSITIVE_INFINITY;
+        for(int iteration = 0; iteration < maxIterations && shift > tolerance && !clusters.isEmpty(); iteration++){
+            if(bounds == null){
+                assignClusters(clusters, tones, assignments);
+            } else {
+                bounds.assignClusters(clusters, tones, assignments);
+            }
+
+            double[] shifts = new double[clusters.size()];
+            clusters = updateClusters(clusters, tones, colors, weights, assignments, bounds, shifts);
+            shift = Arrays.stream(shifts).max().orElse(0);
         }
 
-        return clusters.stream().map(tone -> tone.getColor()).collect(Collectors.toList());
+        return new ClusterAssignment(clusters.stream().mapToInt(tone -> tone.getColor().getRGB()).toArray(),
+                                     assignments);
     }
 
     /**
-     * Initialises starting colors for each of the clusters.
+     * <p>
+     * Initialises starting colors for each of the clusters using weighted k-means++ seeding. Any supplied starting
+     * clusters are used first, and seeding only picks the rest. Fewer clusters are returned if there aren't enough
+     * distinct colors.
+     * </p>
+     * <p>
+     * If the distance function is a metric, a color is only measured against a new cluster if the new cluster could
+     * be closer than its current nearest one. That is, unless the clusters are at least twice the color's current
+     * distance apart.
+     * </p>
      *
-     * @param colorCounts    The colors being described and the number of times they each appeared.
+     * @param tones          The colors being described.
+     * @param weights        The number of times each color appeared.
+     * @param starting       The clusters to start from, no more than the target number.
      * @param targetClusters The number of clusters that should be created.
+     * @param random         The source of randomness used to pick the clusters.
+     * @param nearest        Filled with the position of the closest cluster to each color.
+     * @param distances      Filled with the distance from each color to its closest cluster.
      * @return               A list of colors serving as the initial set of clusters.
      */
-    private List<Tone> initialiseClusters(Map<Tone, Integer> colorCounts, int targetClusters) {
-        List<Tone> possibleTones = new ArrayList<>(colorCounts.keySet());
-        Collections.shuffle(possibleTones);
-        return possibleTones.subList(0, targetClusters);
+    private List<Tone> initialiseClusters(Tone[] tones, long[] weights, List<Tone> starting, int targetClusters,
+                                          Random random, int[] nearest, double[] distances) {
+        boolean metric = distanceFunction.isMetric();
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+
+        List<Tone> clusters = new ArrayList<>(targetClusters);
+        KMeansUtils.seedClusters(weights, starting.size(), targetClusters, random, parallel, new KMeansUtils.Seeding(){
+            private Tone cluster;
+            private double[] gaps;
+
+            @Override
+            public void addCluster(int position, int color){
+                cluster = color < 0 ? starting.get(position) : tones[color];
+                gaps = new double[position];
+                if(metric){
+                    for(int j = 0; j < gaps.length; j++){
+                        gaps[j] = distanceFunction.getDistance(clusters.get(j), cluster);
+                    }
+                }
+                clusters.add(cluster);
+            }
+
+            @Override
+            public double updateChance(int position, int i){
+                if(!metric || gaps.length == 0 || gaps[nearest[i]] < 2 * distances[i]){
+                    double distance = distanceFunction.getDistance(cluster, tones[i]);
+                    if(distance < distances[i]){
+                        distances[i] = distance;
+                        nearest[i] = position;
+                    }
+                }
+                return weights[i] * distances[i] * distances[i];
+            }
+        });
+        return clusters;
     }
 
     /**
      * Finds the color cluster which best describes each color defined in the image.
      *
      * @param clusters    The color clusters that can be used.
-     * @param colorCounts The colors being described and the number of times they each appeared.
-     * @return            A map of color clusters and all of the color counts that are closest to that cluster.
+     * @param tones       The colors being described.
+     * @param assignments Filled with the position of the closest cluster to each color.
      */
-    private Map<Tone,Map<Tone,Integer>> assignClusters(List<Tone> clusters, Map<Tone, Integer> colorCounts) {
-        return colorCounts.entrySet()
-                          .stream()
-                          .map(cC -> assignCluster(clusters, cC.getKey(), cC.getValue()))
-                          .collect(groupingBy(assignment -> assignment.cluster,
-                                              toMap(closestTone -> closestTone.color,
-                                              assignment -> assignment.count)));
+    private void assignClusters(List<Tone> clusters, Tone[] tones, int[] assignments) {
+        inChunks(tones.length, parallel, (chunk, start, end) -> {
+            for(int i = start; i < end; i++){
+                assignments[i] = closestCluster(clusters, tones[i]);
+            }
+        });
     }
 
     /**
-     * Updates the colors describing each cluster so that each is the average of the whole cluster.
+     * Finds the position of the color cluster which best describes a single color.
      *
-     * @param assignments A map of clusters and the map of individual colors and their counts assigned to each cluster.
-     * @return            A list of Tones accurately describing the average color for each pixel.
+     * @param clusters The color clusters that can be used. Cannot be empty.
+     * @param tone     The color being described.
+     * @return         The position of the closest cluster.
      */
-    private List<Tone> updateClusters(Map<Tone, Map<Tone, Integer>> assignments) {
-        return assignments.values()
-                          .stream()
-                          .map(colorCounts -> getAverageColor(colorCounts))
-                          .collect(Collectors.toList());
+    private int closestCluster(List<Tone> clusters, Tone tone) {
+        int closest = 0;
+        double closestDistance = Double.POSITIVE_INFINITY;
+        for(int j = 0; j < clusters.size(); j++){
+            double distance = distanceFunction.getRankingDistance(clusters.get(j), tone);
+            if(distance < closestDistance){
+                closest = j;
+                closestDistance = distance;
+            }
+        }
+        return closest;
     }
 
     /**
-     * Finds the average color for a particular cluster.
+     * Updates the colors describing each cluster so that each is the weighted average of the whole cluster. Clusters
+     * which weren't assigned any colors are moved to the colors which are worst described by the other clusters. If
+     * there aren't enough such colors, the remaining empty clusters are removed, and the assignments are updated to
+     * match. Colors left in a removed cluster never appeared, and are moved to the closest remaining cluster. If no
+     * clusters remain, they are {@link ClusterAssignment#UNASSIGNED}.
      *
-     * @param colorCounts The colors being described by the cluster and the number of times they each appeared.
-     * @return            The mean color out of all of the colors assigned to the cluster.
+     * @param clusters    The current color clusters.
+     * @param tones       The colors being described.
+     * @param colors      The colors being described, as packed ARGB ints.
+     * @param weights     The number of times each color appeared.
+     * @param assignments The position of the cluster each color is assigned to.
+     * @param bounds      The distance bounds to update as the clusters move, or null if they aren't being kept.
+     * @param shifts      Filled with how far each cluster moved in red, green, blue and alpha. Removed clusters are
+     *                    treated as not moving.
+     * @return            A list of Tones accurately describing the average color for each cluster.
      */
-    private Tone getAverageColor(Map<Tone, Integer> colorCounts) {
-        int pixels = colorCounts.values().stream().mapToInt(Integer::intValue).sum();
+    private List<Tone> updateClusters(List<Tone> clusters, Tone[] tones, int[] colors, long[] weights,
+                                      int[] assignments, Bounds bounds, double[] shifts) {
+        //Each chunk sums the red, green, blue, alpha and pixels of each cluster, in groups of five.
+        int size = clusters.size();
+        long[][] chunkSums = new long[chunks(colors.length)][];
+        inChunks(colors.length, parallel, (chunk, start, end) -> {
+            long[] sums = new long[size * 5];
+            for(int i = start; i < end; i++){
+                int offset = assignments[i] * 5;
+                long weight = weights[i];
+                sums[offset] += ((colors[i] >> 16) & 0xFF) * weight;
+                sums[offset + 1] += ((colors[i] >> 8) & 0xFF) * weight;
+                sums[offset + 2] += (colors[i] & 0xFF) * weight;
+                sums[offset + 3] += ((colors[i] >>> 24) & 0xFF) * weight;
+                sums[offset + 4] += weight;
+            }
+            chunkSums[chunk] = sums;
+        });
+
+        long[] sums = new long[size * 5];
+        for(long[] chunk : chunkSums){
+            for(int s = 0; s < sums.length; s++){
+                sums[s] += chunk[s];
+            }
+        }
 
-        double averageRed = averageColorChannel(colorCounts, pixels, c -> c.getRed());
-        double averageGreen = averageColorChannel(colorCounts, pixels, c -> c.getGreen());
-        double averageBlue = averageColorChannel(colorCounts, pixels, c -> c.getBlue());
-        double averageAlpha = averageColorChannel(colorCounts, pixels, c -> c.getAlpha());
+        Tone[] averages = new Tone[size];
+        int empty = 0;
+        for(int j = 0; j < size; j++){
+            long pixels = sums[j * 5 + 4];
+            if(pixels == 0){
+                empty++;
+            } else {
+                averages[j] = new Tone("", new Color((int) (sums[j * 5] / pixels),
+                                                     (int) (sums[j * 5 + 1] / pixels),
+                                                     (int) (sums[j * 5 + 2] / pixels),
+                                                     (int) (sums[j * 5 + 3] / pixels)));
+            }
+        }
+
+        if(empty > 0){
+            int[] worst = worstDescribed(averages, tones, weights, assignments, empty);
+            for(int j = 0, w = 0; j < size && w < worst.length; j++){
+                if(averages[j] == null){
+                    averages[j] = tones[worst[w++]];
+                }
+            }
+        }
+
+        List<Tone> updated = new ArrayList<>(size);
+        int[] positions = new int[size];
+        double[] drift = new double[size];
+        for(int j = 0; j < size; j++){
+            if(averages[j] == null){
+                positions[j] = ClusterAssignment.UNASSIGNED;
+            } else {
+                positions[j] = updated.size();
+                shifts[j] = shift(clusters.get(j).getColor(), averages[j].getColor());
+                drift[j] = bounds == null ? 0 : distanceFunction.getDistance(clusters.get(j), averages[j]);
+                updated.add(averages[j]);
+            }
+        }
 
-        return new Tone("", new Color((int) averageRed, (int) averageGreen, (int) averageBlue, (int) averageAlpha));
+        if(bounds != null){
+            bounds.moveClusters(assignments, drift);
+        }
+        if(updated.size() < size){
+            inChunks(assignments.length, parallel, (chunk, start, end) -> {
+                for(int i = start; i < end; i++){
+                    assignments[i] = positions[assignments[i]];
+                    if(assignments[i] == ClusterAssignment.UNASSIGNED && !updated.isEmpty()){
+                        assignments[i] = closestCluster(updated, tones[i]);
+                        if(bounds != null){
+                            bounds.reset(i);
+                        }
+                    }
+                }
+            });
+        }
+        return updated;
     }
 
     /**
-     * Takes color counts and averages the value for a particular channel (i.e. red, blue, green or alpha).
+     * Measures how far a cluster moved, as the straight line distance between its red, green, blue and alpha values.
+     * Unlike the {@link ColorDistanceFunction}, this means the same thing whichever function is used.
      *
-     * @param colorCounts     The colors being described by a cluster and the number of times they each appeared.
-     * @param pixels          The total number of pixels being described.
-     * @param channelAccessor A function that gets the color channel from the Color object itself.
-     * @return                The average for that particular color channel.
+     * @param from The color of the cluster before it moved.
+     * @param to   The color of the cluster after it moved.
+     * @return     The distance the cluster moved.
      */
-    private double averageColorChannel(Map<Tone, Integer> colorCounts, int pixels, Function<Color, Integer> channelAccessor){
-        return colorCounts.entrySet()
-                          .stream()
-                          .mapToInt(e -> channelAccessor.apply(e.getKey().getColor()) * e.getValue())
-                          .sum() * 1.0 / pixels;
+    private static double shift(Color from, Color to){
+        double red = from.getRed() - to.getRed();
+        double green = from.getGreen() - to.getGreen();
+        double blue = from.getBlue() - to.getBlue();
+        double alpha = from.getAlpha() - to.getAlpha();
+        return Math.sqrt(red * red + green * green + blue * blue + alpha * alpha);
     }
 
     /**
-     * A triple class used to store the closest cluster to a particular color, and the number of times the color appeared.
+     * Finds the colors which are worst described by the clusters they are assigned to. Each color's error is its
+     * count multiplied by its squared distance from its cluster, so colors which are far from their cluster and
+     * common are picked first. Colors which exactly match their cluster, or which never appeared, are never picked.
+     *
+     * @param clusters    The updated color clusters, with nulls for the clusters which weren't assigned any colors.
+     * @param tones       The colors being described.
+     * @param weights     The number of times each color appeared.
+     * @param assignments The position of the cluster each color is assigned to.
+     * @param count       The number of colors to pick.
+     * @return            The positions of up to count colors, worst first.
      */
-    private class Assignment {
-        private final Tone cluster;
-        private final Tone color;
-        private final Integer count;
-
-        Assignment(Tone cluster, Tone color, int count){
-            this.cluster = cluster;
-            this.color = color;
-            this.count = count;
-        }
+    private int[] worstDescribed(Tone[] clusters, Tone[] tones, long[] weights, int[] assignments, int count){
+        double[] errors = new double[tones.length];
+        inChunks(tones.length, parallel, (chunk, start, end) -> {
+            for(int i = start; i < end; i++){
+                //Colors which never appeared may be all that was assigned to an empty cluster, which has no color.
+                if(weights[i] == 0 || clusters[assignments[i]] == null){
+                    errors[i] = 0;
+                } else {
+                    double distance = distanceFunction.getDistance(clusters[assignments[i]], tones[i]);
+                    errors[i] = weights[i] * distance * distance;
+                }
+            }
+        });
+        return KMeansUtils.worstDescribed(errors, count);
     }
 
     /**
-     * Finds the cluster {@link Tone} closest to the target color and creates a Assignment triple storing this data.
-     *
-     * @param clusters The list of cluster centers.
-     * @param color    The Color to match to a cluster.
-     * @param count    The number of times the Color appeared.
-     * @return         A tuple containing the Color, how many times it appeared, and most importantly, the closest
-     *                 cluster.
-     */
-    private Assignment assignCluster(List<Tone> clusters, Tone color, Integer count) {
-        Tone cluster = clusters.stream()
-                               .max((o1, o2) -> (int) Math.signum(distanceFunction.getDistance(o2, color) -
-                                                                  distanceFunction.getDistance(o1, color)))
-                               .get();
-        return new Assignment(cluster, color, count);
+     * <p>
+     * Distance bounds for each color, used to skip most of the distance calculations once the clusters stop moving
+     * much. This is Hamerly's variant of k-means, which relies on the triangle inequality, so it is only used with
+     * metric {@link ColorDistanceFunction}s.
+     * </p>
+     * <p>
+     * For each color, the bounds hold an upper bound on the distance to its assigned cluster, and a lower bound on the
+     * distance to every other cluster. If the upper bound is below the lower bound, or below half the distance from
+     * the assigned cluster to the next closest cluster, then the color can't have changed cluster. When a cluster
+     * moves, the bounds are loosened by the distance it moved, rather than being recalculated.
+     * </p>
+     * @see <a href="https://doi.org/10.1137/1.9781611972801.12">Making k-means even faster</a>
+     */
+    private class Bounds {
+        private final double[] upper;
+        private final double[] lower;
+
+        /**
+         * Creates a set of bounds from the distance of each color to the cluster it is currently assigned to. Nothing
+         * is known about the other clusters yet.
+         *
+         * @param distances The distance from each color to its assigned cluster. This array is used as-is.
+         */
+        Bounds(double[] distances){
+            this.upper = distances;
+            this.lower = new double[distances.length];
+        }
+
+        /**
+         * Finds the color cluster which best describes each color, only measuring distances when the bounds can't
+         * rule out a change of cluster.
+         *
+         * @param clusters    The color clusters that can be used.
+         * @param tones       The colors being described.
+         * @param assignments The current cluster of each color, updated with the closest cluster to each color.
+         */
+        void assignClusters(List<Tone> clusters, Tone[] tones, int[] assignments){
+            double[] halfGaps = new double[clusters.size()];
+            Arrays.fill(halfGaps, Double.POSITIVE_INFINITY);
+            for(int j = 0; j < clusters.size(); j++){
+                for(int k = j + 1; k < clusters.size(); k++){
+                    double halfGap = distanceFunction.getDistance(clusters.get(j), clusters.get(k)) / 2;
+                    halfGaps[j] = Math.min(halfGaps[j], halfGap);
+                    halfGaps[k] = Math.min(halfGaps[k], halfGap);
+                }
+            }
+
+            inChunks(tones.length, parallel, (chunk, start, end) -> {
+                for(int i = start; i < end; i++){
+                    assignCluster(clusters, tones, assignments, halfGaps, i);
+                }
+            });
+        }
+
+        /**
+         * Finds the color cluster which best describes a single color, only measuring distances when the bounds can't
+         * rule out a change of cluster.
+         *
+         * @param clusters    The color clusters that can be used.
+         * @param tones       The colors being described.
+         * @param assignments The current cluster of each color, updated with the closest cluster to the color.
+         * @param halfGaps    Half the distance from each cluster to the next closest cluster.
+         * @param i           The position of the color.
+         */
+        private void assignCluster(List<Tone> clusters, Tone[] tones, int[] assignments, double[] halfGaps, int i){
+            double bound = Math.max(halfGaps[assignments[i]], lower[i]);
+            if(upper[i] <= bound){
+                return;
+            }
+            upper[i] = distanceFunction.getDistance(clusters.get(assignments[i]), tones[i]);
+            if(upper[i] <= bound){
+                return;
+            }
+
+            //Ranking distances keep the same order, so only the two closest need the exact distance.
+            int closest = -1;
+            int second = -1;
+            double closestDistance = Double.POSITIVE_INFINITY;
+            double secondDistance = Double.POSITIVE_INFINITY;
+            for(int j = 0; j < clusters.size(); j++){
+                double distance = distanceFunction.getRankingDistance(clusters.get(j), tones[i]);
+                if(distance < closestDistance){
+                    second = closest;
+                    secondDistance = closestDistance;
+                    closest = j;
+                    closestDistance = distance;
+                } else if(distance < secondDistance){
+                    second = j;
+                    secondDistance = distance;
+                }
+            }
+            assignments[i] = closest;
+            upper[i] = distanceFunction.getDistance(clusters.get(closest), tones[i]);
+            lower[i] = second < 0 ? Double.POSITIVE_INFINITY
+                                  : distanceFunction.getDistance(clusters.get(second), tones[i]);
+        }
+
+        /**
+         * Loosens the bounds after the clusters have moved. Clusters which were removed don't affect the bounds, as
+         * removing a cluster can only make the other clusters further away.
+         *
+         * @param assignments The cluster each color is assigned to, before any clusters were removed.
+         * @param drift       The distance each cluster moved.
+         */
+        void moveClusters(int[] assignments, double[] drift){
+            int furthest = -1;
+            double maxDrift = 0;
+            double secondDrift = 0;
+            for(int j = 0; j < drift.length; j++){
+                if(furthest < 0 || drift[j] > maxDrift){
+                    secondDrift = maxDrift;
+                    furthest = j;
+                    maxDrift = drift[j];
+                } else if(drift[j] > secondDrift){
+                    secondDrift = drift[j];
+                }
+            }
+
+            int furthestCluster = furthest;
+            double furthestDrift = maxDrift;
+            double otherDrift = secondDrift;
+            inChunks(assignments.length, parallel, (chunk, start, end) -> {
+                for(int i = start; i < end; i++){
+                    upper[i] += drift[assignments[i]];
+                    lower[i] -= assignments[i] == furthestCluster ? otherDrift : furthestDrift;
+                }
+            });
+        }
+
+        /**
+         * Forgets the bounds for a color which was moved to a different cluster, so that they are measured again.
+         *
+         * @param i The position of the color.
+         */
+        void reset(int i){
+            upper[i] = Double.POSITIVE_INFINITY;
+            lower[i] = 0;
+        }
     }
 }
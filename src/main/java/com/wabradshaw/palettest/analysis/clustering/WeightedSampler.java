@@ -0,0 +1,62 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import java.util.Random;
+
+/**
+ * Draws random positions, where the chance of each position being drawn is proportional to its weight. This is used
+ * to sample pixels from a histogram, so that each distinct color is drawn in proportion to the number of times it
+ * appeared. Each draw is a binary search over the running total of the weights.
+ */
+final class WeightedSampler {
+
+    private final long[] cumulative;
+
+    /**
+     * Creates a sampler for the supplied weights.
+     *
+     * @param weights The non-negative weight of each position.
+     */
+    WeightedSampler(long[] weights){
+        this.cumulative = new long[weights.length];
+        long total = 0;
+        for(int i = 0; i < weights.length; i++){
+            total = Math.addExact(total, weights[i]);
+            cumulative[i] = total;
+        }
+    }
+
+    /**
+     * Gets the sum of every weight.
+     *
+     * @return The total weight.
+     */
+    long getTotal(){
+        return cumulative.length == 0 ? 0 : cumulative[cumulative.length - 1];
+    }
+
+    /**
+     * Draws a random position. Positions with a weight of zero are never drawn.
+     *
+     * @param random The source of randomness.
+     * @return       The position drawn, or -1 if every weight is zero.
+     */
+    int sample(Random random){
+        long total = getTotal();
+        if(total <= 0){
+            return -1;
+        }
+
+        long target = Math.min(total - 1, (long) (random.nextDouble() * total));
+        int low = 0;
+        int high = cumulative.length - 1;
+        while(low < high){
+            int middle = (low + high) >>> 1;
+            if(cumulative[middle] > target){
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,300 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import com.wabradshaw.palettest.analysis.ColorHistogram;
+
+import java.util.*;
+
+/**
+ * <p>
+ * A {@link HistogramClusteringAlgorithm} which uses Xiaolin Wu's variance minimising quantizer to define the clusters.
+ * The colors are counted in a grid of 32 levels of red, green and blue. Cumulative moments of the grid are then built, so
+ * that the number of pixels, the total of each channel, and the total of the squared channels within any box of the
+ * grid can be found by looking up its corners. This makes every possible cut of a box cheap to evaluate, however many
+ * colors the image has.
+ * </p>
+ * <p>
+ * Starting from a box holding every color, the box with the largest variance is repeatedly cut in two, at whichever
+ * position along whichever channel leaves the least variance. The clusters are the average colors of the boxes. This
+ * is usually more accurate than median cut, and doesn't iterate like k-means. Colors in the same cell of the grid
+ * can't be separated, so there may be fewer clusters than requested.
+ * </p>
+ * <p>
+ * By default, alpha is only averaged. Alternatively, alpha can be added as a fourth dimension of the grid with 8
+ * levels, so that colors which differ in transparency can be split. The result can also be used as the starting
+ * clusters for a {@link WeightedKMeansClusterer}.
+ * </p>
+ * @see WeightedKMeansClusterer#WeightedKMeansClusterer(com.wabradshaw.palettest.analysis.distance.ColorDistanceFunction,
+ *      ClusteringAlgorithm)
+ * @see <a href="https://doi.org/10.1016/B978-0-08-050754-5.50035-9">Efficient statistical computations for optimal
+ *      color quantization</a>
+ */
+public class WuClusterer implements HistogramClusteringAlgorithm {
+
+    //The position of each moment within a cell of the table.
+    private static final int WEIGHT = 0;
+    private static final int RED = 1;
+    private static final int GREEN = 2;
+    private static final int BLUE = 3;
+    private static final int ALPHA = 4;
+    private static final int SQUARES = 5;
+    private static final int MOMENTS = 6;
+
+    private final boolean splitAlpha;
+
+    /**
+     * Default constructor. Sets up a {@link WuClusterer} which splits colors by red, green and blue, and averages
+     * alpha.
+     */
+    public WuClusterer(){
+        this(false);
+    }
+
+    /**
+     * Alpha constructor. Sets up a {@link WuClusterer} which can also split colors by their alpha channel.
+     *
+     * @param splitAlpha Whether alpha should be used to split the colors, as well as red, green and blue.
+     */
+    public WuClusterer(boolean splitAlpha){
+        this.splitAlpha = splitAlpha;
+    }
+
+    @Override
+    public int[] cluster(ColorHistogram histogram, int targetClusters) {
+        Moments moments = new Moments(splitAlpha);
+        for(int i = 0; i < histogram.size(); i++){
+            moments.add(histogram.getColor(i), histogram.getCount(i));
+        }
+        moments.accumulate();
+
+        List<Box> boxes = new ArrayList<>();
+        boxes.add(moments.whole());
+        while(boxes.size() < targetClusters){
+            Box largest = boxes.stream().max(Comparator.comparingDouble(box -> box.variance)).get();
+            if(largest.variance <= 0){
+                break;
+            }
+
+            Box cut = moments.cut(largest);
+            if(cut == null){
+                largest.variance = 0;
+            } else {
+                boxes.add(cut);
+            }
+        }
+
+        return boxes.stream()
+                    .map(box -> moments.volume(box.lower, box.upper))
+                    .filter(volume -> volume[WEIGHT] > 0)
+                    .mapToInt(volume -> (int) Math.round(volume[ALPHA] / volume[WEIGHT]) << 24
+                                        | (int) Math.round(volume[RED] / volume[WEIGHT]) << 16
+                                        | (int) Math.round(volume[GREEN] / volume[WEIGHT]) << 8
+                                        | (int) Math.round(volume[BLUE] / volume[WEIGHT]))
+                    .distinct()
+                    .toArray();
+    }
+
+    /**
+     * A box in the grid. Each dimension covers the cells after the lower bound, up to and including the upper bound.
+     */
+    private static class Box {
+        private final int[] lower;
+        private final int[] upper;
+        private double variance;
+
+        /**
+         * Creates a box.
+         *
+         * @param lower The lower bound of each dimension, which isn't part of the box.
+         * @param upper The upper bound of each dimension, which is part of the box.
+         */
+        Box(int[] lower, int[] upper){
+            this.lower = lower;
+            this.upper = upper;
+        }
+    }
+
+    /**
+     * The cumulative moments of the grid. Each dimension has an extra leading cell of zeros, so that the moments of a
+     * box can always be found from its corners.
+     */
+    private static class Moments {
+        private final int dimensions;
+        private final int[] sides;
+        private final int[] strides;
+        private final double[] table;
+
+        /**
+         * Creates an empty grid.
+         *
+         * @param splitAlpha Whether alpha is a dimension of the grid.
+         */
+        Moments(boolean splitAlpha){
+            this.dimensions = splitAlpha ? 4 : 3;
+            this.sides = splitAlpha ? new int[]{33, 33, 33, 9} : new int[]{33, 33, 33};
+            this.strides = new int[dimensions];
+            int cells = 1;
+            for(int d = 0; d < dimensions; d++){
+                strides[d] = cells;
+                cells *= sides[d];
+            }
+            this.table = new double[cells * MOMENTS];
+        }
+
+        /**
+         * Adds pixels of a single color to the grid. This must be done before the moments are accumulated.
+         *
+         * @param argb  The color, as a packed ARGB int.
+         * @param count The number of pixels of that color.
+         */
+        void add(int argb, long count){
+            int red = (argb >> 16) & 0xFF;
+            int green = (argb >> 8) & 0xFF;
+            int blue = argb & 0xFF;
+            int alpha = (argb >>> 24) & 0xFF;
+
+            int cell = ((red >> 3) + 1) * strides[0] + ((green >> 3) + 1) * strides[1] + ((blue >> 3) + 1) * strides[2];
+            double squares = red * red + green * green + blue * blue;
+            if(dimensions == 4){
+                cell += ((alpha >> 5) + 1) * strides[3];
+                squares += alpha * alpha;
+            }
+
+            int offset = cell * MOMENTS;
+            table[offset + WEIGHT] += count;
+            table[offset + RED] += (double) red * count;
+            table[offset + GREEN] += (double) green * count;
+            table[offset + BLUE] += (double) blue * count;
+            table[offset + ALPHA] += (double) alpha * count;
+            table[offset + SQUARES] += squares * count;
+        }
+
+        /**
+         * Turns the counts in each cell into cumulative totals, so that each cell holds the totals of every cell at or
+         * below it in every dimension.
+         */
+        void accumulate(){
+            int cells = table.length / MOMENTS;
+            for(int d = 0; d < dimensions; d++){
+                for(int cell = 0; cell < cells; cell++){
+                    if((cell / strides[d]) % sides[d] > 0){
+                        int offset = cell * MOMENTS;
+                        int previous = (cell - strides[d]) * MOMENTS;
+                        for(int m = 0; m < MOMENTS; m++){
+                            table[offset + m] += table[previous + m];
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Creates a box covering the whole grid.
+         *
+         * @return A box holding every color.
+         */
+        Box whole(){
+            int[] upper = new int[dimensions];
+            for(int d = 0; d < dimensions; d++){
+                upper[d] = sides[d] - 1;
+            }
+            Box box = new Box(new int[dimensions], upper);
+            box.variance = variance(volume(box.lower, box.upper));
+            return box;
+        }
+
+        /**
+         * Finds the moments of the colors within a box, by adding and subtracting the cumulative moments at each of
+         * its corners.
+         *
+         * @param lower The lower bound of each dimension, which isn't part of the box.
+         * @param upper The upper bound of each dimension, which is part of the box.
+         * @return      The number of pixels, the totals of each channel, and the total of the squared channels.
+         */
+        double[] volume(int[] lower, int[] upper){
+            double[] result = new double[MOMENTS];
+            for(int corner = 0; corner < 1 << dimensions; corner++){
+                int cell = 0;
+                for(int d = 0; d < dimensions; d++){
+                    cell += ((corner >> d & 1) == 1 ? upper[d] : lower[d]) * strides[d];
+                }
+                double sign = (dimensions - Integer.bitCount(corner)) % 2 == 0 ? 1 : -1;
+                for(int m = 0; m < MOMENTS; m++){
+                    result[m] += sign * table[cell * MOMENTS + m];
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Measures the variance of the colors in a box, as the total squared distance from their average.
+         *
+         * @param volume The moments of the box.
+         * @return       The variance of the box.
+         */
+        double variance(double[] volume){
+            if(volume[WEIGHT] <= 0){
+                return 0;
+            }
+            return Math.max(0, volume[SQUARES] - spread(volume));
+        }
+
+        /**
+         * Measures the part of a box's variance which is removed by describing it by its average. Cutting a box where
+         * the spread of the two halves is greatest leaves the least variance.
+         *
+         * @param volume The moments of the box.
+         * @return       The squared total of each channel used by the grid, divided by the number of pixels.
+         */
+        private double spread(double[] volume){
+            double squared = volume[RED] * volume[RED] + volume[GREEN] * volume[GREEN] + volume[BLUE] * volume[BLUE];
+            if(dimensions == 4){
+                squared += volume[ALPHA] * volume[ALPHA];
+            }
+            return squared / volume[WEIGHT];
+        }
+
+        /**
+         * Cuts a box in two at the position which leaves the least variance. The box is shrunk to the lower half.
+         *
+         * @param box The box to cut.
+         * @return    The upper half, or null if the box can't be cut because all of its pixels are in one cell.
+         */
+        Box cut(Box box){
+            double[] whole = volume(box.lower, box.upper);
+            double best = 0;
+            int bestDimension = -1;
+            int bestPosition = 0;
+            for(int d = 0; d < dimensions; d++){
+                int[] upper = box.upper.clone();
+                for(int position = box.lower[d] + 1; position < box.upper[d]; position++){
+                    upper[d] = position;
+                    double[] half = volume(box.lower, upper);
+                    double[] rest = new double[MOMENTS];
+                    for(int m = 0; m < MOMENTS; m++){
+                        rest[m] = whole[m] - half[m];
+                    }
+                    if(half[WEIGHT] > 0 && rest[WEIGHT] > 0){
+                        double spread = spread(half) + spread(rest);
+                        if(spread > best){
+                            best = spread;
+                            bestDimension = d;
+                            bestPosition = position;
+                        }
+                    }
+                }
+            }
+            if(bestDimension < 0){
+                return null;
+            }
+
+            int[] lower = box.lower.clone();
+            int[] upper = box.upper.clone();
+            lower[bestDimension] = bestPosition;
+            box.upper[bestDimension] = bestPosition;
+            Box cut = new Box(lower, upper);
+            box.variance = variance(volume(box.lower, box.upper));
+            cut.variance = variance(volume(cut.lower, cut.upper));
+            return cut;
+        }
+    }
+}
@@ -22,6 +22,10 @@ import com.wabradshaw.palettest.analysis.Tone;
  * <p>
  * {@link Tone}s are used rather than {@link java.awt.Color}s to enable distance in RGBA, HSVA, or HSLA color spaces.
  * </p>
+ * <p>
+ * Distance statistics recorded with one function are reused for any function equal to it, so functions which measure
+ * distance identically should be equal.
+ * </p>
  * @see <a href="https://en.wikipedia.org/wiki/Euclidean_distance">Euclidean distance</a>
  * @see <a href="https://en.wikipedia.org/wiki/Taxicab_geometry">Manhattan distance</a>
  */
@@ -62,4 +66,19 @@ public interface ColorDistanceFunction {
     public default double getRankingDistance(Tone first, Tone second){
         return getDistance(first, second);
     }
+
+    /**
+     * <p>
+     * Whether {@link #getDistance(Tone, Tone)} is a true metric, i.e. it also obeys the triangle inequality: the
+     * distance from a to c is never more than the distance from a to b plus the distance from b to c.
+     * </p>
+     * <p>
+     * Algorithms can use this to rule out colors without measuring the distance to them, such as when clustering.
+     * Only return true if the triangle inequality always holds, otherwise those algorithms may give wrong results.
+     * </p>
+     * @return True if the distance function is a metric, false by default.
+     */
+    public default boolean isMetric(){
+        return false;
+    }
 }
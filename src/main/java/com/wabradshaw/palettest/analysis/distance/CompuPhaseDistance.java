@@ -13,6 +13,10 @@ import com.wabradshaw.palettest.analysis.Tone;
  * For example, completely transparent red and completely transparent blue will have a high distance despite being
  * identical. The alpha channel is able to be weighted like the other channels.
  * </p>
+ * <p>
+ * Because the weightings depend on the two colors being compared, this is not a true metric. It can break the triangle
+ * inequality, so {@link #isMetric()} is false.
+ * </p>
  * @see <a href="https://www.compuphase.com/cmetric.htm">CompuPhase Algorithm</a>
  * @see <a href="https://en.wikipedia.org/wiki/Euclidean_distance">Euclidean distance</a>
  */
@@ -34,4 +38,14 @@ public class CompuPhaseDistance implements ColorDistanceFunction {
                ((2+blueMod) * Math.pow((first.getBlue() - second.getBlue()), 2)) +
                (Math.pow((first.getAlpha() - second.getAlpha()), 2));
     }
+
+    @Override
+    public boolean equals(Object o) {
+        return o != null && o.getClass() == getClass();
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
 }
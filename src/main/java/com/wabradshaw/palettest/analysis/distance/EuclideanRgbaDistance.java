@@ -22,6 +22,11 @@ public class EuclideanRgbaDistance implements ColorDistanceFunction {
         return Math.sqrt(getRankingDistance(first, second));
     }
 
+    @Override
+    public boolean isMetric() {
+        return true;
+    }
+
     @Override
     public double getRankingDistance(Tone first, Tone second) {
         return Math.pow((first.getRed() - second.getRed()), 2) +
@@ -29,4 +34,14 @@ public class EuclideanRgbaDistance implements ColorDistanceFunction {
                Math.pow((first.getBlue() - second.getBlue()), 2) +
                Math.pow((first.getAlpha() - second.getAlpha()), 2);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        return o != null && o.getClass() == getClass();
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
 }
@@ -23,4 +23,19 @@ public class ManhattanRgbaDistance implements ColorDistanceFunction {
                Math.abs(first.getBlue() - second.getBlue()) +
                Math.abs(first.getAlpha() - second.getAlpha());
     }
+
+    @Override
+    public boolean isMetric() {
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o != null && o.getClass() == getClass();
+    }
+
+    @Override
+    public int hashCode() {
+        return getClass().hashCode();
+    }
 }
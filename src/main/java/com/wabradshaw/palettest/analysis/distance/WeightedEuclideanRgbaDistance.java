@@ -2,6 +2,8 @@ package com.wabradshaw.palettest.analysis.distance;
 
 import com.wabradshaw.palettest.analysis.Tone;
 
+import java.util.Objects;
+
 /**
  * <p>
  * A version of the {@link EuclideanRgbaDistance} {@link ColorDistanceFunction} that finds the Euclidean distance
@@ -69,6 +71,17 @@ public class WeightedEuclideanRgbaDistance implements ColorDistanceFunction {
         return Math.sqrt(getRankingDistance(first, second) / normalisingFactor);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A weighted Euclidean distance is a metric as long as none of the weightings are negative.
+     * </p>
+     */
+    @Override
+    public boolean isMetric() {
+        return redWeight >= 0 && greenWeight >= 0 && blueWeight >= 0 && alphaWeight >= 0;
+    }
+
     @Override
     public double getRankingDistance(Tone first, Tone second) {
         return (redWeight * Math.pow((first.getRed() - second.getRed()), 2)) +
@@ -76,4 +89,21 @@ public class WeightedEuclideanRgbaDistance implements ColorDistanceFunction {
                (blueWeight * Math.pow((first.getBlue() - second.getBlue()), 2)) +
                (alphaWeight * Math.pow((first.getAlpha() - second.getAlpha()), 2));
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if(o == null || o.getClass() != getClass()){
+            return false;
+        }
+        WeightedEuclideanRgbaDistance other = (WeightedEuclideanRgbaDistance) o;
+        return Double.compare(redWeight, other.redWeight) == 0 &&
+               Double.compare(greenWeight, other.greenWeight) == 0 &&
+               Double.compare(blueWeight, other.blueWeight) == 0 &&
+               Double.compare(alphaWeight, other.alphaWeight) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(redWeight, greenWeight, blueWeight, alphaWeight);
+    }
 }
@@ -19,11 +19,16 @@ import java.util.*;
  * <p>If there are multiple {@link Color}s close to the same {@link Tone}, then they will get numbers appended to the
  * end of their name.
  * </p>
+ * <p>A namer which will always be used with the same base palette can be created for that palette. The distinct
+ * {@link Tone}s of the palette are then found once, when the namer is created, rather than on every call.
+ * </p>
  */
 public class SimplePaletteColorNamer implements ColorNamer {
 
     private final ColorDistanceFunction distanceFunction;
     private final double max_name_distance;
+    private final List<Tone> basePalette;
+    private final Tone[] palette;
 
     /**
      * Default constructor. Creates a {@link SimplePaletteColorNamer} with the default settings. Practically this means
@@ -43,6 +48,32 @@ public class SimplePaletteColorNamer implements ColorNamer {
     public SimplePaletteColorNamer(ColorDistanceFunction distanceFunction){
         this.distanceFunction = distanceFunction;
         this.max_name_distance = 50;
+        this.basePalette = null;
+        this.palette = null;
+    }
+
+    /**
+     * Base palette constructor. Creates a {@link SimplePaletteColorNamer} which uses the supplied distance function,
+     * and which is prepared for naming against a particular base palette. This has a maximum naming distance of 50.
+     * <p>
+     * The distinct {@link Tone}s in the palette are found once, here. Whenever {@link #nameTones(Collection, List)} is
+     * given that same list, they are reused rather than reading the list again, so changes made to the list after the
+     * namer is created are ignored. Any other list is read in full on each call, as usual. The namer is immutable, so
+     * it can be shared between threads.
+     * </p>
+     *
+     * @param distanceFunction The {@link ColorDistanceFunction} to use when comparing a {@link Color} to name and
+     *                         a {@link Tone} in the palette.
+     * @param basePalette      The palette of named {@link Tone}s the namer will usually be given. Cannot be null.
+     */
+    public SimplePaletteColorNamer(ColorDistanceFunction distanceFunction, List<Tone> basePalette){
+        if(basePalette == null){
+            throw new IllegalArgumentException("A SimplePaletteColorNamer was created with a null base palette.");
+        }
+        this.distanceFunction = distanceFunction;
+        this.max_name_distance = 50;
+        this.basePalette = basePalette;
+        this.palette = distinctTones(basePalette);
     }
 
     @Override
@@ -50,12 +81,14 @@ public class SimplePaletteColorNamer implements ColorNamer {
         List<Tone> results = new ArrayList<>();
 
         Map<String, Integer> usedColors = new HashMap<>();
+        Tone[] palette = basePalette != null && basePalette == this.basePalette ? this.palette
+                                                                                 : distinctTones(basePalette);
 
         for(Color color : colors){
             Tone protoTone = new Tone(color);
-            Tone closest = getClosestTone(basePalette, protoTone);
+            Tone closest = getClosestTone(palette, protoTone);
 
-            if(distanceFunction.getDistance(closest, protoTone) > max_name_distance){
+            if(closest == null || distanceFunction.getDistance(closest, protoTone) > max_name_distance){
                 results.add(protoTone);
             } else {
                 String suggestedName = closest.getName();
@@ -74,15 +107,41 @@ public class SimplePaletteColorNamer implements ColorNamer {
     }
 
     /**
-     * Finds the {@link Tone} closest to the target color.
+     * Copies a palette, keeping only the first {@link Tone} of each {@link Color}. A later {@link Tone} with the same
+     * {@link Color} could never be closer to a color being named.
      *
      * @param palette The list of possible Tones in the palette.
-     * @return        The closest Tone in the palette.
+     * @return        The distinct Tones in the palette, in their original order.
+     */
+    static Tone[] distinctTones(List<Tone> palette) {
+        Set<Color> seen = new HashSet<>();
+        List<Tone> distinct = new ArrayList<>(palette.size());
+        for(Tone tone : palette){
+            if(seen.add(tone.getColor())){
+                distinct.add(tone);
+            }
+        }
+        return distinct.toArray(new Tone[0]);
+    }
+
+    /**
+     * Finds the {@link Tone} closest to the target color. Tones are compared by their ranking distance, and if several
+     * are equally close the first in the palette is used.
+     *
+     * @param palette    The possible Tones in the palette.
+     * @param targetTone The Tone to find a match for.
+     * @return           The closest Tone in the palette, or null if the palette is empty.
      */
-    private Tone getClosestTone(List<Tone> palette, Tone targetTone) {
-       return palette.stream()
-               .max((o1, o2) -> (int) Math.signum(distanceFunction.getDistance(o2, targetTone) -
-                                                  distanceFunction.getDistance(o1, targetTone)))
-               .get();
+    Tone getClosestTone(Tone[] palette, Tone targetTone) {
+        Tone closest = null;
+        double closestDistance = Double.POSITIVE_INFINITY;
+        for(Tone tone : palette){
+            double distance = distanceFunction.getRankingDistance(tone, targetTone);
+            if(closest == null || distance < closestDistance){
+                closest = tone;
+                closestDistance = distance;
+            }
+        }
+        return closest;
     }
 }
@@ -65,7 +65,7 @@ public class AssertMainColor {
      * @param actual       The {@link ToneCount} representing the number of times the desired color was used.
      */
     private static void checkMainColor(String targetName, PaletteDistribution distribution, ToneCount actual) {
-        List<ToneCount> tones = distribution.byCount();
+        List<ToneCount> tones = distribution.top(2);
 
         ToneCount biggest = tones.get(0);
         if(biggest != actual) {
@@ -76,7 +76,7 @@ public class AssertMainColor {
 
         if(tones.size() > 1){
             ToneCount secondBiggest = tones.get(1);
-            if(secondBiggest.getCount() == biggest.getCount()) {
+            if(secondBiggest.getLongCount() == biggest.getLongCount()) {
                 fail("The desired color isn't the single greatest one in the image.",
                         targetName,
                         secondBiggest.getTone().getName());
@@ -63,14 +63,14 @@ public class AssertMostly {
      * @param actualCount  The {@link ToneCount} representing the actual number of times the desired color was used.
      */
     private static void checkMostly(String targetName, PaletteDistribution distribution, ToneCount actualCount) {
-        int totalPixels = distribution.getDistribution().stream().mapToInt(ToneCount::getCount).sum();
-        int targetPixels = totalPixels > 1 ? totalPixels / 2 + 1 : 1;
+        long totalPixels = distribution.getTotalCount();
+        long targetPixels = totalPixels > 1 ? totalPixels / 2 + 1 : 1;
 
         if(actualCount == null){
             fail("The image didn't contain the desired color.",
                     pixels(targetName, targetPixels),
                     distribution.byCount().toString());
-        } else if (actualCount.getCount() < targetPixels){
+        } else if (actualCount.getLongCount() < targetPixels){
             fail("Not enough of the image was the desired color.",
                     pixels(targetName, targetPixels),
                     distribution.byCount().toString());
@@ -84,7 +84,7 @@ public class AssertMostly {
      * @param pixels     The number of pixels to mention.
      * @return           A string saying the number of pixels
      */
-    private static String pixels(String descriptor, int pixels){
+    private static String pixels(String descriptor, long pixels){
         String pixelsMessage = pixels > 1 ? "pixels" : "pixel";
         return pixels + " " + descriptor + " " + pixelsMessage;
     }
@@ -57,7 +57,7 @@ class AssertionHelpers {
      static void checkDistribution(PaletteDistribution distribution) {
         if(distribution == null){
             fail("Could not assess color as the supplied distribution was null.");
-        } else if(distribution.byCount().isEmpty()){
+        } else if(distribution.isEmpty()){
             fail("Could not assess color as the supplied distribution didn't contain any colors.");
         }
     }
@@ -1,9 +1,14 @@
 package com.wabradshaw.palettest.visualisation;
 
+import com.wabradshaw.palettest.analysis.ColorHistogram;
 import com.wabradshaw.palettest.analysis.PaletteDistribution;
 import com.wabradshaw.palettest.analysis.Palettester;
 import com.wabradshaw.palettest.analysis.Tone;
 import com.wabradshaw.palettest.analysis.ToneCount;
+import com.wabradshaw.palettest.analysis.clustering.ClusterAssignment;
+import com.wabradshaw.palettest.analysis.clustering.ClusteringAlgorithm;
+import com.wabradshaw.palettest.analysis.clustering.HistogramClusteringAlgorithm;
+import com.wabradshaw.palettest.analysis.clustering.WeightedKMeansClusterer;
 import com.wabradshaw.palettest.analysis.distance.ColorDistanceFunction;
 import com.wabradshaw.palettest.analysis.distance.CompuPhaseDistance;
 import com.wabradshaw.palettest.utils.GraphicsUtils;
@@ -11,21 +16,33 @@ import com.wabradshaw.palettest.utils.GraphicsUtils;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
+ * <p>
  * A palette replacement is a type of visualisation where an image is recolored according to its palette. Every pixel in
  * the input image is replaced with the closest pixel color in the palette.
+ * </p>
+ * <p>
+ * To preview the palette an image would be given by
+ * {@link Palettester#definePalette(BufferedImage, int)}, use {@link #quantize(BufferedImage, int)} rather than defining
+ * the palette and then replacing it. Clustering already decides which part of the palette each color belongs to, so
+ * the colors don't need to be analysed or matched again. The palettes only match exactly for a
+ * {@link HistogramClusteringAlgorithm}, as described in {@link #quantize(BufferedImage, int)}.
+ * </p>
  */
 public class PaletteReplacer {
 
+    private static final int OPAQUE = 0xff000000;
+
     private final ColorDistanceFunction distanceFunction;
+    private final ClusteringAlgorithm clusteringAlgorithm;
 
     /**
      * Default constructor. Sets up a {@link PaletteReplacer} using {@link CompuPhaseDistance} to measure the distance
-     * between colors.
+     * between colors, and a {@link WeightedKMeansClusterer} to quantize images.
      */
     public PaletteReplacer(){
         this(new CompuPhaseDistance());
@@ -33,12 +50,27 @@ public class PaletteReplacer {
 
     /**
      * Configurable constructor. Sets up a {@link PaletteReplacer} that will use the supplied distance function to
-     * measure the distance between colors.
+     * measure the distance between colors, and a {@link WeightedKMeansClusterer} using the same function to quantize
+     * images.
      *
      * @param distanceFunction The distance function to use to find the nearest color.
      */
     public PaletteReplacer(ColorDistanceFunction distanceFunction){
+        this(distanceFunction, null);
+    }
+
+    /**
+     * Full configuration constructor. Sets up a {@link PaletteReplacer} that will use the supplied distance function
+     * to measure the distance between colors, and the supplied {@link ClusteringAlgorithm} to quantize images.
+     *
+     * @param distanceFunction    The distance function to use to find the nearest color.
+     * @param clusteringAlgorithm The algorithm used to define palettes when quantizing images. If null, a
+     *                            {@link WeightedKMeansClusterer} using the distance function is used.
+     */
+    public PaletteReplacer(ColorDistanceFunction distanceFunction, ClusteringAlgorithm clusteringAlgorithm){
         this.distanceFunction = distanceFunction;
+        this.clusteringAlgorithm = clusteringAlgorithm == null ? new WeightedKMeansClusterer(distanceFunction)
+                                                               : clusteringAlgorithm;
     }
 
     /**
@@ -53,13 +85,13 @@ public class PaletteReplacer {
 
         BufferedImage result = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
 
-        Map<Color, Color> closestTones = getClosestTonesCache(image, palette);
+        Map<Integer, Color> closestTones = getClosestTonesCache(image, palette);
 
         Graphics2D g = result.createGraphics();
 
         for(int x = 0; x < image.getWidth(); x++){
             for(int y = 0; y < image.getHeight(); y++){
-                Color original = new Color(image.getRGB(x, y));
+                int original = image.getRGB(x, y) | OPAQUE;
                 Color target = closestTones.get(original);
                 g.setPaint(target);
                 g.drawLine(x, y, x+1, y+1);
@@ -71,24 +103,86 @@ public class PaletteReplacer {
         return result;
     }
 
+    /**
+     * <p>
+     * Takes in an image, defines a palette for it, and creates a new version where each pixel has been replaced by the
+     * color in the palette it was clustered with. The pixels are recolored using the assignments made while
+     * clustering, rather than by searching the palette for each color.
+     * </p>
+     * <p>
+     * The image's colors are always counted into a {@link ColorHistogram} and clustered from there. For a
+     * {@link HistogramClusteringAlgorithm}, this gives the same palette as
+     * {@link Palettester#definePalette(BufferedImage, int)} with the same clustering algorithm. An
+     * {@link com.wabradshaw.palettest.analysis.clustering.ImageClusteringAlgorithm}, such as an
+     * {@link com.wabradshaw.palettest.analysis.clustering.OctreeClusterer}, is not given the image directly as it is
+     * by definePalette, so its palette may differ.
+     * </p>
+     * <p>
+     * Most clustering algorithms assign each color to the closest cluster, so this usually matches calling
+     * {@link #replace(BufferedImage, List)} with the palette. Algorithms which don't report their own assignments,
+     * such as those which aren't {@link HistogramClusteringAlgorithm}s, match each color to the closest cluster by
+     * red, green, blue and alpha.
+     * </p>
+     *
+     * @param image    The image to recolor.
+     * @param maxTones The maximum number of different colors in the new image.
+     * @return         A version of the input image using at most maxTones colors.
+     */
+    public BufferedImage quantize(BufferedImage image, int maxTones) {
+        ColorHistogram histogram = ColorHistogram.of(image);
+
+        ClusterAssignment clustering;
+        if(histogram.size() <= maxTones){
+            int[] colors = new int[histogram.size()];
+            int[] assignments = new int[histogram.size()];
+            for(int i = 0; i < colors.length; i++){
+                colors[i] = histogram.getColor(i);
+                assignments[i] = i;
+            }
+            clustering = new ClusterAssignment(colors, assignments);
+        } else {
+            clustering = HistogramClusteringAlgorithm.adapt(clusteringAlgorithm).clusterAndAssign(histogram, maxTones);
+        }
+
+        int width = image.getWidth();
+        BufferedImage result = new BufferedImage(width, image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        int[] row = new int[width];
+        int previous = 0;
+        int previousTarget = 0;
+        for(int y = 0; y < image.getHeight(); y++){
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for(int x = 0; x < width; x++){
+                //Neighbouring pixels are often the same color, so the last match is reused.
+                int original = row[x] | OPAQUE;
+                if(original != previous){
+                    previous = original;
+                    previousTarget = clustering.getAssignedCluster(histogram.indexOf(original));
+                }
+                row[x] = previousTarget;
+            }
+            result.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return result;
+    }
+
     /**
      * Creates a cache of which {@link Color} in the image should be replaced by which Color from a {@link Tone} in the
      * palette.
      *
      * @param image   The image to analyse.
      * @param palette The list of {@link Tone}s that can be used.
-     * @return        A map of original {@link Color} to target {@link Color}.
+     * @return        A map of original {@link Color}, as a packed opaque ARGB int, to target {@link Color}.
      */
-    private Map<Color,Color> getClosestTonesCache(BufferedImage image, List<Tone> palette) {
+    private Map<Integer,Color> getClosestTonesCache(BufferedImage image, List<Tone> palette) {
         Palettester tester = new Palettester(this.distanceFunction);
         PaletteDistribution colors = tester.analyseAllColors(image);
-        return colors.getDistribution()
-                     .stream()
-                     .map(ToneCount::getTone)
-                     .collect(Collectors.toMap(
-                             Tone::getColor,
-                             x -> getClosestTone(palette, x).getColor()
-                     ));
+
+        Map<Integer, Color> cache = new HashMap<>();
+        for(ToneCount count : colors.getDistribution()){
+            Color target = getClosestTone(palette, count.getTone()).getColor();
+            count.forEachPixelCount((argb, pixels) -> cache.put(argb | OPAQUE, target));
+        }
+        return cache;
     }
 
 
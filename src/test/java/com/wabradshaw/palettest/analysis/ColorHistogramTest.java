@@ -0,0 +1,325 @@
+package com.wabradshaw.palettest.analysis;
+
+import com.wabradshaw.palettest.utils.ImageFileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A set of tests for the {@link ColorHistogram} class.
+ */
+public class ColorHistogramTest {
+
+    /**
+     * Tests that a single color image produces a single entry.
+     */
+    @Test
+    public void testOf_monochrome(){
+        BufferedImage image = ImageFileUtils.loadImageResource("/sampleImages/geometric/green.png");
+
+        ColorHistogram histogram = ColorHistogram.of(image);
+
+        assertEquals(1, histogram.size());
+        assertEquals(Color.GREEN.getRGB(), histogram.getColor(0));
+        assertEquals(100, histogram.getCount(0));
+        assertEquals(100, histogram.getTotalCount());
+    }
+
+    /**
+     * Tests that colors are counted correctly, and stored in ascending order.
+     */
+    @Test
+    public void testOf_sorted(){
+        BufferedImage image = ImageFileUtils.loadImageResource("/sampleImages/geometric/redBlueQuarter.png");
+
+        ColorHistogram histogram = ColorHistogram.of(image);
+
+        assertEquals(2, histogram.size());
+        assertEquals(Color.BLUE.getRGB(), histogram.getColor(0));
+        assertEquals(25, histogram.getCount(0));
+        assertEquals(Color.RED.getRGB(), histogram.getColor(1));
+        assertEquals(75, histogram.getCount(1));
+        assertEquals(100, histogram.getTotalCount());
+    }
+
+    /**
+     * Tests that colors which only differ by transparency are counted as the same opaque color.
+     */
+    @Test
+    public void testOf_alphaIgnored(){
+        BufferedImage image = new BufferedImage(2, 1, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 0xffff0000);
+        image.setRGB(1, 0, 0x80ff0000);
+
+        ColorHistogram histogram = ColorHistogram.of(image);
+
+        assertEquals(1, histogram.size());
+        assertEquals(2, histogram.getCount(0));
+        assertEquals(255, new Color(histogram.getColor(0), true).getAlpha());
+    }
+
+    /**
+     * Tests that indexOf finds colors in the histogram, and returns -1 for anything else.
+     */
+    @Test
+    public void testIndexOf(){
+        BufferedImage image = ImageFileUtils.loadImageResource("/sampleImages/geometric/redBlueQuarter.png");
+
+        ColorHistogram histogram = ColorHistogram.of(image);
+
+        assertEquals(0, histogram.indexOf(Color.BLUE.getRGB()));
+        assertEquals(1, histogram.indexOf(Color.RED.getRGB()));
+        assertEquals(-1, histogram.indexOf(Color.GREEN.getRGB()));
+    }
+
+    /**
+     * Tests that the histogram can be converted back into a map of colors.
+     */
+    @Test
+    public void testToColorCounts(){
+        BufferedImage image = ImageFileUtils.loadImageResource("/sampleImages/geometric/redBlueQuarter.png");
+
+        Map<Color, Integer> counts = ColorHistogram.of(image).toColorCounts();
+
+        assertEquals(2, counts.size());
+        assertEquals(75, (int) counts.get(Color.RED));
+        assertEquals(25, (int) counts.get(Color.BLUE));
+    }
+
+    /**
+     * Tests that a histogram can be created from a map of colors, sorted by color and keeping the alpha.
+     */
+    @Test
+    public void testOf_map(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(Color.RED, 3);
+        counts.put(Color.BLUE, 5);
+        counts.put(new Color(0, 0, 255, 100), 2);
+
+        ColorHistogram histogram = ColorHistogram.of(counts);
+
+        assertEquals(3, histogram.size());
+        assertEquals(Color.BLUE.getRGB(), histogram.getColor(0));
+        assertEquals(5, histogram.getCount(0));
+        assertEquals(Color.RED.getRGB(), histogram.getColor(1));
+        assertEquals(3, histogram.getCount(1));
+        assertEquals(new Color(0, 0, 255, 100).getRGB(), histogram.getColor(2));
+        assertEquals(2, histogram.getCount(2));
+        assertEquals(10, histogram.getTotalCount());
+    }
+
+    /**
+     * Tests that converting a histogram to a map and back gives the same histogram.
+     */
+    @Test
+    public void testOf_mapRoundTrip(){
+        ColorHistogram histogram = ColorHistogram.of(ImageFileUtils.loadImageResource("/sampleImages/maps/Rome.png"));
+
+        ColorHistogram copy = ColorHistogram.of(histogram.toColorCounts());
+
+        assertEquals(histogram.size(), copy.size());
+        for(int i = 0; i < histogram.size(); i++){
+            assertEquals(histogram.getColor(i), copy.getColor(i));
+            assertEquals(histogram.getCount(i), copy.getCount(i));
+        }
+    }
+
+    /**
+     * Tests that a histogram can be created from counts too large to fit in an int.
+     */
+    @Test
+    public void testOf_mapBeyondInt(){
+        Map<Color, Long> counts = new HashMap<>();
+        counts.put(Color.RED, 5_000_000_000L);
+
+        ColorHistogram histogram = ColorHistogram.of(counts);
+
+        assertEquals(5_000_000_000L, histogram.getCount(0));
+    }
+
+    /**
+     * Tests that a histogram can't be created from a null map, or a map with invalid counts.
+     */
+    @Test
+    public void testOf_mapInvalid(){
+        Map<Color, Integer> negative = new HashMap<>();
+        negative.put(Color.RED, -1);
+        Map<Color, Integer> missing = new HashMap<>();
+        missing.put(Color.RED, null);
+
+        assertThrows(IllegalArgumentException.class, () -> ColorHistogram.of((Map<Color, Integer>) null));
+        assertThrows(IllegalArgumentException.class, () -> ColorHistogram.of(negative));
+        assertThrows(IllegalArgumentException.class, () -> ColorHistogram.of(missing));
+    }
+
+    /**
+     * Tests that a histogram can be created from parallel arrays, sorted by color with repeated colors combined.
+     */
+    @Test
+    public void testOf_arrays(){
+        int[] colors = {Color.RED.getRGB(), Color.BLUE.getRGB(), Color.RED.getRGB()};
+        int[] counts = {3, 5, 4};
+
+        ColorHistogram histogram = ColorHistogram.of(colors, counts);
+
+        assertEquals(2, histogram.size());
+        assertEquals(Color.BLUE.getRGB(), histogram.getColor(0));
+        assertEquals(5, histogram.getCount(0));
+        assertEquals(Color.RED.getRGB(), histogram.getColor(1));
+        assertEquals(7, histogram.getCount(1));
+        assertEquals(12, histogram.getTotalCount());
+    }
+
+    /**
+     * Tests that repeated colors can add up to more than fits in an int.
+     */
+    @Test
+    public void testOf_arraysBeyondInt(){
+        int[] colors = {Color.RED.getRGB(), Color.RED.getRGB()};
+        int[] counts = {Integer.MAX_VALUE, Integer.MAX_VALUE};
+
+        assertEquals(2L * Integer.MAX_VALUE, ColorHistogram.of(colors, counts).getCount(0));
+    }
+
+    /**
+     * Tests that a histogram can't be created from null or mismatched arrays, or negative counts.
+     */
+    @Test
+    public void testOf_arraysInvalid(){
+        int[] colors = {Color.RED.getRGB()};
+
+        assertThrows(IllegalArgumentException.class, () -> ColorHistogram.of(null, new int[0]));
+        assertThrows(IllegalArgumentException.class, () -> ColorHistogram.of(colors, null));
+        assertThrows(IllegalArgumentException.class, () -> ColorHistogram.of(colors, new int[2]));
+        assertThrows(IllegalArgumentException.class, () -> ColorHistogram.of(colors, new int[]{-1}));
+    }
+
+    /**
+     * Tests that a complex image has the expected number of distinct colors.
+     */
+    @Test
+    public void testOf_complex(){
+        BufferedImage image = ImageFileUtils.loadImageResource("/sampleImages/maps/Barcelona.png");
+
+        ColorHistogram histogram = ColorHistogram.of(image);
+
+        assertEquals(255, histogram.size());
+        assertEquals((long) image.getWidth() * image.getHeight(), histogram.getTotalCount());
+    }
+
+    /**
+     * Tests that merging two histograms keeps every color in order and sums shared colors.
+     */
+    @Test
+    public void testMerge(){
+        ColorHistogram first = new ColorHistogram(new int[]{Color.BLUE.getRGB(), Color.RED.getRGB()},
+                                                  new int[]{5, 9});
+        ColorHistogram second = new ColorHistogram(new int[]{Color.BLUE.getRGB(), Color.GREEN.getRGB()},
+                                                   new int[]{1, 2});
+
+        ColorHistogram merged = first.merge(second);
+
+        assertEquals(3, merged.size());
+        assertEquals(Color.BLUE.getRGB(), merged.getColor(0));
+        assertEquals(6, merged.getCount(0));
+        assertEquals(Color.GREEN.getRGB(), merged.getColor(1));
+        assertEquals(2, merged.getCount(1));
+        assertEquals(Color.RED.getRGB(), merged.getColor(2));
+        assertEquals(9, merged.getCount(2));
+        assertEquals(17, merged.getTotalCount());
+    }
+
+    /**
+     * Tests that merged counts switch to longs once they no longer fit in an int.
+     */
+    @Test
+    public void testMerge_beyondInt(){
+        ColorHistogram histogram = new ColorHistogram(new int[]{Color.BLUE.getRGB(), Color.RED.getRGB()},
+                                                      new int[]{Integer.MAX_VALUE, 1});
+
+        ColorHistogram merged = histogram.merge(histogram).merge(histogram);
+
+        assertEquals(3L * Integer.MAX_VALUE, merged.getCount(0));
+        assertEquals(3, merged.getCount(1));
+        assertEquals(3L * Integer.MAX_VALUE + 3, merged.getTotalCount());
+        assertThrows(ArithmeticException.class, merged::toColorCounts);
+    }
+
+    /**
+     * Tests that quantizing combines the colors in each bin into their weighted mean, and drops empty bins.
+     */
+    @Test
+    public void testQuantize(){
+        int[] colors = {new Color(0x10, 0, 0).getRGB(), new Color(0x1c, 0, 0).getRGB(),
+                        new Color(0x80, 0, 0).getRGB(), new Color(0xf0, 0x20, 0x08).getRGB()};
+        int[] counts = {1, 3, 0, 2};
+
+        ColorHistogram quantized = ColorHistogram.of(colors, counts).quantize(4);
+
+        assertEquals(2, quantized.size());
+        assertEquals(new Color(0x19, 0, 0).getRGB(), quantized.getColor(0));
+        assertEquals(4, quantized.getCount(0));
+        assertEquals(new Color(0xf0, 0x20, 0x08).getRGB(), quantized.getColor(1));
+        assertEquals(2, quantized.getCount(1));
+        assertEquals(6, quantized.getTotalCount());
+    }
+
+    /**
+     * Tests that quantizing keeps the alpha channel, averaging it like the other channels.
+     */
+    @Test
+    public void testQuantize_alpha(){
+        int[] colors = {new Color(255, 0, 0, 250).getRGB(), new Color(255, 0, 0, 254).getRGB()};
+        int[] counts = {1, 1};
+
+        ColorHistogram quantized = ColorHistogram.of(colors, counts).quantize(5);
+
+        assertEquals(1, quantized.size());
+        assertEquals(new Color(255, 0, 0, 252).getRGB(), quantized.getColor(0));
+    }
+
+    /**
+     * Tests that quantizing to 8 bits leaves the histogram unchanged.
+     */
+    @Test
+    public void testQuantize_eightBits(){
+        ColorHistogram histogram = ColorHistogram.of(new int[]{Color.RED.getRGB(), Color.BLUE.getRGB()},
+                                                     new int[]{1, 2});
+
+        assertSame(histogram, histogram.quantize(8));
+    }
+
+    /**
+     * Tests that colors can only be quantized to between 1 and 8 bits.
+     */
+    @Test
+    public void testQuantize_invalid(){
+        ColorHistogram histogram = ColorHistogram.of(new int[]{Color.RED.getRGB()}, new int[]{1});
+
+        assertThrows(IllegalArgumentException.class, () -> histogram.quantize(0));
+        assertThrows(IllegalArgumentException.class, () -> histogram.quantize(9));
+    }
+
+    /**
+     * Tests that quantizing a noisy photograph greatly reduces the number of colors, keeps every pixel, and leaves the
+     * colors sorted.
+     */
+    @Test
+    public void testQuantize_complex(){
+        BufferedImage image = ImageFileUtils.loadImageResource("/sampleImages/complex/rooves.jpg");
+        ColorHistogram histogram = ColorHistogram.of(image);
+
+        ColorHistogram quantized = histogram.quantize(5);
+
+        assertTrue(quantized.size() * 10 < histogram.size());
+        assertEquals(histogram.getTotalCount(), quantized.getTotalCount());
+        for(int i = 1; i < quantized.size(); i++){
+            assertTrue(quantized.getColor(i - 1) < quantized.getColor(i));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.wabradshaw.palettest.analysis;
+
+import com.wabradshaw.palettest.analysis.distance.ColorDistanceFunction;
+import com.wabradshaw.palettest.analysis.distance.CompuPhaseDistance;
+import com.wabradshaw.palettest.analysis.distance.EuclideanRgbaDistance;
+import com.wabradshaw.palettest.analysis.distance.ManhattanRgbaDistance;
+import com.wabradshaw.palettest.analysis.distance.WeightedEuclideanRgbaDistance;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A set of tests for the {@link DistanceStats} class.
+ */
+public class DistanceStatsTest {
+
+    /**
+     * Tests that distances are placed in buckets which double in size.
+     */
+    @Test
+    public void testBucketOf(){
+        assertEquals(0, DistanceStats.bucketOf(0));
+        assertEquals(0, DistanceStats.bucketOf(0.99));
+        assertEquals(1, DistanceStats.bucketOf(1));
+        assertEquals(1, DistanceStats.bucketOf(1.99));
+        assertEquals(2, DistanceStats.bucketOf(2));
+        assertEquals(2, DistanceStats.bucketOf(3.99));
+        assertEquals(8, DistanceStats.bucketOf(255));
+        assertEquals(9, DistanceStats.bucketOf(510));
+    }
+
+    /**
+     * Tests that very large distances go in the last bucket.
+     */
+    @Test
+    public void testBucketOf_large(){
+        assertEquals(DistanceStats.BUCKETS - 1, DistanceStats.bucketOf(1e12));
+        assertEquals(DistanceStats.BUCKETS - 1, DistanceStats.bucketOf(Double.MAX_VALUE));
+    }
+
+    /**
+     * Tests that the lower bound of each bucket is placed in that bucket.
+     */
+    @Test
+    public void testGetBucketLowerBound(){
+        assertEquals(0.0, DistanceStats.getBucketLowerBound(0));
+        assertEquals(1.0, DistanceStats.getBucketLowerBound(1));
+        assertEquals(4.0, DistanceStats.getBucketLowerBound(3));
+        for(int bucket = 0; bucket < DistanceStats.BUCKETS; bucket++){
+            assertEquals(bucket, DistanceStats.bucketOf(DistanceStats.getBucketLowerBound(bucket)));
+        }
+    }
+
+    /**
+     * Tests that the average distance is zero when no pixels were measured.
+     */
+    @Test
+    public void testGetAverageDistance_empty(){
+        DistanceStats stats = new DistanceStats(new EuclideanRgbaDistance(), 0, 0, 0, new long[DistanceStats.BUCKETS]);
+
+        assertEquals(0.0, stats.getAverageDistance());
+        assertEquals(0.0, stats.getMaxDistance());
+    }
+
+    /**
+     * Tests that the histogram can't be modified through the returned copy.
+     */
+    @Test
+    public void testGetHistogram_copy(){
+        long[] histogram = new long[DistanceStats.BUCKETS];
+        histogram[2] = 4;
+        DistanceStats stats = new DistanceStats(new EuclideanRgbaDistance(), 4, 10, 3, histogram);
+
+        stats.getHistogram()[2] = 100;
+
+        assertEquals(4, stats.getHistogram()[2]);
+    }
+
+    /**
+     * Tests that stats measured with the same function can be merged.
+     */
+    @Test
+    public void testMerge(){
+        ColorDistanceFunction function = new EuclideanRgbaDistance();
+        long[] first = new long[DistanceStats.BUCKETS];
+        first[1] = 2;
+        long[] second = new long[DistanceStats.BUCKETS];
+        second[1] = 1;
+        second[4] = 3;
+
+        DistanceStats merged = new DistanceStats(function, 2, 3, 1.5, first)
+                                   .merge(new DistanceStats(function, 4, 33, 12, second));
+
+        assertEquals(function, merged.getDistanceFunction());
+        assertEquals(6, merged.getPixelCount());
+        assertEquals(36.0, merged.getTotalDistance());
+        assertEquals(6.0, merged.getAverageDistance());
+        assertEquals(12.0, merged.getMaxDistance());
+        assertEquals(3, merged.getHistogram()[1]);
+        assertEquals(3, merged.getHistogram()[4]);
+    }
+
+    /**
+     * Tests that stats measured with different functions can't be merged.
+     */
+    @Test
+    public void testMerge_differentFunction(){
+        long[] histogram = new long[DistanceStats.BUCKETS];
+        DistanceStats euclidean = new DistanceStats(new EuclideanRgbaDistance(), 1, 1, 1, histogram);
+        DistanceStats manhattan = new DistanceStats(new ManhattanRgbaDistance(), 1, 1, 1, histogram);
+
+        assertNull(euclidean.merge(manhattan));
+        assertNull(euclidean.merge(null));
+    }
+
+    /**
+     * Tests that stats measured with separate but equal instances of each built-in function can be merged.
+     */
+    @Test
+    public void testMerge_equalFunction(){
+        long[] histogram = new long[DistanceStats.BUCKETS];
+        List<Supplier<ColorDistanceFunction>> functions = Arrays.asList(EuclideanRgbaDistance::new,
+                                                                        ManhattanRgbaDistance::new,
+                                                                        CompuPhaseDistance::new,
+                                                                        WeightedEuclideanRgbaDistance::new);
+        for(Supplier<ColorDistanceFunction> function : functions){
+            DistanceStats first = new DistanceStats(function.get(), 1, 2, 2, histogram);
+            DistanceStats second = new DistanceStats(function.get(), 1, 4, 4, histogram);
+
+            DistanceStats merged = first.merge(second);
+
+            assertEquals(2, merged.getPixelCount());
+            assertEquals(3.0, merged.getAverageDistance());
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.wabradshaw.palettest.analysis;
+
+import com.wabradshaw.palettest.palettes.StandardPalettes;
+import com.wabradshaw.palettest.utils.ImageFileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A set of tests for the {@link DistributionDiff} class.
+ */
+public class DistributionDiffTest {
+
+    /**
+     * Tests that identical distributions have no changes.
+     */
+    @Test
+    public void testDiff_identical(){
+        BufferedImage image = ImageFileUtils.loadImageResource("/sampleImages/complex/smallSheep.jpg");
+        PaletteDistribution a = new Palettester().analysePalette(StandardPalettes.PWG_STANDARD, image);
+        PaletteDistribution b = new Palettester().analysePalette(StandardPalettes.PWG_STANDARD, image);
+
+        DistributionDiff diff = a.diff(b);
+
+        assertFalse(diff.hasChanges());
+        assertTrue(diff.getChanges().isEmpty());
+        assertEquals(a.getTotalCount(), diff.getBeforeTotal());
+        assertEquals(b.getTotalCount(), diff.getAfterTotal());
+    }
+
+    /**
+     * Tests that added, removed and changed tones are all reported with the right counts.
+     */
+    @Test
+    public void testDiff_kinds(){
+        PaletteDistribution before = distribution(toneCount("red", Color.RED, 5),
+                                                  toneCount("blue", Color.BLUE, 3),
+                                                  toneCount("green", Color.GREEN, 2));
+        PaletteDistribution after = distribution(toneCount("red", Color.RED, 5),
+                                                 toneCount("blue", Color.BLUE, 1),
+                                                 toneCount("pink", Color.PINK, 4));
+
+        DistributionDiff diff = before.diff(after);
+
+        assertEquals(3, diff.getChanges().size());
+
+        ToneDelta added = diff.getAdded().get(0);
+        assertEquals("pink", added.getTone().getName());
+        assertEquals(0, added.getBeforeCount());
+        assertEquals(4, added.getAfterCount());
+        assertEquals(1, diff.getAdded().size());
+
+        ToneDelta removed = diff.getRemoved().get(0);
+        assertEquals("green", removed.getTone().getName());
+        assertEquals(-2, removed.getDelta());
+        assertEquals(1, diff.getRemoved().size());
+
+        ToneDelta changed = diff.getChanged().get(0);
+        assertEquals("blue", changed.getTone().getName());
+        assertEquals(-2, changed.getDelta());
+        assertEquals(0.3, changed.getBeforeShare(), 1e-9);
+        assertEquals(0.1, changed.getAfterShare(), 1e-9);
+        assertEquals(1, diff.getChanged().size());
+    }
+
+    /**
+     * Tests that changes are sorted by the size of the change in share, then by the size of the change in count.
+     */
+    @Test
+    public void testDiff_order(){
+        PaletteDistribution before = distribution(toneCount("red", Color.RED, 10),
+                                                  toneCount("blue", Color.BLUE, 10),
+                                                  toneCount("green", Color.GREEN, 80));
+        PaletteDistribution after = distribution(toneCount("red", Color.RED, 11),
+                                                 toneCount("blue", Color.BLUE, 30),
+                                                 toneCount("green", Color.GREEN, 59));
+
+        DistributionDiff diff = before.diff(after);
+
+        assertEquals("green", diff.getChanges().get(0).getTone().getName());
+        assertEquals("blue", diff.getChanges().get(1).getTone().getName());
+        assertEquals("red", diff.getChanges().get(2).getTone().getName());
+    }
+
+    /**
+     * Tests that tones are matched by color, keeping the name from the earlier distribution.
+     */
+    @Test
+    public void testDiff_matchedByColor(){
+        PaletteDistribution before = distribution(toneCount("red", Color.RED, 5));
+        PaletteDistribution after = distribution(toneCount("rouge", Color.RED, 7));
+
+        DistributionDiff diff = before.diff(after);
+
+        assertEquals(1, diff.getChanged().size());
+        assertEquals("red", diff.getChanged().get(0).getTone().getName());
+        assertEquals(2, diff.getChanged().get(0).getDelta());
+    }
+
+    /**
+     * Tests that several tones with the same color are counted together.
+     */
+    @Test
+    public void testDiff_duplicateColors(){
+        PaletteDistribution before = distribution(toneCount("red", Color.RED, 5), toneCount("scarlet", Color.RED, 2));
+        PaletteDistribution after = distribution(toneCount("red", Color.RED, 7));
+
+        assertFalse(before.diff(after).hasChanges());
+    }
+
+    /**
+     * Tests that compact distributions of every color are compared correctly.
+     */
+    @Test
+    public void testDiff_allColors(){
+        Palettester tester = new Palettester();
+        BufferedImage before = ImageFileUtils.loadImageResource("/sampleImages/geometric/redBlueQuarter.png");
+        BufferedImage after = ImageFileUtils.loadImageResource("/sampleImages/geometric/red.png");
+
+        DistributionDiff diff = tester.analyseAllColors(before).diff(tester.analyseAllColors(after));
+
+        assertEquals(2, diff.getChanges().size());
+        assertEquals(Color.RED, diff.getChanged().get(0).getTone().getColor());
+        assertEquals(25, diff.getChanged().get(0).getDelta());
+        assertEquals(Color.BLUE, diff.getRemoved().get(0).getTone().getColor());
+        assertEquals("#0000ff", diff.getRemoved().get(0).getTone().getName());
+    }
+
+    /**
+     * Tests that a compact distribution can be compared with a list-based one.
+     */
+    @Test
+    public void testDiff_mixed(){
+        BufferedImage image = ImageFileUtils.loadImageResource("/sampleImages/geometric/redBlueQuarter.png");
+        PaletteDistribution compact = new Palettester().analyseAllColors(image);
+        PaletteDistribution list = distribution(toneCount("#ff0000", Color.RED, 75),
+                                                toneCount("#0000ff", Color.BLUE, 25));
+
+        assertFalse(compact.diff(list).hasChanges());
+        assertFalse(list.diff(compact).hasChanges());
+    }
+
+    /**
+     * Tests that shares are zero when comparing against an empty distribution.
+     */
+    @Test
+    public void testDiff_empty(){
+        PaletteDistribution before = new PaletteDistribution(Collections.emptyList());
+        PaletteDistribution after = distribution(toneCount("red", Color.RED, 5));
+
+        ToneDelta delta = before.diff(after).getAdded().get(0);
+
+        assertEquals(0, delta.getBeforeShare());
+        assertEquals(1, delta.getAfterShare());
+        assertEquals(1, delta.getShareDelta());
+    }
+
+    /**
+     * Tests that comparing with a null distribution throws an exception.
+     */
+    @Test
+    public void testDiff_null(){
+        PaletteDistribution distribution = distribution(toneCount("red", Color.RED, 5));
+
+        assertThrows(IllegalArgumentException.class, () -> distribution.diff(null));
+        assertThrows(IllegalArgumentException.class, () -> DistributionDiff.between(null, distribution));
+    }
+
+    /**
+     * Creates a {@link PaletteDistribution} from the supplied counts.
+     *
+     * @param counts The {@link ToneCount}s in the distribution.
+     * @return       A new {@link PaletteDistribution}.
+     */
+    private PaletteDistribution distribution(ToneCount... counts){
+        return new PaletteDistribution(Arrays.asList(counts));
+    }
+
+    /**
+     * Creates a {@link ToneCount} made up of a single color.
+     *
+     * @param name  The name of the tone.
+     * @param color The color of the tone.
+     * @param count The number of pixels of that color.
+     * @return      A new {@link ToneCount}.
+     */
+    private ToneCount toneCount(String name, Color color, int count){
+        Map<Color, Integer> pixels = new HashMap<>();
+        pixels.put(color, count);
+        return new ToneCount(new Tone(name, color), pixels);
+    }
+}
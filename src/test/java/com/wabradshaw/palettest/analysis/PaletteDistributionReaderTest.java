@@ -0,0 +1,219 @@
+package com.wabradshaw.palettest.analysis;
+
+import com.wabradshaw.palettest.palettes.StandardPalettes;
+import com.wabradshaw.palettest.utils.ImageFileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A set of tests for the {@link PaletteDistributionReader} class, reading distributions stored by a
+ * {@link PaletteDistributionWriter}.
+ */
+public class PaletteDistributionReaderTest {
+
+    /**
+     * Tests that a palette distribution can be stored and read back with the same tones, counts and order.
+     */
+    @Test
+    public void testRoundTrip_palette() throws IOException {
+        BufferedImage image = ImageFileUtils.loadImageResource("/sampleImages/complex/smallSheep.jpg");
+        PaletteDistribution original = new Palettester().analysePalette(StandardPalettes.PWG_STANDARD, image);
+
+        PaletteDistribution result = roundTrip(original, StandardPalettes.PWG_STANDARD).getDistribution();
+
+        assertEquals(original.getDistribution(), result.getDistribution());
+        assertEquals(original.byCount(), result.byCount());
+        assertEquals(original.getTotalCount(), result.getTotalCount());
+        for(ToneCount count : original.getDistribution()){
+            assertTrue(count.deepEquals(result.get(count.getTone().getName())));
+            assertEquals(count.getTone().getName(), result.get(count.getTone().getColor()).getTone().getName());
+        }
+    }
+
+    /**
+     * Tests that a distribution of every color in an image is stored and read back as the same compact distribution.
+     */
+    @Test
+    public void testRoundTrip_allColors() throws IOException {
+        BufferedImage image = ImageFileUtils.loadImageResource("/sampleImages/complex/smallSheep.jpg");
+        PaletteDistribution original = new Palettester().analyseAllColors(image);
+
+        PaletteDistribution result = roundTrip(original, null).getDistribution();
+
+        assertNotNull(result.getHistogram());
+        assertEquals(original.getDistribution(), result.getDistribution());
+        assertEquals(original.getTotalCount(), result.getTotalCount());
+    }
+
+    /**
+     * Tests that pixel counts with transparent and unusual colors survive being stored.
+     */
+    @Test
+    public void testRoundTrip_pixelCounts() throws IOException {
+        Map<Color, Integer> pixels = new HashMap<>();
+        pixels.put(new Color(0x00000000, true), 1);
+        pixels.put(new Color(0x7fffffff, true), 300);
+        pixels.put(new Color(0x80000000, true), Integer.MAX_VALUE - 301);
+        pixels.put(new Color(0xffffffff, true), 0);
+        ToneCount count = new ToneCount(new Tone("wide", new Color(0x40102030, true)), pixels);
+
+        PaletteDistribution result = roundTrip(new PaletteDistribution(Arrays.asList(count)), null).getDistribution();
+
+        assertTrue(count.deepEquals(result.get("wide")));
+        assertEquals(new Color(0x40102030, true), result.get("wide").getTone().getColor());
+    }
+
+    /**
+     * Tests that counts which are too large for an int survive being stored.
+     */
+    @Test
+    public void testRoundTrip_longCounts() throws IOException {
+        PaletteDistribution single = new PaletteDistribution(Arrays.asList(toneCount("red", Color.RED,
+                                                                                     Integer.MAX_VALUE)));
+        PaletteDistribution original = single.merge(single);
+
+        PaletteDistribution result = roundTrip(original, null).getDistribution();
+
+        assertEquals(2L * Integer.MAX_VALUE, result.getTotalCount());
+        assertTrue(original.get("red").deepEquals(result.get("red")));
+    }
+
+    /**
+     * Tests that an empty distribution can be stored and read back.
+     */
+    @Test
+    public void testRoundTrip_empty() throws IOException {
+        PaletteDistribution result = roundTrip(new PaletteDistribution(Arrays.asList()), null).getDistribution();
+
+        assertTrue(result.isEmpty());
+        assertEquals(0, result.getTotalCount());
+    }
+
+    /**
+     * Tests that names are stored exactly, including duplicate and non-ASCII names.
+     */
+    @Test
+    public void testRoundTrip_names() throws IOException {
+        List<ToneCount> counts = Arrays.asList(toneCount("rouge \u00e9", Color.RED, 2),
+                                               toneCount("same", Color.GREEN, 3),
+                                               toneCount("same", Color.BLUE, 5));
+
+        PaletteDistribution result = roundTrip(new PaletteDistribution(counts), null).getDistribution();
+
+        assertEquals(Color.RED, result.get("rouge \u00e9").getTone().getColor());
+        assertEquals(Color.BLUE, result.get("same").getTone().getColor());
+        assertEquals(counts, result.byName());
+    }
+
+    /**
+     * Tests that the palette fingerprint is stored, and can be checked against a palette.
+     */
+    @Test
+    public void testPaletteFingerprint() throws IOException {
+        PaletteDistribution original = new PaletteDistribution(Arrays.asList(toneCount("red", Color.RED, 2)));
+
+        PaletteDistributionReader reader = roundTrip(original, StandardPalettes.PWG_STANDARD);
+
+        assertEquals(PaletteDistributionWriter.fingerprint(StandardPalettes.PWG_STANDARD),
+                     reader.getPaletteFingerprint());
+        assertTrue(reader.matchesPalette(StandardPalettes.PWG_STANDARD));
+        assertFalse(reader.matchesPalette(StandardPalettes.X11_NUMBERED));
+    }
+
+    /**
+     * Tests that no palette fingerprint is stored when the writer has no palette.
+     */
+    @Test
+    public void testPaletteFingerprint_none() throws IOException {
+        PaletteDistribution original = new PaletteDistribution(Arrays.asList(toneCount("red", Color.RED, 2)));
+
+        assertEquals(0, roundTrip(original, null).getPaletteFingerprint());
+    }
+
+    /**
+     * Tests that a stored distribution can be memory-mapped from a file.
+     */
+    @Test
+    public void testOpenFile() throws IOException {
+        BufferedImage image = ImageFileUtils.loadImageResource("/sampleImages/complex/smallSheep.jpg");
+        PaletteDistribution original = new Palettester().analysePalette(StandardPalettes.PWG_STANDARD, image);
+
+        Path file = Files.createTempFile("palettest", ".bin");
+        try {
+            new PaletteDistributionWriter(StandardPalettes.PWG_STANDARD).write(original, file);
+            PaletteDistributionReader reader = PaletteDistributionReader.open(file);
+
+            assertEquals(original, reader.getDistribution());
+            assertTrue(reader.matchesPalette(StandardPalettes.PWG_STANDARD));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Tests that data which isn't a stored distribution is rejected.
+     */
+    @Test
+    public void testOpen_notADistribution(){
+        ByteBuffer buffer = ByteBuffer.wrap("this is not a distribution".getBytes());
+
+        assertThrows(IllegalArgumentException.class, () -> PaletteDistributionReader.open(buffer));
+    }
+
+    /**
+     * Tests that a stored distribution which has been cut short is rejected.
+     */
+    @Test
+    public void testOpen_truncated() throws IOException {
+        PaletteDistribution original = new PaletteDistribution(Arrays.asList(toneCount("red", Color.RED, 2),
+                                                                             toneCount("blue", Color.BLUE, 3)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PaletteDistributionWriter().write(original, out);
+        byte[] bytes = out.toByteArray();
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, bytes.length - 3);
+
+        assertThrows(IllegalArgumentException.class, () -> PaletteDistributionReader.open(buffer));
+    }
+
+    /**
+     * Writes the distribution to memory, then opens it again.
+     *
+     * @param distribution The distribution to store.
+     * @param palette      The palette to record, or null.
+     * @return             A reader for the stored distribution.
+     */
+    private PaletteDistributionReader roundTrip(PaletteDistribution distribution, List<Tone> palette)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PaletteDistributionWriter(palette).write(distribution, out);
+        return PaletteDistributionReader.open(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    /**
+     * Creates a {@link ToneCount} made up of a single color.
+     *
+     * @param name  The name of the tone.
+     * @param color The color of the tone.
+     * @param count The number of pixels of that color.
+     * @return      A new {@link ToneCount}.
+     */
+    private ToneCount toneCount(String name, Color color, int count){
+        Map<Color, Integer> pixels = new HashMap<>();
+        pixels.put(color, count);
+        return new ToneCount(new Tone(name, color), pixels);
+    }
+}
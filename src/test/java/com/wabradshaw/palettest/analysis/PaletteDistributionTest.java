@@ -1,12 +1,18 @@
 package com.wabradshaw.palettest.analysis;
 
+import com.wabradshaw.palettest.utils.ImageFileUtils;
 import org.junit.jupiter.api.Test;
 
 import java.awt.Color;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -457,6 +463,599 @@ public class PaletteDistributionTest {
         assertNotEquals(distribution1.hashCode(), distribution2.hashCode());
     }
 
+    /**
+     * Tests that the hash code doesn't depend on the order of Tones with the same count.
+     */
+    @Test
+    public void testHashCode_tiesDifferentOrder(){
+        List<ToneCount> counts1 = new ArrayList<>();
+        counts1.add(toneCount("blue", Color.BLUE, 5));
+        counts1.add(toneCount("red", Color.RED, 5));
+        counts1.add(toneCount("green", Color.GREEN, 5));
+
+        List<ToneCount> counts2 = new ArrayList<>();
+        counts2.add(toneCount("green", Color.GREEN, 5));
+        counts2.add(toneCount("red", Color.RED, 5));
+        counts2.add(toneCount("blue", Color.BLUE, 5));
+
+        PaletteDistribution distribution1 = new PaletteDistribution(counts1);
+        PaletteDistribution distribution2 = new PaletteDistribution(counts2);
+
+        assertEquals(distribution1, distribution2);
+        assertEquals(distribution1.hashCode(), distribution2.hashCode());
+        assertEquals(distribution1.getFingerprint(), distribution2.getFingerprint());
+    }
+
+    /**
+     * Tests that the fingerprint changes when a count is moved from one Tone to another.
+     */
+    @Test
+    public void testGetFingerprint_swappedCounts(){
+        List<ToneCount> counts1 = new ArrayList<>();
+        counts1.add(toneCount("blue", Color.BLUE, 5));
+        counts1.add(toneCount("red", Color.RED, 9));
+
+        List<ToneCount> counts2 = new ArrayList<>();
+        counts2.add(toneCount("blue", Color.BLUE, 9));
+        counts2.add(toneCount("red", Color.RED, 5));
+
+        PaletteDistribution distribution1 = new PaletteDistribution(counts1);
+        PaletteDistribution distribution2 = new PaletteDistribution(counts2);
+
+        assertNotEquals(distribution1.getFingerprint(), distribution2.getFingerprint());
+        assertNotEquals(distribution1, distribution2);
+    }
+
+    /**
+     * Tests that an empty distribution has the same fingerprint however it was made.
+     */
+    @Test
+    public void testGetFingerprint_empty(){
+        PaletteDistribution list = new PaletteDistribution(new ArrayList<>());
+        PaletteDistribution columnar = columnar(new int[0], new int[0]);
+
+        assertEquals(list.getFingerprint(), columnar.getFingerprint());
+        assertEquals(list, columnar);
+    }
+
+    /**
+     * Tests that a Tone appearing twice is not equal to the same Tone appearing once.
+     */
+    @Test
+    public void testEquals_duplicates(){
+        List<ToneCount> counts1 = new ArrayList<>();
+        counts1.add(toneCount("blue", Color.BLUE, 5));
+        counts1.add(toneCount("blue", Color.BLUE, 5));
+
+        List<ToneCount> counts2 = new ArrayList<>();
+        counts2.add(toneCount("blue", Color.BLUE, 5));
+
+        PaletteDistribution distribution1 = new PaletteDistribution(counts1);
+        PaletteDistribution distribution2 = new PaletteDistribution(counts2);
+
+        assertNotEquals(distribution1, distribution2);
+        assertNotEquals(distribution2, distribution1);
+    }
+
+    /**
+     * Tests that two columnar distributions with different counts are not equal.
+     */
+    @Test
+    public void testColumnar_notEquals(){
+        PaletteDistribution first = columnar(new int[]{Color.BLUE.getRGB(), Color.RED.getRGB()}, new int[]{5, 9});
+        PaletteDistribution second = columnar(new int[]{Color.BLUE.getRGB(), Color.RED.getRGB()}, new int[]{5, 8});
+        PaletteDistribution same = columnar(new int[]{Color.BLUE.getRGB(), Color.RED.getRGB()}, new int[]{5, 9});
+
+        assertNotEquals(first, second);
+        assertEquals(first, same);
+        assertEquals(first.hashCode(), same.hashCode());
+    }
+
+    /**
+     * Tests that byCount keeps the insertion order of ToneCounts which have the same count.
+     */
+    @Test
+    public void testByCount_ties(){
+        ToneCount blue = toneCount("blue", Color.BLUE, 5);
+        ToneCount red = toneCount("red", Color.RED, 9);
+        ToneCount green = toneCount("green", Color.GREEN, 5);
+
+        List<ToneCount> original = new ArrayList<>();
+
+        original.add(blue);
+        original.add(red);
+        original.add(green);
+
+        PaletteDistribution distribution = new PaletteDistribution(original);
+
+        List<ToneCount> target = new ArrayList<>();
+
+        target.add(red);
+        target.add(blue);
+        target.add(green);
+
+        assertEquals(target, distribution.byCount());
+    }
+
+    /**
+     * Tests that the list returned by byCount can't be changed.
+     */
+    @Test
+    public void testByCountImmutable(){
+        List<ToneCount> original = new ArrayList<>();
+
+        original.add(toneCount("blue", Color.BLUE, 5));
+        original.add(toneCount("red", Color.RED, 9));
+
+        PaletteDistribution distribution = new PaletteDistribution(original);
+
+        assertThrows(UnsupportedOperationException.class,
+                     () -> distribution.byCount().add(toneCount("green", Color.GREEN, 2)));
+        assertEquals(2, distribution.byCount().size());
+    }
+
+    /**
+     * Tests that the list returned by byName can't be changed.
+     */
+    @Test
+    public void testByNameImmutable(){
+        List<ToneCount> original = new ArrayList<>();
+
+        original.add(toneCount("blue", Color.BLUE, 5));
+        original.add(toneCount("red", Color.RED, 9));
+
+        PaletteDistribution distribution = new PaletteDistribution(original);
+
+        assertThrows(UnsupportedOperationException.class, () -> distribution.byName().remove(0));
+        assertEquals(2, distribution.byName().size());
+    }
+
+    /**
+     * Tests that getTotalCount sums the counts of every ToneCount.
+     */
+    @Test
+    public void testGetTotalCount(){
+        List<ToneCount> original = new ArrayList<>();
+
+        original.add(toneCount("blue", Color.BLUE, 5));
+        original.add(toneCount("red", Color.RED, 9));
+        original.add(toneCount("green", Color.GREEN, 2));
+
+        PaletteDistribution distribution = new PaletteDistribution(original);
+
+        assertEquals(16, distribution.getTotalCount());
+    }
+
+    /**
+     * Tests that getTotalCount is zero for an empty distribution.
+     */
+    @Test
+    public void testGetTotalCount_empty(){
+        PaletteDistribution distribution = new PaletteDistribution(new ArrayList<>());
+
+        assertEquals(0, distribution.getTotalCount());
+    }
+
+    /**
+     * Tests that isEmpty is only true for a distribution without any ToneCounts.
+     */
+    @Test
+    public void testIsEmpty(){
+        List<ToneCount> original = new ArrayList<>();
+        original.add(toneCount("blue", Color.BLUE, 5));
+
+        assertTrue(new PaletteDistribution(new ArrayList<>()).isEmpty());
+        assertFalse(new PaletteDistribution(original).isEmpty());
+    }
+
+    /**
+     * Tests that a columnar distribution can look up colors by name and by Color.
+     */
+    @Test
+    public void testColumnar_get(){
+        PaletteDistribution distribution = columnar(new int[]{Color.BLUE.getRGB(), Color.RED.getRGB()},
+                                                    new int[]{5, 9});
+
+        assertEquals(toneCount("#0000ff", Color.BLUE, 5), distribution.get("#0000ff"));
+        assertEquals(toneCount("#ff0000", Color.RED, 9), distribution.get(Color.RED));
+        assertEquals(9, distribution.get(Color.RED).getPixelCounts().get(Color.RED).intValue());
+        assertNull(distribution.get("#00ff00"));
+        assertNull(distribution.get("#FF0000"));
+        assertNull(distribution.get("red"));
+        assertNull(distribution.get(Color.GREEN));
+    }
+
+    /**
+     * Tests that a columnar distribution only creates a single ToneCount for each color.
+     */
+    @Test
+    public void testColumnar_sameToneCount(){
+        PaletteDistribution distribution = columnar(new int[]{Color.BLUE.getRGB(), Color.RED.getRGB()},
+                                                    new int[]{5, 9});
+
+        assertSame(distribution.get(Color.RED), distribution.byCount().get(0));
+        assertSame(distribution.get("#0000ff"), distribution.byName().get(0));
+    }
+
+    /**
+     * Tests the orderings and totals of a columnar distribution.
+     */
+    @Test
+    public void testColumnar_orderings(){
+        PaletteDistribution distribution = columnar(new int[]{Color.BLUE.getRGB(),
+                                                              Color.GREEN.getRGB(),
+                                                              Color.RED.getRGB()},
+                                                    new int[]{5, 2, 9});
+
+        assertEquals("[#ff0000: 9, #00ff00: 2, #0000ff: 5]", distribution.toString());
+        assertEquals("[#ff0000: 9, #0000ff: 5, #00ff00: 2]", distribution.byCount().toString());
+        assertEquals("[#0000ff: 5, #00ff00: 2, #ff0000: 9]", distribution.byName().toString());
+        assertEquals(16, distribution.getTotalCount());
+        assertFalse(distribution.isEmpty());
+    }
+
+    /**
+     * Tests that a columnar distribution is equal to the same distribution made from a list.
+     */
+    @Test
+    public void testColumnar_equals(){
+        PaletteDistribution columnar = columnar(new int[]{Color.BLUE.getRGB(), Color.RED.getRGB()},
+                                                new int[]{5, 9});
+
+        List<ToneCount> counts = new ArrayList<>();
+        counts.add(toneCount("#ff0000", Color.RED, 9));
+        counts.add(toneCount("#0000ff", Color.BLUE, 5));
+        PaletteDistribution list = new PaletteDistribution(counts);
+
+        assertEquals(list, columnar);
+        assertEquals(columnar, list);
+        assertEquals(list.hashCode(), columnar.hashCode());
+    }
+
+    /**
+     * Tests that merging two distributions sums the counts of shared Tones and keeps the Tones of both.
+     */
+    @Test
+    public void testMerge(){
+        List<ToneCount> first = new ArrayList<>();
+        first.add(toneCount("blue", Color.BLUE, 5));
+        first.add(toneCount("red", Color.RED, 9));
+
+        List<ToneCount> second = new ArrayList<>();
+        second.add(toneCount("green", Color.GREEN, 2));
+        second.add(toneCount("rouge", Color.RED, 1));
+
+        PaletteDistribution merged = new PaletteDistribution(first).merge(new PaletteDistribution(second));
+
+        assertEquals("[blue: 5, red: 10, green: 2]", merged.toString());
+        assertEquals(17, merged.getTotalCount());
+        assertNull(merged.get("rouge"));
+    }
+
+    /**
+     * Tests that merging is associative.
+     */
+    @Test
+    public void testMerge_associative(){
+        List<ToneCount> first = new ArrayList<>();
+        first.add(toneCount("blue", Color.BLUE, 5));
+        List<ToneCount> second = new ArrayList<>();
+        second.add(toneCount("red", Color.RED, 9));
+        second.add(toneCount("blue", Color.BLUE, 1));
+        List<ToneCount> third = new ArrayList<>();
+        third.add(toneCount("green", Color.GREEN, 2));
+        third.add(toneCount("red", Color.RED, 3));
+
+        PaletteDistribution a = new PaletteDistribution(first);
+        PaletteDistribution b = new PaletteDistribution(second);
+        PaletteDistribution c = new PaletteDistribution(third);
+
+        assertEquals(a.merge(b).merge(c).toString(), a.merge(b.merge(c)).toString());
+    }
+
+    /**
+     * Tests that merging two compact distributions gives another compact distribution.
+     */
+    @Test
+    public void testMerge_columnar(){
+        PaletteDistribution first = columnar(new int[]{Color.BLUE.getRGB(), Color.RED.getRGB()}, new int[]{5, 9});
+        PaletteDistribution second = columnar(new int[]{Color.GREEN.getRGB(), Color.RED.getRGB()}, new int[]{2, 1});
+
+        PaletteDistribution merged = first.merge(second);
+
+        assertNotNull(merged.getHistogram());
+        assertEquals("[#ff0000: 10, #00ff00: 2, #0000ff: 5]", merged.toString());
+    }
+
+    /**
+     * Tests that a compact distribution can be merged with a regular one.
+     */
+    @Test
+    public void testMerge_mixed(){
+        List<ToneCount> counts = new ArrayList<>();
+        counts.add(toneCount("red", Color.RED, 9));
+
+        PaletteDistribution merged = new PaletteDistribution(counts)
+                                         .merge(columnar(new int[]{Color.BLUE.getRGB(), Color.RED.getRGB()},
+                                                         new int[]{5, 1}));
+
+        assertEquals("[red: 10, #0000ff: 5]", merged.toString());
+    }
+
+    /**
+     * Tests that merging a regular distribution into a compact one keeps the compact distribution's Tones first.
+     */
+    @Test
+    public void testMerge_mixedCompactFirst(){
+        List<ToneCount> counts = new ArrayList<>();
+        counts.add(toneCount("green", Color.GREEN, 2));
+        counts.add(toneCount("red", Color.RED, 9));
+
+        PaletteDistribution merged = columnar(new int[]{Color.BLUE.getRGB(), Color.RED.getRGB()}, new int[]{5, 1})
+                                         .merge(new PaletteDistribution(counts));
+
+        assertNull(merged.getHistogram());
+        assertEquals("[#ff0000: 10, #0000ff: 5, green: 2]", merged.toString());
+    }
+
+    /**
+     * Tests that merging a mixture of compact and regular distributions keeps the Tones in the order they were first
+     * seen, whether they are merged one at a time or combined in groups.
+     */
+    @Test
+    public void testMerge_mixedOrder(){
+        PaletteDistribution first = columnar(new int[]{Color.RED.getRGB()}, new int[]{1});
+        PaletteDistribution second = new PaletteDistribution(Arrays.asList(toneCount("green", Color.GREEN, 2)));
+        PaletteDistribution third = columnar(new int[]{Color.BLUE.getRGB(), Color.RED.getRGB()}, new int[]{5, 3});
+
+        String expected = "[#ff0000: 4, green: 2, #0000ff: 5]";
+        assertEquals(expected, first.merge(second).merge(third).toString());
+        assertEquals(expected, first.merge(second.merge(third)).toString());
+        assertEquals(expected, Stream.of(first, second, third)
+                                     .parallel()
+                                     .collect(PaletteDistribution.merging())
+                                     .toString());
+    }
+
+    /**
+     * Tests that merged distributions can count more pixels than fit in an int, and still sort correctly.
+     */
+    @Test
+    public void testMerge_beyondInt(){
+        List<ToneCount> counts = Arrays.asList(toneCount("red", Color.RED, Integer.MAX_VALUE),
+                                               toneCount("blue", Color.BLUE, 5));
+        PaletteDistribution large = new PaletteDistribution(counts);
+        PaletteDistribution small = new PaletteDistribution(Arrays.asList(toneCount("blue", Color.BLUE, 5)));
+
+        PaletteDistribution merged = large.merge(large).merge(small);
+
+        assertEquals(2L * Integer.MAX_VALUE + 15, merged.getTotalCount());
+        assertEquals("red", merged.byCount().get(0).getTone().getName());
+        assertEquals(2L * Integer.MAX_VALUE, merged.get("red").getLongCount());
+        assertEquals(15, merged.get("blue").getLongCount());
+        assertEquals(merged.byCount().subList(0, 1), merged.top(1));
+    }
+
+    /**
+     * Tests that merged compact distributions can count more pixels than fit in an int.
+     */
+    @Test
+    public void testMerge_columnarBeyondInt(){
+        PaletteDistribution large = columnar(new int[]{Color.BLUE.getRGB(), Color.RED.getRGB()},
+                                             new int[]{5, Integer.MAX_VALUE});
+
+        PaletteDistribution merged = large.merge(large);
+
+        assertNotNull(merged.getHistogram());
+        assertEquals(2L * Integer.MAX_VALUE + 10, merged.getTotalCount());
+        assertEquals(2L * Integer.MAX_VALUE, merged.get(Color.RED).getLongCount());
+        assertEquals(Color.RED, merged.byCount().get(0).getTone().getColor());
+    }
+
+    /**
+     * Tests that merging distributions analysed with the same palette keeps the distance statistics of each tone.
+     */
+    @Test
+    public void testMerge_distanceStats(){
+        BufferedImage image = ImageFileUtils.loadImageResource("/sampleImages/maps/Barcelona.png");
+        PaletteDistribution distribution = new Palettester().analysePalette(image);
+
+        PaletteDistribution merged = distribution.merge(distribution);
+
+        for(ToneCount count : distribution.getDistribution()){
+            DistanceStats stats = merged.get(count.getTone().getName()).getDistanceStats();
+            assertEquals(2 * count.getLongCount(), stats.getPixelCount());
+            assertEquals(count.getDistanceStats().getAverageDistance(), stats.getAverageDistance(), 1e-9);
+            assertEquals(count.getDistanceStats().getMaxDistance(), stats.getMaxDistance());
+        }
+    }
+
+    /**
+     * Tests that a distribution can't be merged with null.
+     */
+    @Test
+    public void testMerge_null(){
+        PaletteDistribution distribution = new PaletteDistribution(new ArrayList<>());
+
+        assertThrows(IllegalArgumentException.class, () -> distribution.merge(null));
+    }
+
+    /**
+     * Tests that the merging collector gives the same result on a parallel stream as merging sequentially.
+     */
+    @Test
+    public void testMerging_parallel(){
+        List<PaletteDistribution> distributions = new ArrayList<>();
+        PaletteDistribution expected = new PaletteDistribution(new ArrayList<>());
+        for(int i = 0; i < 100; i++){
+            List<ToneCount> counts = new ArrayList<>();
+            counts.add(toneCount("blue", Color.BLUE, i + 1));
+            counts.add(toneCount("tone" + (i % 7), new Color(i % 7, 0, 0), 2));
+            PaletteDistribution distribution = new PaletteDistribution(counts);
+            distributions.add(distribution);
+            expected = expected.merge(distribution);
+        }
+
+        PaletteDistribution result = distributions.parallelStream().collect(PaletteDistribution.merging());
+
+        assertEquals(expected.toString(), result.toString());
+        assertEquals(5050, result.get("blue").getCount());
+        assertEquals(5250, result.getTotalCount());
+    }
+
+    /**
+     * Tests that top returns the most common ToneCounts in count order.
+     */
+    @Test
+    public void testTop(){
+        ToneCount blue = toneCount("blue", Color.BLUE, 5);
+        ToneCount red = toneCount("red", Color.RED, 9);
+        ToneCount green = toneCount("green", Color.GREEN, 2);
+
+        List<ToneCount> original = new ArrayList<>();
+
+        original.add(blue);
+        original.add(red);
+        original.add(green);
+
+        PaletteDistribution distribution = new PaletteDistribution(original);
+
+        List<ToneCount> target = new ArrayList<>();
+
+        target.add(red);
+        target.add(blue);
+
+        assertEquals(target, distribution.top(2));
+    }
+
+    /**
+     * Tests that top orders ties in the same way as byCount.
+     */
+    @Test
+    public void testTop_ties(){
+        ToneCount blue = toneCount("blue", Color.BLUE, 5);
+        ToneCount red = toneCount("red", Color.RED, 2);
+        ToneCount green = toneCount("green", Color.GREEN, 5);
+        ToneCount white = toneCount("white", Color.WHITE, 5);
+
+        List<ToneCount> original = new ArrayList<>();
+
+        original.add(blue);
+        original.add(red);
+        original.add(green);
+        original.add(white);
+
+        List<ToneCount> target = new ArrayList<>();
+
+        target.add(blue);
+        target.add(green);
+
+        assertEquals(target, new PaletteDistribution(original).top(2));
+    }
+
+    /**
+     * Tests that top returns everything if asked for more ToneCounts than there are, and nothing for zero.
+     */
+    @Test
+    public void testTop_sizes(){
+        List<ToneCount> original = new ArrayList<>();
+
+        original.add(toneCount("blue", Color.BLUE, 5));
+        original.add(toneCount("red", Color.RED, 9));
+
+        PaletteDistribution distribution = new PaletteDistribution(original);
+
+        assertEquals(distribution.byCount(), distribution.top(10));
+        assertEquals(new ArrayList<>(), distribution.top(0));
+        assertThrows(IllegalArgumentException.class, () -> distribution.top(-1));
+    }
+
+    /**
+     * Tests that top matches the start of byCount on a large compact distribution.
+     */
+    @Test
+    public void testTop_matchesByCount(){
+        Random random = new Random(42);
+        int[] colors = new int[5000];
+        int[] counts = new int[colors.length];
+        for(int i = 0; i < colors.length; i++){
+            colors[i] = 0xff000000 | (i * 97);
+            counts[i] = random.nextInt(50);
+        }
+
+        List<ToneCount> top = columnar(colors, counts).top(10);
+        List<ToneCount> byCount = columnar(colors, counts).byCount().subList(0, 10);
+
+        assertEquals(byCount, top);
+    }
+
+    /**
+     * Tests that byCount and top match a stable sort by count on a large distribution with many ties.
+     */
+    @Test
+    public void testByCount_large(){
+        Random random = new Random(7);
+        List<ToneCount> original = new ArrayList<>();
+        for(int i = 0; i < 3000; i++){
+            original.add(toneCount("tone" + i, new Color(i * 31), random.nextInt(40)));
+        }
+
+        List<ToneCount> expected = new ArrayList<>(original);
+        expected.sort(Comparator.comparingLong(ToneCount::getLongCount).reversed());
+
+        assertEquals(expected, new PaletteDistribution(original).byCount());
+        for(int k : new int[]{1, 2, 17, 500, 2999}){
+            assertEquals(expected.subList(0, k), new PaletteDistribution(original).top(k));
+        }
+    }
+
+    /**
+     * Tests that byCount and top still order negative counts correctly.
+     */
+    @Test
+    public void testByCount_negative(){
+        ToneCount blue = toneCount("blue", Color.BLUE, -5);
+        ToneCount red = toneCount("red", Color.RED, 9);
+        ToneCount green = toneCount("green", Color.GREEN, -2);
+
+        PaletteDistribution distribution = new PaletteDistribution(Arrays.asList(blue, red, green));
+
+        assertEquals(Arrays.asList(red, green, blue), distribution.byCount());
+        assertEquals(Arrays.asList(red, green), distribution.top(2));
+    }
+
+    /**
+     * Tests that byName keeps tones with the same name in insertion order on a large distribution.
+     */
+    @Test
+    public void testByName_large(){
+        Random random = new Random(11);
+        List<ToneCount> original = new ArrayList<>();
+        for(int i = 0; i < 3000; i++){
+            original.add(toneCount("tone" + random.nextInt(100), new Color(i * 31), i));
+        }
+
+        List<ToneCount> expected = new ArrayList<>(original);
+        expected.sort(Comparator.comparing(count -> count.getTone().getName()));
+
+        assertEquals(expected, new PaletteDistribution(original).byName());
+    }
+
+    /**
+     * Tests that the list returned by top can't be changed.
+     */
+    @Test
+    public void testTopImmutable(){
+        List<ToneCount> original = new ArrayList<>();
+
+        original.add(toneCount("blue", Color.BLUE, 5));
+        original.add(toneCount("red", Color.RED, 9));
+
+        PaletteDistribution distribution = new PaletteDistribution(original);
+
+        assertThrows(UnsupportedOperationException.class, () -> distribution.top(1).remove(0));
+    }
+
     /**
      * A mock method to make it easier to create a ToneCount during testing.
      *
@@ -471,4 +1070,15 @@ public class PaletteDistributionTest {
         map.put(color, count);
         return new ToneCount(tone, map);
     }
+
+    /**
+     * A mock method to make it easier to create a columnar PaletteDistribution during testing.
+     *
+     * @param colors The colors in the distribution, as sorted packed ARGB ints.
+     * @param counts How many times each color apparently appeared.
+     * @return       A PaletteDistribution containing the supplied information.
+     */
+    private PaletteDistribution columnar(int[] colors, int[] counts){
+        return PaletteDistribution.of(new ColumnarToneCountTable(new ColorHistogram(colors, counts)));
+    }
 }
@@ -0,0 +1,92 @@
+package com.wabradshaw.palettest.analysis;
+
+import com.wabradshaw.palettest.palettes.StandardPalettes;
+import com.wabradshaw.palettest.utils.ImageFileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A set of tests for the {@link PaletteDistributionWriter} class.
+ */
+public class PaletteDistributionWriterTest {
+
+    /**
+     * Tests that the same palette always has the same fingerprint.
+     */
+    @Test
+    public void testFingerprint_stable(){
+        List<Tone> copy = new ArrayList<>(StandardPalettes.PWG_STANDARD);
+
+        assertEquals(PaletteDistributionWriter.fingerprint(StandardPalettes.PWG_STANDARD),
+                     PaletteDistributionWriter.fingerprint(copy));
+    }
+
+    /**
+     * Tests that renaming, recoloring or reordering a palette changes its fingerprint.
+     */
+    @Test
+    public void testFingerprint_changes(){
+        List<Tone> original = Arrays.asList(new Tone("red", Color.RED), new Tone("blue", Color.BLUE));
+        long fingerprint = PaletteDistributionWriter.fingerprint(original);
+
+        List<Tone> renamed = Arrays.asList(new Tone("rouge", Color.RED), new Tone("blue", Color.BLUE));
+        List<Tone> recolored = Arrays.asList(new Tone("red", Color.PINK), new Tone("blue", Color.BLUE));
+        List<Tone> reordered = Arrays.asList(new Tone("blue", Color.BLUE), new Tone("red", Color.RED));
+        List<Tone> merged = Arrays.asList(new Tone("redb", Color.RED), new Tone("lue", Color.BLUE));
+
+        assertNotEquals(fingerprint, PaletteDistributionWriter.fingerprint(renamed));
+        assertNotEquals(fingerprint, PaletteDistributionWriter.fingerprint(recolored));
+        assertNotEquals(fingerprint, PaletteDistributionWriter.fingerprint(reordered));
+        assertNotEquals(fingerprint, PaletteDistributionWriter.fingerprint(merged));
+    }
+
+    /**
+     * Tests that writing a null distribution throws an exception.
+     */
+    @Test
+    public void testWrite_null(){
+        assertThrows(IllegalArgumentException.class,
+                     () -> new PaletteDistributionWriter().write(null, new ByteArrayOutputStream()));
+    }
+
+    /**
+     * Tests that the stored form of a distribution of every color is much smaller than serialising its counts.
+     */
+    @Test
+    public void testWrite_compact() throws IOException {
+        BufferedImage image = ImageFileUtils.loadImageResource("/sampleImages/complex/smallSheep.jpg");
+        PaletteDistribution distribution = new Palettester().analyseAllColors(image);
+
+        ByteArrayOutputStream stored = new ByteArrayOutputStream();
+        new PaletteDistributionWriter().write(distribution, stored);
+
+        ByteArrayOutputStream serialised = new ByteArrayOutputStream();
+        try(ObjectOutputStream out = new ObjectOutputStream(serialised)){
+            out.writeObject(ColorHistogram.of(image).toColorCounts());
+        }
+
+        assertTrue(stored.size() * 4 < serialised.size());
+    }
+
+    /**
+     * Tests that writing an empty distribution only produces the header and an empty table.
+     */
+    @Test
+    public void testWrite_empty() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PaletteDistributionWriter().write(new PaletteDistribution(Collections.emptyList()), out);
+
+        assertEquals(PaletteDistributionWriter.HEADER_SIZE + 1 + Long.BYTES, out.size());
+    }
+}
@@ -1,6 +1,9 @@
 package com.wabradshaw.palettest.analysis;
 
 import com.wabradshaw.palettest.analysis.clustering.ClusteringAlgorithm;
+import com.wabradshaw.palettest.analysis.clustering.HistogramClusteringAlgorithm;
+import com.wabradshaw.palettest.analysis.clustering.ImageClusteringAlgorithm;
+import com.wabradshaw.palettest.analysis.clustering.OctreeClusterer;
 import com.wabradshaw.palettest.analysis.distance.ColorDistanceFunction;
 import com.wabradshaw.palettest.analysis.distance.EuclideanRgbaDistance;
 import com.wabradshaw.palettest.analysis.naming.ColorNamer;
@@ -176,6 +179,8 @@ public class PalettesterTest {
         ColorDistanceFunction distanceFunction = mock(ColorDistanceFunction.class);
         when(distanceFunction.getDistance(not(eq(new Tone(Color.BLUE))), any())).thenReturn(999.9);
         when(distanceFunction.getDistance(eq(new Tone(Color.BLUE)), any())).thenReturn(1.0);
+        when(distanceFunction.getRankingDistance(not(eq(new Tone(Color.BLUE))), any())).thenReturn(999.9);
+        when(distanceFunction.getRankingDistance(eq(new Tone(Color.BLUE)), any())).thenReturn(1.0);
 
         Palettester tester = new Palettester(null, distanceFunction, null, null);
 
@@ -390,6 +395,49 @@ public class PalettesterTest {
         assertEquals(11, result.byCount().size());
     }
 
+    /**
+     * Tests that analysePalette records the distance of each pixel from its tone, matching the distances measured
+     * afterwards from the pixel counts.
+     */
+    @Test
+    public void testAnalysePalette_DistanceStats(){
+
+        BufferedImage image = ImageFileUtils.loadImageResource("/sampleImages/maps/Barcelona.png");
+        EuclideanRgbaDistance distance = new EuclideanRgbaDistance();
+
+        PaletteDistribution result = new Palettester(distance).analysePalette(image);
+
+        for(ToneCount count : result.byCount()){
+            DistanceStats stats = count.getDistanceStats();
+            ToneCount unrecorded = new ToneCount(count.getTone(), count.getPixelCounts());
+
+            assertEquals(distance, stats.getDistanceFunction());
+            assertEquals(count.getLongCount(), stats.getPixelCount());
+            assertEquals(count.getLongCount(), Arrays.stream(stats.getHistogram()).sum());
+            assertEquals(unrecorded.getAverageDistance(distance), stats.getAverageDistance(), 1e-9);
+            assertEquals(unrecorded.getMaxDistance(distance), stats.getMaxDistance(), 1e-9);
+            assertEquals(stats.getAverageDistance(), count.getAverageDistance(distance));
+        }
+    }
+
+    /**
+     * Tests that the recorded distance statistics are used instead of measuring the distance of each color again.
+     */
+    @Test
+    public void testAnalysePalette_DistanceStatsReused(){
+
+        BufferedImage image = ImageFileUtils.loadImageResource("/sampleImages/maps/Barcelona.png");
+        ColorDistanceFunction distance = spy(new EuclideanRgbaDistance());
+
+        ToneCount count = new Palettester(distance).analysePalette(image).byCount().get(0);
+        reset(distance);
+
+        count.getAverageDistance(distance);
+        count.getMaxDistance(distance);
+
+        verify(distance, never()).getDistance(any(), any());
+    }
+
     /**
      * Tests analyseAllColors when the image only has a single color.
      */
@@ -441,6 +489,43 @@ public class PalettesterTest {
 
     }
 
+    /**
+     * Tests that the all colors collector gives the same result as analysing each image and merging the results.
+     */
+    @Test
+    public void testAllColorsCollector(){
+        List<BufferedImage> images = Arrays.asList(
+                ImageFileUtils.loadImageResource("/sampleImages/geometric/redBlueQuarter.png"),
+                ImageFileUtils.loadImageResource("/sampleImages/geometric/green.png"),
+                ImageFileUtils.loadImageResource("/sampleImages/geometric/red.png"));
+
+        Palettester tester = new Palettester();
+        PaletteDistribution result = images.parallelStream().collect(tester.allColorsCollector());
+
+        assertEquals(3, result.getDistribution().size());
+        assertEquals(175, result.get("#ff0000").getCount());
+        assertEquals(25, result.get("#0000ff").getCount());
+        assertEquals(100, result.get("#00ff00").getCount());
+    }
+
+    /**
+     * Tests that the palette collector merges the analysis of each image against the palette.
+     */
+    @Test
+    public void testPaletteCollector(){
+        List<BufferedImage> images = Arrays.asList(
+                ImageFileUtils.loadImageResource("/sampleImages/geometric/redBlueQuarter.png"),
+                ImageFileUtils.loadImageResource("/sampleImages/geometric/red.png"));
+
+        List<Tone> palette = Arrays.asList(new Tone("Red", Color.RED), new Tone("Blue", Color.BLUE));
+
+        PaletteDistribution result = images.parallelStream().collect(new Palettester().paletteCollector(palette));
+
+        assertEquals(2, result.getDistribution().size());
+        assertEquals(175, result.get("Red").getCount());
+        assertEquals(25, result.get("Blue").getCount());
+    }
+
     /**
      * Tests definePalette on an image only containing one color
      */
@@ -497,6 +582,45 @@ public class PalettesterTest {
         assertTrue(result.contains(new Tone(Color.BLUE)));
     }
 
+    /**
+     * Tests that an {@link OctreeClusterer} defines an opaque palette from a translucent image, the same as a
+     * clustering algorithm which counts the colors first.
+     */
+    @Test
+    public void testDefinePalette_ImageClusteringAlgorithm_Translucent(){
+        BufferedImage image = new BufferedImage(2, 1, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 0x80FF0000);
+        image.setRGB(1, 0, 0x800000FF);
+
+        List<Tone> octree = new Palettester(null, null, new OctreeClusterer(), null).definePalette(image, 1);
+        List<Tone> exact = new Palettester(null, null, new OctreeClusterer(), null).definePalette(image, 2);
+
+        assertEquals(1, octree.size());
+        assertEquals(255, octree.get(0).getColor().getAlpha());
+        assertEquals(2, exact.size());
+        assertTrue(exact.contains(new Tone(Color.RED)));
+        assertTrue(exact.contains(new Tone(Color.BLUE)));
+    }
+
+    /**
+     * Tests that definePalette passes the image straight to an {@link ImageClusteringAlgorithm}, rather than counting
+     * its colors first.
+     */
+    @Test
+    public void testDefinePalette_ImageClusteringAlgorithm(){
+        BufferedImage image = ImageFileUtils.loadImageResource("/sampleImages/geometric/redBlueHorizontal.png");
+        ImageClusteringAlgorithm clusterer = mock(ImageClusteringAlgorithm.class);
+        when(clusterer.cluster(image, 5)).thenReturn(Arrays.asList(Color.RED, Color.BLUE));
+
+        List<Tone> result = new Palettester(null, null, clusterer, null).definePalette(image, 5);
+
+        verify(clusterer).cluster(image, 5);
+        verify(clusterer, never()).cluster(anyMap(), anyInt());
+        assertEquals(2, result.size());
+        assertTrue(result.contains(new Tone(Color.RED)));
+        assertTrue(result.contains(new Tone(Color.BLUE)));
+    }
+
     /**
      * Tests definePalette on a simple image, which has about four main colors (white and three shades of green).
      */
@@ -537,4 +661,22 @@ public class PalettesterTest {
 
         assertEquals(10, result.size());
     }
+
+    /**
+     * Tests that definePalette passes the colors of a starting palette on to the clustering algorithm.
+     */
+    @Test
+    public void testDefinePalette_StartingPalette(){
+        BufferedImage image = ImageFileUtils.loadImageResource("/sampleImages/geometric/redBlueHorizontal.png");
+        HistogramClusteringAlgorithm clusterer = mock(HistogramClusteringAlgorithm.class);
+        int[] starting = {Color.GREEN.getRGB()};
+        when(clusterer.cluster(any(ColorHistogram.class), eq(1), eq(starting)))
+            .thenReturn(new int[]{new Color(127, 0, 127).getRGB()});
+
+        List<Tone> result = new Palettester(null, null, clusterer, null)
+                                .definePalette(image, 1, Arrays.asList(new Tone(Color.GREEN)));
+
+        assertEquals(1, result.size());
+        assertEquals(new Color(127, 0, 127), result.get(0).getColor());
+    }
 }
@@ -1,6 +1,8 @@
 package com.wabradshaw.palettest.analysis;
 
 import com.wabradshaw.palettest.analysis.distance.ColorDistanceFunction;
+import com.wabradshaw.palettest.analysis.distance.EuclideanRgbaDistance;
+import com.wabradshaw.palettest.analysis.distance.ManhattanRgbaDistance;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
@@ -108,6 +110,186 @@ public class ToneCountTest {
         assertNotEquals(gotPixelCounts, toneCount.getPixelCounts());
     }
 
+    /**
+     * Tests that the pixel counts view contains the same counts as the constructor argument.
+     */
+    @Test
+    public void testGetPixelCountsView(){
+        Tone red = new Tone("red", Color.RED);
+
+        Map<Color, Integer> pixelCounts = new HashMap<>();
+        pixelCounts.put(Color.red, 10);
+        pixelCounts.put(Color.orange, 5);
+        pixelCounts.put(Color.pink, 1);
+
+        ToneCount toneCount = new ToneCount(red, pixelCounts);
+
+        assertEquals(toneCount.getLongPixelCounts(), toneCount.getPixelCountsView());
+        assertEquals(Long.valueOf(10), toneCount.getPixelCountsView().get(Color.red));
+        assertEquals(Long.valueOf(5), toneCount.getPixelCountsView().get(Color.orange));
+        assertEquals(Long.valueOf(1), toneCount.getPixelCountsView().get(Color.pink));
+    }
+
+    /**
+     * Tests that the pixel counts view can't be used to modify the ToneCount.
+     */
+    @Test
+    public void testGetPixelCountsViewImmutable(){
+        Tone red = new Tone("red", Color.RED);
+
+        Map<Color, Integer> pixelCounts = new HashMap<>();
+        pixelCounts.put(Color.red, 10);
+
+        ToneCount toneCount = new ToneCount(red, pixelCounts);
+
+        assertThrows(UnsupportedOperationException.class,
+                     () -> toneCount.getPixelCountsView().put(Color.magenta, 4L));
+        assertEquals(1, toneCount.getPixelCountsView().size());
+    }
+
+    /**
+     * Tests that forEachPixelCount visits every color as a packed int alongside its count.
+     */
+    @Test
+    public void testForEachPixelCount(){
+        Tone red = new Tone("red", Color.RED);
+
+        Map<Color, Integer> pixelCounts = new HashMap<>();
+        pixelCounts.put(Color.red, 10);
+        pixelCounts.put(Color.orange, 5);
+        pixelCounts.put(Color.pink, 1);
+
+        ToneCount toneCount = new ToneCount(red, pixelCounts);
+
+        Map<Color, Long> visited = new HashMap<>();
+        toneCount.forEachPixelCount((argb, count) -> visited.put(new Color(argb, true), count));
+
+        assertEquals(3, visited.size());
+        assertEquals(10, (long) visited.get(Color.red));
+        assertEquals(5, (long) visited.get(Color.orange));
+        assertEquals(1, (long) visited.get(Color.pink));
+    }
+
+    /**
+     * Tests that forEachPixelCount skips colors with a null count.
+     */
+    @Test
+    public void testForEachPixelCount_nullCount(){
+        Tone red = new Tone("red", Color.RED);
+
+        Map<Color, Integer> pixelCounts = new HashMap<>();
+        pixelCounts.put(Color.red, 10);
+        pixelCounts.put(Color.pink, null);
+
+        ToneCount toneCount = new ToneCount(red, pixelCounts);
+
+        Map<Color, Long> visited = new HashMap<>();
+        toneCount.forEachPixelCount((argb, count) -> visited.put(new Color(argb, true), count));
+
+        assertEquals(1, visited.size());
+        assertEquals(10, (long) visited.get(Color.red));
+    }
+
+    /**
+     * Tests that merging two ToneCounts for the same Tone sums the pixel counts of each color.
+     */
+    @Test
+    public void testMerge(){
+        Tone red = new Tone("red", Color.RED);
+
+        Map<Color, Integer> first = new HashMap<>();
+        first.put(Color.red, 10);
+        first.put(Color.orange, 5);
+
+        Map<Color, Integer> second = new HashMap<>();
+        second.put(Color.red, 3);
+        second.put(Color.pink, 1);
+
+        ToneCount merged = new ToneCount(red, first).merge(new ToneCount(red, second));
+
+        assertEquals(19, merged.getCount());
+        assertEquals(13, (int) merged.getPixelCounts().get(Color.red));
+        assertEquals(5, (int) merged.getPixelCounts().get(Color.orange));
+        assertEquals(1, (int) merged.getPixelCounts().get(Color.pink));
+    }
+
+    /**
+     * Tests that merging ToneCounts can produce counts which are too large for an int.
+     */
+    @Test
+    public void testMerge_beyondInt(){
+        Tone red = new Tone("red", Color.RED);
+
+        Map<Color, Integer> pixelCounts = new HashMap<>();
+        pixelCounts.put(Color.red, Integer.MAX_VALUE);
+        pixelCounts.put(Color.pink, 1);
+
+        ToneCount single = new ToneCount(red, pixelCounts);
+        ToneCount merged = single.merge(single);
+
+        assertEquals(2L * Integer.MAX_VALUE + 2, merged.getLongCount());
+        assertEquals(2L * Integer.MAX_VALUE, (long) merged.getLongPixelCounts().get(Color.red));
+        assertEquals(2L * Integer.MAX_VALUE, (long) merged.getPixelCountsView().get(Color.red));
+        assertEquals(2L, (long) merged.getPixelCountsView().get(Color.pink));
+        assertThrows(ArithmeticException.class, merged::getCount);
+        assertThrows(ArithmeticException.class, merged::getPixelCounts);
+    }
+
+    /**
+     * Tests that ToneCounts can be created from long counts, and are equal to the same counts as ints.
+     */
+    @Test
+    public void testLongPixelCounts(){
+        Tone red = new Tone("red", Color.RED);
+
+        Map<Color, Long> longCounts = new HashMap<>();
+        longCounts.put(Color.red, 10L);
+        longCounts.put(Color.orange, 5_000_000_000L);
+
+        Map<Color, Integer> intCounts = new HashMap<>();
+        intCounts.put(Color.red, 10);
+
+        ToneCount toneCount = new ToneCount(red, longCounts);
+
+        assertEquals(5_000_000_010L, toneCount.getLongCount());
+        assertEquals(10L, (long) toneCount.getPixelCountsView().get(Color.red));
+        assertEquals(longCounts, toneCount.getLongPixelCounts());
+
+        longCounts.remove(Color.orange);
+        assertTrue(new ToneCount(red, longCounts).deepEquals(new ToneCount(red, intCounts)));
+        assertEquals(new ToneCount(red, longCounts).hashCode(), new ToneCount(red, intCounts).hashCode());
+    }
+
+    /**
+     * Tests that merging keeps the Tone of the ToneCount being merged into, including its name.
+     */
+    @Test
+    public void testMerge_keepsTone(){
+        Map<Color, Integer> pixelCounts = new HashMap<>();
+        pixelCounts.put(Color.red, 10);
+
+        ToneCount first = new ToneCount(new Tone("red", Color.RED), pixelCounts);
+        ToneCount second = new ToneCount(new Tone("rouge", Color.RED), pixelCounts);
+
+        assertEquals("red", first.merge(second).getTone().getName());
+        assertEquals("rouge", second.merge(first).getTone().getName());
+    }
+
+    /**
+     * Tests that ToneCounts for different Tones can't be merged.
+     */
+    @Test
+    public void testMerge_differentTone(){
+        Map<Color, Integer> pixelCounts = new HashMap<>();
+        pixelCounts.put(Color.red, 10);
+
+        ToneCount red = new ToneCount(new Tone("red", Color.RED), pixelCounts);
+        ToneCount blue = new ToneCount(new Tone("blue", Color.BLUE), pixelCounts);
+
+        assertThrows(IllegalArgumentException.class, () -> red.merge(blue));
+        assertThrows(IllegalArgumentException.class, () -> red.merge(null));
+    }
+
     /**
      * Tests that getCount will return the number of pixels of the Tone.
      */
@@ -730,4 +912,83 @@ public class ToneCountTest {
 
         assertFalse(toneCount1.deepEquals(toneCount2));
     }
+
+    /**
+     * Tests that ToneCounts created directly don't have any distance statistics.
+     */
+    @Test
+    public void testDistanceStats_notRecorded(){
+        Map<Color, Integer> pixelCounts = new HashMap<>();
+        pixelCounts.put(Color.red, 10);
+
+        assertNull(new ToneCount(new Tone("red", Color.RED), pixelCounts).getDistanceStats());
+    }
+
+    /**
+     * Tests that recorded distance statistics are used when the same distance function is requested, and ignored
+     * when a different one is.
+     */
+    @Test
+    public void testDistanceStats_used(){
+        ColorDistanceFunction recorded = Mockito.mock(ColorDistanceFunction.class);
+        ColorDistanceFunction other = Mockito.mock(ColorDistanceFunction.class);
+        Mockito.when(other.getDistance(Mockito.any(), Mockito.any())).thenReturn(7.0);
+
+        Map<Color, Integer> pixelCounts = new HashMap<>();
+        pixelCounts.put(Color.red, 10);
+        DistanceStats stats = new DistanceStats(recorded, 10, 30, 5, new long[DistanceStats.BUCKETS]);
+
+        ToneCount toneCount = new ToneCount(new Tone("red", Color.RED), pixelCounts, stats);
+
+        assertEquals(3.0, toneCount.getAverageDistance(recorded));
+        assertEquals(5.0, toneCount.getMaxDistance(recorded));
+        assertEquals(7.0, toneCount.getAverageDistance(other));
+        assertEquals(7.0, toneCount.getMaxDistance(other));
+        Mockito.verify(recorded, Mockito.never()).getDistance(Mockito.any(), Mockito.any());
+    }
+
+    /**
+     * Tests that recorded distance statistics are used when an equal distance function is requested, even if it is a
+     * different instance from the one used to record them.
+     */
+    @Test
+    public void testDistanceStats_equalFunction(){
+        Map<Color, Integer> pixelCounts = new HashMap<>();
+        pixelCounts.put(Color.red, 10);
+        long[] histogram = new long[DistanceStats.BUCKETS];
+        DistanceStats stats = new DistanceStats(new EuclideanRgbaDistance(), 10, 30, 5, histogram);
+
+        ToneCount toneCount = new ToneCount(new Tone("red", Color.RED), pixelCounts, stats);
+
+        assertEquals(3.0, toneCount.getAverageDistance(new EuclideanRgbaDistance()));
+        assertEquals(5.0, toneCount.getMaxDistance(new EuclideanRgbaDistance()));
+        assertEquals(0.0, toneCount.getAverageDistance(new ManhattanRgbaDistance()));
+    }
+
+    /**
+     * Tests that merging ToneCounts combines their distance statistics, as long as both have them.
+     */
+    @Test
+    public void testMerge_distanceStats(){
+        ColorDistanceFunction function = Mockito.mock(ColorDistanceFunction.class);
+        Tone red = new Tone("red", Color.RED);
+
+        Map<Color, Integer> pixelCounts = new HashMap<>();
+        pixelCounts.put(Color.red, 10);
+        long[] histogram = new long[DistanceStats.BUCKETS];
+        histogram[3] = 10;
+
+        ToneCount first = new ToneCount(red, pixelCounts, new DistanceStats(function, 10, 50, 5, histogram));
+        ToneCount second = new ToneCount(red, pixelCounts, new DistanceStats(function, 10, 70, 7, histogram));
+        ToneCount unrecorded = new ToneCount(red, pixelCounts);
+
+        DistanceStats merged = first.merge(second).getDistanceStats();
+
+        assertEquals(20, merged.getPixelCount());
+        assertEquals(6.0, merged.getAverageDistance());
+        assertEquals(7.0, merged.getMaxDistance());
+        assertEquals(20, merged.getHistogram()[3]);
+        assertNull(first.merge(unrecorded).getDistanceStats());
+        assertNull(unrecorded.merge(first).getDistanceStats());
+    }
 }
@@ -0,0 +1,53 @@
+package com.wabradshaw.palettest.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A set of tests for the {@link ToneDelta} class.
+ */
+public class ToneDeltaTest {
+
+    /**
+     * Tests that the delta and shares are calculated from the counts and totals.
+     */
+    @Test
+    public void testShares(){
+        ToneDelta delta = new ToneDelta(new Tone("red", Color.RED), 25, 60, 100, 200);
+
+        assertEquals(35, delta.getDelta());
+        assertEquals(0.25, delta.getBeforeShare());
+        assertEquals(0.3, delta.getAfterShare());
+        assertEquals(0.05, delta.getShareDelta(), 1e-9);
+        assertFalse(delta.isAdded());
+        assertFalse(delta.isRemoved());
+    }
+
+    /**
+     * Tests that counts larger than an int are supported.
+     */
+    @Test
+    public void testLargeCounts(){
+        ToneDelta delta = new ToneDelta(new Tone("red", Color.RED), 0, 5_000_000_000L, 0, 10_000_000_000L);
+
+        assertEquals(5_000_000_000L, delta.getDelta());
+        assertEquals(0, delta.getBeforeShare());
+        assertEquals(0.5, delta.getAfterShare());
+        assertTrue(delta.isAdded());
+    }
+
+    /**
+     * Tests that a tone with no pixels afterwards is removed.
+     */
+    @Test
+    public void testRemoved(){
+        ToneDelta delta = new ToneDelta(new Tone("red", Color.RED), 10, 0, 100, 90);
+
+        assertTrue(delta.isRemoved());
+        assertEquals(-10, delta.getDelta());
+        assertEquals("red: 10 -> 0", delta.toString());
+    }
+}
@@ -0,0 +1,149 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import com.wabradshaw.palettest.analysis.ColorHistogram;
+import com.wabradshaw.palettest.analysis.distance.EuclideanRgbaDistance;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A set of tests for the {@link AutoSizingClusterer}.
+ */
+public class AutoSizingClustererTest {
+
+    /**
+     * Tests that the elbow is the point furthest below the line from the first error to the last.
+     */
+    @Test
+    public void testElbow(){
+        assertEquals(2, AutoSizingClusterer.elbow(new double[]{100, 60, 10, 8, 6, 5}));
+        assertEquals(1, AutoSizingClusterer.elbow(new double[]{100, 10, 8, 6, 5}));
+    }
+
+    /**
+     * Tests that if the errors don't fall, the first point is the elbow, and if they fall in a straight line, the last
+     * point is.
+     */
+    @Test
+    public void testElbow_noElbow(){
+        assertEquals(0, AutoSizingClusterer.elbow(new double[]{5, 5, 5}));
+        assertEquals(0, AutoSizingClusterer.elbow(new double[]{5}));
+        assertEquals(3, AutoSizingClusterer.elbow(new double[]{4, 3, 2, 1}));
+    }
+
+    /**
+     * Tests that the threshold picks the first acceptable error, or the last error if none are acceptable.
+     */
+    @Test
+    public void testThreshold(){
+        assertEquals(2, AutoSizingClusterer.threshold(new double[]{10, 5, 2, 1}, 3));
+        assertEquals(1, AutoSizingClusterer.threshold(new double[]{10, 5, 2, 1}, 5));
+        assertEquals(3, AutoSizingClusterer.threshold(new double[]{10, 5, 2, 1}, 0.5));
+    }
+
+    /**
+     * Tests that three obvious clusters are found using the elbow, even when more clusters are allowed.
+     */
+    @Test
+    public void testCluster_Elbow(){
+        WeightedKMeansClusterer kMeans = new WeightedKMeansClusterer(new EuclideanRgbaDistance(), 0);
+
+        AutoSizingClusterer clusterer = new AutoSizingClusterer(kMeans, new EuclideanRgbaDistance());
+
+        Collection<Color> result = clusterer.cluster(threeGroups(), 8);
+
+        assertEquals(3, result.size());
+        assertTrue(result.contains(new Color(220, 0, 0)));
+        assertTrue(result.contains(new Color(0, 200, 0)));
+        assertTrue(result.contains(new Color(0, 0, 200)));
+    }
+
+    /**
+     * Tests that the threshold rule picks the fewest clusters with an acceptable error.
+     */
+    @Test
+    public void testCluster_Threshold(){
+        WeightedKMeansClusterer kMeans = new WeightedKMeansClusterer(new EuclideanRgbaDistance(), 0);
+
+        EuclideanRgbaDistance distance = new EuclideanRgbaDistance();
+
+        Collection<Color> close = new AutoSizingClusterer(kMeans, distance, 15).cluster(threeGroups(), 8);
+        Collection<Color> loose = new AutoSizingClusterer(kMeans, distance, 1000).cluster(threeGroups(), 8);
+        Collection<Color> exact = new AutoSizingClusterer(kMeans, distance, 0).cluster(threeGroups(), 8);
+
+        assertEquals(3, close.size());
+        assertEquals(1, loose.size());
+        assertEquals(6, exact.size());
+    }
+
+    /**
+     * Tests that no more clusters are tried than there are colors.
+     */
+    @Test
+    public void testCluster_FewColors(){
+        ColorHistogram histogram = ColorHistogram.of(new int[]{Color.RED.getRGB(), Color.BLUE.getRGB()},
+                                                     new int[]{1, 1});
+
+        int[] result = new AutoSizingClusterer(new MedianCutClusterer(), new EuclideanRgbaDistance(), 0)
+                           .cluster(histogram, 10);
+
+        assertEquals(2, result.length);
+    }
+
+    /**
+     * Tests that running in parallel picks the same clusters as running sequentially.
+     */
+    @Test
+    public void testParallel_SameResult(){
+        Map<Color, Integer> counts = new HashMap<>();
+        Random random = new Random(5);
+        while(counts.size() < 3000){
+            counts.put(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)), 1 + random.nextInt(50));
+        }
+        ColorHistogram histogram = ColorHistogram.of(counts);
+        WeightedKMeansClusterer kMeans = new WeightedKMeansClusterer(new EuclideanRgbaDistance(), 2);
+
+        int[] parallel = new AutoSizingClusterer(kMeans, new EuclideanRgbaDistance(), null, true).cluster(histogram, 6);
+        int[] sequential = new AutoSizingClusterer(kMeans, new EuclideanRgbaDistance(), null, false)
+                               .cluster(histogram, 6);
+
+        assertArrayEquals(sequential, parallel);
+    }
+
+    /**
+     * Tests that the clusterer needs an algorithm, a distance function, and a maximum error which isn't negative.
+     */
+    @Test
+    public void testInvalid(){
+        ClusteringAlgorithm algorithm = new MedianCutClusterer();
+
+        assertThrows(IllegalArgumentException.class, () -> new AutoSizingClusterer(null, new EuclideanRgbaDistance()));
+        assertThrows(IllegalArgumentException.class, () -> new AutoSizingClusterer(algorithm, null));
+        assertThrows(IllegalArgumentException.class,
+                     () -> new AutoSizingClusterer(algorithm, new EuclideanRgbaDistance(), -1));
+        assertThrows(IllegalArgumentException.class,
+                     () -> new AutoSizingClusterer(algorithm, new EuclideanRgbaDistance(), Double.NaN));
+    }
+
+    /**
+     * Creates three well separated groups of two colors each.
+     *
+     * @return The colors and their counts.
+     */
+    private Map<Color, Integer> threeGroups(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(new Color(210, 0, 0), 10);
+        counts.put(new Color(230, 0, 0), 10);
+        counts.put(new Color(0, 190, 0), 10);
+        counts.put(new Color(0, 210, 0), 10);
+        counts.put(new Color(0, 0, 190), 10);
+        counts.put(new Color(0, 0, 210), 10);
+        return counts;
+    }
+}
@@ -0,0 +1,104 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import com.wabradshaw.palettest.analysis.ColorHistogram;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A set of tests for the {@link ClusterAssignment} class.
+ */
+public class ClusterAssignmentTest {
+
+    /**
+     * Tests that the cluster for each color can be looked up by position or color.
+     */
+    @Test
+    public void testGetAssignment(){
+        ClusterAssignment assignment = new ClusterAssignment(new int[]{Color.RED.getRGB(), Color.BLUE.getRGB()},
+                                                             new int[]{1, 0, 1});
+
+        assertEquals(1, assignment.getAssignment(0));
+        assertEquals(0, assignment.getAssignment(1));
+        assertEquals(Color.BLUE.getRGB(), assignment.getAssignedCluster(2));
+        assertEquals(Color.RED.getRGB(), assignment.getAssignedCluster(1));
+    }
+
+    /**
+     * Tests that the arrays can't be modified after the assignment is created.
+     */
+    @Test
+    public void testCopies(){
+        int[] clusters = {Color.RED.getRGB()};
+        int[] assignments = {0};
+        ClusterAssignment assignment = new ClusterAssignment(clusters, assignments);
+
+        clusters[0] = Color.BLUE.getRGB();
+        assignment.getClusters()[0] = Color.GREEN.getRGB();
+
+        assertArrayEquals(new int[]{Color.RED.getRGB()}, assignment.getClusters());
+    }
+
+    /**
+     * Tests that every assignment must be the position of a cluster.
+     */
+    @Test
+    public void testInvalid(){
+        assertThrows(IllegalArgumentException.class, () -> new ClusterAssignment(null, new int[0]));
+        assertThrows(IllegalArgumentException.class, () -> new ClusterAssignment(new int[1], null));
+        assertThrows(IllegalArgumentException.class, () -> new ClusterAssignment(new int[1], new int[]{1}));
+        assertThrows(IllegalArgumentException.class, () -> new ClusterAssignment(new int[1], new int[]{-1}));
+    }
+
+    /**
+     * Tests that colors can only be unassigned when there are no clusters to assign them to.
+     */
+    @Test
+    public void testUnassigned(){
+        int[] unassigned = {ClusterAssignment.UNASSIGNED, ClusterAssignment.UNASSIGNED};
+        ClusterAssignment assignment = new ClusterAssignment(new int[0], unassigned);
+
+        assertEquals(0, assignment.getClusters().length);
+        assertEquals(ClusterAssignment.UNASSIGNED, assignment.getAssignment(1));
+        assertThrows(IllegalStateException.class, () -> assignment.getAssignedCluster(1));
+        assertThrows(IllegalArgumentException.class, () -> new ClusterAssignment(new int[0], new int[]{0}));
+    }
+
+    /**
+     * Tests that every color is unassigned if there are no clusters to assign it to.
+     */
+    @Test
+    public void testNearest_noClusters(){
+        ColorHistogram histogram = ColorHistogram.of(new int[]{Color.RED.getRGB(), Color.BLUE.getRGB()},
+                                                     new int[]{0, 0});
+
+        ClusterAssignment assignment = ClusterAssignment.nearest(histogram, new int[0]);
+
+        assertEquals(ClusterAssignment.UNASSIGNED, assignment.getAssignment(0));
+        assertEquals(ClusterAssignment.UNASSIGNED, assignment.getAssignment(1));
+    }
+
+    /**
+     * Tests that each color is assigned to the closest cluster by red, green, blue and alpha.
+     */
+    @Test
+    public void testNearest(){
+        ColorHistogram histogram = ColorHistogram.of(new int[]{new Color(10, 0, 0).getRGB(),
+                                                               new Color(200, 0, 0).getRGB(),
+                                                               new Color(0, 0, 250).getRGB()},
+                                                     new int[]{1, 1, 1});
+        int[] clusters = {Color.BLUE.getRGB(), Color.BLACK.getRGB(), Color.RED.getRGB()};
+
+        ClusterAssignment assignment = ClusterAssignment.nearest(histogram, clusters);
+
+        for(int i = 0; i < histogram.size(); i++){
+            int color = histogram.getColor(i);
+            int expected = color == new Color(10, 0, 0).getRGB() ? Color.BLACK.getRGB()
+                         : color == new Color(200, 0, 0).getRGB() ? Color.RED.getRGB()
+                         : Color.BLUE.getRGB();
+            assertEquals(expected, assignment.getAssignedCluster(i));
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import com.wabradshaw.palettest.analysis.ColorHistogram;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A set of tests for the {@link ColorSpaceKMeansClusterer}.
+ */
+public class ColorSpaceKMeansClustererTest {
+
+    /**
+     * Tests that a single cluster is the weighted average of the colors in the chosen color space. Averaging black and
+     * white in sRGB gives a mid gray, but in linear RGB it gives the lighter gray with half the light.
+     */
+    @Test
+    public void testSingleCluster_AverageInColorSpace(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(Color.BLACK, 1);
+        counts.put(Color.WHITE, 1);
+
+        Collection<Color> srgb = new ColorSpaceKMeansClusterer(ColorSpace.SRGB, 0).cluster(counts, 1);
+        Collection<Color> linear = new ColorSpaceKMeansClusterer(ColorSpace.LINEAR_RGB, 0).cluster(counts, 1);
+        Collection<Color> lab = new ColorSpaceKMeansClusterer(ColorSpace.LAB, 0).cluster(counts, 1);
+
+        assertTrue(srgb.contains(new Color(128, 128, 128)));
+        assertTrue(linear.contains(new Color(188, 188, 188)));
+        assertTrue(lab.contains(new Color(119, 119, 119)));
+    }
+
+    /**
+     * Tests that asking for at least as many clusters as colors will return the original colors.
+     */
+    @Test
+    public void testMultipleClusters_SameNumber(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(Color.RED, 10);
+        counts.put(Color.BLUE, 11);
+        counts.put(Color.GREEN, 4);
+
+        for(ColorSpace colorSpace : ColorSpace.values()){
+            Collection<Color> result = new ColorSpaceKMeansClusterer(colorSpace, 0).cluster(counts, 5);
+
+            assertEquals(counts.keySet(), new HashSet<>(result));
+        }
+    }
+
+    /**
+     * Tests that obvious clusters are found in every color space.
+     */
+    @Test
+    public void testMultipleClusters_ClearCut(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(new Color(200, 0, 0), 10);
+        counts.put(new Color(210, 0, 0), 10);
+        counts.put(new Color(0, 200, 0), 10);
+        counts.put(new Color(0, 210, 0), 10);
+        counts.put(new Color(0, 0, 200), 10);
+        counts.put(new Color(0, 0, 210), 10);
+
+        for(ColorSpace colorSpace : ColorSpace.values()){
+            for(long seed = 0; seed < 5; seed++){
+                Collection<Color> result = new ColorSpaceKMeansClusterer(colorSpace, seed).cluster(counts, 3);
+
+                assertEquals(3, result.size());
+                assertTrue(result.stream().anyMatch(c -> c.getRed() >= 200 && c.getRed() <= 210));
+                assertTrue(result.stream().anyMatch(c -> c.getGreen() >= 200 && c.getGreen() <= 210));
+                assertTrue(result.stream().anyMatch(c -> c.getBlue() >= 200 && c.getBlue() <= 210));
+            }
+        }
+    }
+
+    /**
+     * Tests that a parallel clusterer finds the same clusters as a sequential one with the same seed.
+     */
+    @Test
+    public void testParallel_SameResult(){
+        Map<Color, Integer> counts = new HashMap<>();
+        Random random = new Random(3);
+        while(counts.size() < 20000){
+            counts.put(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)), 1 + random.nextInt(50));
+        }
+        ColorHistogram histogram = ColorHistogram.of(counts);
+
+        int[] parallel = new ColorSpaceKMeansClusterer(ColorSpace.LAB, 9, true, 1, 20).cluster(histogram, 8);
+        int[] sequential = new ColorSpaceKMeansClusterer(ColorSpace.LAB, 9, false, 1, 20).cluster(histogram, 8);
+
+        assertEquals(8, parallel.length);
+        assertArrayEquals(sequential, parallel);
+    }
+
+    /**
+     * Tests that supplied starting clusters are refined in place of the seeding, in the order they were supplied.
+     */
+    @Test
+    public void testStartingClusters(){
+        ColorHistogram histogram = ColorHistogram.of(new int[]{new Color(0, 0, 0).getRGB(),
+                                                               new Color(10, 0, 0).getRGB(),
+                                                               new Color(240, 0, 0).getRGB(),
+                                                               new Color(250, 0, 0).getRGB()},
+                                                     new int[]{1, 1, 1, 1});
+        int[] starting = {new Color(230, 0, 0).getRGB(), new Color(20, 0, 0).getRGB()};
+
+        int[] result = new ColorSpaceKMeansClusterer(ColorSpace.SRGB, 0).cluster(histogram, 2, starting);
+
+        assertArrayEquals(new int[]{new Color(245, 0, 0).getRGB(), new Color(5, 0, 0).getRGB()}, result);
+    }
+
+    /**
+     * Tests that a cluster which no colors are closest to is moved to the worst described color, rather than being
+     * dropped.
+     */
+    @Test
+    public void testEmptyCluster_Reseeded(){
+        ColorHistogram histogram = ColorHistogram.of(new int[]{new Color(0, 0, 0).getRGB(),
+                                                               new Color(10, 0, 0).getRGB(),
+                                                               new Color(240, 0, 0).getRGB(),
+                                                               new Color(250, 0, 0).getRGB()},
+                                                     new int[]{1, 1, 1, 1});
+        int[] starting = {new Color(5, 0, 0).getRGB(), new Color(5, 0, 0).getRGB(), new Color(245, 0, 0).getRGB()};
+
+        int[] result = new ColorSpaceKMeansClusterer(ColorSpace.SRGB, 0).cluster(histogram, 3, starting);
+
+        assertArrayEquals(new int[]{new Color(10, 0, 0).getRGB(), new Color(0, 0, 0).getRGB(),
+                                    new Color(245, 0, 0).getRGB()}, result);
+    }
+
+    /**
+     * Tests that the clusterer needs a color space and valid convergence settings.
+     */
+    @Test
+    public void testInvalid(){
+        assertThrows(IllegalArgumentException.class, () -> new ColorSpaceKMeansClusterer(null));
+        assertThrows(IllegalArgumentException.class,
+                     () -> new ColorSpaceKMeansClusterer(ColorSpace.LAB, 0, true, -1, 20));
+        assertThrows(IllegalArgumentException.class,
+                     () -> new ColorSpaceKMeansClusterer(ColorSpace.LAB, 0, true, 1, 0));
+    }
+
+    /**
+     * Tests that the final assignments are returned alongside the clusters, matching each color to its cluster.
+     */
+    @Test
+    public void testClusterAndAssign(){
+        ColorHistogram histogram = ColorHistogram.of(new int[]{new Color(0, 0, 0).getRGB(),
+                                                               new Color(10, 0, 0).getRGB(),
+                                                               new Color(240, 0, 0).getRGB(),
+                                                               new Color(250, 0, 0).getRGB()},
+                                                     new int[]{1, 1, 1, 1});
+
+        ClusterAssignment assignment = new ColorSpaceKMeansClusterer(ColorSpace.SRGB, 0).clusterAndAssign(histogram, 2);
+
+        assertEquals(2, assignment.getClusters().length);
+        assertEquals(new Color(5, 0, 0).getRGB(), assignment.getAssignedCluster(0));
+        assertEquals(new Color(5, 0, 0).getRGB(), assignment.getAssignedCluster(1));
+        assertEquals(new Color(245, 0, 0).getRGB(), assignment.getAssignedCluster(2));
+        assertEquals(new Color(245, 0, 0).getRGB(), assignment.getAssignedCluster(3));
+    }
+
+    /**
+     * Tests that a histogram whose counts are all zero has no clusters.
+     */
+    @Test
+    public void testZeroCounts(){
+        ColorHistogram histogram = ColorHistogram.of(new int[]{Color.BLACK.getRGB(), Color.WHITE.getRGB()},
+                                                     new int[]{0, 0});
+
+        assertEquals(0, new ColorSpaceKMeansClusterer(ColorSpace.SRGB, 0).cluster(histogram, 2).length);
+    }
+}
@@ -0,0 +1,85 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A set of tests for the {@link ColorSpace} conversions.
+ */
+public class ColorSpaceTest {
+
+    /**
+     * Tests that sRGB coordinates are the channel values.
+     */
+    @Test
+    public void testSrgb(){
+        double[] coordinates = coordinates(ColorSpace.SRGB, new Color(10, 20, 30, 40));
+
+        assertArrayEquals(new double[]{10, 20, 30, 40}, coordinates);
+    }
+
+    /**
+     * Tests that linear RGB coordinates follow the sRGB gamma curve.
+     */
+    @Test
+    public void testLinearRgb(){
+        double[] coordinates = coordinates(ColorSpace.LINEAR_RGB, new Color(0, 128, 255));
+
+        assertEquals(0, coordinates[0], 1e-9);
+        assertEquals(0.2158605, coordinates[1], 1e-6);
+        assertEquals(1, coordinates[2], 1e-9);
+        assertEquals(1, coordinates[3], 1e-9);
+    }
+
+    /**
+     * Tests the L*a*b* coordinates of some well known colors.
+     */
+    @Test
+    public void testLab(){
+        assertArrayEquals(new double[]{100, 0, 0, 100}, coordinates(ColorSpace.LAB, Color.WHITE), 1e-3);
+        assertArrayEquals(new double[]{0, 0, 0, 100}, coordinates(ColorSpace.LAB, Color.BLACK), 1e-3);
+        assertArrayEquals(new double[]{53.2408, 80.0925, 67.2032, 100}, coordinates(ColorSpace.LAB, Color.RED), 1e-2);
+        assertArrayEquals(new double[]{0, 0, 0, 0}, coordinates(ColorSpace.LAB, new Color(0, 0, 0, 0)), 1e-3);
+    }
+
+    /**
+     * Tests that converting colors into each space and back gives the original colors.
+     */
+    @Test
+    public void testRoundTrip(){
+        double[] coordinates = new double[ColorSpace.DIMENSIONS];
+        for(ColorSpace colorSpace : ColorSpace.values()){
+            for(int rgb = 0; rgb < 0x1000000; rgb += 997){
+                int argb = (rgb * 31) << 24 | rgb;
+                colorSpace.toCoordinates(argb, coordinates, 0);
+                assertEquals(argb, colorSpace.toArgb(coordinates, 0), colorSpace + " " + Integer.toHexString(argb));
+            }
+        }
+    }
+
+    /**
+     * Tests that coordinates outside of the 8-bit colors are clamped when they are converted back.
+     */
+    @Test
+    public void testToArgb_clamped(){
+        assertEquals(0xffff0000, ColorSpace.SRGB.toArgb(new double[]{300, -5, 0, 255}, 0));
+        assertEquals(0xffffffff, ColorSpace.LINEAR_RGB.toArgb(new double[]{1.5, 2, 1.1, 1}, 0));
+        assertEquals(0xffffffff, ColorSpace.LAB.toArgb(new double[]{120, 0, 0, 100}, 0));
+    }
+
+    /**
+     * Converts a color into coordinates.
+     *
+     * @param colorSpace The color space to convert the color into.
+     * @param color      The color to convert.
+     * @return           The coordinates of the color.
+     */
+    private double[] coordinates(ColorSpace colorSpace, Color color){
+        double[] coordinates = new double[ColorSpace.DIMENSIONS];
+        colorSpace.toCoordinates(color.getRGB(), coordinates, 0);
+        return coordinates;
+    }
+}
@@ -0,0 +1,147 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import com.wabradshaw.palettest.analysis.ColorHistogram;
+import com.wabradshaw.palettest.analysis.distance.EuclideanRgbaDistance;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * A set of tests for the default methods of {@link HistogramClusteringAlgorithm}, and its adapter.
+ */
+public class HistogramClusteringAlgorithmTest {
+
+    /**
+     * Tests that clustering a map passes the same colors on as a histogram, and turns the clusters back into colors.
+     */
+    @Test
+    public void testCluster_map(){
+        AtomicReference<ColorHistogram> received = new AtomicReference<>();
+        HistogramClusteringAlgorithm algorithm = (histogram, targetClusters) -> {
+            received.set(histogram);
+            return new int[]{0x80ff0000, Color.BLUE.getRGB()};
+        };
+
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(Color.RED, 3);
+        counts.put(Color.BLUE, 5);
+
+        Collection<Color> result = algorithm.cluster(counts, 2);
+
+        assertEquals(2, received.get().size());
+        assertEquals(8, received.get().getTotalCount());
+        assertEquals(Arrays.asList(new Color(255, 0, 0, 128), Color.BLUE), result);
+    }
+
+    /**
+     * Tests that clustering parallel arrays passes them on as a histogram.
+     */
+    @Test
+    public void testCluster_arrays(){
+        AtomicReference<ColorHistogram> received = new AtomicReference<>();
+        HistogramClusteringAlgorithm algorithm = (histogram, targetClusters) -> {
+            received.set(histogram);
+            return new int[]{Color.RED.getRGB()};
+        };
+
+        int[] result = algorithm.cluster(new int[]{Color.RED.getRGB(), Color.RED.getRGB()}, new int[]{1, 2}, 1);
+
+        assertEquals(1, received.get().size());
+        assertEquals(3, received.get().getCount(0));
+        assertArrayEquals(new int[]{Color.RED.getRGB()}, result);
+    }
+
+    /**
+     * Tests that adapting an algorithm which already works on histograms returns it unchanged.
+     */
+    @Test
+    public void testAdapt_alreadyHistogram(){
+        HistogramClusteringAlgorithm algorithm = new MedianCutClusterer();
+
+        assertSame(algorithm, HistogramClusteringAlgorithm.adapt(algorithm));
+    }
+
+    /**
+     * Tests that an adapted algorithm is given the histogram as a map, and its clusters are packed into ints.
+     */
+    @Test
+    public void testAdapt_map(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(Color.RED, 3);
+        counts.put(Color.BLUE, 5);
+
+        ClusteringAlgorithm algorithm = mock(ClusteringAlgorithm.class);
+        when(algorithm.cluster(counts, 1)).thenReturn(Arrays.asList(new Color(96, 0, 160)));
+
+        HistogramClusteringAlgorithm adapted = HistogramClusteringAlgorithm.adapt(algorithm);
+
+        assertArrayEquals(new int[]{new Color(96, 0, 160).getRGB()}, adapted.cluster(ColorHistogram.of(counts), 1));
+        assertEquals(Arrays.asList(new Color(96, 0, 160)), adapted.cluster(counts, 1));
+        verify(algorithm, times(2)).cluster(counts, 1);
+    }
+
+    /**
+     * Tests that by default, clustering from starting clusters ignores them.
+     */
+    @Test
+    public void testCluster_startingClustersIgnored(){
+        HistogramClusteringAlgorithm algorithm = (histogram, targetClusters) -> new int[]{Color.RED.getRGB()};
+        ColorHistogram histogram = ColorHistogram.of(new int[]{Color.RED.getRGB()}, new int[]{1});
+
+        int[] result = algorithm.cluster(histogram, 1, new int[]{Color.BLUE.getRGB()});
+
+        assertArrayEquals(new int[]{Color.RED.getRGB()}, result);
+    }
+
+    /**
+     * Tests that by default, clustering and assigning matches each color to the closest cluster.
+     */
+    @Test
+    public void testClusterAndAssign(){
+        HistogramClusteringAlgorithm algorithm = (histogram, targetClusters) -> new int[]{Color.BLUE.getRGB(),
+                                                                                          Color.RED.getRGB()};
+        ColorHistogram histogram = ColorHistogram.of(new int[]{new Color(0, 0, 200).getRGB(),
+                                                               new Color(200, 0, 0).getRGB()},
+                                                     new int[]{1, 1});
+
+        ClusterAssignment assignment = algorithm.clusterAndAssign(histogram, 2);
+
+        int blue = histogram.indexOf(new Color(0, 0, 200).getRGB());
+        int red = histogram.indexOf(new Color(200, 0, 0).getRGB());
+        assertEquals(Color.BLUE.getRGB(), assignment.getAssignedCluster(blue));
+        assertEquals(Color.RED.getRGB(), assignment.getAssignedCluster(red));
+    }
+
+    /**
+     * Tests that algorithms which find no clusters for a histogram whose counts are all zero leave every color
+     * unassigned, rather than failing to build the assignment.
+     */
+    @Test
+    public void testClusterAndAssign_zeroCounts(){
+        ColorHistogram histogram = ColorHistogram.of(new int[]{Color.BLACK.getRGB(), 0xff112233, Color.WHITE.getRGB()},
+                                                     new int[]{0, 0, 0});
+        HistogramClusteringAlgorithm[] algorithms = {new MedianCutClusterer(),
+                                                     new WuClusterer(),
+                                                     new OctreeClusterer(),
+                                                     new MiniBatchKMeansClusterer(new EuclideanRgbaDistance(), 0),
+                                                     new PrequantizingClusterer(new MedianCutClusterer()),
+                                                     new ColorSpaceKMeansClusterer(ColorSpace.SRGB, 0)};
+
+        for(HistogramClusteringAlgorithm algorithm : algorithms){
+            ClusterAssignment assignment = algorithm.clusterAndAssign(histogram, 2);
+
+            assertEquals(0, assignment.getClusters().length, algorithm.getClass().getSimpleName());
+            for(int i = 0; i < histogram.size(); i++){
+                assertEquals(ClusterAssignment.UNASSIGNED, assignment.getAssignment(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A set of tests for the {@link KMeansUtils} class.
+ */
+public class KMeansUtilsTest {
+
+    /**
+     * Tests that the number of chunks rounds up to hold every color.
+     */
+    @Test
+    public void testChunks(){
+        assertEquals(0, KMeansUtils.chunks(0));
+        assertEquals(1, KMeansUtils.chunks(1));
+        assertEquals(1, KMeansUtils.chunks(KMeansUtils.CHUNK_SIZE));
+        assertEquals(2, KMeansUtils.chunks(KMeansUtils.CHUNK_SIZE + 1));
+    }
+
+    /**
+     * Tests that running in chunks visits every color exactly once, whether or not it runs in parallel.
+     */
+    @Test
+    public void testInChunks(){
+        int size = KMeansUtils.CHUNK_SIZE * 3 + 10;
+        for(boolean parallel : new boolean[]{false, true}){
+            AtomicIntegerArray visits = new AtomicIntegerArray(size);
+            KMeansUtils.inChunks(size, parallel, (chunk, start, end) -> {
+                assertEquals(chunk * KMeansUtils.CHUNK_SIZE, start);
+                for(int i = start; i < end; i++){
+                    visits.incrementAndGet(i);
+                }
+            });
+
+            for(int i = 0; i < size; i++){
+                assertEquals(1, visits.get(i));
+            }
+        }
+    }
+
+    /**
+     * Tests that positions with a weight of zero are never picked, and nothing is picked if every weight is zero.
+     */
+    @Test
+    public void testPickWeighted(){
+        Random random = new Random(4);
+        double[] weights = {0, 2, 0, 1};
+
+        int[] picks = new int[weights.length];
+        for(int i = 0; i < 3000; i++){
+            picks[KMeansUtils.pickWeighted(weights, 3, random)]++;
+        }
+
+        assertEquals(0, picks[0]);
+        assertEquals(2000, picks[1], 200);
+        assertEquals(0, picks[2]);
+        assertEquals(1000, picks[3], 200);
+        assertEquals(-1, KMeansUtils.pickWeighted(new double[]{0, 0}, 0, random));
+    }
+
+    /**
+     * Tests that the colors with the largest errors are picked first, and colors with no error are never picked.
+     */
+    @Test
+    public void testWorstDescribed(){
+        double[] errors = {3, 0, 8, 1};
+
+        assertArrayEquals(new int[]{2, 0}, KMeansUtils.worstDescribed(errors.clone(), 2));
+        assertArrayEquals(new int[]{2, 0, 3}, KMeansUtils.worstDescribed(errors.clone(), 4));
+    }
+
+    /**
+     * Tests that seeding adds the starting clusters first, then picks colors, and stops once every color exactly
+     * matches a cluster.
+     */
+    @Test
+    public void testSeedClusters(){
+        long[] weights = {5, 1, 7};
+        List<Integer> added = new ArrayList<>();
+
+        int count = KMeansUtils.seedClusters(weights, 1, 10, new Random(2), false, new KMeansUtils.Seeding(){
+            @Override
+            public void addCluster(int cluster, int color){
+                added.add(color);
+            }
+
+            @Override
+            public double updateChance(int cluster, int color){
+                //The starting cluster matches nothing, and each picked color only matches itself.
+                return added.subList(1, added.size()).contains(color) ? 0 : weights[color];
+            }
+        });
+
+        assertEquals(4, count);
+        assertEquals(Integer.valueOf(-1), added.get(0));
+        assertEquals(Arrays.asList(0, 1, 2), added.subList(1, 4).stream().sorted().collect(Collectors.toList()));
+    }
+}
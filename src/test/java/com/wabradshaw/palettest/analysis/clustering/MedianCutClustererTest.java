@@ -0,0 +1,175 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A set of tests for the {@link MedianCutClusterer}.
+ */
+public class MedianCutClustererTest {
+
+    /**
+     * Tests that using the clusterer with only a single color in the counts, while asking for a single cluster, will
+     * return that color.
+     */
+    @Test
+    public void testSingleCluster_SingleColor(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(Color.RED, 10);
+
+        Collection<Color> result = new MedianCutClusterer().cluster(counts, 1);
+
+        assertEquals(1, result.size());
+        assertTrue(result.contains(Color.RED));
+    }
+
+    /**
+     * Tests that using the clusterer with two unequal colors, while asking for a single cluster, will return the
+     * weighted average of those colors.
+     */
+    @Test
+    public void testSingleCluster_UnequalColors(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(new Color(200, 0, 127), 3);
+        counts.put(new Color(100, 160, 127), 1);
+
+        Collection<Color> result = new MedianCutClusterer().cluster(counts, 1);
+
+        assertEquals(1, result.size());
+        assertTrue(result.contains(new Color(175, 40, 127)));
+    }
+
+    /**
+     * Tests that asking for at least as many clusters as colors will return the original colors.
+     */
+    @Test
+    public void testMultipleClusters_SameNumber(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(Color.RED, 10);
+        counts.put(Color.BLUE, 11);
+        counts.put(Color.GREEN, 4);
+
+        Collection<Color> result = new MedianCutClusterer().cluster(counts, 5);
+
+        assertEquals(3, result.size());
+        assertTrue(result.contains(Color.RED));
+        assertTrue(result.contains(Color.BLUE));
+        assertTrue(result.contains(Color.GREEN));
+    }
+
+    /**
+     * Tests that colors which never appeared don't affect the clusters.
+     */
+    @Test
+    public void testZeroCounts(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(Color.RED, 10);
+        counts.put(Color.BLUE, 0);
+
+        Collection<Color> result = new MedianCutClusterer().cluster(counts, 2);
+
+        assertEquals(1, result.size());
+        assertTrue(result.contains(Color.RED));
+    }
+
+    /**
+     * Tests that an empty set of colors gives no clusters.
+     */
+    @Test
+    public void testNoColors(){
+        assertTrue(new MedianCutClusterer().cluster(new HashMap<>(), 3).isEmpty());
+    }
+
+    /**
+     * Tests that clearly separated groups of colors are each given their own cluster, at the group's average.
+     */
+    @Test
+    public void testMultipleClusters_ClearCutAverages(){
+        Map<Color, Integer> counts = new LinkedHashMap<>();
+        counts.put(new Color(10, 10, 10), 2);
+        counts.put(new Color(12, 10, 10), 2);
+        counts.put(new Color(200, 10, 10), 1);
+        counts.put(new Color(210, 10, 10), 1);
+        counts.put(new Color(100, 250, 100), 5);
+        counts.put(new Color(100, 240, 100), 5);
+
+        Collection<Color> result = new MedianCutClusterer().cluster(counts, 3);
+
+        assertEquals(3, result.size());
+        assertTrue(result.contains(new Color(11, 10, 10)));
+        assertTrue(result.contains(new Color(205, 10, 10)));
+        assertTrue(result.contains(new Color(100, 245, 100)));
+    }
+
+    /**
+     * Tests that the cut is made at the weighted median, so a heavily weighted color is split away from the others.
+     */
+    @Test
+    public void testWeightedMedian(){
+        Map<Color, Integer> counts = new LinkedHashMap<>();
+        counts.put(new Color(0, 0, 0), 1);
+        counts.put(new Color(10, 0, 0), 1);
+        counts.put(new Color(20, 0, 0), 1);
+        counts.put(new Color(250, 0, 0), 100);
+
+        Collection<Color> result = new MedianCutClusterer().cluster(counts, 2);
+
+        assertEquals(2, result.size());
+        assertTrue(result.contains(new Color(250, 0, 0)));
+        assertTrue(result.contains(new Color(10, 0, 0)));
+    }
+
+    /**
+     * Tests that colors which differ only in their alpha channel are split apart.
+     */
+    @Test
+    public void testAlpha(){
+        Map<Color, Integer> counts = new LinkedHashMap<>();
+        counts.put(new Color(50, 50, 50, 0), 3);
+        counts.put(new Color(50, 50, 50, 255), 3);
+
+        Collection<Color> result = new MedianCutClusterer().cluster(counts, 2);
+
+        assertEquals(2, result.size());
+        assertTrue(result.contains(new Color(50, 50, 50, 0)));
+        assertTrue(result.contains(new Color(50, 50, 50, 255)));
+    }
+
+    /**
+     * Tests that a large set of colors gives the requested number of clusters, and that the result doesn't depend on
+     * the order of the counts.
+     */
+    @Test
+    public void testManyColors_OrderIndependent(){
+        Random random = new Random(5);
+        List<Color> colors = new ArrayList<>();
+        for(int i = 0; i < 5000; i++){
+            colors.add(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+        }
+
+        Map<Color, Integer> forwards = new LinkedHashMap<>();
+        Map<Color, Integer> backwards = new LinkedHashMap<>();
+        for(int i = 0; i < colors.size(); i++){
+            forwards.merge(colors.get(i), 1 + i % 7, Integer::sum);
+        }
+        List<Color> keys = new ArrayList<>(forwards.keySet());
+        for(int i = keys.size() - 1; i >= 0; i--){
+            backwards.put(keys.get(i), forwards.get(keys.get(i)));
+        }
+
+        Collection<Color> result = new MedianCutClusterer().cluster(forwards, 16);
+
+        assertEquals(16, result.size());
+        assertEquals(new ArrayList<>(result), new ArrayList<>(new MedianCutClusterer().cluster(backwards, 16)));
+    }
+}
@@ -0,0 +1,241 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import com.wabradshaw.palettest.analysis.ColorHistogram;
+import com.wabradshaw.palettest.analysis.Tone;
+import com.wabradshaw.palettest.analysis.distance.ColorDistanceFunction;
+import com.wabradshaw.palettest.analysis.distance.CompuPhaseDistance;
+import com.wabradshaw.palettest.analysis.distance.EuclideanRgbaDistance;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * A set of tests for the {@link MiniBatchKMeansClusterer}.
+ */
+public class MiniBatchKMeansClustererTest {
+
+    /**
+     * Tests that using the clusterer with only a single color in the counts, while asking for a single cluster, will
+     * return that color.
+     */
+    @Test
+    public void testSingleCluster_SingleColor(){
+        MiniBatchKMeansClusterer clusterer = new MiniBatchKMeansClusterer();
+
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(Color.RED, 10);
+
+        Collection<Color> result = clusterer.cluster(counts, 1);
+
+        assertEquals(1, result.size());
+        assertTrue(result.contains(Color.RED));
+    }
+
+    /**
+     * Tests that using the clusterer with two unequal colors, while asking for a single cluster, will return roughly
+     * the weighted average of those colors.
+     */
+    @Test
+    public void testSingleCluster_UnequalColors(){
+        MiniBatchKMeansClusterer clusterer = new MiniBatchKMeansClusterer(new EuclideanRgbaDistance(), 3);
+
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(new Color(200, 0, 127), 3);
+        counts.put(new Color(100, 160, 127), 1);
+
+        Color result = clusterer.cluster(counts, 1).iterator().next();
+
+        assertEquals(175, result.getRed(), 5);
+        assertEquals(40, result.getGreen(), 8);
+        assertEquals(127, result.getBlue());
+    }
+
+    /**
+     * Tests that asking for at least as many clusters as colors will return the original colors.
+     */
+    @Test
+    public void testMultipleClusters_SameNumber(){
+        MiniBatchKMeansClusterer clusterer = new MiniBatchKMeansClusterer();
+
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(Color.RED, 10);
+        counts.put(Color.BLUE, 11);
+        counts.put(Color.GREEN, 4);
+
+        Collection<Color> result = clusterer.cluster(counts, 5);
+
+        assertEquals(3, result.size());
+        assertTrue(result.contains(Color.RED));
+        assertTrue(result.contains(Color.BLUE));
+        assertTrue(result.contains(Color.GREEN));
+    }
+
+    /**
+     * Tests that obvious clusters are found, to within a couple of values in each channel.
+     */
+    @Test
+    public void testMultipleClusters_ClearCutAverages(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(new Color(200,0,0), 10);
+        counts.put(new Color(240,0,0), 30);
+        counts.put(new Color(0, 190, 0), 20);
+        counts.put(new Color(0, 210, 0), 20);
+        counts.put(new Color(15,0,200), 50);
+        counts.put(new Color(0,15,200), 50);
+        counts.put(new Color(0,0,215), 50);
+
+        for(long seed = 0; seed < 10; seed++){
+            MiniBatchKMeansClusterer clusterer = new MiniBatchKMeansClusterer(new EuclideanRgbaDistance(), seed);
+
+            Collection<Color> result = clusterer.cluster(counts, 3);
+
+            assertEquals(3, result.size());
+            assertTrue(result.stream().anyMatch(c -> c.getRed() > 220 && c.getRed() < 240 && c.getGreen() == 0));
+            assertTrue(result.stream().anyMatch(c -> c.getGreen() > 190 && c.getGreen() < 210 && c.getRed() == 0));
+            assertTrue(result.stream().anyMatch(c -> c.getBlue() > 200 && c.getBlue() < 210));
+        }
+    }
+
+    /**
+     * Tests that two clusterers with the same seed will find the same clusters, even if the colors are supplied in a
+     * different order.
+     */
+    @Test
+    public void testSeed_Reproducible(){
+        Map<Color, Integer> counts = new HashMap<>();
+        Random random = new Random(7);
+        while(counts.size() < 5000){
+            counts.put(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)), 1 + random.nextInt(50));
+        }
+        Map<Color, Integer> reordered = new LinkedHashMap<>();
+        counts.keySet().stream()
+                       .sorted((a, b) -> Integer.compare(b.getRGB(), a.getRGB()))
+                       .forEach(color -> reordered.put(color, counts.get(color)));
+
+        Collection<Color> first = new MiniBatchKMeansClusterer(new CompuPhaseDistance(), 42).cluster(counts, 8);
+        Collection<Color> second = new MiniBatchKMeansClusterer(new CompuPhaseDistance(), 42).cluster(reordered, 8);
+
+        assertEquals(8, first.size());
+        assertEquals(new HashSet<>(first), new HashSet<>(second));
+    }
+
+    /**
+     * Tests that clustering stops after the maximum number of batches, even with a tolerance which is never met.
+     */
+    @Test
+    public void testMaxBatches(){
+        //Counts the ranking distances used to assign each pixel, but not the distances used for seeding.
+        ColorDistanceFunction euclidean = new EuclideanRgbaDistance();
+        AtomicInteger rankings = new AtomicInteger();
+        ColorDistanceFunction distanceFunction = new ColorDistanceFunction() {
+            @Override
+            public double getDistance(Tone first, Tone second) {
+                return euclidean.getDistance(first, second);
+            }
+
+            @Override
+            public double getRankingDistance(Tone first, Tone second) {
+                rankings.incrementAndGet();
+                return euclidean.getRankingDistance(first, second);
+            }
+        };
+        MiniBatchKMeansClusterer clusterer = new MiniBatchKMeansClusterer(distanceFunction, 1, 10, 3, 0);
+
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(Color.RED, 10);
+        counts.put(Color.BLUE, 10);
+        counts.put(Color.GREEN, 10);
+
+        Collection<Color> result = clusterer.cluster(counts, 2);
+
+        assertFalse(result.isEmpty());
+        assertEquals(3 * 10 * 2, rankings.get());
+    }
+
+    /**
+     * Tests that the clusterer can't be created with invalid settings.
+     */
+    @Test
+    public void testInvalidSettings(){
+        ColorDistanceFunction distanceFunction = new EuclideanRgbaDistance();
+
+        assertThrows(IllegalArgumentException.class, () -> new MiniBatchKMeansClusterer(distanceFunction, 1, 0, 10, 1));
+        assertThrows(IllegalArgumentException.class, () -> new MiniBatchKMeansClusterer(distanceFunction, 1, 10, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new MiniBatchKMeansClusterer(distanceFunction, 1, 10, 10, -1));
+        assertThrows(IllegalArgumentException.class,
+                     () -> new MiniBatchKMeansClusterer(distanceFunction, 1, 10, 10, Double.NaN));
+    }
+
+    /**
+     * Tests that the distance function constructor will use the supplied distance function.
+     */
+    @Test
+    public void testSuppliedDistanceFunction(){
+        ColorDistanceFunction distanceFunction = spy(new EuclideanRgbaDistance());
+
+        MiniBatchKMeansClusterer clusterer = new MiniBatchKMeansClusterer(distanceFunction);
+
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(Color.RED, 10);
+        counts.put(Color.BLUE, 10);
+        counts.put(Color.GREEN, 10);
+
+        clusterer.cluster(counts, 2);
+
+        verify(distanceFunction, atLeastOnce()).getDistance(any(), any());
+    }
+
+    /**
+     * Tests that supplied starting clusters are used in place of the seeding, in the order they were supplied.
+     */
+    @Test
+    public void testStartingClusters(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(new Color(200,0,0), 10);
+        counts.put(new Color(240,0,0), 30);
+        counts.put(new Color(0, 190, 0), 20);
+        counts.put(new Color(0, 210, 0), 20);
+        int[] starting = {new Color(0, 200, 0).getRGB(), new Color(230, 0, 0).getRGB()};
+
+        for(long seed = 0; seed < 10; seed++){
+            MiniBatchKMeansClusterer clusterer = new MiniBatchKMeansClusterer(new EuclideanRgbaDistance(), seed);
+
+            int[] result = clusterer.cluster(ColorHistogram.of(counts), 2, starting);
+
+            assertEquals(2, result.length);
+            Color green = new Color(result[0]);
+            Color red = new Color(result[1]);
+            assertTrue(green.getGreen() >= 190 && green.getGreen() <= 210 && green.getRed() == 0);
+            assertTrue(red.getRed() >= 220 && red.getRed() <= 240 && red.getGreen() == 0);
+        }
+    }
+
+    /**
+     * Tests that a histogram whose counts are all zero, such as one merged from empty images, has no pixels to draw,
+     * so only the starting clusters are returned.
+     */
+    @Test
+    public void testZeroCounts(){
+        MiniBatchKMeansClusterer clusterer = new MiniBatchKMeansClusterer(new EuclideanRgbaDistance(), 3);
+
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(Color.RED, 0);
+        counts.put(Color.BLUE, 0);
+        counts.put(Color.GREEN, 0);
+        ColorHistogram histogram = ColorHistogram.of(counts);
+
+        assertEquals(0, clusterer.cluster(histogram, 2).length);
+        assertArrayEquals(new int[]{Color.RED.getRGB()},
+                          clusterer.cluster(histogram, 2, new int[]{Color.RED.getRGB()}));
+    }
+}
@@ -0,0 +1,115 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import com.wabradshaw.palettest.analysis.ColorHistogram;
+import com.wabradshaw.palettest.utils.ImageFileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A set of tests for the {@link OctreeClusterer}.
+ */
+public class OctreeClustererTest {
+
+    /**
+     * Tests that asking for at least as many clusters as colors will return the original colors.
+     */
+    @Test
+    public void testMultipleClusters_SameNumber(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(Color.RED, 10);
+        counts.put(Color.BLUE, 11);
+        counts.put(Color.GREEN, 4);
+
+        Collection<Color> result = new OctreeClusterer().cluster(counts, 5);
+
+        assertEquals(3, result.size());
+        assertTrue(result.contains(Color.RED));
+        assertTrue(result.contains(Color.BLUE));
+        assertTrue(result.contains(Color.GREEN));
+    }
+
+    /**
+     * Tests that clustering an image directly gives the same clusters as clustering its color counts.
+     */
+    @Test
+    public void testImage_SameAsCounts(){
+        BufferedImage image = ImageFileUtils.loadImageResource("/sampleImages/complex/smallSheep.jpg");
+        Map<Color, Integer> counts = new HashMap<>();
+        for(int x = 0; x < image.getWidth(); x++){
+            for(int y = 0; y < image.getHeight(); y++){
+                counts.merge(new Color(image.getRGB(x, y), true), 1, Integer::sum);
+            }
+        }
+
+        OctreeClusterer clusterer = new OctreeClusterer(512);
+        Collection<Color> fromImage = clusterer.cluster(image, 8);
+
+        assertTrue(fromImage.size() <= 8);
+        assertTrue(fromImage.size() >= 2);
+        assertEquals(new ArrayList<>(fromImage), new ArrayList<>(clusterer.cluster(counts, 8)));
+    }
+
+    /**
+     * Tests that a translucent image is clustered as opaque, the same as its color counts from a
+     * {@link ColorHistogram}.
+     */
+    @Test
+    public void testImage_Translucent(){
+        BufferedImage image = new BufferedImage(2, 2, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 0x80FF0000);
+        image.setRGB(1, 0, 0x80FF0000);
+        image.setRGB(0, 1, 0x800000FF);
+        image.setRGB(1, 1, 0x800000FF);
+
+        OctreeClusterer clusterer = new OctreeClusterer();
+        Collection<Color> result = clusterer.cluster(image, 1);
+
+        assertEquals(1, result.size());
+        Color cluster = result.iterator().next();
+        assertEquals(255, cluster.getAlpha());
+        assertEquals(clusterer.cluster(ColorHistogram.of(image), 1)[0], cluster.getRGB());
+    }
+
+    /**
+     * Tests that an image with no more colors than the number of clusters gets back its own colors, even if leaves
+     * had to be merged while it was read.
+     */
+    @Test
+    public void testImage_FewColors(){
+        BufferedImage image = new BufferedImage(20, 10, BufferedImage.TYPE_INT_RGB);
+        Set<Color> colors = new HashSet<>();
+        for(int x = 0; x < 20; x++){
+            for(int y = 0; y < 10; y++){
+                Color color = new Color(x * 12, y * 25, (x * y) % 256);
+                image.setRGB(x, y, color.getRGB());
+                colors.add(color);
+            }
+        }
+
+        Collection<Color> result = new OctreeClusterer(Octree.MIN_NODES).cluster(image, colors.size());
+
+        assertEquals(colors, new HashSet<>(result));
+    }
+
+    /**
+     * Tests that missing counts and small node limits are rejected.
+     */
+    @Test
+    public void testInvalid(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(Color.RED, null);
+
+        assertThrows(IllegalArgumentException.class, () -> new OctreeClusterer().cluster(counts, 2));
+        assertThrows(IllegalArgumentException.class, () -> new OctreeClusterer(Octree.MIN_NODES - 1));
+    }
+}
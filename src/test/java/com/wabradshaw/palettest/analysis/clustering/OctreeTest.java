@@ -0,0 +1,203 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A set of tests for the {@link Octree}.
+ */
+public class OctreeTest {
+
+    /**
+     * Tests that an empty tree has no colors.
+     */
+    @Test
+    public void testEmpty(){
+        Octree tree = new Octree(Octree.MIN_NODES);
+
+        assertEquals(0, tree.getPixelCount());
+        assertEquals(0, tree.getLeafCount());
+        assertTrue(getColors(tree, 4).isEmpty());
+    }
+
+    /**
+     * Tests that while there is room, each color gets its own leaf, and is returned exactly.
+     */
+    @Test
+    public void testExactColors(){
+        Octree tree = new Octree(1024);
+        tree.add(Color.RED.getRGB(), 3);
+        tree.add(Color.BLUE.getRGB());
+        tree.add(Color.RED.getRGB());
+        tree.add(new Color(1, 2, 3, 4).getRGB(), 2);
+
+        assertEquals(7, tree.getPixelCount());
+        assertEquals(3, tree.getLeafCount());
+        List<Color> colors = getColors(tree, 3);
+        assertEquals(3, colors.size());
+        assertTrue(colors.contains(Color.RED));
+        assertTrue(colors.contains(Color.BLUE));
+        assertTrue(colors.contains(new Color(1, 2, 3, 4)));
+    }
+
+    /**
+     * Tests that asking for a single color gives the weighted average of every pixel.
+     */
+    @Test
+    public void testSingleColor_Average(){
+        Octree tree = new Octree(1024);
+        tree.add(new Color(200, 0, 127).getRGB(), 3);
+        tree.add(new Color(100, 160, 127).getRGB(), 1);
+
+        assertEquals(Arrays.asList(new Color(175, 40, 127)), getColors(tree, 1));
+    }
+
+    /**
+     * Tests that the leaves holding the fewest pixels are merged first, so well separated groups of colors survive.
+     */
+    @Test
+    public void testMergesSmallestFirst(){
+        Octree tree = new Octree(1024);
+        tree.add(new Color(10, 10, 10).getRGB(), 50);
+        tree.add(new Color(11, 10, 10).getRGB(), 50);
+        tree.add(new Color(240, 240, 240).getRGB(), 100);
+
+        List<Color> colors = getColors(tree, 2);
+
+        assertEquals(2, colors.size());
+        assertTrue(colors.contains(new Color(240, 240, 240)));
+        assertTrue(colors.contains(new Color(11, 10, 10)));
+    }
+
+    /**
+     * Tests that colors which only differ in alpha share a leaf.
+     */
+    @Test
+    public void testAlphaAveraged(){
+        Octree tree = new Octree(Octree.MIN_NODES);
+        tree.add(new Color(50, 50, 50, 0).getRGB());
+        tree.add(new Color(50, 50, 50, 100).getRGB());
+
+        assertEquals(1, tree.getLeafCount());
+        assertEquals(Arrays.asList(new Color(50, 50, 50, 50)), getColors(tree, 2));
+    }
+
+    /**
+     * Tests that getting the colors doesn't change the tree.
+     */
+    @Test
+    public void testGetColors_Unchanged(){
+        Octree tree = new Octree(1024);
+        Random random = new Random(3);
+        for(int i = 0; i < 100; i++){
+            tree.add(random.nextInt() | 0xFF000000);
+        }
+        int leaves = tree.getLeafCount();
+        int nodes = tree.getNodeCount();
+
+        assertEquals(4, getColors(tree, 4).size());
+
+        assertEquals(leaves, tree.getLeafCount());
+        assertEquals(nodes, tree.getNodeCount());
+        assertEquals(100, getColors(tree, 100).size());
+    }
+
+    /**
+     * Tests that adding many random colors never goes over the node limit, and keeps every pixel.
+     */
+    @Test
+    public void testNodeLimit(){
+        Octree tree = new Octree(Octree.MIN_NODES);
+        Random random = new Random(9);
+        for(int i = 0; i < 10000; i++){
+            tree.add(random.nextInt() | 0xFF000000);
+            assertTrue(tree.getNodeCount() <= Octree.MIN_NODES);
+        }
+
+        assertEquals(10000, tree.getPixelCount());
+        assertTrue(tree.getLeafCount() > 1);
+        assertEquals(8, getColors(tree, 8).size());
+    }
+
+    /**
+     * Tests that adding an image counts every pixel, including runs of the same color.
+     */
+    @Test
+    public void testAddImage(){
+        BufferedImage image = new BufferedImage(5, 2, BufferedImage.TYPE_INT_ARGB);
+        for(int x = 0; x < 5; x++){
+            image.setRGB(x, 0, Color.RED.getRGB());
+            image.setRGB(x, 1, x < 2 ? Color.RED.getRGB() : Color.BLUE.getRGB());
+        }
+
+        Octree tree = new Octree(Octree.MIN_NODES);
+        tree.add(image);
+
+        assertEquals(10, tree.getPixelCount());
+        assertEquals(Arrays.asList(new Color(179, 0, 77)), getColors(tree, 1));
+    }
+
+    /**
+     * Tests that translucent pixels in an image are added as opaque, so alpha isn't averaged into the colors.
+     */
+    @Test
+    public void testAddImage_Opaque(){
+        BufferedImage image = new BufferedImage(2, 1, BufferedImage.TYPE_INT_ARGB);
+        image.setRGB(0, 0, 0x80FF0000);
+        image.setRGB(1, 0, 0x800000FF);
+
+        Octree tree = new Octree(Octree.MIN_NODES);
+        tree.add(image);
+
+        assertEquals(Arrays.asList(new Color(128, 0, 128)), getColors(tree, 1));
+    }
+
+    /**
+     * Tests that a tree is only exact until leaves have to be merged to stay within the node limit.
+     */
+    @Test
+    public void testIsExact(){
+        Octree tree = new Octree(Octree.MIN_NODES);
+        tree.add(Color.RED.getRGB());
+        tree.add(Color.BLUE.getRGB());
+        getColors(tree, 1);
+
+        assertTrue(tree.isExact());
+
+        Random random = new Random(5);
+        for(int i = 0; i < 100; i++){
+            tree.add(random.nextInt() | 0xFF000000);
+        }
+
+        assertFalse(tree.isExact());
+    }
+
+    /**
+     * Tests that invalid limits and counts are rejected.
+    @Test
+    public void testInvalid(){
+        assertThrows(IllegalArgumentException.class, () -> new Octree(Octree.MIN_NODES - 1));
+        assertThrows(IllegalArgumentException.class, () -> new Octree(Octree.MIN_NODES).add(0, -1));
+    }
+
+    /**
+     * Gets the colors from a tree as {@link Color}s.
+     *
+     * @param tree         The tree to get the colors from.
+     * @param targetColors The most colors to return.
+     * @return             The colors of the tree.
+     */
+    private static List<Color> getColors(Octree tree, int targetColors){
+        return Arrays.stream(tree.getColors(targetColors))
+                     .mapToObj(argb -> new Color(argb, true))
+                     .collect(Collectors.toList());
+    }
+}
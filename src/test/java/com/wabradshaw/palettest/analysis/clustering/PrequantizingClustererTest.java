@@ -0,0 +1,111 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import com.wabradshaw.palettest.analysis.ColorHistogram;
+import com.wabradshaw.palettest.analysis.distance.EuclideanRgbaDistance;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * A set of tests for the {@link PrequantizingClusterer}.
+ */
+public class PrequantizingClustererTest {
+
+    /**
+     * Tests that the wrapped algorithm receives the quantized histogram, and its clusters are returned unchanged.
+     */
+    @Test
+    public void testCluster_passesQuantizedHistogram(){
+        AtomicReference<ColorHistogram> received = new AtomicReference<>();
+        HistogramClusteringAlgorithm algorithm = (histogram, targetClusters) -> {
+            received.set(histogram);
+            return new int[]{Color.RED.getRGB()};
+        };
+        ColorHistogram histogram = ColorHistogram.of(new int[]{new Color(200, 0, 0).getRGB(),
+                                                               new Color(204, 0, 0).getRGB(),
+                                                               Color.BLUE.getRGB()},
+                                                     new int[]{1, 1, 5});
+
+        int[] result = new PrequantizingClusterer(algorithm, 5).cluster(histogram, 1);
+
+        assertEquals(2, received.get().size());
+        assertEquals(7, received.get().getTotalCount());
+        assertEquals(new Color(202, 0, 0).getRGB(), received.get().getColor(1));
+        assertArrayEquals(new int[]{Color.RED.getRGB()}, result);
+    }
+
+    /**
+     * Tests that algorithms which only work on maps of colors can be wrapped.
+     */
+    @Test
+    public void testCluster_mapAlgorithm(){
+        AtomicReference<Map<Color, Integer>> received = new AtomicReference<>();
+        ClusteringAlgorithm algorithm = (colorCounts, targetClusters) -> {
+            received.set(colorCounts);
+            return colorCounts.keySet();
+        };
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(new Color(10, 20, 30), 1);
+        counts.put(new Color(12, 22, 28), 1);
+
+        Collection<Color> result = new PrequantizingClusterer(algorithm, 4).cluster(counts, 2);
+
+        assertEquals(1, received.get().size());
+        assertEquals(Integer.valueOf(2), received.get().get(new Color(11, 21, 29)));
+        assertEquals(1, result.size());
+    }
+
+    /**
+     * Tests that well separated colors are still found after the default quantization.
+     */
+    @Test
+    public void testCluster_clearCut(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(new Color(250, 0, 0), 10);
+        counts.put(new Color(252, 2, 0), 10);
+        counts.put(new Color(0, 0, 250), 10);
+        counts.put(new Color(0, 2, 252), 10);
+
+        ClusteringAlgorithm kMeans = new WeightedKMeansClusterer(new EuclideanRgbaDistance(), 0);
+
+        Collection<Color> result = new PrequantizingClusterer(kMeans).cluster(counts, 2);
+
+        assertEquals(2, result.size());
+        assertTrue(result.contains(new Color(251, 1, 0)));
+        assertTrue(result.contains(new Color(0, 1, 251)));
+    }
+
+    /**
+     * Tests that the clusterer needs an algorithm and a bit depth from 1 to 8.
+     */
+    @Test
+    public void testInvalid(){
+        ClusteringAlgorithm algorithm = new MedianCutClusterer();
+
+        assertThrows(IllegalArgumentException.class, () -> new PrequantizingClusterer(null));
+        assertThrows(IllegalArgumentException.class, () -> new PrequantizingClusterer(algorithm, 0));
+        assertThrows(IllegalArgumentException.class, () -> new PrequantizingClusterer(algorithm, 9));
+    }
+
+    /**
+     * Tests that starting clusters are passed on to the wrapped algorithm.
+     */
+    @Test
+    public void testCluster_startingClusters(){
+        HistogramClusteringAlgorithm algorithm = mock(HistogramClusteringAlgorithm.class);
+        ColorHistogram histogram = ColorHistogram.of(new int[]{Color.RED.getRGB()}, new int[]{1});
+        int[] starting = {Color.BLUE.getRGB()};
+        when(algorithm.cluster(any(ColorHistogram.class), eq(1), eq(starting))).thenReturn(starting);
+
+        int[] result = new PrequantizingClusterer(algorithm).cluster(histogram, 1, starting);
+
+        assertArrayEquals(starting, result);
+    }
+}
@@ -1,16 +1,28 @@
 package com.wabradshaw.palettest.analysis.clustering;
 
+import com.wabradshaw.palettest.analysis.ColorHistogram;
 import com.wabradshaw.palettest.analysis.distance.ColorDistanceFunction;
+import com.wabradshaw.palettest.analysis.distance.CompuPhaseDistance;
 import com.wabradshaw.palettest.analysis.distance.EuclideanRgbaDistance;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
 import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
@@ -134,6 +146,261 @@ public class WeightedKMeansClustererTest {
         assertTrue(result.contains(new Color(5,5,205)));
     }
 
+    /**
+     * Tests that k-means++ seeding spreads the starting clusters out, so obvious clusters are found whatever the seed.
+     */
+    @Test
+    public void testMultipleClusters_ClearCutAverages_Seeded(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(new Color(200,0,0), 10);
+        counts.put(new Color(240,0,0), 30);
+        counts.put(new Color(0, 190, 0), 20);
+        counts.put(new Color(0, 210, 0), 20);
+        counts.put(new Color(15,0,200), 50);
+        counts.put(new Color(0,15,200), 50);
+        counts.put(new Color(0,0,215), 50);
+
+        for(long seed = 0; seed < 20; seed++){
+            WeightedKMeansClusterer clusterer = new WeightedKMeansClusterer(new EuclideanRgbaDistance(), seed);
+
+            Collection<Color> result = clusterer.cluster(counts, 3);
+
+            assertEquals(3, result.size());
+            assertTrue(result.contains(new Color(230,0,0)));
+            assertTrue(result.contains(new Color(0,200,0)));
+            assertTrue(result.contains(new Color(5,5,205)));
+        }
+    }
+
+    /**
+     * Tests that k-means started from the clusters found by median cut still finds the clear-cut clusters.
+     */
+    @Test
+    public void testMultipleClusters_ClearCutAverages_MedianCutSeeding(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(new Color(200,0,0), 10);
+        counts.put(new Color(240,0,0), 30);
+        counts.put(new Color(0, 190, 0), 20);
+        counts.put(new Color(0, 210, 0), 20);
+        counts.put(new Color(15,0,200), 50);
+        counts.put(new Color(0,15,200), 50);
+        counts.put(new Color(0,0,215), 50);
+
+        WeightedKMeansClusterer clusterer = new WeightedKMeansClusterer(new EuclideanRgbaDistance(),
+                                                                        new MedianCutClusterer());
+
+        Collection<Color> result = clusterer.cluster(counts, 3);
+
+        assertEquals(3, result.size());
+        assertTrue(result.contains(new Color(230,0,0)));
+        assertTrue(result.contains(new Color(0,200,0)));
+        assertTrue(result.contains(new Color(5,5,205)));
+    }
+
+    /**
+     * Tests that k-means started from the clusters found by Wu's quantizer finds the same clusters every time.
+     */
+    @Test
+    public void testWuSeeding_Reproducible(){
+        Map<Color, Integer> counts = new HashMap<>();
+        Random random = new Random(11);
+        for(int i = 0; i < 500; i++){
+            counts.put(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)), 1 + random.nextInt(9));
+        }
+
+        Collection<Color> first = new WeightedKMeansClusterer(new EuclideanRgbaDistance(), new WuClusterer())
+                                      .cluster(counts, 6);
+        Collection<Color> second = new WeightedKMeansClusterer(new EuclideanRgbaDistance(), new WuClusterer())
+                                       .cluster(counts, 6);
+
+        assertEquals(6, first.size());
+        assertEquals(first, second);
+    }
+
+    /**
+     * Tests that the starting clusters are taken from the seeding algorithm.
+     */
+    @Test
+    public void testSuppliedSeeder(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(new Color(0, 0, 0), 1);
+        counts.put(new Color(10, 0, 0), 1);
+        counts.put(new Color(240, 0, 0), 1);
+        counts.put(new Color(250, 0, 0), 1);
+
+        ClusteringAlgorithm seeder = mock(ClusteringAlgorithm.class);
+        when(seeder.cluster(counts, 2)).thenReturn(Arrays.asList(new Color(20, 0, 0), new Color(230, 0, 0)));
+
+        Collection<Color> result = new WeightedKMeansClusterer(new EuclideanRgbaDistance(), seeder).cluster(counts, 2);
+
+        verify(seeder).cluster(counts, 2);
+        assertEquals(Arrays.asList(new Color(5, 0, 0), new Color(245, 0, 0)), result);
+    }
+
+    /**
+     * Tests that a cluster which no colors are closest to is moved to the worst described color, rather than being
+     * dropped.
+     */
+    @Test
+    public void testEmptyCluster_Reseeded(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(new Color(0, 0, 0), 1);
+        counts.put(new Color(10, 0, 0), 1);
+        counts.put(new Color(240, 0, 0), 1);
+        counts.put(new Color(250, 0, 0), 3);
+
+        ClusteringAlgorithm seeder = mock(ClusteringAlgorithm.class);
+        when(seeder.cluster(counts, 3)).thenReturn(Arrays.asList(new Color(20, 0, 0),
+                                                                 new Color(230, 0, 0),
+                                                                 new Color(0, 0, 255)));
+
+        Collection<Color> result = new WeightedKMeansClusterer(new EuclideanRgbaDistance(), seeder).cluster(counts, 3);
+
+        assertEquals(3, result.size());
+        assertTrue(result.contains(new Color(5, 0, 0)));
+        assertTrue(result.contains(new Color(240, 0, 0)));
+        assertTrue(result.contains(new Color(250, 0, 0)));
+    }
+
+    /**
+     * Tests that empty clusters are dropped if every color already matches a cluster exactly.
+     */
+    @Test
+    public void testEmptyCluster_NotEnoughColors(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(new Color(0, 0, 0), 1);
+        counts.put(new Color(250, 0, 0), 1);
+
+        ClusteringAlgorithm seeder = mock(ClusteringAlgorithm.class);
+        when(seeder.cluster(counts, 3)).thenReturn(Arrays.asList(new Color(20, 0, 0),
+                                                                 new Color(230, 0, 0),
+                                                                 new Color(0, 0, 255)));
+
+        Collection<Color> result = new WeightedKMeansClusterer(new EuclideanRgbaDistance(), seeder).cluster(counts, 3);
+
+        assertEquals(Arrays.asList(new Color(0, 0, 0), new Color(250, 0, 0)), result);
+    }
+
+    /**
+     * Tests that a large tolerance stops clustering after the first iteration.
+     */
+    @Test
+    public void testTolerance(){
+        Map<Color, Integer> counts = new HashMap<>();
+        Random random = new Random(13);
+        for(int i = 0; i < 500; i++){
+            counts.put(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)), 1 + random.nextInt(9));
+        }
+        ColorDistanceFunction function = new EuclideanRgbaDistance();
+
+        Collection<Color> loose = new WeightedKMeansClusterer(function, 3, false, 1000, 20).cluster(counts, 6);
+        Collection<Color> once = new WeightedKMeansClusterer(function, 3, false, 0, 1).cluster(counts, 6);
+        Collection<Color> exact = new WeightedKMeansClusterer(function, 3, false, 0, 100).cluster(counts, 6);
+
+        assertEquals(once, loose);
+        assertEquals(6, exact.size());
+        assertNotEquals(once, exact);
+    }
+
+    /**
+     * Tests that invalid convergence settings are rejected.
+     */
+    @Test
+    public void testInvalidConvergence(){
+        ColorDistanceFunction function = new EuclideanRgbaDistance();
+
+        assertThrows(IllegalArgumentException.class, () -> new WeightedKMeansClusterer(function, 1, true, -1, 20));
+        assertThrows(IllegalArgumentException.class,
+                     () -> new WeightedKMeansClusterer(function, 1, true, Double.NaN, 20));
+        assertThrows(IllegalArgumentException.class, () -> new WeightedKMeansClusterer(function, 1, true, 1, 0));
+    }
+
+    /**
+     * Tests that two clusterers with the same seed will find the same clusters, even if the colors are supplied in a
+     * different order.
+     */
+    @Test
+    public void testSeed_Reproducible(){
+        Map<Color, Integer> counts = new HashMap<>();
+        Map<Color, Integer> reversed = new LinkedHashMap<>();
+        Random random = new Random(7);
+        for(int i = 0; i < 200; i++){
+            counts.put(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)), 1 + random.nextInt(50));
+        }
+        List<Color> colors = new ArrayList<>(counts.keySet());
+        Collections.reverse(colors);
+        colors.forEach(color -> reversed.put(color, counts.get(color)));
+
+        Collection<Color> first = new WeightedKMeansClusterer(new CompuPhaseDistance(), 42).cluster(counts, 6);
+        Collection<Color> second = new WeightedKMeansClusterer(new CompuPhaseDistance(), 42).cluster(reversed, 6);
+
+        assertEquals(6, first.size());
+        assertEquals(new HashSet<>(first), new HashSet<>(second));
+    }
+
+    /**
+     * Tests that asking for more clusters than there are colors will return each color once.
+     */
+    @Test
+    public void testMoreClustersThanColors(){
+        WeightedKMeansClusterer clusterer = new WeightedKMeansClusterer(new EuclideanRgbaDistance(), 1);
+
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(Color.RED, 10);
+        counts.put(Color.BLUE, 11);
+
+        Collection<Color> result = clusterer.cluster(counts, 5);
+
+        assertEquals(2, result.size());
+        assertTrue(result.contains(Color.RED));
+        assertTrue(result.contains(Color.BLUE));
+    }
+
+    /**
+     * Tests that keeping distance bounds for a metric distance function finds the same clusters as measuring every
+     * distance.
+     */
+    @Test
+    public void testMetric_SameAsUnbounded(){
+        Map<Color, Integer> counts = new HashMap<>();
+        Random random = new Random(3);
+        for(int i = 0; i < 500; i++){
+            counts.put(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)), 1 + random.nextInt(50));
+        }
+
+        ColorDistanceFunction metric = new EuclideanRgbaDistance();
+        ColorDistanceFunction unbounded = spy(metric);
+        when(unbounded.isMetric()).thenReturn(false);
+
+        for(long seed = 0; seed < 5; seed++){
+            Collection<Color> bounded = new WeightedKMeansClusterer(metric, seed).cluster(counts, 8);
+            Collection<Color> expected = new WeightedKMeansClusterer(unbounded, seed).cluster(counts, 8);
+
+            assertEquals(new HashSet<>(expected), new HashSet<>(bounded));
+        }
+    }
+
+    /**
+     * Tests that clustering in parallel finds exactly the same clusters as clustering sequentially, for both metric and
+     * non-metric distance functions. There are enough colors to be split into several chunks.
+     */
+    @Test
+    public void testParallel_SameAsSequential(){
+        Map<Color, Integer> counts = new HashMap<>();
+        Random random = new Random(11);
+        while(counts.size() < 20000){
+            counts.put(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)), 1 + random.nextInt(500));
+        }
+
+        for(ColorDistanceFunction function : Arrays.asList(new EuclideanRgbaDistance(), new CompuPhaseDistance())){
+            Collection<Color> sequential = new WeightedKMeansClusterer(function, 5, false).cluster(counts, 12);
+            Collection<Color> parallel = new WeightedKMeansClusterer(function, 5, true).cluster(counts, 12);
+
+            assertEquals(12, sequential.size());
+            assertEquals(new ArrayList<>(sequential), new ArrayList<>(parallel));
+        }
+    }
+
     /**
      * Tests that using the clusterer for multiple clusters which are controversial will still finish.
      */
@@ -175,4 +442,124 @@ public class WeightedKMeansClustererTest {
 
         verify(distanceFunction, atLeastOnce()).getDistance(any(), any());
     }
+
+    /**
+     * Tests that supplied starting clusters are refined in place of the seeding, in the order they were supplied.
+     */
+    @Test
+    public void testStartingClusters(){
+        ColorHistogram histogram = ColorHistogram.of(new int[]{new Color(0, 0, 0).getRGB(),
+                                                               new Color(10, 0, 0).getRGB(),
+                                                               new Color(240, 0, 0).getRGB(),
+                                                               new Color(250, 0, 0).getRGB()},
+                                                     new int[]{1, 1, 1, 1});
+        ClusteringAlgorithm seeder = mock(ClusteringAlgorithm.class);
+        int[] starting = {new Color(230, 0, 0).getRGB(), new Color(20, 0, 0).getRGB()};
+
+        int[] result = new WeightedKMeansClusterer(new EuclideanRgbaDistance(), seeder)
+                           .cluster(histogram, 2, starting);
+
+        verifyZeroInteractions(seeder);
+        assertArrayEquals(new int[]{new Color(245, 0, 0).getRGB(), new Color(5, 0, 0).getRGB()}, result);
+    }
+
+    /**
+     * Tests that if there are fewer starting clusters than the target, the rest are chosen by the seeding, and if
+     * there are more, only the first are used.
+     */
+    @Test
+    public void testStartingClusters_WrongNumber(){
+        ColorHistogram histogram = ColorHistogram.of(new int[]{new Color(0, 0, 0).getRGB(),
+                                                               new Color(10, 0, 0).getRGB(),
+                                                               new Color(240, 0, 0).getRGB(),
+                                                               new Color(250, 0, 0).getRGB()},
+                                                     new int[]{1, 1, 1, 1});
+        WeightedKMeansClusterer clusterer = new WeightedKMeansClusterer(new EuclideanRgbaDistance(), 0);
+
+        int[] fewer = clusterer.cluster(histogram, 2, new int[]{new Color(20, 0, 0).getRGB()});
+        int[] more = clusterer.cluster(histogram, 2, new int[]{new Color(20, 0, 0).getRGB(),
+                                                               new Color(230, 0, 0).getRGB(),
+                                                               new Color(120, 0, 0).getRGB()});
+
+        assertArrayEquals(new int[]{new Color(5, 0, 0).getRGB(), new Color(245, 0, 0).getRGB()}, fewer);
+        assertArrayEquals(new int[]{new Color(5, 0, 0).getRGB(), new Color(245, 0, 0).getRGB()}, more);
+    }
+
+    /**
+     * Tests that starting from clusters which have already converged returns the same clusters.
+     */
+    @Test
+    public void testStartingClusters_AlreadyConverged(){
+        Map<Color, Integer> counts = new HashMap<>();
+        Random random = new Random(11);
+        while(counts.size() < 2000){
+            counts.put(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)), 1 + random.nextInt(50));
+        }
+        ColorHistogram histogram = ColorHistogram.of(counts);
+        WeightedKMeansClusterer clusterer = new WeightedKMeansClusterer(new EuclideanRgbaDistance(), 3, false, 0, 200);
+
+        int[] converged = clusterer.cluster(histogram, 6);
+
+        assertArrayEquals(converged, clusterer.cluster(histogram, 6, converged));
+    }
+
+    /**
+     * Tests that the final assignments are returned alongside the clusters, matching each color to its cluster.
+     */
+    @Test
+    public void testClusterAndAssign(){
+        ColorHistogram histogram = ColorHistogram.of(new int[]{new Color(0, 0, 0).getRGB(),
+                                                               new Color(10, 0, 0).getRGB(),
+                                                               new Color(240, 0, 0).getRGB(),
+                                                               new Color(250, 0, 0).getRGB()},
+                                                     new int[]{1, 1, 1, 1});
+
+        ClusterAssignment assignment = new WeightedKMeansClusterer(new EuclideanRgbaDistance(), 0)
+                                           .clusterAndAssign(histogram, 2);
+
+        assertEquals(2, assignment.getClusters().length);
+        assertEquals(new Color(5, 0, 0).getRGB(), assignment.getAssignedCluster(0));
+        assertEquals(new Color(5, 0, 0).getRGB(), assignment.getAssignedCluster(1));
+        assertEquals(new Color(245, 0, 0).getRGB(), assignment.getAssignedCluster(2));
+        assertEquals(new Color(245, 0, 0).getRGB(), assignment.getAssignedCluster(3));
+    }
+
+    /**
+     * Tests that a histogram whose counts are all zero has no clusters, and leaves every color unassigned.
+     */
+    @Test
+    public void testZeroCounts(){
+        ColorHistogram histogram = ColorHistogram.of(new int[]{Color.BLACK.getRGB(), 0xff112233, Color.WHITE.getRGB()},
+                                                     new int[]{0, 0, 0});
+        WeightedKMeansClusterer clusterer = new WeightedKMeansClusterer(new EuclideanRgbaDistance(), 0);
+
+        ClusterAssignment assignment = clusterer.clusterAndAssign(histogram, 2);
+
+        assertEquals(0, clusterer.cluster(histogram, 2).length);
+        assertEquals(0, assignment.getClusters().length);
+        assertEquals(ClusterAssignment.UNASSIGNED, assignment.getAssignment(0));
+    }
+
+    /**
+     * Tests that a cluster holding only colors which never appeared is removed, even on the last iteration, rather
+     * than being reseeded or leaving those colors without a cluster.
+     */
+    @Test
+    public void testZeroCountCluster(){
+        ColorHistogram histogram = ColorHistogram.of(new int[]{Color.BLACK.getRGB(), Color.RED.getRGB(),
+                                                               Color.WHITE.getRGB()},
+                                                     new int[]{10, 0, 10});
+        int[] starting = {Color.BLACK.getRGB(), Color.RED.getRGB(), Color.WHITE.getRGB()};
+        int[] expected = {Color.BLACK.getRGB(), Color.WHITE.getRGB()};
+
+        for(ColorDistanceFunction distanceFunction : new ColorDistanceFunction[]{new EuclideanRgbaDistance(),
+                                                                                 new CompuPhaseDistance()}){
+            for(int maxIterations : new int[]{1, 20}){
+                WeightedKMeansClusterer clusterer = new WeightedKMeansClusterer(distanceFunction, 0, false, 0,
+                                                                                maxIterations);
+
+                assertArrayEquals(expected, clusterer.cluster(histogram, 3, starting));
+            }
+        }
+    }
 }
@@ -0,0 +1,60 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A set of tests for the {@link WeightedSampler} class.
+ */
+public class WeightedSamplerTest {
+
+    /**
+     * Tests that positions are drawn roughly in proportion to their weights, and zero weights are never drawn.
+     */
+    @Test
+    public void testSample_proportional(){
+        WeightedSampler sampler = new WeightedSampler(new long[]{1, 0, 3, 6});
+        Random random = new Random(1);
+
+        int[] draws = new int[4];
+        for(int i = 0; i < 100000; i++){
+            draws[sampler.sample(random)]++;
+        }
+
+        assertEquals(10000, draws[0], 1000);
+        assertEquals(0, draws[1]);
+        assertEquals(30000, draws[2], 1000);
+        assertEquals(60000, draws[3], 1000);
+    }
+
+    /**
+     * Tests that the total is the sum of the weights.
+     */
+    @Test
+    public void testGetTotal(){
+        assertEquals(10, new WeightedSampler(new long[]{1, 0, 3, 6}).getTotal());
+        assertEquals(0, new WeightedSampler(new long[0]).getTotal());
+    }
+
+    /**
+     * Tests that nothing can be drawn when every weight is zero.
+     */
+    @Test
+    public void testSample_empty(){
+        assertEquals(-1, new WeightedSampler(new long[0]).sample(new Random(1)));
+        assertEquals(-1, new WeightedSampler(new long[]{0, 0}).sample(new Random(1)));
+    }
+
+    /**
+     * Tests that weights too large to fit in an int can be sampled.
+     */
+    @Test
+    public void testSample_large(){
+        WeightedSampler sampler = new WeightedSampler(new long[]{1, 5_000_000_000L});
+
+        assertEquals(1, sampler.sample(new Random(1)));
+    }
+}
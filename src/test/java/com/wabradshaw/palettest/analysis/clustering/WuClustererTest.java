@@ -0,0 +1,160 @@
+package com.wabradshaw.palettest.analysis.clustering;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A set of tests for the {@link WuClusterer}.
+ */
+public class WuClustererTest {
+
+    /**
+     * Tests that using the clusterer with only a single color in the counts, while asking for a single cluster, will
+     * return that color.
+     */
+    @Test
+    public void testSingleCluster_SingleColor(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(Color.RED, 10);
+
+        Collection<Color> result = new WuClusterer().cluster(counts, 1);
+
+        assertEquals(1, result.size());
+        assertTrue(result.contains(Color.RED));
+    }
+
+    /**
+     * Tests that using the clusterer with two unequal colors, while asking for a single cluster, will return the
+     * weighted average of those colors.
+     */
+    @Test
+    public void testSingleCluster_UnequalColors(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(new Color(200, 0, 127), 3);
+        counts.put(new Color(100, 160, 127), 1);
+
+        Collection<Color> result = new WuClusterer().cluster(counts, 1);
+
+        assertEquals(1, result.size());
+        assertTrue(result.contains(new Color(175, 40, 127)));
+    }
+
+    /**
+     * Tests that asking for at least as many clusters as colors will return the original colors.
+     */
+    @Test
+    public void testMultipleClusters_SameNumber(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(Color.RED, 10);
+        counts.put(Color.BLUE, 11);
+        counts.put(Color.GREEN, 4);
+
+        Collection<Color> result = new WuClusterer().cluster(counts, 5);
+
+        assertEquals(3, result.size());
+        assertTrue(result.contains(Color.RED));
+        assertTrue(result.contains(Color.BLUE));
+        assertTrue(result.contains(Color.GREEN));
+    }
+
+    /**
+     * Tests that colors in the same cell of the grid can't be separated.
+     */
+    @Test
+    public void testSameCell(){
+        Map<Color, Integer> counts = new HashMap<>();
+        counts.put(new Color(8, 8, 8), 1);
+        counts.put(new Color(15, 15, 15), 1);
+
+        Collection<Color> result = new WuClusterer().cluster(counts, 2);
+
+        assertEquals(1, result.size());
+        assertTrue(result.contains(new Color(12, 12, 12)));
+    }
+
+    /**
+     * Tests that an empty set of colors gives no clusters.
+     */
+    @Test
+    public void testNoColors(){
+        assertTrue(new WuClusterer().cluster(new HashMap<>(), 3).isEmpty());
+    }
+
+    /**
+     * Tests that clearly separated groups of colors are each given their own cluster, at the group's average.
+     */
+    @Test
+    public void testMultipleClusters_ClearCutAverages(){
+        Map<Color, Integer> counts = new LinkedHashMap<>();
+        counts.put(new Color(200,0,0), 10);
+        counts.put(new Color(240,0,0), 30);
+        counts.put(new Color(0, 190, 0), 20);
+        counts.put(new Color(0, 210, 0), 20);
+        counts.put(new Color(15,0,200), 50);
+        counts.put(new Color(0,15,200), 50);
+        counts.put(new Color(0,0,215), 50);
+
+        Collection<Color> result = new WuClusterer().cluster(counts, 3);
+
+        assertEquals(3, result.size());
+        assertTrue(result.contains(new Color(230,0,0)));
+        assertTrue(result.contains(new Color(0,200,0)));
+        assertTrue(result.contains(new Color(5,5,205)));
+    }
+
+    /**
+     * Tests that colors which only differ in alpha are averaged by default, but can be split.
+     */
+    @Test
+    public void testAlpha(){
+        Map<Color, Integer> counts = new LinkedHashMap<>();
+        counts.put(new Color(50, 50, 50, 0), 3);
+        counts.put(new Color(50, 50, 50, 255), 1);
+
+        Collection<Color> averaged = new WuClusterer().cluster(counts, 2);
+        Collection<Color> split = new WuClusterer(true).cluster(counts, 2);
+
+        assertEquals(1, averaged.size());
+        assertTrue(averaged.contains(new Color(50, 50, 50, 64)));
+        assertEquals(2, split.size());
+        assertTrue(split.contains(new Color(50, 50, 50, 0)));
+        assertTrue(split.contains(new Color(50, 50, 50, 255)));
+    }
+
+    /**
+     * Tests that a large set of colors gives the requested number of clusters.
+     */
+    @Test
+    public void testManyColors(){
+        Random random = new Random(5);
+        Map<Color, Integer> counts = new HashMap<>();
+        for(int i = 0; i < 5000; i++){
+            counts.merge(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256)), 1, Integer::sum);
+        }
+
+        assertEquals(16, new WuClusterer().cluster(counts, 16).size());
+        assertEquals(16, new WuClusterer(true).cluster(counts, 16).size());
+    }
+
+    /**
+     * Tests that missing or negative counts are rejected.
+     */
+    @Test
+    public void testInvalidCounts(){
+        Map<Color, Integer> missing = new HashMap<>();
+        missing.put(Color.RED, null);
+        Map<Color, Integer> negative = new HashMap<>();
+        negative.put(Color.RED, -1);
+
+        assertThrows(IllegalArgumentException.class, () -> new WuClusterer().cluster(missing, 2));
+        assertThrows(IllegalArgumentException.class, () -> new WuClusterer().cluster(negative, 2));
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import java.awt.Color;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -130,6 +131,23 @@ public class CompuPhaseDistanceTest {
         assertTrue(function.getRankingDistance(base, blue) < function.getRankingDistance(base, green));
     }
 
+    /**
+     * Tests that the function is not treated as a metric, as the red weighting means it can break the triangle
+     * inequality.
+     */
+    @Test
+    public void testIsMetric(){
+        Tone blue = getTone(0,0,255,255);
+        Tone purple = getTone(150,0,135,255);
+        Tone red = getTone(255,0,0,255);
+
+        CompuPhaseDistance function = new CompuPhaseDistance();
+
+        assertFalse(function.isMetric());
+        assertTrue(function.getDistance(blue, red) >
+                   function.getDistance(blue, purple) + function.getDistance(purple, red));
+    }
+
     /**
      * Utility method to instantiate a tone and color at the same time.
      *
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import java.awt.Color;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * A set of tests for {@link EuclideanRgbaDistance}.
@@ -479,6 +480,15 @@ public class EuclideanRgbaDistanceTest {
         double result = function.getRankingDistance(a,b);
         assertEquals(68676, result, 0.000001);
     }
+
+    /**
+     * Tests that the function is treated as a metric.
+     */
+    @Test
+    public void testIsMetric(){
+        assertTrue(new EuclideanRgbaDistance().isMetric());
+    }
+
     /**
      * Utility method to instantiate a tone and color at the same time.
      *
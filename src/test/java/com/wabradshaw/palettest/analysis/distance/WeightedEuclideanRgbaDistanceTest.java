@@ -6,6 +6,8 @@ import org.junit.jupiter.api.Test;
 import java.awt.Color;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -144,6 +146,35 @@ public class WeightedEuclideanRgbaDistanceTest {
         assertTrue(function.getRankingDistance(base, blue) < function.getRankingDistance(base, alpha));
     }
 
+    /**
+     * Tests that the function is treated as a metric when the weightings are positive.
+     */
+    @Test
+    public void testIsMetric(){
+        assertTrue(new WeightedEuclideanRgbaDistance().isMetric());
+        assertTrue(new WeightedEuclideanRgbaDistance(1,0,2,4).isMetric());
+    }
+
+    /**
+     * Tests that the function is not treated as a metric when a weighting is negative.
+     */
+    @Test
+    public void testIsMetric_NegativeWeight(){
+        assertFalse(new WeightedEuclideanRgbaDistance(1,2,-2,4).isMetric());
+    }
+
+    /**
+     * Tests that weighted functions are equal only if they use the same weighting for every channel.
+     */
+    @Test
+    public void testEquals(){
+        assertEquals(new WeightedEuclideanRgbaDistance(), new WeightedEuclideanRgbaDistance(2,4,3,1));
+        assertEquals(new WeightedEuclideanRgbaDistance().hashCode(),
+                     new WeightedEuclideanRgbaDistance(2,4,3,1).hashCode());
+        assertNotEquals(new WeightedEuclideanRgbaDistance(), new WeightedEuclideanRgbaDistance(2,4,3,2));
+        assertNotEquals(new WeightedEuclideanRgbaDistance(1,1,1,1), new EuclideanRgbaDistance());
+    }
+
     /**
      * Utility method to instantiate a tone and color at the same time.
      *
@@ -2,14 +2,23 @@ package com.wabradshaw.palettest.analysis.naming;
 
 import com.wabradshaw.palettest.analysis.Tone;
 import com.wabradshaw.palettest.analysis.distance.ColorDistanceFunction;
+import com.wabradshaw.palettest.analysis.distance.CompuPhaseDistance;
+import com.wabradshaw.palettest.palettes.StandardPalettes;
 import org.junit.Test;
 
 import java.awt.Color;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -147,10 +156,183 @@ public class SimplePaletteColorNamerTest {
 
         when(distanceFunction.getDistance(eq(new Tone(Color.RED)), eq(new Tone(Color.RED)))).thenReturn(99.9);
         when(distanceFunction.getDistance(eq(new Tone(Color.RED)), eq(new Tone(Color.BLUE)))).thenReturn(0.0);
+        when(distanceFunction.getRankingDistance(eq(new Tone(Color.RED)), eq(new Tone(Color.RED)))).thenReturn(99.9);
+        when(distanceFunction.getRankingDistance(eq(new Tone(Color.RED)), eq(new Tone(Color.BLUE)))).thenReturn(0.0);
 
         List<Tone> result = namer.nameTones(colors, basePalette);
 
         assertEquals(1, result.size());
         assertEquals("Blue", result.get(0).getName());
     }
+
+    /**
+     * Tests that an empty base palette will give every color a default name.
+     */
+    @Test
+    public void testEmptyPalette(){
+        ColorNamer namer = new SimplePaletteColorNamer();
+
+        List<Tone> result = namer.nameTones(Arrays.asList(Color.RED), Collections.emptyList());
+
+        assertEquals(1, result.size());
+        assertEquals("#ff0000", result.get(0).getName());
+    }
+
+    /**
+     * Tests that if several Tones in the base palette are equally close, the first one will be used as a name.
+     */
+    @Test
+    public void testEquallyClose(){
+        ColorNamer namer = new SimplePaletteColorNamer();
+
+        Collection<Color> colors = Arrays.asList(new Color(100, 100, 100));
+        List<Tone> basePalette = Arrays.asList(new Tone("Dark", new Color(90, 100, 100)),
+                                               new Tone("Same Dark", new Color(90, 100, 100)),
+                                               new Tone("Light", new Color(110, 100, 100)));
+
+        List<Tone> result = namer.nameTones(colors, basePalette);
+
+        assertEquals("Dark", result.get(0).getName());
+    }
+
+    /**
+     * Tests that only the first Tone of each repeated color in the base palette is searched.
+     */
+    @Test
+    public void testDistinctTones(){
+        Tone red = new Tone("Red", Color.RED);
+        Tone blue = new Tone("Blue", Color.BLUE);
+        List<Tone> basePalette = Arrays.asList(red, blue, new Tone("Also Red", Color.RED));
+
+        Tone[] result = SimplePaletteColorNamer.distinctTones(basePalette);
+
+        assertEquals(2, result.length);
+        assertSame(red, result[0]);
+        assertSame(blue, result[1]);
+    }
+
+    /**
+     * Tests that changing a palette after it has been used will change the names given.
+     */
+    @Test
+    public void testPaletteChanged(){
+        SimplePaletteColorNamer namer = new SimplePaletteColorNamer();
+
+        List<Tone> basePalette = new ArrayList<>(Arrays.asList(new Tone("Red", Color.RED)));
+        assertEquals("Red", namer.nameTones(Arrays.asList(Color.RED), basePalette).get(0).getName());
+
+        basePalette.set(0, new Tone("Scarlet", Color.RED));
+        assertEquals("Scarlet", namer.nameTones(Arrays.asList(Color.RED), basePalette).get(0).getName());
+
+        basePalette.add(new Tone("Blue", Color.BLUE));
+        assertEquals("Blue", namer.nameTones(Arrays.asList(Color.BLUE), basePalette).get(0).getName());
+    }
+
+    /**
+     * Tests that two palettes with the same colors but different names each give their own names.
+     */
+    @Test
+    public void testSameColorsDifferentNames(){
+        SimplePaletteColorNamer namer = new SimplePaletteColorNamer();
+
+        List<Tone> first = Arrays.asList(new Tone("Red", Color.RED));
+        List<Tone> second = Arrays.asList(new Tone("Scarlet", Color.RED));
+
+        assertEquals("Red", namer.nameTones(Arrays.asList(Color.RED), first).get(0).getName());
+        assertEquals("Scarlet", namer.nameTones(Arrays.asList(Color.RED), second).get(0).getName());
+    }
+
+    /**
+     * Tests that the closest Tone in a large palette is the same one found by checking the distance to every Tone, and
+     * that the namer gives the same names when it is used by several threads at once.
+     */
+    @Test
+    public void testLargePalette(){
+        SimplePaletteColorNamer namer = new SimplePaletteColorNamer();
+        ColorDistanceFunction distanceFunction = new CompuPhaseDistance();
+        List<Tone> basePalette = StandardPalettes.X11_NUMBERED;
+
+        Random random = new Random(42);
+        List<Color> colors = IntStream.range(0, 64)
+                                      .mapToObj(i -> new Color(random.nextInt(256), random.nextInt(256),
+                                                               random.nextInt(256)))
+                                      .collect(Collectors.toList());
+
+        for(Color color : colors){
+            Tone target = new Tone(color);
+            Tone closest = basePalette.get(0);
+            for(Tone tone : basePalette){
+                if(distanceFunction.getDistance(tone, target) < distanceFunction.getDistance(closest, target)){
+                    closest = tone;
+                }
+            }
+            assertSame(closest, namer.getClosestTone(SimplePaletteColorNamer.distinctTones(basePalette), target));
+        }
+
+        List<Tone> expected = namer.nameTones(colors, basePalette);
+        List<List<Tone>> results = IntStream.range(0, 8)
+                                            .parallel()
+                                            .mapToObj(i -> namer.nameTones(colors, basePalette))
+                                            .collect(Collectors.toList());
+
+        for(List<Tone> result : results){
+            assertEquals(expected.stream().map(Tone::getName).collect(Collectors.toList()),
+                         result.stream().map(Tone::getName).collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Tests that a namer prepared for a base palette names colors the same way as one which isn't, including when it
+     * is shared between threads.
+     */
+    @Test
+    public void testBasePaletteConstructor(){
+        List<Tone> basePalette = StandardPalettes.X11_NUMBERED;
+        SimplePaletteColorNamer prepared = new SimplePaletteColorNamer(new CompuPhaseDistance(), basePalette);
+
+        Random random = new Random(7);
+        List<Color> colors = IntStream.range(0, 64)
+                                      .mapToObj(i -> new Color(random.nextInt(256), random.nextInt(256),
+                                                               random.nextInt(256)))
+                                      .collect(Collectors.toList());
+
+        List<String> expected = new SimplePaletteColorNamer().nameTones(colors, basePalette).stream()
+                                                             .map(Tone::getName)
+                                                             .collect(Collectors.toList());
+        List<List<Tone>> results = IntStream.range(0, 8)
+                                            .parallel()
+                                            .mapToObj(i -> prepared.nameTones(colors, basePalette))
+                                            .collect(Collectors.toList());
+
+        for(List<Tone> result : results){
+            assertEquals(expected, result.stream().map(Tone::getName).collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Tests that a namer prepared for a base palette keeps using the palette as it was when the namer was created,
+     * but still reads any other palette it is given.
+     */
+    @Test
+    public void testBasePaletteConstructor_otherPalettes(){
+        List<Tone> basePalette = new ArrayList<>(Collections.singletonList(new Tone("Red", Color.RED)));
+        SimplePaletteColorNamer namer = new SimplePaletteColorNamer(new CompuPhaseDistance(), basePalette);
+        Collection<Color> colors = Collections.singletonList(Color.RED);
+
+        basePalette.set(0, new Tone("Blue", Color.BLUE));
+
+        assertEquals("Red", namer.nameTones(colors, basePalette).get(0).getName());
+        assertEquals(new Tone(Color.RED).getName(),
+                     namer.nameTones(colors, new ArrayList<>(basePalette)).get(0).getName());
+        assertEquals("Scarlet", namer.nameTones(colors, Collections.singletonList(new Tone("Scarlet", Color.RED)))
+                                     .get(0).getName());
+    }
+
+    /**
+     * Tests that a namer can't be prepared for a null base palette.
+     */
+    @Test
+    public void testBasePaletteConstructor_null(){
+        assertThrows(IllegalArgumentException.class, () -> new SimplePaletteColorNamer(new CompuPhaseDistance(), null));
+    }
 }
@@ -3,7 +3,11 @@ package com.wabradshaw.palettest.visualisation;
 import com.wabradshaw.palettest.analysis.PaletteDistribution;
 import com.wabradshaw.palettest.analysis.Palettester;
 import com.wabradshaw.palettest.analysis.Tone;
+import com.wabradshaw.palettest.analysis.ToneCount;
+import com.wabradshaw.palettest.analysis.clustering.ClusteringAlgorithm;
+import com.wabradshaw.palettest.analysis.clustering.WeightedKMeansClusterer;
 import com.wabradshaw.palettest.analysis.distance.ColorDistanceFunction;
+import com.wabradshaw.palettest.analysis.distance.CompuPhaseDistance;
 import com.wabradshaw.palettest.palettes.StandardPalettes;
 import com.wabradshaw.palettest.utils.ImageFileUtils;
 import org.junit.jupiter.api.Test;
@@ -17,6 +21,7 @@ import static com.wabradshaw.palettest.assertions.AssertContainsColor.assertCont
 import static com.wabradshaw.palettest.assertions.AssertDimensions.assertDimensions;
 import static com.wabradshaw.palettest.assertions.AssertPixelsMatch.assertPixelsMatch;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.AdditionalMatchers.not;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -128,4 +133,54 @@ public class PaletteReplacerTest {
 
         assertPixelsMatch(target, result);
     }
+
+    /**
+     * Tests that quantizing an image with no more colors than allowed leaves it unchanged.
+     */
+    @Test
+    public void testQuantize_FewColors(){
+        BufferedImage image = ImageFileUtils.loadImageResource("/sampleImages/geometric/redBlueQuarter.png");
+
+        BufferedImage result = new PaletteReplacer().quantize(image, 5);
+
+        assertPixelsMatch(image, result);
+    }
+
+    /**
+     * Tests that quantizing an image recolors it using the palette which would be defined for it.
+     */
+    @Test
+    public void testQuantize_UsesDefinedPalette(){
+        BufferedImage image = ImageFileUtils.loadImageResource("/sampleImages/maps/Seville.png");
+        ColorDistanceFunction distanceFunction = new CompuPhaseDistance();
+        ClusteringAlgorithm clusterer = new WeightedKMeansClusterer(distanceFunction, 4);
+
+        List<Tone> palette = new Palettester(null, distanceFunction, clusterer, null).definePalette(image, 4);
+        BufferedImage result = new PaletteReplacer(distanceFunction, clusterer).quantize(image, 4);
+
+        assertDimensions(result, image.getWidth(), image.getHeight());
+        PaletteDistribution analysis = new Palettester().analyseAllColors(result);
+        assertEquals(4, analysis.byCount().size());
+        for(ToneCount count : analysis.byCount()){
+            assertTrue(palette.contains(count.getTone()));
+        }
+    }
+
+    /**
+     * Tests that quantizing with an algorithm which doesn't report its assignments matches each color to the closest
+     * cluster.
+     */
+    @Test
+    public void testQuantize_CustomAlgorithm(){
+        BufferedImage image = ImageFileUtils.loadImageResource("/sampleImages/geometric/redBlueQuarter.png");
+        ClusteringAlgorithm clusterer = (colorCounts, targetClusters) -> Arrays.asList(new Color(250, 0, 0),
+                                                                                        new Color(0, 0, 250));
+
+        BufferedImage result = new PaletteReplacer(new CompuPhaseDistance(), clusterer).quantize(image, 1);
+
+        PaletteDistribution analysis = new Palettester().analyseAllColors(result);
+        assertEquals(2, analysis.byCount().size());
+        assertContainsColor(new Color(250, 0, 0), analysis);
+        assertContainsColor(new Color(0, 0, 250), analysis);
+    }
 }